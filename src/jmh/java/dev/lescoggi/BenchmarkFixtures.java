@@ -0,0 +1,327 @@
+package dev.lescoggi;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.apache.poi.sl.usermodel.PictureData;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xslf.usermodel.SlideLayout;
+import org.apache.poi.xslf.usermodel.XMLSlideShow;
+import org.apache.poi.xslf.usermodel.XSLFPictureData;
+import org.apache.poi.xslf.usermodel.XSLFSlide;
+import org.apache.poi.xslf.usermodel.XSLFSlideLayout;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+
+/**
+ * Generates the documents the benchmarks run against. Fixtures are deterministic and written once
+ * to {@code target/jmh-fixtures} (or the directory in the {@code jmh.fixtures} system property), so
+ * that the 100 MB workbook is not rebuilt for every fork.
+ */
+final class BenchmarkFixtures {
+
+    static final String SHEET = "Data";
+    static final int MONTHS = 360;
+
+    private static final Path DIRECTORY = Path.of(System.getProperty("jmh.fixtures", "target/jmh-fixtures"));
+    private static final String[] REGIONS = { "North", "South", "East", "West", "Central" };
+    private static final String[] WORDS = { "invoice", "supplier", "shipment", "forecast", "budget", "quarter",
+        "contract", "delivery", "revenue", "widget", "warehouse", "customer", "margin", "review", "order" };
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * Returns a workbook with one sheet named {@value #SHEET} of six typed columns. The size is one
+     * of {@code 4KB}, {@code 1MB}, {@code 10MB} or {@code 100MB}, at about 40 bytes per row; the
+     * smallest .xlsx POI writes is about 4 KB, most of it styles and theme. A sheet holds at most
+     * 1,048,576 rows, so the largest workbook has a million rows with longer notes instead.
+     */
+    static Path workbook(String size) throws IOException {
+        int rows = rows(size);
+        int noteWords = "100MB".equals(size) ? 64 : 4;
+        return fixture("workbook-" + size + ".xlsx", file -> {
+            Random random = new Random(42);
+            // A streaming workbook keeps the memory needed for the largest fixture small
+            try (SXSSFWorkbook workbook = new SXSSFWorkbook(1000); OutputStream out = Files.newOutputStream(file)) {
+                Sheet sheet = workbook.createSheet(SHEET);
+                Row header = sheet.createRow(0);
+                String[] names = { "Id", "Region", "Product", "Quantity", "Price", "Note" };
+                for (int i = 0; i < names.length; i++) {
+                    header.createCell(i).setCellValue(names[i]);
+                }
+                for (int r = 1; r <= rows; r++) {
+                    Row row = sheet.createRow(r);
+                    row.createCell(0).setCellValue(r);
+                    row.createCell(1).setCellValue(REGIONS[random.nextInt(REGIONS.length)]);
+                    row.createCell(2).setCellValue("Product " + random.nextInt(1000));
+                    row.createCell(3).setCellValue(random.nextInt(500));
+                    row.createCell(4).setCellValue(Math.round(random.nextDouble() * 100_000) / 100.0);
+                    row.createCell(5).setCellValue(sentence(random, noteWords));
+                }
+                workbook.write(out);
+                workbook.dispose();
+            }
+        });
+    }
+
+    /**
+     * Returns the number of rows below the header of the workbook of {@code size}.
+     */
+    static int rows(String size) {
+        return switch (size) {
+            case "4KB" -> 8;
+            case "1MB" -> 26_000;
+            case "10MB" -> 260_000;
+            case "100MB" -> 1_000_000;
+            default -> throw new IllegalArgumentException("Unknown workbook size " + size);
+        };
+    }
+
+    /**
+     * Returns a deck of {@code slides} slides, each with a title and a bulleted body.
+     */
+    static Path presentation(int slides) throws IOException {
+        return fixture("presentation-" + slides + ".pptx", file -> {
+            Random random = new Random(42);
+            try (XMLSlideShow presentation = new XMLSlideShow(); OutputStream out = Files.newOutputStream(file)) {
+                XSLFSlideLayout layout = presentation.getSlideMasters().get(0).getLayout(SlideLayout.TITLE_AND_CONTENT);
+                for (int i = 0; i < slides; i++) {
+                    XSLFSlide slide = presentation.createSlide(layout);
+                    slide.getPlaceholder(0).setText("Slide " + (i + 1) + ": " + sentence(random, 3));
+                    slide.getPlaceholder(1).setText(sentence(random, 8) + "\n" + sentence(random, 8) + "\n" + sentence(random, 8));
+                }
+                presentation.write(out);
+            }
+        });
+    }
+
+    /**
+     * Returns a deck of one slide per picture of 2 MB of random bytes, so that most of the file is
+     * parts an edit of the slide text leaves unchanged.
+     */
+    static Path pictureDeck(int pictures) throws IOException {
+        return fixture("pictures-" + pictures + ".pptx", file -> {
+            Random random = new Random(42);
+            try (XMLSlideShow presentation = new XMLSlideShow(); OutputStream out = Files.newOutputStream(file)) {
+                for (int i = 0; i < pictures; i++) {
+                    byte[] picture = new byte[2 * 1024 * 1024];
+                    random.nextBytes(picture);
+                    XSLFPictureData data = presentation.addPicture(picture, PictureData.PictureType.PNG);
+                    presentation.createSlide().createPicture(data);
+                }
+                presentation.write(out);
+            }
+        });
+    }
+
+    /**
+     * Returns a Word document of {@code paragraphs} paragraphs of about 80 words each.
+     */
+    static Path wordDocument(int paragraphs) throws IOException {
+        return fixture("document-" + paragraphs + ".docx", file -> {
+            Random random = new Random(42);
+            try (XWPFDocument document = new XWPFDocument(); OutputStream out = Files.newOutputStream(file)) {
+                for (int i = 0; i < paragraphs; i++) {
+                    document.createParagraph().createRun().setText(sentence(random, 80));
+                }
+                document.write(out);
+            }
+        });
+    }
+
+    /**
+     * Returns a directory of {@code documents} small Word, Excel and PowerPoint files with different
+     * text, for the search benchmarks.
+     */
+    static Path corpus(int documents) throws IOException {
+        return fixture("corpus-" + documents, directory -> {
+            Files.createDirectories(directory);
+            Random random = new Random(42);
+            for (int i = 0; i < documents; i++) {
+                Path file = directory.resolve("file-" + i + (i % 3 == 0 ? ".docx" : i % 3 == 1 ? ".xlsx" : ".pptx"));
+                try (OutputStream out = Files.newOutputStream(file)) {
+                    if (i % 3 == 0) {
+                        try (XWPFDocument document = new XWPFDocument()) {
+                            for (int p = 0; p < 20; p++) {
+                                document.createParagraph().createRun().setText(sentence(random, 40));
+                            }
+                            document.write(out);
+                        }
+                    } else if (i % 3 == 1) {
+                        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+                            Sheet sheet = workbook.createSheet(SHEET);
+                            for (int r = 0; r < 50; r++) {
+                                Row row = sheet.createRow(r);
+                                row.createCell(0).setCellValue(sentence(random, 3));
+                                row.createCell(1).setCellValue(random.nextInt(1000));
+                            }
+                            workbook.write(out);
+                        }
+                    } else {
+                        try (XMLSlideShow presentation = new XMLSlideShow()) {
+                            for (int s = 0; s < 5; s++) {
+                                presentation.createSlide().createTextBox().setText(sentence(random, 20));
+                            }
+                            presentation.write(out);
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns a CSV file of a header and {@code rows} records of six fields: numbers, dates,
+     * booleans and quoted text with a delimiter in it, the types {@code import_csv_to_excel_sheet}
+     * infers.
+     */
+    static Path csv(int rows) throws IOException {
+        return fixture("rows-" + rows + ".csv", file -> {
+            try (BufferedWriter out = Files.newBufferedWriter(file)) {
+                out.write("id,region,amount,day,active,note\n");
+                for (int r = 0; r < rows; r++) {
+                    int day = r % 28 + 1;
+                    out.write(r + ",region-" + r % 50 + "," + r * 0.25 + ",2024-01-" + (day < 10 ? "0" : "") + day
+                        + "," + (r % 2 == 0) + ",\"note, " + r + "\"\n");
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns a financial model of one sheet of {@value #MONTHS} monthly cash flows per product, five
+     * formulas a month, that a sheet named Summary discounts and adds up in B1. Inputs!B1 is the
+     * yearly discount rate every formula depends on, Inputs!B2.. the monthly growth of each product.
+     */
+    static Path financialModel(int products) throws IOException {
+        return fixture("model-" + products + ".xlsx", file -> {
+            try (XSSFWorkbook workbook = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+                XSSFSheet inputs = workbook.createSheet("Inputs");
+                Row rate = inputs.createRow(0);
+                rate.createCell(0).setCellValue("Discount rate");
+                rate.createCell(1).setCellValue(0.08);
+                for (int p = 0; p < products; p++) {
+                    Row row = inputs.createRow(p + 1);
+                    row.createCell(0).setCellValue("Growth P" + p);
+                    row.createCell(1).setCellValue(0.01);
+                    row.createCell(2).setCellValue(0.4 + p % 10 / 50.0);
+                }
+                StringBuilder total = new StringBuilder();
+                for (int p = 0; p < products; p++) {
+                    String name = "P" + p;
+                    int input = p + 2;
+                    XSSFSheet sheet = workbook.createSheet(name);
+                    for (int m = 0; m < MONTHS; m++) {
+                        int r = m + 1;
+                        Row row = sheet.createRow(m);
+                        row.createCell(0).setCellValue(r);
+                        // Revenue, costs, profit, discounted profit and cumulative discounted profit
+                        row.createCell(1).setCellFormula(m == 0 ? "1000+" + p : "B" + (r - 1) + "*(1+Inputs!$B$" + input + ")");
+                        row.createCell(2).setCellFormula("B" + r + "*Inputs!$C$" + input);
+                        row.createCell(3).setCellFormula("B" + r + "-C" + r);
+                        row.createCell(4).setCellFormula("D" + r + "/(1+Inputs!$B$1)^(A" + r + "/12)");
+                        row.createCell(5).setCellFormula(m == 0 ? "E1" : "F" + (r - 1) + "+E" + r);
+                    }
+                    total.append(p == 0 ? "" : "+").append(name).append("!F").append(MONTHS);
+                }
+                Row summary = workbook.createSheet("Summary").createRow(0);
+                summary.createCell(0).setCellValue("NPV");
+                summary.createCell(1).setCellFormula(total.toString());
+                workbook.write(out);
+            }
+        });
+    }
+
+    /**
+     * Returns an invoice letter template: 30 paragraphs of terms, values in the greeting and the
+     * total, and a table row repeated for each of the {@code lines}.
+     */
+    static Path invoiceTemplate() throws IOException {
+        return fixture("invoice-template.docx", file -> {
+            try (XWPFDocument document = new XWPFDocument(); OutputStream out = Files.newOutputStream(file)) {
+                document.createParagraph().createRun().setText("Invoice {number}");
+                document.createParagraph().createRun().setText("Dear {customer.name},");
+                for (int p = 0; p < 30; p++) {
+                    document.createParagraph().createRun().setText("Terms and conditions, paragraph " + p + ", that are the same in every invoice.");
+                }
+                XWPFTable table = document.createTable(2, 2);
+                table.getRow(0).getCell(0).setText("Item");
+                table.getRow(0).getCell(1).setText("Amount");
+                table.getRow(1).getCell(0).setText("{#for line in lines}{line.item}");
+                table.getRow(1).getCell(1).setText("{line.amount}{/for}");
+                document.createParagraph().createRun().setText("Total: {total}");
+                document.write(out);
+            }
+        });
+    }
+
+    /**
+     * Copies a fixture into {@code directory}, for benchmarks that modify it.
+     */
+    static Path copy(Path fixture, Path directory) throws IOException {
+        return Files.copy(fixture, directory.resolve(fixture.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Copies a directory fixture into {@code directory}, for benchmarks that modify its files.
+     */
+    static Path copyDirectory(Path fixture, Path directory) throws IOException {
+        Path target = directory.resolve(fixture.getFileName());
+        try (Stream<Path> files = Files.walk(fixture)) {
+            for (Path file : files.toList()) {
+                Files.copy(file, target.resolve(fixture.relativize(file).toString()), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Deletes the working directory of a benchmark.
+     */
+    static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    static String sentence(Random random, int words) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sentence.append(' ');
+            }
+            sentence.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sentence.toString();
+    }
+
+    @FunctionalInterface
+    private interface Generator {
+        void write(Path file) throws IOException;
+    }
+
+    private static synchronized Path fixture(String name, Generator generator) throws IOException {
+        Path file = DIRECTORY.resolve(name);
+        if (!Files.exists(file)) {
+            Files.createDirectories(DIRECTORY);
+            Path temp = DIRECTORY.resolve(name + ".tmp");
+            generator.write(temp);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return file;
+    }
+}
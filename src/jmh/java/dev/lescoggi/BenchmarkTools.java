@@ -0,0 +1,114 @@
+package dev.lescoggi;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import io.quarkiverse.mcp.server.ToolResponse;
+
+/**
+ * The tool classes wired by hand with the default configuration of application.properties, so
+ * that benchmarks call the tool methods directly, without starting Quarkus or going through the
+ * MCP transport. Only write-behind and the number of files summarized or documents rendered at
+ * once can be changed, to compare coalesced saves with a save per call and to find the best
+ * parallelism.
+ */
+final class BenchmarkTools {
+
+    final OfficeMcpServerExcelFeatures excel = new OfficeMcpServerExcelFeatures();
+    final OfficeMcpServerWordFeatures word = new OfficeMcpServerWordFeatures();
+    final OfficeMcpServerPowerPointFeatures powerPoint = new OfficeMcpServerPowerPointFeatures();
+    final OfficeMcpServerDocumentFeatures document = new OfficeMcpServerDocumentFeatures();
+    final OfficeMcpServerSearchFeatures search = new OfficeMcpServerSearchFeatures();
+    final OfficeMcpServerTemplateFeatures template = new OfficeMcpServerTemplateFeatures();
+
+    private final DocumentLockManager locks = new DocumentLockManager();
+    private final DocumentSaver saver = new DocumentSaver(false, true);
+    private final boolean writeBehind;
+    private final int parallelism;
+    private final Path filesPath;
+    private final Path indexPath;
+    private DocumentCache documentCache;
+    private RangeCursorStore rangeCursors;
+    private final SearchIndex searchIndex;
+
+    BenchmarkTools(Path filesPath, Path indexPath, boolean writeBehind) {
+        this(filesPath, indexPath, writeBehind, 0);
+    }
+
+    /**
+     * @param parallelism files {@code summarize_office_files} reads and documents
+     *        {@code render_office_templates} renders at once, 0 for the defaults of 16 and 8
+     */
+    BenchmarkTools(Path filesPath, Path indexPath, boolean writeBehind, int parallelism) {
+        this.writeBehind = writeBehind;
+        this.parallelism = parallelism;
+        this.filesPath = filesPath;
+        this.indexPath = indexPath;
+        excel.officeFilesPath = filesPath.toString();
+        excel.bulkRowWindow = 100;
+        excel.streamingReadThreshold = 10L * 1024 * 1024;
+        excel.rangePageSize = 500;
+        excel.locks = locks;
+        excel.saver = saver;
+        word.officeFilesPath = filesPath.toString();
+        word.textPageSize = 20_000;
+        word.locks = locks;
+        word.saver = saver;
+        powerPoint.officeFilesPath = filesPath.toString();
+        powerPoint.locks = locks;
+        powerPoint.saver = saver;
+        document.locks = locks;
+        searchIndex = new SearchIndex(filesPath.toString(), indexPath.toString(), Duration.ZERO, 0, 8);
+        search.searchIndex = searchIndex;
+        search.summaryPageSize = 500;
+        coldStart();
+    }
+
+    /**
+     * Replaces the document cache, the range cursors, the workbook metadata index, the sheet
+     * snapshots, the engine profiles, the file summaries and the compiled templates with empty
+     * ones, so that the next call reads its file from disk again.
+     */
+    void coldStart() {
+        if (documentCache != null) {
+            documentCache.shutdown();
+            rangeCursors.shutdown();
+        }
+        documentCache = new DocumentCache(locks, saver, 256L * 1024 * 1024, 10, writeBehind,
+            Duration.ofSeconds(2), Duration.ofSeconds(10), 1000);
+        rangeCursors = new RangeCursorStore(16, Duration.ofMinutes(5));
+        excel.documentCache = documentCache;
+        excel.rangeCursors = rangeCursors;
+        excel.metadataIndex = new WorkbookMetadataIndex(1024);
+        excel.snapshots = new SheetSnapshotCache(256L * 1024 * 1024);
+        EngineSelector engines = new EngineSelector(documentCache, 0, 12, 52428800);
+        excel.engines = engines;
+        word.documentCache = documentCache;
+        word.engines = engines;
+        powerPoint.documentCache = documentCache;
+        powerPoint.engines = engines;
+        document.documentCache = documentCache;
+        search.summaries = new OfficeFileSummaries(documentCache, filesPath.toString(), indexPath.toString(),
+            parallelism > 0 ? parallelism : 16, 10_000);
+        template.templates = new OfficeTemplates(OfficeTemplateTest.QUTE, documentCache, locks, saver, 32,
+            parallelism > 0 ? parallelism : 8);
+        template.engines = engines;
+    }
+
+    void close() {
+        documentCache.shutdown();
+        rangeCursors.shutdown();
+        searchIndex.shutdown();
+    }
+
+    /**
+     * Returns {@code response}, or fails the benchmark if the tool reported an error, so that a
+     * broken fixture cannot pass for a fast tool.
+     */
+    static ToolResponse check(ToolResponse response) {
+        if (response.isError()) {
+            throw new IllegalStateException(response.content().toString());
+        }
+        return response;
+    }
+}
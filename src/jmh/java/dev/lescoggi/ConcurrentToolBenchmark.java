@@ -0,0 +1,88 @@
+package dev.lescoggi;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.quarkiverse.mcp.server.ToolResponse;
+
+/**
+ * Excel tool calls from 8 threads at once: reads of one cached workbook, which share its read lock,
+ * and rows added to a workbook of each thread, which share no lock. How the throughput scales is
+ * seen by running it again with fewer threads, for example {@code -Djmh.args="-t 1"}.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@Threads(8)
+public class ConcurrentToolBenchmark {
+
+    private static final String SHEET = "Sheet1";
+
+    @State(Scope.Benchmark)
+    public static class Shared {
+
+        BenchmarkTools tools;
+        Path directory;
+        String file;
+        final AtomicInteger workbooks = new AtomicInteger();
+
+        @Setup
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("jmh-concurrent");
+            tools = new BenchmarkTools(directory, directory.resolve(".office_index"), false);
+            file = directory.resolve("shared.xlsx").toString();
+            BenchmarkTools.check(tools.excel.createExcelWorkbook(file));
+            for (int r = 0; r < 100; r++) {
+                BenchmarkTools.check(tools.excel.addExcelRow(file, SHEET, "a,b,c"));
+            }
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            tools.close();
+            BenchmarkFixtures.delete(directory);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Own {
+
+        String file;
+
+        // A new workbook in every iteration, so that it grows by at most one iteration of rows
+        @Setup(Level.Iteration)
+        public void setUp(Shared shared) {
+            file = shared.directory.resolve("own-" + shared.workbooks.incrementAndGet() + ".xlsx").toString();
+            BenchmarkTools.check(shared.tools.excel.createExcelWorkbook(file));
+        }
+    }
+
+    @Benchmark
+    public ToolResponse readSharedWorkbook(Shared shared) {
+        return BenchmarkTools.check(shared.tools.excel.readExcelCell(shared.file, SHEET, 50, 1));
+    }
+
+    @Benchmark
+    public ToolResponse addRowToOwnWorkbook(Shared shared, Own own) {
+        return BenchmarkTools.check(shared.tools.excel.addExcelRow(own.file, SHEET, "x,y"));
+    }
+}
@@ -0,0 +1,62 @@
+package dev.lescoggi;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.quarkiverse.mcp.server.ToolResponse;
+
+/**
+ * The tools that create empty documents. Each call replaces the file of the previous one.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CreateToolBenchmark {
+
+    private BenchmarkTools tools;
+    private Path directory;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("jmh-create");
+        tools = new BenchmarkTools(directory, directory.resolve(".office_index"), false);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        tools.close();
+        BenchmarkFixtures.delete(directory);
+    }
+
+    @Benchmark
+    public ToolResponse createExcelWorkbook() {
+        return BenchmarkTools.check(tools.excel.createExcelWorkbook(directory.resolve("new.xlsx").toString()));
+    }
+
+    @Benchmark
+    public ToolResponse createWordDocument() {
+        return BenchmarkTools.check(tools.word.createWordDocument(directory.resolve("new.docx").toString()));
+    }
+
+    @Benchmark
+    public ToolResponse createPowerPointPresentation() {
+        return BenchmarkTools.check(tools.powerPoint.createPowerPointPresentation(directory.resolve("new.pptx").toString()));
+    }
+}
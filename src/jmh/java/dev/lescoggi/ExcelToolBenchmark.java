@@ -0,0 +1,253 @@
+package dev.lescoggi;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.quarkiverse.mcp.server.ToolResponse;
+
+/**
+ * The Excel tools on workbooks from 4 KB to 100 MB. Reads run against a document that is either
+ * still cached from the previous call or read from disk again; edits start from a fresh copy of the
+ * fixture in every iteration, so the workbook grows by at most one iteration of edits. CSV imports
+ * write a new workbook in every call.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class ExcelToolBenchmark {
+
+    private static final String ROWS = rows(100);
+    private static final String BATCH = "[{\"op\": \"add_rows\", \"sheet\": \"" + BenchmarkFixtures.SHEET + "\", \"rows\": " + ROWS + "},"
+        + " {\"op\": \"row_count\", \"sheet\": \"" + BenchmarkFixtures.SHEET + "\"}]";
+
+    @State(Scope.Benchmark)
+    public static class Workbook {
+
+        @Param({ "4KB", "1MB", "10MB", "100MB" })
+        public String size;
+
+        @Param({ "cold", "warm" })
+        public String cache;
+
+        BenchmarkTools tools;
+        Path directory;
+        String file;
+
+        @Setup
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("jmh-excel");
+            tools = new BenchmarkTools(directory, directory.resolve(".office_index"), false);
+            file = BenchmarkFixtures.copy(BenchmarkFixtures.workbook(size), directory).toString();
+        }
+
+        @Setup(Level.Invocation)
+        public void forget() {
+            if ("cold".equals(cache)) {
+                tools.coldStart();
+            }
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            tools.close();
+            BenchmarkFixtures.delete(directory);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class EditedWorkbook {
+
+        @Param({ "4KB", "1MB", "10MB", "100MB" })
+        public String size;
+
+        @Param({ "false", "true" })
+        public boolean writeBehind;
+
+        BenchmarkTools tools;
+        Path directory;
+        String file;
+        int sheets;
+
+        @Setup
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("jmh-excel");
+            tools = new BenchmarkTools(directory, directory.resolve(".office_index"), writeBehind);
+        }
+
+        @Setup(Level.Iteration)
+        public void copyFixture() throws IOException {
+            tools.coldStart();
+            file = BenchmarkFixtures.copy(BenchmarkFixtures.workbook(size), directory).toString();
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            tools.close();
+            BenchmarkFixtures.delete(directory);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class CsvImport {
+
+        @Param({ "1000", "100000", "1000000" })
+        public int rows;
+
+        BenchmarkTools tools;
+        Path directory;
+        String csv;
+        String file;
+
+        @Setup
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("jmh-excel");
+            tools = new BenchmarkTools(directory, directory.resolve(".office_index"), false);
+            csv = BenchmarkFixtures.csv(rows).toString();
+            file = directory.resolve("imported.xlsx").toString();
+        }
+
+        @Setup(Level.Invocation)
+        public void deleteWorkbook() throws IOException {
+            Files.deleteIfExists(Path.of(file));
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            tools.close();
+            BenchmarkFixtures.delete(directory);
+        }
+    }
+
+    @Benchmark
+    public ToolResponse readExcelCell(Workbook workbook) {
+        return BenchmarkTools.check(workbook.tools.excel.readExcelCell(workbook.file, BenchmarkFixtures.SHEET, 1, 5));
+    }
+
+    @Benchmark
+    public ToolResponse readExcelRange(Workbook workbook) {
+        return BenchmarkTools.check(workbook.tools.excel.readExcelRange(workbook.file, BenchmarkFixtures.SHEET,
+            "A1:F500", null, "json", null));
+    }
+
+    @Benchmark
+    public ToolResponse queryExcelSheet(Workbook workbook) {
+        return BenchmarkTools.check(workbook.tools.excel.queryExcelSheet(workbook.file, BenchmarkFixtures.SHEET,
+            "Quantity >= 100", "Region", "sum(Price), avg(Quantity), count(*)", null, null));
+    }
+
+    @Benchmark
+    public ToolResponse queryExcelSheetByTwoColumns(Workbook workbook) {
+        return BenchmarkTools.check(workbook.tools.excel.queryExcelSheet(workbook.file, BenchmarkFixtures.SHEET,
+            "Quantity > 10", "Region, Product", "count(*)", null, 5000));
+    }
+
+    @Benchmark
+    public ToolResponse filterExcelRows(Workbook workbook) {
+        return BenchmarkTools.check(workbook.tools.excel.filterExcelRows(workbook.file, BenchmarkFixtures.SHEET,
+            "Region = 'North' and Price > 900", "Id, Product, Price", null, null));
+    }
+
+    @Benchmark
+    public ToolResponse getExcelSheetCount(Workbook workbook) {
+        return BenchmarkTools.check(workbook.tools.excel.getExcelSheetCount(workbook.file));
+    }
+
+    @Benchmark
+    public ToolResponse getExcelRowCount(Workbook workbook) {
+        return BenchmarkTools.check(workbook.tools.excel.getExcelRowCount(workbook.file, BenchmarkFixtures.SHEET));
+    }
+
+    @Benchmark
+    public ToolResponse getExcelColumnCount(Workbook workbook) {
+        return BenchmarkTools.check(workbook.tools.excel.getExcelColumnCount(workbook.file, BenchmarkFixtures.SHEET));
+    }
+
+    @Benchmark
+    public ToolResponse exportExcelSheetToCsv(Workbook workbook) {
+        return BenchmarkTools.check(workbook.tools.excel.exportExcelSheetToCsv(workbook.file, BenchmarkFixtures.SHEET,
+            workbook.directory.resolve("exported.csv").toString(), null, null, null));
+    }
+
+    @Benchmark
+    public ToolResponse importCsvToExcelSheet(CsvImport csvImport) {
+        return BenchmarkTools.check(csvImport.tools.excel.importCsvToExcelSheet(csvImport.file, BenchmarkFixtures.SHEET,
+            csvImport.csv, null, null, null));
+    }
+
+    @Benchmark
+    public ToolResponse createExcelSheet(EditedWorkbook workbook) {
+        return BenchmarkTools.check(workbook.tools.excel.createExcelSheet(workbook.file, "Sheet " + ++workbook.sheets));
+    }
+
+    @Benchmark
+    public ToolResponse addExcelRow(EditedWorkbook workbook) {
+        return BenchmarkTools.check(workbook.tools.excel.addExcelRow(workbook.file, BenchmarkFixtures.SHEET,
+            "0,North,Product 1,12,99.5,added row"));
+    }
+
+    @Benchmark
+    public ToolResponse addExcelRows(EditedWorkbook workbook) {
+        return BenchmarkTools.check(workbook.tools.excel.addExcelRows(workbook.file, BenchmarkFixtures.SHEET, ROWS, "json"));
+    }
+
+    @Benchmark
+    public ToolResponse writeExcelCell(EditedWorkbook workbook) {
+        return BenchmarkTools.check(workbook.tools.excel.writeExcelCell(workbook.file, BenchmarkFixtures.SHEET, 1, 6, "=D2*E2"));
+    }
+
+    @Benchmark
+    public ToolResponse recalculateExcelSheet(EditedWorkbook workbook) {
+        return BenchmarkTools.check(workbook.tools.excel.recalculateExcelSheet(workbook.file, BenchmarkFixtures.SHEET));
+    }
+
+    @Benchmark
+    public ToolResponse batchExcelOperations(EditedWorkbook workbook) {
+        return BenchmarkTools.check(workbook.tools.excel.batchExcelOperations(workbook.file, BATCH));
+    }
+
+    /**
+     * An edit followed by {@code flush_office_document}, which only has something to save with
+     * write-behind.
+     */
+    @Benchmark
+    public ToolResponse addExcelRowAndFlush(EditedWorkbook workbook) {
+        BenchmarkTools.check(workbook.tools.excel.addExcelRow(workbook.file, BenchmarkFixtures.SHEET, "0,flushed row"));
+        return BenchmarkTools.check(workbook.tools.document.flushOfficeDocument(workbook.file));
+    }
+
+    /**
+     * An edit followed by {@code close_excel_workbook}, so that every call loads the workbook again.
+     */
+    @Benchmark
+    public ToolResponse addExcelRowAndClose(EditedWorkbook workbook) {
+        BenchmarkTools.check(workbook.tools.excel.addExcelRow(workbook.file, BenchmarkFixtures.SHEET, "0,closed row"));
+        return BenchmarkTools.check(workbook.tools.excel.closeExcelWorkbook(workbook.file));
+    }
+
+    private static String rows(int count) {
+        StringBuilder rows = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            rows.append(i > 0 ? ", " : "").append("[").append(i).append(", \"South\", \"Product ").append(i)
+                .append("\", 3, 19.99, \"2025-01-31\"]");
+        }
+        return rows.append("]").toString();
+    }
+}
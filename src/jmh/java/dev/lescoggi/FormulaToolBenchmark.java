@@ -0,0 +1,136 @@
+package dev.lescoggi;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.quarkiverse.mcp.server.ToolResponse;
+
+/**
+ * Reads the result of a formula-heavy financial model, one sheet of monthly cash flows per product
+ * that a summary sheet discounts and adds up, from a workbook that is either read from disk with a
+ * new evaluator or cached with its evaluator, and after changing an input that one product or
+ * every product depends on.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FormulaToolBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Model {
+
+        @Param({ "10", "50" })
+        public int products;
+
+        @Param({ "cold", "warm" })
+        public String cache;
+
+        BenchmarkTools tools;
+        Path directory;
+        String file;
+
+        @Setup
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("jmh-formula");
+            tools = new BenchmarkTools(directory, directory.resolve(".office_index"), false);
+            file = BenchmarkFixtures.copy(BenchmarkFixtures.financialModel(products), directory).toString();
+        }
+
+        @Setup(Level.Invocation)
+        public void forget() {
+            if ("cold".equals(cache)) {
+                tools.coldStart();
+            }
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            tools.close();
+            BenchmarkFixtures.delete(directory);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class EditedModel {
+
+        @Param({ "10", "50" })
+        public int products;
+
+        @Param({ "false", "true" })
+        public boolean writeBehind;
+
+        BenchmarkTools tools;
+        Path directory;
+        String file;
+        int edits;
+
+        @Setup
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("jmh-formula");
+            tools = new BenchmarkTools(directory, directory.resolve(".office_index"), writeBehind);
+        }
+
+        @Setup(Level.Iteration)
+        public void copyFixture() throws IOException {
+            tools.coldStart();
+            file = BenchmarkFixtures.copy(BenchmarkFixtures.financialModel(products), directory).toString();
+        }
+
+        // Alternates between two values, so that every edit changes the input
+        String next(String first, String second) {
+            return ++edits % 2 == 0 ? first : second;
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            tools.close();
+            BenchmarkFixtures.delete(directory);
+        }
+    }
+
+    @Benchmark
+    public ToolResponse readNetPresentValue(Model model) {
+        return BenchmarkTools.check(model.tools.excel.readExcelCell(model.file, "Summary", 0, 1));
+    }
+
+    /**
+     * Changes the growth of the first product, so that only its sheet is evaluated again.
+     */
+    @Benchmark
+    public ToolResponse readAfterProductInput(EditedModel model) {
+        BenchmarkTools.check(model.tools.excel.writeExcelCell(model.file, "Inputs", 1, 1, model.next("0.01", "0.02")));
+        return BenchmarkTools.check(model.tools.excel.readExcelCell(model.file, "Summary", 0, 1));
+    }
+
+    /**
+     * Changes the discount rate, which every product depends on.
+     */
+    @Benchmark
+    public ToolResponse readAfterDiscountRate(EditedModel model) {
+        BenchmarkTools.check(model.tools.excel.writeExcelCell(model.file, "Inputs", 0, 1, model.next("0.08", "0.07")));
+        return BenchmarkTools.check(model.tools.excel.readExcelCell(model.file, "Summary", 0, 1));
+    }
+
+    @Benchmark
+    public ToolResponse recalculateExcelSheet(EditedModel model) {
+        return BenchmarkTools.check(model.tools.excel.recalculateExcelSheet(model.file, null));
+    }
+}
@@ -0,0 +1,83 @@
+package dev.lescoggi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.poi.xslf.usermodel.XMLSlideShow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Saving a deck whose size is dominated by pictures after adding one text box, writing every part
+ * again or copying the unchanged parts from the file on disk. The deck is loaded and edited before
+ * each save, outside the measurement.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class IncrementalSaveBenchmark {
+
+    @Param({ "10", "40" })
+    public int pictures;
+
+    @Param({ "false", "true" })
+    public boolean incremental;
+
+    private Path directory;
+    private Path file;
+    private DocumentSaver saver;
+    private XMLSlideShow presentation;
+    private int saves;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("jmh-save");
+        file = BenchmarkFixtures.copy(BenchmarkFixtures.pictureDeck(pictures), directory);
+        saver = new DocumentSaver(false, incremental);
+    }
+
+    @Setup(Level.Invocation)
+    public void edit() throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            presentation = new XMLSlideShow(in);
+        }
+        presentation.getSlides().get(0).createTextBox().setText("Save " + ++saves);
+    }
+
+    @TearDown(Level.Invocation)
+    public void close() throws IOException {
+        presentation.close();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        DocumentSaver.Stats stats = saver.stats();
+        if (incremental && stats.copiedEntries() == 0) {
+            throw new IllegalStateException("No entry was copied: " + stats);
+        }
+        BenchmarkFixtures.delete(directory);
+    }
+
+    @Benchmark
+    public Path save() throws IOException {
+        saver.save(file.toString(), presentation);
+        return file;
+    }
+}
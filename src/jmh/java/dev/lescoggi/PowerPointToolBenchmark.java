@@ -0,0 +1,127 @@
+package dev.lescoggi;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.quarkiverse.mcp.server.ToolResponse;
+
+/**
+ * The PowerPoint tools on decks of 1 to 500 slides.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PowerPointToolBenchmark {
+
+    private static final String BATCH = "[{\"op\": \"add_slide\"}, {\"op\": \"add_text\", \"slide\": 0, \"text\": \"Batch text\"},"
+        + " {\"op\": \"slide_count\"}]";
+
+    @State(Scope.Benchmark)
+    public static class Presentation {
+
+        @Param({ "1", "50", "500" })
+        public int slides;
+
+        @Param({ "cold", "warm" })
+        public String cache;
+
+        BenchmarkTools tools;
+        Path directory;
+        String file;
+
+        @Setup
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("jmh-powerpoint");
+            tools = new BenchmarkTools(directory, directory.resolve(".office_index"), false);
+            file = BenchmarkFixtures.copy(BenchmarkFixtures.presentation(slides), directory).toString();
+        }
+
+        @Setup(Level.Invocation)
+        public void forget() {
+            if ("cold".equals(cache)) {
+                tools.coldStart();
+            }
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            tools.close();
+            BenchmarkFixtures.delete(directory);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class EditedPresentation {
+
+        @Param({ "1", "50", "500" })
+        public int slides;
+
+        @Param({ "false", "true" })
+        public boolean writeBehind;
+
+        BenchmarkTools tools;
+        Path directory;
+        String file;
+
+        @Setup
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("jmh-powerpoint");
+            tools = new BenchmarkTools(directory, directory.resolve(".office_index"), writeBehind);
+        }
+
+        @Setup(Level.Iteration)
+        public void copyFixture() throws IOException {
+            tools.coldStart();
+            file = BenchmarkFixtures.copy(BenchmarkFixtures.presentation(slides), directory).toString();
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            tools.close();
+            BenchmarkFixtures.delete(directory);
+        }
+    }
+
+    @Benchmark
+    public ToolResponse readSlideTitlesFromPowerPoint(Presentation presentation) {
+        return BenchmarkTools.check(presentation.tools.powerPoint.readSlideTitlesFromPowerPoint(presentation.file));
+    }
+
+    @Benchmark
+    public ToolResponse getPowerPointSlideCount(Presentation presentation) {
+        return BenchmarkTools.check(presentation.tools.powerPoint.getPowerPointSlideCount(presentation.file));
+    }
+
+    @Benchmark
+    public ToolResponse addSlideToPowerPoint(EditedPresentation presentation) {
+        return BenchmarkTools.check(presentation.tools.powerPoint.addSlideToPowerPoint(presentation.file));
+    }
+
+    @Benchmark
+    public ToolResponse addTextToPowerPointSlide(EditedPresentation presentation) {
+        return BenchmarkTools.check(presentation.tools.powerPoint.addTextToPowerPointSlide(presentation.file, 0, "Added text"));
+    }
+
+    @Benchmark
+    public ToolResponse batchPowerPointOperations(EditedPresentation presentation) {
+        return BenchmarkTools.check(presentation.tools.powerPoint.batchPowerPointOperations(presentation.file, BATCH));
+    }
+}
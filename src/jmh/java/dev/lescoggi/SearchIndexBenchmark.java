@@ -0,0 +1,117 @@
+package dev.lescoggi;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building the search index of a directory of small Word, Excel and PowerPoint files from scratch,
+ * and refreshing it after one file changed, which extracts only that file again. Queries are
+ * measured through the tool by {@link SearchToolBenchmark}.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchIndexBenchmark {
+
+    @Param({ "1000", "5000" })
+    public int files;
+
+    private Path directory;
+    private Path corpus;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("jmh-index");
+        corpus = BenchmarkFixtures.copyDirectory(BenchmarkFixtures.corpus(files), directory);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkFixtures.delete(directory);
+    }
+
+    @State(Scope.Benchmark)
+    public static class NewIndex {
+
+        SearchIndex index;
+        Path indexDirectory;
+
+        @Setup(Level.Invocation)
+        public void setUp(SearchIndexBenchmark benchmark) throws IOException {
+            indexDirectory = Files.createTempDirectory(benchmark.directory, "index");
+            index = new SearchIndex(benchmark.corpus.toString(), indexDirectory.toString(), Duration.ZERO, 0, 8);
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() throws IOException {
+            index.shutdown();
+            BenchmarkFixtures.delete(indexDirectory);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class BuiltIndex {
+
+        SearchIndex index;
+        Path changed;
+        int changes;
+
+        @Setup
+        public void setUp(SearchIndexBenchmark benchmark) throws IOException {
+            index = new SearchIndex(benchmark.corpus.toString(), benchmark.directory.resolve("index").toString(), Duration.ZERO, 0, 8);
+            index.refresh();
+            changed = benchmark.corpus.resolve("file-0.docx");
+        }
+
+        @Setup(Level.Invocation)
+        public void change() throws IOException {
+            changes++;
+            try (XWPFDocument document = new XWPFDocument(); OutputStream out = Files.newOutputStream(changed)) {
+                document.createParagraph().createRun().setText("changed " + changes);
+                document.write(out);
+            }
+            // Writes within the resolution of the file system clock still count as a change
+            Files.setLastModifiedTime(changed, FileTime.fromMillis(System.currentTimeMillis() + changes * 1000L));
+        }
+
+        @TearDown
+        public void tearDown() {
+            index.shutdown();
+        }
+    }
+
+    @Benchmark
+    public SearchIndex.Stats build(NewIndex index) throws IOException {
+        index.index.refresh();
+        return index.index.stats();
+    }
+
+    @Benchmark
+    public SearchIndex.Stats refreshAfterOneChange(BuiltIndex index) throws IOException {
+        index.index.refresh();
+        return index.index.stats();
+    }
+}
@@ -0,0 +1,69 @@
+package dev.lescoggi;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.quarkiverse.mcp.server.ToolResponse;
+
+/**
+ * {@code search_office_documents} over a directory of small Word, Excel and PowerPoint files. The
+ * index is built before the measurement, so the refreshing search measures the walk of an unchanged
+ * directory.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchToolBenchmark {
+
+    @Param({ "100", "1000" })
+    public int documents;
+
+    private BenchmarkTools tools;
+    private Path indexDirectory;
+
+    @Setup
+    public void setUp() throws IOException {
+        indexDirectory = Files.createTempDirectory("jmh-search");
+        tools = new BenchmarkTools(BenchmarkFixtures.corpus(documents), indexDirectory, false);
+        BenchmarkTools.check(tools.search.searchOfficeDocuments("invoice", 1, true));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        tools.close();
+        BenchmarkFixtures.delete(indexDirectory);
+    }
+
+    @Benchmark
+    public ToolResponse searchOneWord() {
+        return BenchmarkTools.check(tools.search.searchOfficeDocuments("supplier", 20, false));
+    }
+
+    @Benchmark
+    public ToolResponse searchThreeWords() {
+        return BenchmarkTools.check(tools.search.searchOfficeDocuments("supplier forecast margin", 20, false));
+    }
+
+    @Benchmark
+    public ToolResponse searchWithRefresh() {
+        return BenchmarkTools.check(tools.search.searchOfficeDocuments("supplier", 20, true));
+    }
+}
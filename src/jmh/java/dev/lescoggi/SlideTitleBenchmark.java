@@ -0,0 +1,91 @@
+package dev.lescoggi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.poi.sl.usermodel.Placeholder;
+import org.apache.poi.xslf.usermodel.XMLSlideShow;
+import org.apache.poi.xslf.usermodel.XSLFShape;
+import org.apache.poi.xslf.usermodel.XSLFSlide;
+import org.apache.poi.xslf.usermodel.XSLFTextShape;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading the slide titles and the slide count of a deck with {@link StreamingSlideReader} against
+ * loading it into {@code XMLSlideShow}.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class SlideTitleBenchmark {
+
+    @Param({ "50", "500" })
+    public int slides;
+
+    private Path file;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = BenchmarkFixtures.presentation(slides);
+        List<String> streamed = readSlideTitles();
+        if (!streamed.equals(readSlideTitlesWithPoi()) || slideCount() != slides) {
+            throw new IllegalStateException("The streaming reader read " + streamed);
+        }
+    }
+
+    @Benchmark
+    public List<String> readSlideTitles() throws IOException {
+        return StreamingSlideReader.readSlideTitles(file);
+    }
+
+    @Benchmark
+    public int slideCount() throws IOException {
+        return StreamingSlideReader.slideCount(file);
+    }
+
+    @Benchmark
+    public List<String> readSlideTitlesWithPoi() throws IOException {
+        try (InputStream in = Files.newInputStream(file); XMLSlideShow presentation = new XMLSlideShow(in)) {
+            List<String> titles = new ArrayList<>();
+            for (XSLFSlide slide : presentation.getSlides()) {
+                titles.add(title(slide));
+            }
+            return titles;
+        }
+    }
+
+    @Benchmark
+    public int slideCountWithPoi() throws IOException {
+        try (InputStream in = Files.newInputStream(file); XMLSlideShow presentation = new XMLSlideShow(in)) {
+            return presentation.getSlides().size();
+        }
+    }
+
+    private static String title(XSLFSlide slide) {
+        for (XSLFShape shape : slide.getShapes()) {
+            if (shape instanceof XSLFTextShape textShape
+                    && (shape.getPlaceholder() == Placeholder.TITLE || shape.getPlaceholder() == Placeholder.CENTERED_TITLE)) {
+                return textShape.getText();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,67 @@
+package dev.lescoggi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading one cell of a large sheet with {@link StreamingSheetReader}, which stops parsing at the
+ * row it looks for, against loading the workbook into POI's DOM.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class StreamingSheetReaderBenchmark {
+
+    @Param({ "1MB", "10MB" })
+    public String size;
+
+    private Path file;
+    private int lastRow;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = BenchmarkFixtures.workbook(size);
+        lastRow = BenchmarkFixtures.rows(size);
+        String streamed = readLastRow();
+        if (!streamed.equals(readLastRowWithPoi())) {
+            throw new IllegalStateException("The streaming reader read " + streamed);
+        }
+    }
+
+    @Benchmark
+    public String readLastRow() throws IOException {
+        return StreamingSheetReader.readCell(file, BenchmarkFixtures.SHEET, lastRow, 0).value();
+    }
+
+    @Benchmark
+    public String readFirstRow() throws IOException {
+        return StreamingSheetReader.readCell(file, BenchmarkFixtures.SHEET, 1, 0).value();
+    }
+
+    @Benchmark
+    public String readLastRowWithPoi() throws IOException {
+        try (InputStream in = Files.newInputStream(file); XSSFWorkbook workbook = new XSSFWorkbook(in)) {
+            return new DataFormatter().formatCellValue(workbook.getSheet(BenchmarkFixtures.SHEET).getRow(lastRow).getCell(0));
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package dev.lescoggi;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.quarkiverse.mcp.server.ToolResponse;
+
+/**
+ * {@code summarize_office_files} listing every file of a directory of small Word, Excel and
+ * PowerPoint files in one page, reading the files at several parallelisms or returning the
+ * summaries kept from the previous call, against reading the files one after the other the way
+ * one count or title call per file would.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SummaryToolBenchmark {
+
+    @Param({ "1000", "5000" })
+    public int files;
+
+    private Path directory;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = BenchmarkFixtures.corpus(files);
+    }
+
+    @State(Scope.Benchmark)
+    public static class Summaries {
+
+        @Param({ "4", "16", "64" })
+        public int parallelism;
+
+        @Param({ "cold", "warm" })
+        public String cache;
+
+        BenchmarkTools tools;
+        Path indexDirectory;
+
+        @Setup
+        public void setUp(SummaryToolBenchmark benchmark) throws IOException {
+            indexDirectory = Files.createTempDirectory("jmh-summary");
+            tools = new BenchmarkTools(benchmark.directory, indexDirectory, false, parallelism);
+        }
+
+        @Setup(Level.Invocation)
+        public void forget() {
+            if ("cold".equals(cache)) {
+                tools.coldStart();
+            }
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            tools.close();
+            BenchmarkFixtures.delete(indexDirectory);
+        }
+    }
+
+    @Benchmark
+    public ToolResponse summarizeOfficeFiles(Summaries summaries) {
+        return BenchmarkTools.check(summaries.tools.search.summarizeOfficeFiles(null, null, 0, files, null));
+    }
+
+    @Benchmark
+    public void summarizeOneAfterTheOther(Blackhole blackhole) throws IOException {
+        for (String path : OfficeFiles.walk(directory, null).keySet()) {
+            blackhole.consume(OfficeFileSummaries.summarize(directory.resolve(path)));
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package dev.lescoggi;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.apache.poi.xwpf.usermodel.XWPFTableRow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.quarkiverse.mcp.server.ToolResponse;
+
+/**
+ * {@code render_office_template} and {@code render_office_templates} on an invoice letter with a
+ * table of 20 lines, against filling the same letter by loading the template into POI for each
+ * document. Batches render {@value #DOCUMENTS} documents at several parallelisms and are reported
+ * per document, so that their score compares with the single renders.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TemplateToolBenchmark {
+
+    static final int DOCUMENTS = 100;
+    private static final int LINES = 20;
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private BenchmarkTools tools;
+    private Path directory;
+    private String template;
+    private byte[] templateBytes;
+    private String data;
+    private Path poiOutput;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("jmh-template");
+        tools = new BenchmarkTools(directory, directory.resolve(".office_index"), false);
+        template = BenchmarkFixtures.copy(BenchmarkFixtures.invoiceTemplate(), directory).toString();
+        templateBytes = Files.readAllBytes(Path.of(template));
+        data = JSON.writeValueAsString(data(0));
+        poiOutput = directory.resolve("poi.docx");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        tools.close();
+        BenchmarkFixtures.delete(directory);
+    }
+
+    @State(Scope.Benchmark)
+    public static class Batch {
+
+        @Param({ "1", "4", "16" })
+        public int parallelism;
+
+        BenchmarkTools tools;
+        String documents;
+
+        @Setup
+        public void setUp(TemplateToolBenchmark benchmark) throws IOException {
+            tools = new BenchmarkTools(benchmark.directory, benchmark.directory.resolve(".office_index"), false, parallelism);
+            List<Map<String, Object>> renders = new ArrayList<>();
+            for (int d = 0; d < DOCUMENTS; d++) {
+                renders.add(Map.of("output", benchmark.directory.resolve("invoice-" + d + ".docx").toString(), "data", data(d)));
+            }
+            documents = JSON.writeValueAsString(renders);
+        }
+
+        @TearDown
+        public void tearDown() {
+            tools.close();
+        }
+    }
+
+    @Benchmark
+    public ToolResponse renderOfficeTemplate() {
+        return BenchmarkTools.check(tools.template.renderOfficeTemplate(template, directory.resolve("invoice.docx").toString(), data));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DOCUMENTS)
+    public ToolResponse renderOfficeTemplates(Batch batch) {
+        return BenchmarkTools.check(batch.tools.template.renderOfficeTemplates(template, batch.documents, null));
+    }
+
+    /**
+     * What filling a template without compiling it costs: every part is parsed and written again.
+     */
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public Path fillWithPoi() throws IOException {
+        Map<String, Object> values = data(0);
+        try (XWPFDocument document = new XWPFDocument(new ByteArrayInputStream(templateBytes)); OutputStream out = Files.newOutputStream(poiOutput)) {
+            for (XWPFParagraph paragraph : document.getParagraphs()) {
+                String text = paragraph.getText();
+                if (text.contains("{")) {
+                    String filled = text.replace("{number}", values.get("number").toString())
+                        .replace("{customer.name}", ((Map<String, Object>) values.get("customer")).get("name").toString())
+                        .replace("{total}", values.get("total").toString());
+                    paragraph.getRuns().get(0).setText(filled, 0);
+                }
+            }
+            XWPFTable table = document.getTables().get(0);
+            table.removeRow(1);
+            for (Map<String, Object> line : (List<Map<String, Object>>) values.get("lines")) {
+                XWPFTableRow row = table.createRow();
+                row.getCell(0).setText(line.get("item").toString());
+                row.getCell(1).setText(line.get("amount").toString());
+            }
+            document.write(out);
+        }
+        return poiOutput;
+    }
+
+    private static Map<String, Object> data(int d) {
+        List<Map<String, Object>> lines = new ArrayList<>();
+        for (int l = 0; l < LINES; l++) {
+            lines.add(Map.of("item", "Item " + l, "amount", d + l * 0.5));
+        }
+        return Map.of("number", d, "customer", Map.of("name", "Customer " + d), "lines", lines, "total", d * LINES);
+    }
+}
@@ -0,0 +1,128 @@
+package dev.lescoggi;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.quarkiverse.mcp.server.ToolResponse;
+
+/**
+ * The Word tools on documents of 10 to 100,000 paragraphs of about 80 words, the largest being
+ * a 7 MB .docx of 48 million characters.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class WordToolBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Document {
+
+        @Param({ "10", "1000", "100000" })
+        public int paragraphs;
+
+        @Param({ "cold", "warm" })
+        public String cache;
+
+        BenchmarkTools tools;
+        Path directory;
+        String file;
+
+        @Setup
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("jmh-word");
+            tools = new BenchmarkTools(directory, directory.resolve(".office_index"), false);
+            file = BenchmarkFixtures.copy(BenchmarkFixtures.wordDocument(paragraphs), directory).toString();
+        }
+
+        @Setup(Level.Invocation)
+        public void forget() {
+            if ("cold".equals(cache)) {
+                tools.coldStart();
+            }
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            tools.close();
+            BenchmarkFixtures.delete(directory);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class EditedDocument {
+
+        @Param({ "10", "1000", "100000" })
+        public int paragraphs;
+
+        @Param({ "false", "true" })
+        public boolean writeBehind;
+
+        BenchmarkTools tools;
+        Path directory;
+        String file;
+
+        @Setup
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("jmh-word");
+            tools = new BenchmarkTools(directory, directory.resolve(".office_index"), writeBehind);
+        }
+
+        @Setup(Level.Iteration)
+        public void copyFixture() throws IOException {
+            tools.coldStart();
+            file = BenchmarkFixtures.copy(BenchmarkFixtures.wordDocument(paragraphs), directory).toString();
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            tools.close();
+            BenchmarkFixtures.delete(directory);
+        }
+    }
+
+    @Benchmark
+    public ToolResponse readFirstPage(Document document) {
+        return BenchmarkTools.check(document.tools.word.readTextFromWordDocument(document.file, null, null));
+    }
+
+    /**
+     * A page from the middle of the document, which has to be reached by skipping the text before it.
+     */
+    @Benchmark
+    public ToolResponse readMiddlePage(Document document) {
+        return BenchmarkTools.check(document.tools.word.readTextFromWordDocument(document.file,
+            document.paragraphs * 250, null));
+    }
+
+    @Benchmark
+    public ToolResponse addTextToWordDocument(EditedDocument document) {
+        return BenchmarkTools.check(document.tools.word.addTextToWordDocument(document.file, "An added paragraph."));
+    }
+
+    /**
+     * An edit followed by {@code close_office_document}, so that every call loads the document again.
+     */
+    @Benchmark
+    public ToolResponse addTextAndClose(EditedDocument document) {
+        BenchmarkTools.check(document.tools.word.addTextToWordDocument(document.file, "An added paragraph."));
+        return BenchmarkTools.check(document.tools.document.closeOfficeDocument(document.file));
+    }
+}
@@ -0,0 +1,215 @@
+package dev.lescoggi;
+
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Singleton;
+
+/**
+ * Bounds how many tool calls run at once, per document type and by the heap they are expected to
+ * need. The heap budget is {@code office.engine.heap-budget}: the {@link EngineSelector} never
+ * lets one call load a document whose DOM is larger, and this class makes the calls running at
+ * once share it. A call on a file that is not cached is weighed with the profile the engine
+ * selector uses: at {@link EngineSelector#domBytes} when the DOM fits the budget, and otherwise at
+ * the uncompressed size of its largest part, as the call then streams the document or is refused.
+ * A call on a cached document, or on a file that does not exist yet or is not a ZIP archive,
+ * weighs nothing.
+ * <p>
+ * Both the per-type slots and the budget are handed out in arrival order, so a large call is not
+ * starved by a stream of small ones. A call that cannot be admitted within {@code max-wait} is
+ * rejected with an {@link AdmissionException} that says what was exhausted.
+ * <p>
+ * Typical use:
+ * <pre>
+ * try (var permit = admission.admit(filepath)) {
+ *     ...
+ * }
+ * </pre>
+ */
+@Singleton
+public class AdmissionController {
+
+    private static final Logger LOG = Logger.getLogger(AdmissionController.class);
+
+    // The budget is counted in KB so that it fits the int permits of a semaphore
+    private static final int KB = 1024;
+
+    public enum DocumentType {
+        EXCEL("Excel"), WORD("Word"), POWERPOINT("PowerPoint"), OTHER("other");
+
+        private final String label;
+
+        DocumentType(String label) {
+            this.label = label;
+        }
+
+        static DocumentType of(String filepath) {
+            String name = filepath.toLowerCase(Locale.ROOT);
+            if (name.endsWith(".xlsx") || name.endsWith(".xlsm")) {
+                return EXCEL;
+            }
+            if (name.endsWith(".docx") || name.endsWith(".docm")) {
+                return WORD;
+            }
+            if (name.endsWith(".pptx") || name.endsWith(".pptm")) {
+                return POWERPOINT;
+            }
+            return OTHER;
+        }
+    }
+
+    /**
+     * Thrown when a call waited {@code max-wait} without being admitted.
+     */
+    public static final class AdmissionException extends Exception {
+        AdmissionException(String message) {
+            super(message);
+        }
+    }
+
+    public record Stats(long admitted, long rejected, long waitNanos, int availableBudgetKb) {
+    }
+
+    /**
+     * An admitted call; closing it returns its slot and its share of the budget.
+     */
+    public final class Permit implements AutoCloseable {
+
+        private final Semaphore slots;
+        private final int weightKb;
+        private boolean released;
+
+        private Permit(Semaphore slots, int weightKb) {
+            this.slots = slots;
+            this.weightKb = weightKb;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                if (weightKb > 0) {
+                    budget.release(weightKb);
+                }
+                if (slots != null) {
+                    slots.release();
+                }
+            }
+        }
+    }
+
+    private final boolean enabled;
+    private final DocumentCache documentCache;
+    private final EngineSelector engines;
+    private final long maxWaitNanos;
+    private final int budgetKb;
+    private final Semaphore budget;
+    private final Semaphore[] slots = new Semaphore[DocumentType.values().length];
+    private final int[] limits = new int[DocumentType.values().length];
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    AdmissionController(DocumentCache documentCache, EngineSelector engines,
+                        @ConfigProperty(name = "office.admission.enabled", defaultValue = "true") boolean enabled,
+                        @ConfigProperty(name = "office.admission.max-concurrent.excel", defaultValue = "16") int maxExcel,
+                        @ConfigProperty(name = "office.admission.max-concurrent.word", defaultValue = "16") int maxWord,
+                        @ConfigProperty(name = "office.admission.max-concurrent.powerpoint", defaultValue = "16") int maxPowerPoint,
+                        @ConfigProperty(name = "office.admission.max-wait", defaultValue = "30s") Duration maxWait) {
+        this.enabled = enabled;
+        this.documentCache = documentCache;
+        this.engines = engines;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.budgetKb = (int) Math.max(1, Math.min(Integer.MAX_VALUE, engines.heapBudget() / KB));
+        this.budget = new Semaphore(budgetKb, true);
+        limit(DocumentType.EXCEL, maxExcel);
+        limit(DocumentType.WORD, maxWord);
+        limit(DocumentType.POWERPOINT, maxPowerPoint);
+    }
+
+    /**
+     * Waits until a call on {@code filepath} fits the limits of its document type and the memory
+     * budget, and returns its permit. {@code filepath} may be {@code null} for calls that do not
+     * work on one document; they are always admitted.
+     */
+    public Permit admit(String filepath) throws AdmissionException {
+        if (!enabled || filepath == null) {
+            return new Permit(null, 0);
+        }
+        DocumentType type = DocumentType.of(filepath);
+        Semaphore typeSlots = slots[type.ordinal()];
+        int weightKb = weightKb(filepath);
+        long start = System.nanoTime();
+        long deadline = start + maxWaitNanos;
+        try {
+            if (typeSlots != null && !typeSlots.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS)) {
+                throw reject(String.format(Locale.ROOT, "Server is busy: %d %s calls are already running. Retry later.",
+                    limits[type.ordinal()], type.label));
+            }
+            if (weightKb > 0 && !budget.tryAcquire(weightKb, Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                if (typeSlots != null) {
+                    typeSlots.release();
+                }
+                throw reject(String.format(Locale.ROOT, "Server is busy: this call needs an estimated %d MB of the %d MB heap budget,"
+                    + " which is in use by other calls. Retry later.", megabytes(weightKb), megabytes(budgetKb)));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw reject("Interrupted while waiting to be admitted.");
+        }
+        waitNanos.add(System.nanoTime() - start);
+        admitted.increment();
+        return new Permit(typeSlots, weightKb);
+    }
+
+    public Stats stats() {
+        return new Stats(admitted.sum(), rejected.sum(), waitNanos.sum(), budget.availablePermits());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        LOG.infof("Admission statistics: %s", stats());
+    }
+
+    private void limit(DocumentType type, int limit) {
+        limits[type.ordinal()] = limit;
+        slots[type.ordinal()] = limit > 0 ? new Semaphore(limit, true) : null;
+    }
+
+    // Estimated heap of loading the file; cached documents are already accounted for by the cache
+    private int weightKb(String filepath) {
+        try {
+            if (documentCache.contains(filepath)) {
+                return 0;
+            }
+            EngineSelector.Profile profile = engines.profile(filepath);
+            if (profile == null) {
+                return 0;
+            }
+            long domBytes = engines.domBytes(profile);
+            long estimate = (domBytes <= engines.heapBudget() ? domBytes : profile.largestPartBytes()) / KB;
+            return (int) Math.min(budgetKb, Math.max(1, estimate));
+        } catch (IOException | InvalidPathException e) {
+            return 0;
+        }
+    }
+
+    private static int megabytes(int kb) {
+        return (kb + KB - 1) / KB;
+    }
+
+    private AdmissionException reject(String message) {
+        rejected.increment();
+        return new AdmissionException(message);
+    }
+}
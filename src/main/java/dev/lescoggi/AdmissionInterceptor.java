@@ -0,0 +1,36 @@
+package dev.lescoggi;
+
+import io.quarkiverse.mcp.server.Tool;
+import io.quarkiverse.mcp.server.ToolResponse;
+import jakarta.annotation.Priority;
+import jakarta.inject.Inject;
+import jakarta.interceptor.AroundInvoke;
+import jakarta.interceptor.Interceptor;
+import jakarta.interceptor.InvocationContext;
+
+/**
+ * Admits every {@code @Tool} method of an {@link Admitted} class through the
+ * {@link AdmissionController}, keyed by its {@code filepath} argument. A rejected call returns an
+ * error response instead of running. Runs inside {@link ToolMetricsInterceptor}, so waiting time
+ * counts towards the latency of the call and rejections count as errors.
+ */
+@Admitted
+@Interceptor
+@Priority(Interceptor.Priority.APPLICATION + 10)
+public class AdmissionInterceptor {
+
+    @Inject
+    AdmissionController admission;
+
+    @AroundInvoke
+    Object admit(InvocationContext context) throws Exception {
+        if (!context.getMethod().isAnnotationPresent(Tool.class)) {
+            return context.proceed();
+        }
+        try (var permit = admission.admit(ToolMetricsInterceptor.filepath(context))) {
+            return context.proceed();
+        } catch (AdmissionController.AdmissionException e) {
+            return ToolResponse.error(e.getMessage());
+        }
+    }
+}
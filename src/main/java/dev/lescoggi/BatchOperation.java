@@ -0,0 +1,142 @@
+package dev.lescoggi;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * One operation of a batch tool call. Batches are given as a JSON array of objects whose
+ * {@code op} field names the operation, e.g.
+ * {@code [{"op": "create_sheet", "sheet": "Data"}, {"op": "add_row", "sheet": "Data", "values": ["EU", 12.5]}]}.
+ * <p>
+ * {@link #applyAll} runs the operations in order and stops at the first failure, so that the caller
+ * can discard the document instead of saving it.
+ */
+record BatchOperation(int number, String op, JsonNode arguments) {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    @FunctionalInterface
+    interface Handler {
+        /**
+         * Applies the operation and returns a short description of its result.
+         */
+        String apply(BatchOperation operation) throws Exception;
+    }
+
+    /**
+     * Thrown by {@link #applyAll} when an operation fails; the message names the operation and
+     * lists the results of the operations before it.
+     */
+    static final class BatchException extends Exception {
+        BatchException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    static List<BatchOperation> parse(String json) {
+        JsonNode root;
+        try {
+            root = JSON.readTree(json);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Operations must be a JSON array of objects: " + e.getOriginalMessage());
+        }
+        if (root == null || !root.isArray() || root.isEmpty()) {
+            throw new IllegalArgumentException("Operations must be a non-empty JSON array of objects.");
+        }
+        List<BatchOperation> operations = new ArrayList<>(root.size());
+        for (JsonNode node : root) {
+            int number = operations.size() + 1;
+            if (!node.isObject() || !node.path("op").isTextual()) {
+                throw new IllegalArgumentException("Operation " + number + " must be an object with an 'op' field.");
+            }
+            operations.add(new BatchOperation(number, node.get("op").asText(), node));
+        }
+        return operations;
+    }
+
+    /**
+     * Applies every operation with {@code handler} and returns one result line per operation.
+     */
+    static List<String> applyAll(List<BatchOperation> operations, Handler handler) throws BatchException {
+        List<String> results = new ArrayList<>(operations.size());
+        for (BatchOperation operation : operations) {
+            try {
+                results.add(operation.number() + ". " + operation.op() + ": " + handler.apply(operation));
+            } catch (Exception e) {
+                StringBuilder message = new StringBuilder("Operation " + operation.number() + " (" + operation.op()
+                    + ") failed: " + e.getMessage() + " No changes were saved.");
+                if (!results.isEmpty()) {
+                    message.append(" Results before the failure:\n").append(String.join("\n", results));
+                }
+                throw new BatchException(message.toString(), e);
+            }
+        }
+        return results;
+    }
+
+    String text(String name) {
+        JsonNode value = arguments.get(name);
+        if (value == null || value.isNull() || value.isContainerNode()) {
+            throw missing(name, "a string");
+        }
+        return value.asText();
+    }
+
+    int integer(String name) {
+        JsonNode value = arguments.get(name);
+        if (value == null || !value.canConvertToInt() || !value.isIntegralNumber()) {
+            throw missing(name, "an integer");
+        }
+        return value.intValue();
+    }
+
+    /**
+     * Returns the values of a JSON array with their JSON type, like {@link JsonRowReader}.
+     */
+    List<Object> values(String name) {
+        JsonNode value = arguments.get(name);
+        if (value == null || !value.isArray()) {
+            throw missing(name, "an array of values");
+        }
+        return values(value);
+    }
+
+    List<List<Object>> rows(String name) {
+        JsonNode value = arguments.get(name);
+        if (value == null || !value.isArray()) {
+            throw missing(name, "an array of arrays");
+        }
+        List<List<Object>> rows = new ArrayList<>(value.size());
+        for (JsonNode row : value) {
+            if (!row.isArray()) {
+                throw missing(name, "an array of arrays");
+            }
+            rows.add(values(row));
+        }
+        return rows;
+    }
+
+    private static List<Object> values(JsonNode array) {
+        List<Object> values = new ArrayList<>(array.size());
+        for (JsonNode value : array) {
+            if (value.isNumber()) {
+                values.add(value.doubleValue());
+            } else if (value.isBoolean()) {
+                values.add(value.booleanValue());
+            } else if (value.isNull()) {
+                values.add(null);
+            } else {
+                values.add(value.asText());
+            }
+        }
+        return values;
+    }
+
+    private IllegalArgumentException missing(String name, String type) {
+        return new IllegalArgumentException("'" + name + "' must be " + type + ".");
+    }
+}
@@ -0,0 +1,168 @@
+package dev.lescoggi;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.poi.ss.formula.FormulaParseException;
+import org.apache.poi.ss.formula.eval.NotImplementedException;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.CellValue;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.usermodel.XSSFFormulaEvaluator;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+/**
+ * Computes the values of the formula cells of one workbook. The POI evaluator remembers every
+ * result together with the cells it was computed from, so reading a formula again is a lookup and
+ * a write only discards the results that depend on the written cell. One instance is kept with
+ * each cached workbook through {@link DocumentCache#attachment}, which drops it together with the
+ * workbook.
+ * <p>
+ * Tools report every cell they write with {@link #updated} and call {@link #reset} after
+ * structural changes such as a new sheet. The POI evaluator is not thread-safe while readers of a
+ * file run concurrently, so all methods synchronize on the instance.
+ */
+final class CachedFormulaEvaluator {
+
+    /**
+     * Result of {@link #recalculate}: the number of formulas, how many of them could not be
+     * computed and kept the value stored in the file, and the first few of those problems.
+     */
+    record Recalculation(int formulas, int failed, List<String> problems, long nanos) {
+    }
+
+    private static final int MAX_PROBLEMS = 10;
+
+    // WorkbookEvaluator caches sheet indexes by EvaluationSheet, and XSSF wraps the sheet of every
+    // cell passed in from outside in a new instance, so each call adds an entry. Only clearing all
+    // cached results empties that map, which is done every MAX_CALLS calls; the formulas read
+    // afterwards are computed again.
+    static final int MAX_CALLS = 10_000;
+
+    private final DataFormatter formatter = new DataFormatter();
+    private final XSSFFormulaEvaluator evaluator;
+    private int calls;
+
+    CachedFormulaEvaluator(XSSFWorkbook workbook) {
+        this.evaluator = workbook.getCreationHelper().createFormulaEvaluator();
+    }
+
+    /**
+     * Returns the evaluator kept with a workbook obtained from the document cache.
+     */
+    static CachedFormulaEvaluator of(DocumentCache cache, String filepath, XSSFWorkbook workbook) {
+        return cache.attachment(filepath, workbook, CachedFormulaEvaluator.class, CachedFormulaEvaluator::new);
+    }
+
+    /**
+     * Formats a cell the way Excel displays it; formula cells show their computed value. Formulas
+     * using functions POI does not implement show the value stored in the file.
+     */
+    synchronized String format(Cell cell) {
+        if (cell.getCellType() != CellType.FORMULA) {
+            return formatter.formatCellValue(cell);
+        }
+        CellValue value;
+        try {
+            called();
+            value = evaluator.evaluate(cell);
+        } catch (NotImplementedException | FormulaParseException e) {
+            value = stored(cell);
+        }
+        return format(value, cell.getCellStyle());
+    }
+
+    /**
+     * Discards the cached results that depend on a cell that was written. When the cell now holds a
+     * formula its computed value is stored in the cell, so that it is saved with the file.
+     */
+    synchronized void updated(Cell cell) {
+        called();
+        evaluator.notifyUpdateCell(cell);
+        if (cell.getCellType() == CellType.FORMULA) {
+            try {
+                called();
+                evaluator.evaluateFormulaCell(cell);
+            } catch (NotImplementedException | FormulaParseException e) {
+                // Keeps the formula without a stored value; recalculate reports it
+            }
+        }
+    }
+
+    /**
+     * Discards all cached results.
+     */
+    synchronized void reset() {
+        calls = 0;
+        evaluator.clearAllCachedResultValues();
+    }
+
+    /**
+     * Computes every formula of the given sheets and stores the results in their cells. Formulas
+     * whose precedents did not change since they were last computed are answered from the cache.
+     */
+    synchronized Recalculation recalculate(List<? extends Sheet> sheets) {
+        long start = System.nanoTime();
+        int formulas = 0;
+        int failed = 0;
+        List<String> problems = new ArrayList<>();
+        for (Sheet sheet : sheets) {
+            for (Row row : sheet) {
+                for (Cell cell : row) {
+                    if (cell.getCellType() != CellType.FORMULA) {
+                        continue;
+                    }
+                    formulas++;
+                    try {
+                        called();
+                        evaluator.evaluateFormulaCell(cell);
+                    } catch (NotImplementedException | FormulaParseException e) {
+                        failed++;
+                        if (problems.size() < MAX_PROBLEMS) {
+                            Throwable cause = e.getCause() != null ? e.getCause() : e;
+                            problems.add(new CellReference(cell).formatAsString(true) + ": " + cause.getMessage());
+                        }
+                    }
+                }
+            }
+        }
+        return new Recalculation(formulas, failed, problems, System.nanoTime() - start);
+    }
+
+    private void called() {
+        if (++calls >= MAX_CALLS) {
+            calls = 0;
+            evaluator.clearAllCachedResultValues();
+        }
+    }
+
+    private String format(CellValue value, CellStyle style) {
+        if (value == null) {
+            return "";
+        }
+        return switch (value.getCellType()) {
+            case NUMERIC -> formatter.formatRawCellContents(value.getNumberValue(), style.getDataFormat(), style.getDataFormatString());
+            case STRING -> value.getStringValue();
+            case BOOLEAN -> value.getBooleanValue() ? "TRUE" : "FALSE";
+            case ERROR -> FormulaError.forInt(value.getErrorValue()).getString();
+            default -> "";
+        };
+    }
+
+    // The result Excel, or an earlier recalculation, stored with the formula
+    private static CellValue stored(Cell cell) {
+        return switch (cell.getCachedFormulaResultType()) {
+            case NUMERIC -> new CellValue(cell.getNumericCellValue());
+            case STRING -> new CellValue(cell.getStringCellValue());
+            case BOOLEAN -> CellValue.valueOf(cell.getBooleanCellValue());
+            case ERROR -> CellValue.getError(cell.getErrorCellValue());
+            default -> null;
+        };
+    }
+}
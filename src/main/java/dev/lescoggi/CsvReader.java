@@ -0,0 +1,111 @@
+package dev.lescoggi;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal streaming CSV reader following RFC 4180: fields may be quoted, quoted fields may
+ * contain delimiters and line breaks, and a doubled quote inside a quoted field is a literal quote.
+ * Records are read one at a time, so memory use does not depend on the input size.
+ */
+class CsvReader implements Closeable {
+
+    private final Reader reader;
+    private final char delimiter;
+    private final char quote;
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+    private long recordNumber;
+
+    public CsvReader(Reader reader, char delimiter, char quote) {
+        this.reader = reader;
+        this.delimiter = delimiter;
+        this.quote = quote;
+    }
+
+    public CsvReader(Reader reader) {
+        this(reader, ',', '"');
+    }
+
+    /**
+     * Returns the fields of the next record, or {@code null} at the end of the input. Empty lines
+     * are returned as a record with a single empty field.
+     */
+    public List<String> next() throws IOException {
+        int c = read();
+        if (c == -1) {
+            return null;
+        }
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean afterQuote = false;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("Unterminated quoted field in CSV record " + (recordNumber + 1));
+                }
+                if (c == quote) {
+                    int following = read();
+                    if (following == quote) {
+                        field.append(quote);
+                    } else {
+                        quoted = false;
+                        afterQuote = true;
+                        c = following;
+                        continue;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == -1 || c == '\n' || c == '\r') {
+                if (c == '\r') {
+                    int following = read();
+                    if (following != '\n' && following != -1) {
+                        position--;
+                    }
+                }
+                fields.add(field.toString());
+                recordNumber++;
+                return fields;
+            } else if (c == delimiter) {
+                fields.add(field.toString());
+                field.setLength(0);
+                afterQuote = false;
+            } else if (c == quote && field.isEmpty() && !afterQuote) {
+                quoted = true;
+            } else {
+                field.append((char) c);
+            }
+            c = read();
+        }
+    }
+
+    /**
+     * Number of records returned so far.
+     */
+    public long recordNumber() {
+        return recordNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+}
@@ -0,0 +1,82 @@
+package dev.lescoggi;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Minimal streaming CSV writer, the counterpart of {@link CsvReader}: fields that contain the
+ * delimiter, the quote or a line break are quoted, with quotes inside them doubled. Records are
+ * written one at a time and end with CRLF, as RFC 4180 asks.
+ */
+class CsvWriter implements Closeable {
+
+    private final Writer writer;
+    private final char delimiter;
+    private final char quote;
+    private long recordNumber;
+
+    public CsvWriter(Writer writer, char delimiter, char quote) {
+        this.writer = writer;
+        this.delimiter = delimiter;
+        this.quote = quote;
+    }
+
+    public CsvWriter(Writer writer) {
+        this(writer, ',', '"');
+    }
+
+    /**
+     * Writes a record; {@code null} fields are written as empty fields.
+     */
+    public void write(String[] fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                writer.write(delimiter);
+            }
+            field(fields[i]);
+        }
+        writer.write("\r\n");
+        recordNumber++;
+    }
+
+    /**
+     * Number of records written so far.
+     */
+    public long recordNumber() {
+        return recordNumber;
+    }
+
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private void field(String value) throws IOException {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        boolean quoted = false;
+        for (int i = 0; i < value.length() && !quoted; i++) {
+            char c = value.charAt(i);
+            quoted = c == delimiter || c == quote || c == '\n' || c == '\r';
+        }
+        if (!quoted) {
+            writer.write(value);
+            return;
+        }
+        writer.write(quote);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == quote) {
+                writer.write(quote);
+            }
+            writer.write(c);
+        }
+        writer.write(quote);
+    }
+}
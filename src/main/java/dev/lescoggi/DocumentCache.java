@@ -0,0 +1,497 @@
+package dev.lescoggi;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.apache.poi.ooxml.POIXMLDocument;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Singleton;
+
+/**
+ * Keeps recently used Office documents parsed in memory so that consecutive tool calls on the
+ * same file do not re-read and re-parse the whole OPC package.
+ * <p>
+ * Entries are keyed by canonical path and are only served while the file on disk still has the
+ * modification time and size it had when the entry was loaded or last saved. The cache is bounded
+ * by an estimated heap footprint and evicts the least recently used documents first.
+ * <p>
+ * Tools mutate the cached instance and then call {@link #modified}. Without write-behind
+ * the document is saved immediately. With write-behind enabled the entry is only marked dirty and
+ * is flushed once no mutation happened for {@code office.write-behind.delay}, once it has been
+ * dirty for {@code office.write-behind.max-delay}, after {@code office.write-behind.max-pending}
+ * coalesced mutations, on {@link #flush(String)}, on eviction and on shutdown. The two latter
+ * settings bound how much work is lost if the process crashes.
+ * Saves go through the {@link DocumentSaver}, so a failed save leaves both the file and its
+ * cached document untouched and the document stays dirty.
+ * <p>
+ * Callers must hold the read lock of the file from {@link DocumentLockManager} while reading a
+ * cached document and its write lock while mutating it; flushes take the write lock too. The cache
+ * monitor is never held while acquiring a file lock. Documents evicted while another thread holds
+ * their lock are flushed in the background once the lock is released; until then they stay the
+ * authoritative copy of their file and are taken back into the cache when the file is opened again.
+ */
+@Singleton
+public class DocumentCache {
+
+    private static final Logger LOG = Logger.getLogger(DocumentCache.class);
+
+    @FunctionalInterface
+    public interface Loader<T extends POIXMLDocument> {
+        T load(InputStream in) throws IOException;
+    }
+
+    public record Stats(long hits, long misses, long evictions, long flushes, int entries, long estimatedBytes) {
+    }
+
+    private static final class Entry {
+        final POIXMLDocument document;
+        long lastModified;
+        long size;
+        long estimatedBytes;
+        // guarded by the write lock of the file
+        boolean dirty;
+        long dirtySince;
+        long lastMutation;
+        int pending;
+        boolean flushScheduled;
+        // Objects derived from the document, such as its formula evaluator
+        final Map<Class<?>, Object> attachments = new ConcurrentHashMap<>();
+
+        Entry(POIXMLDocument document) {
+            this.document = document;
+        }
+    }
+
+    private final DocumentLockManager locks;
+    private final DocumentSaver saver;
+    private final long maxBytes;
+    private final int expansionFactor;
+    private final boolean writeBehind;
+    private final long delayNanos;
+    private final long maxDelayNanos;
+    private final int maxPending;
+    private final ScheduledExecutorService flusher;
+
+    // Access order, so iteration starts with the least recently used entry
+    private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // Evicted entries with write-behind, until their flush ran under the write lock of the file
+    private final Map<Path, Entry> pendingFlushes = new LinkedHashMap<>();
+    private long totalBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+
+    DocumentCache(DocumentLockManager locks, DocumentSaver saver,
+                  @ConfigProperty(name = "office.cache.max-bytes", defaultValue = "268435456") long maxBytes,
+                  @ConfigProperty(name = "office.cache.expansion-factor", defaultValue = "10") int expansionFactor,
+                  @ConfigProperty(name = "office.write-behind.enabled", defaultValue = "false") boolean writeBehind,
+                  @ConfigProperty(name = "office.write-behind.delay", defaultValue = "2s") Duration delay,
+                  @ConfigProperty(name = "office.write-behind.max-delay", defaultValue = "10s") Duration maxDelay,
+                  @ConfigProperty(name = "office.write-behind.max-pending", defaultValue = "1000") int maxPending) {
+        this.locks = locks;
+        this.saver = saver;
+        this.maxBytes = maxBytes;
+        this.expansionFactor = expansionFactor;
+        this.writeBehind = writeBehind;
+        this.delayNanos = delay.toNanos();
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.maxPending = maxPending;
+        this.flusher = writeBehind ? Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "office-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    /**
+     * Returns the cached document for the given file, loading it with {@code loader} when it is not
+     * cached yet or when the file changed on disk since it was cached. A document with unflushed
+     * changes is always served from memory. The caller must hold the read or write lock of the file.
+     */
+    public <T extends POIXMLDocument> T open(String filepath, Class<T> type, Loader<T> loader) throws IOException {
+        Path key = key(filepath);
+        BasicFileAttributes attributes = Files.readAttributes(key, BasicFileAttributes.class);
+        Entry cached;
+        synchronized (this) {
+            cached = entry(key);
+        }
+        if (cached != null && type.isInstance(cached.document)) {
+            if (cached.lastModified == attributes.lastModifiedTime().toMillis() && cached.size == attributes.size()) {
+                hits.increment();
+                reinstate(key, cached);
+                return type.cast(cached.document);
+            }
+            if (cached.dirty) {
+                LOG.warnf("%s changed on disk while it has unflushed changes; keeping the in-memory copy", key);
+                hits.increment();
+                reinstate(key, cached);
+                return type.cast(cached.document);
+            }
+        }
+        misses.increment();
+        T document;
+        long start = System.nanoTime();
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(key))) {
+            document = loader.load(in);
+        }
+        ToolMetrics.parsed(attributes.size(), System.nanoTime() - start);
+        Entry entry = new Entry(document);
+        refresh(entry, attributes);
+        List<Map.Entry<Path, Entry>> evicted;
+        synchronized (this) {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                totalBytes -= previous.estimatedBytes;
+            }
+            // An evicted copy that could not be served must not be flushed over the newer load
+            pendingFlushes.remove(key);
+            totalBytes += entry.estimatedBytes;
+            evicted = evictIfNeeded(key);
+        }
+        flushEvicted(evicted);
+        return document;
+    }
+
+    /**
+     * Takes an evicted entry that is served again back into the cache, so that its pending changes
+     * and later mutations stay in one place. The caller holds the lock of the file, so the flush of
+     * the evicted entry has not run yet; when it runs, it finds the entry cached and flushes it the
+     * same way.
+     */
+    private void reinstate(Path key, Entry entry) {
+        List<Map.Entry<Path, Entry>> evicted;
+        synchronized (this) {
+            if (pendingFlushes.get(key) != entry) {
+                return;
+            }
+            pendingFlushes.remove(key);
+            entries.put(key, entry);
+            totalBytes += entry.estimatedBytes;
+            evicted = evictIfNeeded(key);
+        }
+        flushEvicted(evicted);
+    }
+
+    /**
+     * Returns the object of the given type that is kept with a cached document, creating it with
+     * {@code factory} on first use. It lives as long as the cache entry: it is dropped with the
+     * document on invalidation and eviction, and when the file is reloaded after it changed on
+     * disk. When {@code document} is not the cached instance the object is created but not kept.
+     * The caller must hold the read or write lock of the file.
+     */
+    public <D extends POIXMLDocument, T> T attachment(String filepath, D document, Class<T> type, Function<? super D, ? extends T> factory) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key(filepath));
+        }
+        if (entry == null || entry.document != document) {
+            return factory.apply(document);
+        }
+        return type.cast(entry.attachments.computeIfAbsent(type, t -> factory.apply(document)));
+    }
+
+    /**
+     * Records that a document obtained from {@link #open} has been mutated. The caller must hold the
+     * write lock of the file. Depending on the write-behind settings the document is saved now or
+     * scheduled for a later flush; a document that is no longer cached is always saved now.
+     */
+    public void modified(String filepath, POIXMLDocument document) throws IOException {
+        Path key = key(filepath);
+        Entry entry;
+        Entry evicted;
+        synchronized (this) {
+            entry = entries.get(key);
+            evicted = pendingFlushes.get(key);
+        }
+        if (entry == null && evicted != null && evicted.document == document) {
+            // Evicted while the caller held the lock: saving the entry itself clears its dirty flag,
+            // so that its pending flush does not write the document again later
+            write(key, evicted);
+            return;
+        }
+        if (entry == null || entry.document != document) {
+            write(key, new Entry(document));
+            return;
+        }
+        long now = System.nanoTime();
+        if (!entry.dirty) {
+            entry.dirty = true;
+            entry.dirtySince = now;
+        }
+        entry.lastMutation = now;
+        entry.pending++;
+        if (!writeBehind || entry.pending >= maxPending) {
+            write(key, entry);
+        } else if (!entry.flushScheduled) {
+            entry.flushScheduled = true;
+            flusher.schedule(() -> flushWhenDue(key, entry), delayNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Writes any unflushed changes of the given file to disk. Returns {@code true} when something
+     * had to be written. Takes the write lock of the file, so the caller must not hold its read lock.
+     */
+    public boolean flush(String filepath) throws IOException {
+        Path key = key(filepath);
+        Entry entry;
+        synchronized (this) {
+            entry = entry(key);
+        }
+        if (entry == null) {
+            return false;
+        }
+        try (var lock = locks.write(key)) {
+            if (!entry.dirty) {
+                return false;
+            }
+            write(key, entry);
+            return true;
+        }
+    }
+
+    /**
+     * Acquires the read lock of the given file once any unflushed changes of it are written, for
+     * tools that stream the file from disk rather than read the cached document. No mutation can
+     * land between the flush and the read: a dirty document is written under the write lock, which
+     * is then downgraded to the read lock without being released.
+     */
+    public DocumentLockManager.Hold readFlushed(String filepath) throws IOException {
+        Path key = key(filepath);
+        DocumentLockManager.Hold read = locks.read(key);
+        Entry entry;
+        synchronized (this) {
+            entry = entry(key);
+        }
+        if (entry == null || !entry.dirty) {
+            return read;
+        }
+        read.close();
+        try (var lock = locks.write(key)) {
+            synchronized (this) {
+                entry = entry(key);
+            }
+            if (entry != null && entry.dirty) {
+                write(key, entry);
+            }
+            return locks.read(key);
+        }
+    }
+
+    /**
+     * Writes all unflushed documents to disk.
+     */
+    public void flushAll() {
+        if (!writeBehind) {
+            // Without write-behind every mutation is saved right away
+            return;
+        }
+        List<Map.Entry<Path, Entry>> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(entries.entrySet());
+            snapshot.addAll(pendingFlushes.entrySet());
+        }
+        for (Map.Entry<Path, Entry> e : snapshot) {
+            try (var lock = locks.write(e.getKey())) {
+                flushEvicted(e.getKey(), e.getValue());
+            }
+        }
+    }
+
+    /**
+     * Returns {@code true} when a parsed copy of the given file is held in memory, in which case it
+     * is the authoritative version of the document.
+     */
+    public synchronized boolean contains(String filepath) {
+        return entry(key(filepath)) != null;
+    }
+
+    /**
+     * Drops the cached document for the given file, if any, discarding unflushed changes, also those
+     * of an evicted document that is waiting to be flushed. Returns {@code true} when an entry was
+     * removed.
+     * <p>
+     * Documents are always loaded from a stream, so they hold no file handle and are not closed
+     * explicitly; another tool call may still be using the instance.
+     */
+    public boolean invalidate(String filepath) {
+        Path key = key(filepath);
+        synchronized (this) {
+            Entry entry = entries.remove(key);
+            if (entry == null) {
+                return pendingFlushes.remove(key) != null;
+            }
+            totalBytes -= entry.estimatedBytes;
+            return true;
+        }
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), flushes.sum(), entries.size(), totalBytes);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        flushAll();
+        LOG.infof("Document cache statistics: %s", stats());
+    }
+
+    private void flushWhenDue(Path key, Entry entry) {
+        try (var lock = locks.write(key)) {
+            entry.flushScheduled = false;
+            if (!entry.dirty || !isCached(key, entry)) {
+                // Invalidated entries discard their changes, evicted ones were flushed on eviction
+                return;
+            }
+            long now = System.nanoTime();
+            long due = Math.min(entry.lastMutation + delayNanos, entry.dirtySince + maxDelayNanos);
+            if (now - due < 0) {
+                entry.flushScheduled = true;
+                flusher.schedule(() -> flushWhenDue(key, entry), due - now, TimeUnit.NANOSECONDS);
+                return;
+            }
+            try {
+                write(key, entry);
+            } catch (IOException e) {
+                LOG.errorf(e, "Failed to flush %s, retrying in %d ms", key, TimeUnit.NANOSECONDS.toMillis(delayNanos));
+                entry.flushScheduled = true;
+                flusher.schedule(() -> flushWhenDue(key, entry), delayNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    // Caller holds the write lock of the file
+    private void write(Path key, Entry entry) throws IOException {
+        saver.save(key, entry.document);
+        entry.dirty = false;
+        entry.pending = 0;
+        flushes.increment();
+        BasicFileAttributes attributes = Files.readAttributes(key, BasicFileAttributes.class);
+        synchronized (this) {
+            boolean cached = entries.get(key) == entry;
+            if (cached) {
+                totalBytes -= entry.estimatedBytes;
+            }
+            refresh(entry, attributes);
+            if (cached) {
+                totalBytes += entry.estimatedBytes;
+            }
+        }
+    }
+
+    /**
+     * Flushes evicted entries. Entries whose file lock is held by another thread, possibly the one
+     * that caused the eviction, are flushed by the write-behind thread once the lock is released,
+     * so eviction never waits for a lock.
+     */
+    private void flushEvicted(List<Map.Entry<Path, Entry>> evicted) {
+        if (!writeBehind) {
+            // Without write-behind every mutation is saved right away
+            return;
+        }
+        for (Map.Entry<Path, Entry> e : evicted) {
+            try (var lock = locks.tryWrite(e.getKey())) {
+                if (lock != null) {
+                    flushEvicted(e.getKey(), e.getValue());
+                    continue;
+                }
+            }
+            flusher.execute(() -> {
+                try (var lock = locks.write(e.getKey())) {
+                    flushEvicted(e.getKey(), e.getValue());
+                }
+            });
+        }
+    }
+
+    // Caller holds the write lock of the file
+    private void flushEvicted(Path key, Entry entry) {
+        synchronized (this) {
+            if (pendingFlushes.get(key) == entry) {
+                pendingFlushes.remove(key);
+            } else if (entries.get(key) != entry) {
+                // Invalidated, or replaced by a newer load of the file
+                return;
+            }
+        }
+        if (!entry.dirty) {
+            return;
+        }
+        try {
+            write(key, entry);
+        } catch (IOException ex) {
+            LOG.errorf(ex, "Failed to flush %s, unsaved changes are lost", key);
+        }
+    }
+
+    private synchronized boolean isCached(Path key, Entry entry) {
+        return entries.get(key) == entry;
+    }
+
+    // Caller holds the cache monitor
+    private Entry entry(Path key) {
+        Entry entry = entries.get(key);
+        return entry != null ? entry : pendingFlushes.get(key);
+    }
+
+    private void refresh(Entry entry, BasicFileAttributes attributes) {
+        entry.lastModified = attributes.lastModifiedTime().toMillis();
+        entry.size = attributes.size();
+        entry.estimatedBytes = attributes.size() * expansionFactor;
+    }
+
+    // Caller holds the cache monitor; returned entries still have to be flushed outside of it
+    private List<Map.Entry<Path, Entry>> evictIfNeeded(Path keep) {
+        List<Map.Entry<Path, Entry>> evicted = new ArrayList<>();
+        Iterator<Map.Entry<Path, Entry>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<Path, Entry> eldest = it.next();
+            if (eldest.getKey().equals(keep)) {
+                continue;
+            }
+            it.remove();
+            totalBytes -= eldest.getValue().estimatedBytes;
+            evictions.increment();
+            evicted.add(Map.entry(eldest.getKey(), eldest.getValue()));
+            if (writeBehind) {
+                pendingFlushes.put(eldest.getKey(), eldest.getValue());
+            }
+            LOG.debugf("Evicted %s from document cache (%d entries, %d estimated bytes)",
+                    eldest.getKey(), entries.size(), totalBytes);
+        }
+        return evicted;
+    }
+
+    static Path key(String filepath) {
+        Path path = Path.of(filepath);
+        try {
+            return path.toRealPath();
+        } catch (IOException e) {
+            return path.toAbsolutePath().normalize();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package dev.lescoggi;
+
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import jakarta.inject.Singleton;
+
+/**
+ * Per-file read/write locks keyed by canonical path. Tool calls that only read a document hold the
+ * read lock, so reads of the same file run in parallel; calls that mutate or save a document hold
+ * the write lock, so writes of the same file are serialized and never overlap a read. Files with
+ * different canonical paths have different locks and never contend.
+ * <p>
+ * A lock exists only while it is held or awaited and is dropped afterwards, so the number of locks
+ * does not grow with the number of files seen. Locks are reentrant, but a read lock cannot be
+ * upgraded: a thread holding the read lock of a file must not ask for its write lock.
+ * <p>
+ * Typical use:
+ * <pre>
+ * try (var lock = locks.write(filepath)) {
+ *     ...
+ * }
+ * </pre>
+ */
+@Singleton
+public class DocumentLockManager {
+
+    private static final class Entry {
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        // guarded by the map bin of its key
+        int users;
+    }
+
+    /**
+     * A held lock; closing it releases the lock.
+     */
+    public final class Hold implements AutoCloseable {
+
+        private final Path key;
+        private final Lock lock;
+        private boolean released;
+
+        private Hold(Path key, Lock lock) {
+            this.key = key;
+            this.lock = lock;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                lock.unlock();
+                release(key);
+            }
+        }
+    }
+
+    private final ConcurrentHashMap<Path, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Acquires the read lock of the given file, waiting while another thread holds its write lock.
+     */
+    public Hold read(String filepath) {
+        return read(DocumentCache.key(filepath));
+    }
+
+    /**
+     * Acquires the write lock of the given file, waiting while other threads hold its read or write
+     * lock.
+     */
+    public Hold write(String filepath) {
+        return write(DocumentCache.key(filepath));
+    }
+
+    Hold read(Path key) {
+        Lock lock = acquire(key).lock.readLock();
+        lock.lock();
+        return new Hold(key, lock);
+    }
+
+    Hold write(Path key) {
+        Lock lock = acquire(key).lock.writeLock();
+        lock.lock();
+        return new Hold(key, lock);
+    }
+
+    /**
+     * Acquires the write lock of the given file if it is available right now, or returns
+     * {@code null}.
+     */
+    Hold tryWrite(Path key) {
+        Lock lock = acquire(key).lock.writeLock();
+        if (!lock.tryLock()) {
+            release(key);
+            return null;
+        }
+        return new Hold(key, lock);
+    }
+
+    /**
+     * Number of files whose lock is currently held or awaited.
+     */
+    int size() {
+        return entries.size();
+    }
+
+    private Entry acquire(Path key) {
+        return entries.compute(key, (k, entry) -> {
+            if (entry == null) {
+                entry = new Entry();
+            }
+            entry.users++;
+            return entry;
+        });
+    }
+
+    private void release(Path key) {
+        entries.computeIfPresent(key, (k, entry) -> --entry.users == 0 ? null : entry);
+    }
+}
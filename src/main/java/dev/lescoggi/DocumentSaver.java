@@ -0,0 +1,199 @@
+package dev.lescoggi;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.poi.ooxml.POIXMLDocument;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Singleton;
+
+/**
+ * Saves documents without ever leaving a partially written file behind. A document is serialized
+ * into a temporary file next to the target through a buffered {@link FileChannel}, optionally
+ * forced to disk, and then moved over the target in one atomic rename. If anything fails before
+ * the rename the target keeps its previous content, modification time and size, so a document
+ * cached from it is still valid and does not have to be re-read.
+ * <p>
+ * With {@code office.save.fsync} enabled the temporary file and, where the platform allows it,
+ * the parent directory are forced to disk as well, so a saved document also survives a power
+ * loss. The time spent serializing, forcing and renaming is recorded in {@link #stats()}.
+ * <p>
+ * With {@code office.save.incremental} enabled, OOXML documents saved over an existing file only
+ * recompress the parts that changed; all other parts are copied from the existing file as they
+ * are, see {@link IncrementalZipOutputStream}.
+ */
+@Singleton
+public class DocumentSaver {
+
+    private static final Logger LOG = Logger.getLogger(DocumentSaver.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @FunctionalInterface
+    public interface Content {
+        void write(OutputStream out) throws IOException;
+    }
+
+    public record Stats(long saves, long failures, long bytes, long serializeNanos, long fsyncNanos, long moveNanos,
+                        long copiedEntries, long compressedEntries) {
+    }
+
+    private final boolean fsync;
+    private final boolean incremental;
+
+    private final LongAdder saves = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder serializeNanos = new LongAdder();
+    private final LongAdder fsyncNanos = new LongAdder();
+    private final LongAdder moveNanos = new LongAdder();
+    private final LongAdder copiedEntries = new LongAdder();
+    private final LongAdder compressedEntries = new LongAdder();
+
+    DocumentSaver(@ConfigProperty(name = "office.save.fsync", defaultValue = "false") boolean fsync,
+                  @ConfigProperty(name = "office.save.incremental", defaultValue = "true") boolean incremental) {
+        this.fsync = fsync;
+        this.incremental = incremental;
+    }
+
+    /**
+     * Saves an OOXML document over the given file, copying unchanged parts from the current content
+     * of the file when incremental saves are enabled. The caller must hold the write lock of the
+     * file.
+     */
+    public void save(String filepath, POIXMLDocument document) throws IOException {
+        save(Path.of(filepath), document);
+    }
+
+    void save(Path target, POIXMLDocument document) throws IOException {
+        ZipFile original = incremental ? openOriginal(target) : null;
+        if (original == null) {
+            save(target, document::write);
+            return;
+        }
+        try (original) {
+            save(target, out -> {
+                // The saver still needs the channel under the stream once the archive is complete
+                try (IncrementalZipOutputStream zip = new IncrementalZipOutputStream(CloseShieldOutputStream.wrap(out), original)) {
+                    document.write(zip);
+                    copiedEntries.add(zip.copiedEntries());
+                    compressedEntries.add(zip.compressedEntries());
+                }
+            });
+        }
+    }
+
+    /**
+     * Replaces the content of the given file with the bytes written by {@code content}. A symbolic
+     * link is followed, so the file it points to is replaced and the link is kept. The caller must
+     * hold the write lock of the file.
+     */
+    public void save(String filepath, Content content) throws IOException {
+        save(Path.of(filepath), content);
+    }
+
+    void save(Path target, Content content) throws IOException {
+        // The file the lock and the cache key refer to, not a link to it
+        Path absolute = DocumentCache.key(target.toString());
+        Path directory = absolute.getParent();
+        // Created like any other new file, so it gets the default permissions of the process
+        Path temp = directory.resolve("." + absolute.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        boolean saved = false;
+        try {
+            long start = System.nanoTime();
+            long forced;
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                copyPermissions(absolute, temp);
+                // Closing the stream would close the channel before it can be forced
+                OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+                content.write(out);
+                out.flush();
+                forced = System.nanoTime();
+                serializeNanos.add(forced - start);
+                bytes.add(channel.size());
+                ToolMetrics.serialized(channel.size(), forced - start);
+                if (fsync) {
+                    channel.force(true);
+                }
+            }
+            long moving = System.nanoTime();
+            fsyncNanos.add(moving - forced);
+            move(temp, absolute);
+            if (fsync) {
+                forceDirectory(directory);
+            }
+            moveNanos.add(System.nanoTime() - moving);
+            saves.increment();
+            saved = true;
+        } finally {
+            if (!saved) {
+                failures.increment();
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(saves.sum(), failures.sum(), bytes.sum(), serializeNanos.sum(), fsyncNanos.sum(), moveNanos.sum(),
+            copiedEntries.sum(), compressedEntries.sum());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        LOG.infof("Document saver statistics: %s", stats());
+    }
+
+    private static ZipFile openOriginal(Path target) {
+        if (!Files.exists(target)) {
+            return null;
+        }
+        try {
+            return ZipFile.builder().setPath(target).get();
+        } catch (IOException e) {
+            // Not a readable archive, the document is written in full
+            LOG.debugf(e, "Cannot read %s as ZIP archive", target);
+            return null;
+        }
+    }
+
+    private static void move(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            // Still never truncates the target, but may briefly leave it missing
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void copyPermissions(Path source, Path temp) throws IOException {
+        PosixFileAttributeView view = Files.getFileAttributeView(temp, PosixFileAttributeView.class);
+        if (view != null && Files.exists(source)) {
+            view.setPermissions(Files.getPosixFilePermissions(source));
+        }
+    }
+
+    // Makes the rename itself durable; not every platform can open a directory for this
+    private static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            LOG.debugf(e, "Cannot force directory %s", directory);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package dev.lescoggi;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Singleton;
+
+/**
+ * Decides how a tool call works on a document: on the instance in the {@link DocumentCache}, by
+ * parsing the file into a DOM, or with a streaming reader or writer that never holds more than a
+ * part of it. The decision is based on a profile of the file read from the central directory of
+ * its ZIP archive, so it costs a few KB of I/O, and the profile is kept while the file keeps its
+ * modification time and size.
+ * <p>
+ * The heap a DOM needs is estimated at the uncompressed size of the parts times
+ * {@code office.engine.expansion-factor}, which is a far better predictor than the size on disk,
+ * as parts compress anywhere from 2:1 to 100:1. Tools that have a streaming implementation use it
+ * for files of at least their streaming threshold and whenever the DOM would not fit in
+ * {@code office.engine.heap-budget}; tools that do not are refused with a
+ * {@link HeapBudgetException} rather than risking an {@code OutOfMemoryError} that would take
+ * down every other call as well. Calls that fit the budget may still wait in the
+ * {@link AdmissionController}, which shares the same budget between the calls running at once.
+ * <p>
+ * The chosen engine is reported to {@link ToolMetrics} for the call running on the current thread.
+ */
+@Singleton
+public class EngineSelector {
+
+    private static final Logger LOG = Logger.getLogger(EngineSelector.class);
+
+    private static final int MAX_PROFILES = 1024;
+
+    public enum Engine {
+        CACHED("cached"), DOM("dom"), STREAMING_READ("streaming-read"), STREAMING_WRITE("streaming-write");
+
+        private final String label;
+
+        Engine(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+
+    /**
+     * Sizes of an OOXML file: on disk, of all its parts uncompressed, and of its largest part.
+     */
+    public record Profile(long fileBytes, long uncompressedBytes, long largestPartBytes) {
+    }
+
+    /**
+     * Thrown when a document would have to be loaded into a DOM that does not fit the heap budget
+     * and the operation has no streaming implementation.
+     */
+    public static final class HeapBudgetException extends IOException {
+        HeapBudgetException(String message) {
+            super(message);
+        }
+    }
+
+    public record Stats(long cached, long dom, long streamingReads, long streamingWrites, long refused, long profileReads) {
+    }
+
+    private record Entry(Profile profile, long lastModified) {
+    }
+
+    private final DocumentCache documentCache;
+    private final long heapBudget;
+    private final double expansionFactor;
+    private final long streamingWriteThreshold;
+
+    // Access order, so iteration starts with the least recently used entry
+    private final LinkedHashMap<Path, Entry> profiles = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LongAdder[] selected = new LongAdder[Engine.values().length];
+    private final LongAdder refused = new LongAdder();
+    private final LongAdder profileReads = new LongAdder();
+
+    EngineSelector(DocumentCache documentCache,
+                   @ConfigProperty(name = "office.engine.heap-budget", defaultValue = "0") long heapBudget,
+                   @ConfigProperty(name = "office.engine.expansion-factor", defaultValue = "12") double expansionFactor,
+                   @ConfigProperty(name = "office.engine.streaming-write-threshold", defaultValue = "52428800") long streamingWriteThreshold) {
+        this.documentCache = documentCache;
+        this.heapBudget = heapBudget > 0 ? heapBudget : Runtime.getRuntime().maxMemory() / 4 * 3;
+        this.expansionFactor = expansionFactor;
+        this.streamingWriteThreshold = streamingWriteThreshold;
+        for (int i = 0; i < selected.length; i++) {
+            selected[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Selects the engine for a read by a tool that has a streaming reader, which is used for
+     * files of at least {@code streamingThreshold} bytes that are not cached. The caller holds the
+     * lock of the file.
+     */
+    public Engine read(String filepath, long streamingThreshold) throws IOException {
+        return select(filepath, Engine.STREAMING_READ, streamingThreshold);
+    }
+
+    /**
+     * Selects the engine for a change by a tool that has a streaming writer, which is used for
+     * files of at least {@code office.engine.streaming-write-threshold} bytes that are not cached.
+     * The caller holds the write lock of the file.
+     */
+    public Engine write(String filepath) throws IOException {
+        return select(filepath, Engine.STREAMING_WRITE, streamingWriteThreshold);
+    }
+
+    /**
+     * Selects the engine for a tool that can only work on a parsed document: the cached instance,
+     * or a DOM when it fits the heap budget.
+     *
+     * @throws HeapBudgetException when the DOM would exceed the heap budget
+     */
+    public Engine load(String filepath) throws IOException {
+        return select(filepath, null, Long.MAX_VALUE);
+    }
+
+    /**
+     * Records the engine of a tool that always uses the same one, such as a reader that always
+     * streams the file from disk.
+     */
+    public void record(Engine engine) {
+        selected[engine.ordinal()].increment();
+        ToolMetrics.engine(engine);
+    }
+
+    /**
+     * Returns the profile of a file, or {@code null} when it does not exist or is not a ZIP archive.
+     */
+    public Profile profile(String filepath) throws IOException {
+        Path key = DocumentCache.key(filepath);
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(key, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        synchronized (this) {
+            Entry entry = profiles.get(key);
+            if (entry != null && entry.lastModified() == lastModified && entry.profile().fileBytes() == attributes.size()) {
+                return entry.profile();
+            }
+        }
+        profileReads.increment();
+        long uncompressed = 0;
+        long largest = 0;
+        try (ZipFile zip = new ZipFile(key.toFile())) {
+            for (Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements(); ) {
+                // Sizes come from the central directory; entries written with an unknown size count as 0
+                long size = Math.max(0, entries.nextElement().getSize());
+                uncompressed += size;
+                largest = Math.max(largest, size);
+            }
+        } catch (ZipException e) {
+            // Not an OOXML file, the tool reports what it finds when parsing it
+            return null;
+        }
+        Profile profile = new Profile(attributes.size(), uncompressed, largest);
+        synchronized (this) {
+            profiles.put(key, new Entry(profile, lastModified));
+            while (profiles.size() > MAX_PROFILES) {
+                profiles.remove(profiles.keySet().iterator().next());
+            }
+        }
+        return profile;
+    }
+
+    /**
+     * Estimated heap of the DOM of a file with the given profile.
+     */
+    public long domBytes(Profile profile) {
+        return (long) (profile.uncompressedBytes() * expansionFactor);
+    }
+
+    /**
+     * The estimated heap, in bytes, a single document may take once parsed.
+     */
+    public long heapBudget() {
+        return heapBudget;
+    }
+
+    public Stats stats() {
+        return new Stats(selected[Engine.CACHED.ordinal()].sum(), selected[Engine.DOM.ordinal()].sum(),
+            selected[Engine.STREAMING_READ.ordinal()].sum(), selected[Engine.STREAMING_WRITE.ordinal()].sum(),
+            refused.sum(), profileReads.sum());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        LOG.infof("Engine selection statistics: %s", stats());
+    }
+
+    private Engine select(String filepath, Engine streaming, long streamingThreshold) throws IOException {
+        if (documentCache.contains(filepath)) {
+            record(Engine.CACHED);
+            return Engine.CACHED;
+        }
+        Profile profile = profile(filepath);
+        Engine engine;
+        if (profile == null) {
+            // Missing or unreadable, parsing it reports the problem the same way as before
+            engine = Engine.DOM;
+        } else if (streaming != null && profile.fileBytes() >= streamingThreshold) {
+            engine = streaming;
+        } else if (domBytes(profile) <= heapBudget) {
+            engine = Engine.DOM;
+        } else if (streaming != null) {
+            engine = streaming;
+        } else {
+            refused.increment();
+            ToolMetrics.refused();
+            throw new HeapBudgetException(String.format(Locale.ROOT,
+                "%s would need an estimated %d MB of heap to load (%d MB of uncompressed XML), more than the heap budget of %d MB, "
+                    + "and this operation cannot stream the document. Raise office.engine.heap-budget together with the maximum heap (-Xmx), "
+                    + "or use a tool that reads or appends without loading the whole document.",
+                Path.of(filepath).getFileName(), megabytes(domBytes(profile)), megabytes(profile.uncompressedBytes()), megabytes(heapBudget)));
+        }
+        record(engine);
+        return engine;
+    }
+
+    private static long megabytes(long bytes) {
+        return (bytes + 1024 * 1024 - 1) / (1024 * 1024);
+    }
+}
@@ -0,0 +1,154 @@
+package dev.lescoggi;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.regex.Pattern;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Workbook;
+
+/**
+ * Writes typed values into cells: numbers as numeric cells, booleans as boolean cells and ISO-8601
+ * dates as date-formatted numeric cells. The date styles are looked up or created once per
+ * workbook instead of once per cell.
+ */
+class ExcelCellWriter {
+
+    private static final Pattern NUMBER = Pattern.compile("-?(0|[1-9]\\d*)(\\.\\d+)?([eE][+-]?\\d+)?");
+    private static final Pattern DATE = Pattern.compile("\\d{4}-\\d{2}-\\d{2}");
+    private static final Pattern DATE_TIME = Pattern.compile("\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}(:\\d{2}(\\.\\d+)?)?");
+    // Longer digit sequences (account numbers, IDs) would lose precision as a double
+    private static final int MAX_SIGNIFICANT_DIGITS = 15;
+
+    static final String DATE_FORMAT = "yyyy-mm-dd";
+    static final String DATE_TIME_FORMAT = "yyyy-mm-dd hh:mm:ss";
+
+    private final Workbook workbook;
+    private CellStyle dateStyle;
+    private CellStyle dateTimeStyle;
+
+    ExcelCellWriter(Workbook workbook) {
+        this.workbook = workbook;
+    }
+
+    /**
+     * Writes a value that already carries its type. Strings are only converted when they hold an
+     * ISO-8601 date, since JSON has no date type.
+     */
+    void write(Cell cell, Object value) {
+        writeValue(cell, typed(value));
+    }
+
+    /**
+     * Writes untyped text, e.g. a CSV field, inferring whether it is a number, a boolean or a date.
+     */
+    void writeInferred(Cell cell, String text) {
+        writeValue(cell, inferred(text));
+    }
+
+    /**
+     * Returns the value {@link #write} stores for a JSON value: {@code null}, a {@link Double}, a
+     * {@link Boolean}, a {@link LocalDate}, a {@link LocalDateTime} or a {@link String}.
+     */
+    static Object typed(Object value) {
+        if (value == null || value instanceof Boolean) {
+            return value;
+        }
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        }
+        Object date = date(value.toString());
+        return date != null ? date : value.toString();
+    }
+
+    /**
+     * Returns the value {@link #writeInferred} stores for a text, typed like {@link #typed}.
+     */
+    static Object inferred(String text) {
+        if (text.isEmpty()) {
+            return null;
+        }
+        if (isNumber(text)) {
+            return Double.parseDouble(text);
+        }
+        if (text.equalsIgnoreCase("true") || text.equalsIgnoreCase("false")) {
+            return Boolean.parseBoolean(text);
+        }
+        Object date = date(text);
+        return date != null ? date : text;
+    }
+
+    private void writeValue(Cell cell, Object value) {
+        if (value == null) {
+            cell.setBlank();
+        } else if (value instanceof Double number) {
+            cell.setCellValue(number);
+        } else if (value instanceof Boolean bool) {
+            cell.setCellValue(bool);
+        } else if (value instanceof LocalDate date) {
+            cell.setCellValue(date);
+            cell.setCellStyle(dateStyle());
+        } else if (value instanceof LocalDateTime dateTime) {
+            cell.setCellValue(dateTime);
+            cell.setCellStyle(dateTimeStyle());
+        } else {
+            cell.setCellValue(value.toString());
+        }
+    }
+
+    private static Object date(String text) {
+        try {
+            if (DATE.matcher(text).matches()) {
+                return LocalDate.parse(text);
+            }
+            if (DATE_TIME.matcher(text).matches()) {
+                return LocalDateTime.parse(text);
+            }
+        } catch (DateTimeParseException e) {
+            // Looks like a date but is not a valid one, keep it as text
+        }
+        return null;
+    }
+
+    private static boolean isNumber(String text) {
+        if (!NUMBER.matcher(text).matches()) {
+            return false;
+        }
+        int digits = 0;
+        for (int i = 0; i < text.length() && text.charAt(i) != 'e' && text.charAt(i) != 'E'; i++) {
+            if (Character.isDigit(text.charAt(i))) {
+                digits++;
+            }
+        }
+        return digits <= MAX_SIGNIFICANT_DIGITS;
+    }
+
+    private CellStyle dateStyle() {
+        if (dateStyle == null) {
+            dateStyle = style(DATE_FORMAT);
+        }
+        return dateStyle;
+    }
+
+    private CellStyle dateTimeStyle() {
+        if (dateTimeStyle == null) {
+            dateTimeStyle = style(DATE_TIME_FORMAT);
+        }
+        return dateTimeStyle;
+    }
+
+    private CellStyle style(String format) {
+        short dataFormat = workbook.getCreationHelper().createDataFormat().getFormat(format);
+        for (int i = 1; i < workbook.getNumCellStyles(); i++) {
+            CellStyle existing = workbook.getCellStyleAt(i);
+            if (existing.getDataFormat() == dataFormat) {
+                return existing;
+            }
+        }
+        CellStyle style = workbook.createCellStyle();
+        style.setDataFormat(dataFormat);
+        return style;
+    }
+}
@@ -0,0 +1,133 @@
+package dev.lescoggi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+
+/**
+ * ZIP stream for saving an OPC package over the file it was loaded from. POI hands a
+ * {@link ZipArchiveOutputStream} passed to {@code write} every part uncompressed; when the original
+ * file has an entry with the same name, this stream compares the part with it as it is written, and
+ * if the part ends up byte-for-byte the same, copies that entry in its compressed form instead of
+ * deflating the part again. Images, fonts and other media that were not touched are therefore only
+ * inflated to compare them, and only the parts that actually changed are compressed.
+ * <p>
+ * Parts are never buffered: once a part differs from the original entry, the bytes it had in common
+ * with it are read from the original file again and the rest of the part is compressed as it is
+ * written, so saving a large sheet needs no more heap than a plain save.
+ */
+class IncrementalZipOutputStream extends ZipArchiveOutputStream {
+
+    private final ZipFile original;
+    private final byte[] expected = new byte[64 * 1024];
+    // The entry being compared with the original one, or null once it differs or when there is none
+    private ZipArchiveEntry current;
+    private ZipArchiveEntry source;
+    private InputStream sourceData;
+    private long compared;
+    private int copiedEntries;
+    private int compressedEntries;
+
+    IncrementalZipOutputStream(OutputStream out, ZipFile original) {
+        super(out);
+        this.original = original;
+    }
+
+    @Override
+    public void putArchiveEntry(ZipArchiveEntry entry) throws IOException {
+        if (current != null) {
+            throw new IOException("Entry " + current.getName() + " has not been closed");
+        }
+        ZipArchiveEntry existing = original.getEntry(entry.getName());
+        if (existing != null && original.canReadEntryData(existing)) {
+            current = entry;
+            source = existing;
+            sourceData = original.getInputStream(existing);
+            compared = 0;
+        } else {
+            super.putArchiveEntry(entry);
+            compressedEntries++;
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int offset, int length) throws IOException {
+        if (current != null && !matches(b, offset, length)) {
+            differs();
+        }
+        if (current == null) {
+            super.write(b, offset, length);
+        } else {
+            compared += length;
+        }
+    }
+
+    @Override
+    public void closeArchiveEntry() throws IOException {
+        if (current != null && sourceData.read() >= 0) {
+            // The part is shorter than the original entry
+            differs();
+        }
+        if (current == null) {
+            super.closeArchiveEntry();
+            return;
+        }
+        current = null;
+        sourceData.close();
+        try (InputStream raw = original.getRawInputStream(source)) {
+            addRawArchiveEntry(source, raw);
+        }
+        copiedEntries++;
+    }
+
+    // Whether the original entry continues with these bytes
+    private boolean matches(byte[] b, int offset, int length) throws IOException {
+        int matched = 0;
+        while (matched < length) {
+            int n = sourceData.read(expected, 0, Math.min(expected.length, length - matched));
+            if (n < 0 || !Arrays.equals(b, offset + matched, offset + matched + n, expected, 0, n)) {
+                return false;
+            }
+            matched += n;
+        }
+        return true;
+    }
+
+    // Starts compressing the current entry, from the bytes it has in common with the original one
+    private void differs() throws IOException {
+        ZipArchiveEntry entry = current;
+        current = null;
+        sourceData.close();
+        super.putArchiveEntry(entry);
+        try (InputStream common = original.getInputStream(source)) {
+            for (long remaining = compared; remaining > 0; ) {
+                int n = common.read(expected, 0, (int) Math.min(expected.length, remaining));
+                if (n < 0) {
+                    throw new IOException("Entry " + entry.getName() + " ended while it was read again");
+                }
+                super.write(expected, 0, n);
+                remaining -= n;
+            }
+        }
+        compressedEntries++;
+    }
+
+    /**
+     * Number of entries copied from the original file without recompressing them.
+     */
+    int copiedEntries() {
+        return copiedEntries;
+    }
+
+    /**
+     * Number of entries that had to be compressed because they are new or changed.
+     */
+    int compressedEntries() {
+        return compressedEntries;
+    }
+}
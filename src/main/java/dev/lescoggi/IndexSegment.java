@@ -0,0 +1,547 @@
+package dev.lescoggi;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * One immutable file of the full-text index kept by {@link SearchIndex}: the documents indexed in
+ * one generation with the location and text of each of their units (paragraphs, cells, slides),
+ * and a sorted term dictionary whose postings point at units. Deleted documents are tombstones
+ * that hide older versions of a file in other segments.
+ * <p>
+ * Layout, with all numbers big-endian:
+ * <pre>
+ * header     magic, version, generation, first and last generation merged into this segment
+ * units      per document: location (modified UTF-8) and text (int length + UTF-8) of each unit,
+ *            followed by the offsets of its units (longs)
+ * postings   per term: (document delta, unit) pairs as variable-length ints
+ * documents  count, then per document: path, last modified, size, deleted, unit count, offsets table
+ * terms      count, then per term: term, postings offset, postings length, posting count
+ * footer     documents offset, terms offset, magic
+ * </pre>
+ * Opening a segment loads the document table and the term dictionary; postings and unit texts are
+ * read from the file on demand with positional reads, so a segment can be searched concurrently.
+ */
+final class IndexSegment implements Closeable {
+
+    private static final int MAGIC = 0x4f464958; // "OFIX"
+    private static final int VERSION = 1;
+    private static final int FOOTER_BYTES = 20;
+    private static final long[] NO_POSTINGS = new long[0];
+
+    /**
+     * A paragraph, cell or slide of a document.
+     */
+    record Unit(String location, String text) {
+    }
+
+    /**
+     * A document to write into a new segment; {@code units} is {@code null} for a deleted file.
+     */
+    record Source(String path, long lastModified, long size, List<Unit> units) {
+
+        static Source deleted(String path) {
+            return new Source(path, 0, 0, null);
+        }
+    }
+
+    /**
+     * A document of an open segment.
+     */
+    record Document(String path, long lastModified, long size, boolean deleted, int unitCount, long unitOffsets) {
+    }
+
+    private final Path file;
+    private final FileChannel channel;
+    private final long generation;
+    private final long mergedFrom;
+    private final long mergedThrough;
+    private final Document[] documents;
+    private final String[] terms;
+    private final long[] postingsOffsets;
+    private final int[] postingsLengths;
+    private final int[] postingsCounts;
+
+    private IndexSegment(Path file, FileChannel channel, long generation, long mergedFrom, long mergedThrough,
+                         Document[] documents, String[] terms, long[] postingsOffsets, int[] postingsLengths,
+                         int[] postingsCounts) {
+        this.file = file;
+        this.channel = channel;
+        this.generation = generation;
+        this.mergedFrom = mergedFrom;
+        this.mergedThrough = mergedThrough;
+        this.documents = documents;
+        this.terms = terms;
+        this.postingsOffsets = postingsOffsets;
+        this.postingsLengths = postingsLengths;
+        this.postingsCounts = postingsCounts;
+    }
+
+    static IndexSegment open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < FOOTER_BYTES) {
+                throw new IOException("Truncated index segment " + file);
+            }
+            ByteBuffer footer = read(channel, size - FOOTER_BYTES, FOOTER_BYTES);
+            long documentsOffset = footer.getLong();
+            long termsOffset = footer.getLong();
+            ByteBuffer header = read(channel, 0, 32);
+            if (footer.getInt() != MAGIC || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not an index segment: " + file);
+            }
+            long generation = header.getLong();
+            long mergedFrom = header.getLong();
+            long mergedThrough = header.getLong();
+
+            DataInputStream in = input(channel, documentsOffset);
+            Document[] documents = new Document[in.readInt()];
+            for (int i = 0; i < documents.length; i++) {
+                documents[i] = new Document(in.readUTF(), in.readLong(), in.readLong(), in.readBoolean(), in.readInt(), in.readLong());
+            }
+            in = input(channel, termsOffset);
+            int termCount = in.readInt();
+            String[] terms = new String[termCount];
+            long[] offsets = new long[termCount];
+            int[] lengths = new int[termCount];
+            int[] counts = new int[termCount];
+            for (int i = 0; i < termCount; i++) {
+                terms[i] = in.readUTF();
+                offsets[i] = in.readLong();
+                lengths[i] = in.readInt();
+                counts[i] = in.readInt();
+            }
+            return new IndexSegment(file, channel, generation, mergedFrom, mergedThrough, documents, terms, offsets, lengths, counts);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the given documents into a new segment file, indexing the terms of every unit with
+     * {@link SearchIndex#terms}.
+     */
+    static void write(Path file, long generation, List<Source> sources) throws IOException {
+        try (SegmentWriter writer = new SegmentWriter(file, generation, generation, generation)) {
+            for (Source source : sources) {
+                if (source.units() == null) {
+                    writer.addDeleted(source.path());
+                    continue;
+                }
+                long[] offsets = new long[source.units().size()];
+                Set<String> unitTerms = new HashSet<>();
+                for (int i = 0; i < offsets.length; i++) {
+                    Unit unit = source.units().get(i);
+                    offsets[i] = writer.writeUnit(unit);
+                    unitTerms.clear();
+                    unitTerms.addAll(SearchIndex.terms(unit.text()));
+                    for (String term : unitTerms) {
+                        writer.addPosting(term, i);
+                    }
+                }
+                writer.addDocument(source.path(), source.lastModified(), source.size(), offsets);
+            }
+            writer.finish();
+        }
+    }
+
+    /**
+     * Writes the live documents of the given segments, oldest first, into a new segment file.
+     * Tombstones are dropped unless {@code keepDeleted} is set, which is needed when older segments
+     * that may still hold the deleted files are not part of the merge.
+     */
+    static void merge(Path file, long generation, List<IndexSegment> segments, List<BitSet> live, boolean keepDeleted)
+            throws IOException {
+        long mergedFrom = segments.stream().mapToLong(s -> s.mergedFrom).min().orElse(generation);
+        long mergedThrough = segments.stream().mapToLong(s -> s.mergedThrough).max().orElse(generation);
+        try (SegmentWriter writer = new SegmentWriter(file, generation, mergedFrom, mergedThrough)) {
+            int[][] remap = new int[segments.size()][];
+            for (int s = 0; s < segments.size(); s++) {
+                IndexSegment segment = segments.get(s);
+                remap[s] = new int[segment.documents.length];
+                Arrays.fill(remap[s], -1);
+                for (int d = 0; d < segment.documents.length; d++) {
+                    Document document = segment.documents[d];
+                    if (!live.get(s).get(d) || (document.deleted() && !keepDeleted)) {
+                        continue;
+                    }
+                    if (document.deleted()) {
+                        remap[s][d] = writer.addDeleted(document.path());
+                    } else {
+                        long[] offsets = writer.copyUnits(segment, document);
+                        remap[s][d] = writer.addDocument(document.path(), document.lastModified(), document.size(), offsets);
+                    }
+                }
+            }
+
+            // k-way merge of the sorted term dictionaries
+            PriorityQueue<int[]> cursors = new PriorityQueue<>((a, b) -> {
+                int order = segments.get(a[0]).terms[a[1]].compareTo(segments.get(b[0]).terms[b[1]]);
+                return order != 0 ? order : Integer.compare(a[0], b[0]);
+            });
+            for (int s = 0; s < segments.size(); s++) {
+                if (segments.get(s).terms.length > 0) {
+                    cursors.add(new int[] {s, 0});
+                }
+            }
+            while (!cursors.isEmpty()) {
+                String term = segments.get(cursors.peek()[0]).terms[cursors.peek()[1]];
+                // Cursors with the same term come out in segment order, keeping the documents sorted
+                while (!cursors.isEmpty() && segments.get(cursors.peek()[0]).terms[cursors.peek()[1]].equals(term)) {
+                    int[] cursor = cursors.poll();
+                    IndexSegment segment = segments.get(cursor[0]);
+                    for (long posting : segment.postings(cursor[1])) {
+                        int document = remap[cursor[0]][(int) (posting >>> 32)];
+                        if (document >= 0) {
+                            writer.addMergedPosting(document, (int) posting);
+                        }
+                    }
+                    if (++cursor[1] < segment.terms.length) {
+                        cursors.add(cursor);
+                    }
+                }
+                writer.flushTerm(term);
+            }
+            writer.finish();
+        }
+    }
+
+    Path file() {
+        return file;
+    }
+
+    long generation() {
+        return generation;
+    }
+
+    long mergedFrom() {
+        return mergedFrom;
+    }
+
+    long mergedThrough() {
+        return mergedThrough;
+    }
+
+    int documentCount() {
+        return documents.length;
+    }
+
+    Document document(int index) {
+        return documents[index];
+    }
+
+    /**
+     * Returns the units containing {@code term}, each as document index in the high and unit index
+     * in the low 32 bits, in ascending order.
+     */
+    long[] postings(String term) throws IOException {
+        int index = Arrays.binarySearch(terms, term);
+        return index < 0 ? NO_POSTINGS : postings(index);
+    }
+
+    Unit unit(int document, int unit) throws IOException {
+        long offset = read(channel, documents[document].unitOffsets() + 8L * unit, 8).getLong();
+        int locationLength = read(channel, offset, 2).getShort() & 0xffff;
+        DataInputStream head = new DataInputStream(new ByteArrayInputStream(read(channel, offset, 2 + locationLength + 4).array()));
+        String location = head.readUTF();
+        int textLength = head.readInt();
+        ByteBuffer text = read(channel, offset + 2 + locationLength + 4, textLength);
+        return new Unit(location, new String(text.array(), 0, textLength, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private long[] postings(int index) throws IOException {
+        ByteBuffer buffer = read(channel, postingsOffsets[index], postingsLengths[index]);
+        long[] postings = new long[postingsCounts[index]];
+        int document = 0;
+        int unit = 0;
+        for (int i = 0; i < postings.length; i++) {
+            int delta = readVarInt(buffer);
+            int value = readVarInt(buffer);
+            document += delta;
+            unit = delta == 0 ? unit + value : value;
+            postings[i] = (long) document << 32 | unit;
+        }
+        return postings;
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of index segment");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static DataInputStream input(FileChannel channel, long position) {
+        InputStream in = new InputStream() {
+            private long next = position;
+
+            @Override
+            public int read() throws IOException {
+                byte[] single = new byte[1];
+                return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int count = channel.read(ByteBuffer.wrap(b, off, len), next);
+                if (count > 0) {
+                    next += count;
+                }
+                return count;
+            }
+        };
+        return new DataInputStream(new BufferedInputStream(in, 64 * 1024));
+    }
+
+    private static int readVarInt(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Growable, delta-encoded postings of one term.
+     */
+    private static final class PostingList {
+        byte[] bytes = new byte[16];
+        int length;
+        int count;
+        int lastDocument;
+        int lastUnit;
+
+        void add(int document, int unit) {
+            int delta = document - lastDocument;
+            writeVarInt(delta);
+            writeVarInt(delta == 0 && count > 0 ? unit - lastUnit : unit);
+            lastDocument = document;
+            lastUnit = unit;
+            count++;
+        }
+
+        private void writeVarInt(int value) {
+            if (length + 5 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            while ((value & ~0x7f) != 0) {
+                bytes[length++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+        }
+    }
+
+    /**
+     * Writes a segment to a temporary file next to its final name, which it is renamed to by
+     * {@link #finish}.
+     */
+    private static final class SegmentWriter implements Closeable {
+
+        private final Path file;
+        private final Path temp;
+        private final CountingOutputStream counter;
+        private final DataOutputStream out;
+        private final List<Document> documents = new ArrayList<>();
+        private final Map<String, PostingList> postings = new HashMap<>();
+        private final List<String> termNames = new ArrayList<>();
+        private final List<long[]> termEntries = new ArrayList<>();
+        private PostingList current;
+        private boolean finished;
+
+        SegmentWriter(Path file, long generation, long mergedFrom, long mergedThrough) throws IOException {
+            this.file = file;
+            this.temp = file.resolveSibling(file.getFileName() + ".tmp");
+            this.counter = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 64 * 1024));
+            this.out = new DataOutputStream(counter);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(generation);
+            out.writeLong(mergedFrom);
+            out.writeLong(mergedThrough);
+        }
+
+        long writeUnit(Unit unit) throws IOException {
+            long offset = counter.count;
+            out.writeUTF(truncateUtf(unit.location()));
+            byte[] text = unit.text().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(text.length);
+            out.write(text);
+            return offset;
+        }
+
+        // Copies the unit area of a document of another segment as is and returns the new offsets
+        long[] copyUnits(IndexSegment segment, Document document) throws IOException {
+            int count = document.unitCount();
+            long[] offsets = new long[count];
+            if (count == 0) {
+                return offsets;
+            }
+            ByteBuffer table = read(segment.channel, document.unitOffsets(), 8 * count);
+            for (int i = 0; i < count; i++) {
+                offsets[i] = table.getLong();
+            }
+            long start = offsets[0];
+            long shift = counter.count - start;
+            ByteBuffer chunk = ByteBuffer.allocate(64 * 1024);
+            for (long position = start; position < document.unitOffsets(); ) {
+                chunk.clear().limit((int) Math.min(chunk.capacity(), document.unitOffsets() - position));
+                int read = segment.channel.read(chunk, position);
+                if (read < 0) {
+                    throw new IOException("Unexpected end of index segment " + segment.file);
+                }
+                out.write(chunk.array(), 0, read);
+                position += read;
+            }
+            for (int i = 0; i < count; i++) {
+                offsets[i] += shift;
+            }
+            return offsets;
+        }
+
+        int addDocument(String path, long lastModified, long size, long[] unitOffsets) throws IOException {
+            long tableOffset = counter.count;
+            for (long offset : unitOffsets) {
+                out.writeLong(offset);
+            }
+            documents.add(new Document(path, lastModified, size, false, unitOffsets.length, tableOffset));
+            return documents.size() - 1;
+        }
+
+        int addDeleted(String path) {
+            documents.add(new Document(path, 0, 0, true, 0, 0));
+            return documents.size() - 1;
+        }
+
+        // Postings of documents that are still being written, terms in any order
+        void addPosting(String term, int unit) {
+            postings.computeIfAbsent(term, t -> new PostingList()).add(documents.size(), unit);
+        }
+
+        // Postings of a merge, term by term in sorted order
+        void addMergedPosting(int document, int unit) {
+            if (current == null) {
+                current = new PostingList();
+            }
+            current.add(document, unit);
+        }
+
+        void flushTerm(String term) throws IOException {
+            if (current != null) {
+                writePostings(term, current);
+                current = null;
+            }
+        }
+
+        void finish() throws IOException {
+            if (!postings.isEmpty()) {
+                String[] sorted = postings.keySet().toArray(new String[0]);
+                Arrays.sort(sorted);
+                for (String term : sorted) {
+                    writePostings(term, postings.remove(term));
+                }
+            }
+            long documentsOffset = counter.count;
+            out.writeInt(documents.size());
+            for (Document document : documents) {
+                out.writeUTF(document.path());
+                out.writeLong(document.lastModified());
+                out.writeLong(document.size());
+                out.writeBoolean(document.deleted());
+                out.writeInt(document.unitCount());
+                out.writeLong(document.unitOffsets());
+            }
+            long termsOffset = counter.count;
+            out.writeInt(termNames.size());
+            for (int i = 0; i < termNames.size(); i++) {
+                long[] entry = termEntries.get(i);
+                out.writeUTF(termNames.get(i));
+                out.writeLong(entry[0]);
+                out.writeInt((int) entry[1]);
+                out.writeInt((int) entry[2]);
+            }
+            out.writeLong(documentsOffset);
+            out.writeLong(termsOffset);
+            out.writeInt(MAGIC);
+            out.close();
+            finished = true;
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        private void writePostings(String term, PostingList list) throws IOException {
+            termNames.add(term);
+            termEntries.add(new long[] {counter.count, list.length, list.count});
+            out.write(list.bytes, 0, list.length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!finished) {
+                out.close();
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        // writeUTF is limited to 65535 bytes
+        private static String truncateUtf(String value) {
+            return value.length() > 16_000 ? value.substring(0, 16_000) : value;
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
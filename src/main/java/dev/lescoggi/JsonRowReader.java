@@ -0,0 +1,63 @@
+package dev.lescoggi;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Streaming reader for rows given as a JSON array of arrays, e.g. {@code [["EU", 12.5, true], ...]}.
+ * Values keep their JSON type: numbers are returned as {@link Double}, booleans as {@link Boolean},
+ * strings as {@link String} and {@code null} as {@code null}.
+ */
+class JsonRowReader implements Closeable {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final JsonParser parser;
+    private boolean started;
+
+    public JsonRowReader(String json) throws IOException {
+        this.parser = JSON.createParser(json);
+    }
+
+    /**
+     * Returns the values of the next row, or {@code null} after the last row.
+     */
+    public List<Object> next() throws IOException {
+        if (!started) {
+            started = true;
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Rows must be a JSON array of arrays");
+            }
+        }
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY || token == null) {
+            return null;
+        }
+        if (token != JsonToken.START_ARRAY) {
+            throw new IOException("Each row must be a JSON array, found " + token + " at " + parser.currentLocation());
+        }
+        List<Object> values = new ArrayList<>();
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            switch (token) {
+                case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> values.add(parser.getDoubleValue());
+                case VALUE_TRUE -> values.add(Boolean.TRUE);
+                case VALUE_FALSE -> values.add(Boolean.FALSE);
+                case VALUE_NULL -> values.add(null);
+                case VALUE_STRING -> values.add(parser.getText());
+                default -> throw new IOException("Unsupported cell value " + token + " at " + parser.currentLocation());
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+}
@@ -0,0 +1,287 @@
+package dev.lescoggi;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.ZipFile;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Singleton;
+
+/**
+ * One-line summaries of the files under {@code office.files.path}: the sheets of a workbook with
+ * their row and column counts, the slide titles of a presentation, and the paragraph count and
+ * opening words of a Word document. They are read with the same streaming readers as the count
+ * and search tools, which only inflate the parts they need, on virtual threads of which at most
+ * {@code office.summary.parallelism} run at once, so a directory on a network share is read with
+ * many requests in flight.
+ * <p>
+ * Summaries are cached by path and reused while the file keeps its modification time and size, so
+ * listing a directory again only reads the files that changed. Summaries are passed to a
+ * {@link Listener} in path order, in batches of 100, while the rest of the page is still read.
+ */
+@Singleton
+public class OfficeFileSummaries {
+
+    private static final Logger LOG = Logger.getLogger(OfficeFileSummaries.class);
+
+    // Summaries passed to the listener at once, and the opening words kept of a Word document
+    private static final int LISTENER_BATCH = 100;
+    private static final int OPENING_LENGTH = 80;
+
+    public enum Type {
+        EXCEL(".xlsx"), WORD(".docx"), POWERPOINT(".pptx");
+
+        private final String extension;
+
+        Type(String extension) {
+            this.extension = extension;
+        }
+
+        /**
+         * Returns the type with the given name, ignoring case, or {@code null} when there is none.
+         */
+        static Type of(String name) {
+            for (Type type : values()) {
+                if (type.name().equalsIgnoreCase(name)) {
+                    return type;
+                }
+            }
+            return null;
+        }
+
+        boolean matches(String path) {
+            return path.toLowerCase(Locale.ROOT).endsWith(extension);
+        }
+    }
+
+    /**
+     * The summary of a file; {@code path} is relative to {@code office.files.path}.
+     */
+    public record Summary(String path, String text) {
+    }
+
+    /**
+     * One page of summaries, the number of files that matched, and how many of the summaries on
+     * the page had to be read from their files.
+     */
+    public record Result(List<Summary> summaries, int totalFiles, int read) {
+    }
+
+    public record Stats(long listings, long hits, long misses, long failures) {
+    }
+
+    @FunctionalInterface
+    interface Listener {
+        /**
+         * Called with the next summaries of the page, once {@code done} of its {@code total}
+         * summaries are complete; not called for the last ones, which are only returned.
+         */
+        void summarized(List<Summary> summaries, int done, int total);
+    }
+
+    private record Entry(long lastModified, long size, String text) {
+    }
+
+    private final Path root;
+    private final Path indexDirectory;
+    private final int maxEntries;
+    private final DocumentCache documentCache;
+    private final Semaphore readers;
+
+    // Access order, so iteration starts with the least recently used entry
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LongAdder listings = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    OfficeFileSummaries(DocumentCache documentCache,
+                        @ConfigProperty(name = "office.files.path") String filesPath,
+                        @ConfigProperty(name = "office.search.index-path", defaultValue = "./office_index") String indexPath,
+                        @ConfigProperty(name = "office.summary.parallelism", defaultValue = "16") int parallelism,
+                        @ConfigProperty(name = "office.summary.max-entries", defaultValue = "10000") int maxEntries) {
+        this.documentCache = documentCache;
+        this.root = Path.of(filesPath).toAbsolutePath().normalize();
+        this.indexDirectory = Path.of(indexPath).toAbsolutePath().normalize();
+        this.readers = new Semaphore(Math.max(parallelism, 1));
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Returns the summaries of up to {@code limit} files starting at {@code offset}, in path
+     * order, of the files of the given type (any when {@code null}) whose path relative to
+     * {@code office.files.path} matches the glob {@code pattern} (any when {@code null}). Pending
+     * changes of cached documents are written first.
+     *
+     * @throws IllegalArgumentException when the pattern is not a valid glob
+     */
+    public Result summarize(Type type, String pattern, int offset, int limit, Listener listener) throws IOException {
+        PathMatcher matcher = pattern == null ? null : FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+        documentCache.flushAll();
+        listings.increment();
+        List<Map.Entry<String, BasicFileAttributes>> files = new ArrayList<>();
+        for (Map.Entry<String, BasicFileAttributes> file : OfficeFiles.walk(root, indexDirectory).entrySet()) {
+            if ((type == null || type.matches(file.getKey())) && (matcher == null || matcher.matches(Path.of(file.getKey())))) {
+                files.add(file);
+            }
+        }
+        List<Map.Entry<String, BasicFileAttributes>> page = files.subList(Math.min(offset, files.size()),
+            (int) Math.min((long) offset + limit, files.size()));
+
+        List<Summary> summaries = new ArrayList<>(page.size());
+        int read = 0;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<String>> pending = new ArrayList<>(page.size());
+            for (Map.Entry<String, BasicFileAttributes> file : page) {
+                String cached = cached(file.getKey(), file.getValue());
+                if (cached != null) {
+                    pending.add(CompletableFuture.completedFuture(cached));
+                } else {
+                    read++;
+                    pending.add(executor.submit(() -> read(file.getKey(), file.getValue())));
+                }
+            }
+            int reported = 0;
+            for (int i = 0; i < page.size(); i++) {
+                summaries.add(new Summary(page.get(i).getKey(), pending.get(i).get()));
+                if (listener != null && summaries.size() - reported == LISTENER_BATCH && i < page.size() - 1) {
+                    listener.summarized(List.copyOf(summaries.subList(reported, summaries.size())), summaries.size(), page.size());
+                    reported = summaries.size();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while summarizing files", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        }
+        return new Result(summaries, files.size(), read);
+    }
+
+    public Stats stats() {
+        return new Stats(listings.sum(), hits.sum(), misses.sum(), failures.sum());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        LOG.infof("File summary statistics: %s", stats());
+    }
+
+    /**
+     * Summarizes a workbook, presentation or Word document.
+     */
+    static String summarize(Path file) throws IOException {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".xlsx")) {
+            return summarizeWorkbook(file);
+        } else if (name.endsWith(".pptx")) {
+            return summarizePresentation(file);
+        }
+        return summarizeDocument(file);
+    }
+
+    private synchronized String cached(String path, BasicFileAttributes attributes) {
+        Entry entry = entries.get(path);
+        if (entry != null && entry.lastModified() == attributes.lastModifiedTime().toMillis() && entry.size() == attributes.size()) {
+            hits.increment();
+            return entry.text();
+        }
+        return null;
+    }
+
+    private String read(String path, BasicFileAttributes attributes) throws InterruptedException {
+        misses.increment();
+        String text;
+        readers.acquire();
+        try {
+            text = summarize(root.resolve(path));
+        } catch (IOException | RuntimeException e) {
+            // Kept like any other summary, so it is not read again until it changes
+            LOG.debugf("Cannot summarize %s: %s", path, e.getMessage());
+            failures.increment();
+            text = "unreadable: " + e.getMessage();
+        } finally {
+            readers.release();
+        }
+        synchronized (this) {
+            entries.put(path, new Entry(attributes.lastModifiedTime().toMillis(), attributes.size(), text));
+            while (entries.size() > maxEntries) {
+                entries.remove(entries.keySet().iterator().next());
+            }
+        }
+        return text;
+    }
+
+    private static String summarizeWorkbook(Path file) throws IOException {
+        ToolMetrics.opened(file);
+        try (ZipFile zip = new ZipFile(file.toFile())) {
+            Map<String, String> sheetParts = WorkbookMetadataIndex.readSheetParts(zip);
+            StringBuilder text = new StringBuilder().append(count(sheetParts.size(), "sheet"));
+            String separator = ": ";
+            for (Map.Entry<String, String> sheet : sheetParts.entrySet()) {
+                WorkbookMetadataIndex.SheetDimension dimension = WorkbookMetadataIndex.readDimension(zip, sheet.getValue());
+                text.append(separator).append(sheet.getKey()).append(" (");
+                if (dimension.rowCount() == 0) {
+                    text.append("empty)");
+                } else {
+                    text.append(count(dimension.rowCount(), "row")).append(" x ").append(count(dimension.columnCount(), "column")).append(')');
+                }
+                separator = ", ";
+            }
+            return text.toString();
+        }
+    }
+
+    private static String summarizePresentation(Path file) throws IOException {
+        List<String> titles = StreamingSlideReader.readSlideTitles(file);
+        StringBuilder text = new StringBuilder().append(count(titles.size(), "slide"));
+        String separator = ": ";
+        for (String title : titles) {
+            text.append(separator).append(title == null || title.isBlank() ? "(no title)" : title.strip().replaceAll("\\s+", " "));
+            separator = " | ";
+        }
+        return text.toString();
+    }
+
+    private static String summarizeDocument(Path file) throws IOException {
+        int[] paragraphs = { 0 };
+        String[] opening = { null };
+        WordTextExtractor.readParagraphs(file, (index, offset, text) -> {
+            if (paragraphs[0]++ == 0) {
+                opening[0] = text.strip().replaceAll("\\s+", " ");
+            }
+        });
+        if (opening[0] == null) {
+            return "empty";
+        }
+        String start = opening[0];
+        if (start.length() > OPENING_LENGTH) {
+            int end = Character.isHighSurrogate(start.charAt(OPENING_LENGTH - 1)) ? OPENING_LENGTH - 1 : OPENING_LENGTH;
+            start = start.substring(0, end) + "…";
+        }
+        return count(paragraphs[0], "paragraph") + ", starting \"" + start + "\"";
+    }
+
+    private static String count(int count, String noun) {
+        return count + " " + noun + (count == 1 ? "" : "s");
+    }
+}
@@ -0,0 +1,71 @@
+package dev.lescoggi;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.jboss.logging.Logger;
+
+/**
+ * Finds the Word, Excel and PowerPoint files under a directory, for the tools that work on all
+ * files under {@code office.files.path}.
+ */
+final class OfficeFiles {
+
+    private static final Logger LOG = Logger.getLogger(OfficeFiles.class);
+
+    private OfficeFiles() {
+    }
+
+    /**
+     * Returns the attributes of every .docx, .xlsx and .pptx file under {@code root} by path
+     * relative to it, in path order. Hidden files and directories, Office lock files and the
+     * {@code excluded} directory are skipped, as are files that cannot be read; a missing
+     * {@code root} has no files.
+     */
+    static Map<String, BasicFileAttributes> walk(Path root, Path excluded) throws IOException {
+        Map<String, BasicFileAttributes> files = new TreeMap<>();
+        if (!Files.isDirectory(root)) {
+            return files;
+        }
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+                if (!dir.equals(root) && (dir.getFileName().toString().startsWith(".") || dir.equals(excluded))) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                if (attributes.isRegularFile() && isOfficeFile(file.getFileName().toString())) {
+                    files.put(root.relativize(file).toString(), attributes);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                LOG.debugf("Skipping %s: %s", file, e.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return files;
+    }
+
+    static boolean isOfficeFile(String name) {
+        // Hidden files, temporary saves and Office lock files
+        if (name.startsWith(".") || name.startsWith("~$")) {
+            return false;
+        }
+        String lower = name.toLowerCase(Locale.ROOT);
+        return lower.endsWith(".docx") || lower.endsWith(".xlsx") || lower.endsWith(".pptx");
+    }
+}
@@ -0,0 +1,45 @@
+package dev.lescoggi;
+
+import java.io.IOException;
+
+import io.quarkiverse.mcp.server.TextContent;
+import io.quarkiverse.mcp.server.Tool;
+import io.quarkiverse.mcp.server.ToolArg;
+import io.quarkiverse.mcp.server.ToolResponse;
+import io.smallrye.common.annotation.RunOnVirtualThread;
+import jakarta.inject.Inject;
+
+@Metered
+public class OfficeMcpServerDocumentFeatures {
+
+    @Inject
+    DocumentCache documentCache;
+
+    @Inject
+    DocumentLockManager locks;
+
+    @RunOnVirtualThread
+    @Tool(description = "Write pending changes of an Office document to disk", name = "flush_office_document")
+    ToolResponse flushOfficeDocument(@ToolArg(description = "Path to the Office document") String filepath) {
+        try {
+            boolean flushed = documentCache.flush(filepath);
+            return ToolResponse.success(
+                new TextContent(flushed ? "Pending changes written to: " + filepath : "No pending changes for: " + filepath));
+        } catch (IOException e) {
+            return ToolResponse.error("Failed to flush Office document: " + e.getMessage());
+        }
+    }
+
+    @RunOnVirtualThread
+    @Tool(description = "Write pending changes of an Office document to disk and release it from memory", name = "close_office_document")
+    ToolResponse closeOfficeDocument(@ToolArg(description = "Path to the Office document") String filepath) {
+        try (var lock = locks.write(filepath)) {
+            documentCache.flush(filepath);
+            documentCache.invalidate(filepath);
+            return ToolResponse.success(
+                new TextContent("Office document closed: " + filepath));
+        } catch (IOException e) {
+            return ToolResponse.error("Failed to close Office document: " + e.getMessage());
+        }
+    }
+}
@@ -6,24 +6,86 @@ import io.quarkiverse.mcp.server.TextContent;
 import io.quarkiverse.mcp.server.Tool;
 import io.quarkiverse.mcp.server.ToolArg;
 import io.quarkiverse.mcp.server.ToolResponse;
+import io.smallrye.common.annotation.RunOnVirtualThread;
 
+import org.apache.poi.ss.formula.FormulaParseException;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import jakarta.inject.Inject;
+
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.BiFunction;
 
+@Admitted
+@Metered
 public class OfficeMcpServerExcelFeatures {
 
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final Set<String> EXCEL_READ_OPERATIONS = Set.of("read_cell", "row_count");
+
     @ConfigProperty(name = "office.files.path")
     String officeFilesPath;
 
+    @ConfigProperty(name = "office.excel.bulk-row-window", defaultValue = "100")
+    int bulkRowWindow;
+
+    @ConfigProperty(name = "office.excel.streaming-read-threshold", defaultValue = "10485760")
+    long streamingReadThreshold;
+
+    @ConfigProperty(name = "office.excel.range-page-size", defaultValue = "500")
+    int rangePageSize;
+
+    @Inject
+    DocumentCache documentCache;
+
+    @Inject
+    DocumentLockManager locks;
+
+    @Inject
+    DocumentSaver saver;
+
+    @Inject
+    RangeCursorStore rangeCursors;
+
+    @Inject
+    WorkbookMetadataIndex metadataIndex;
+
+    @Inject
+    SheetSnapshotCache snapshots;
+
+    @Inject
+    EngineSelector engines;
+
+    @RunOnVirtualThread
     @Tool(description = "Create a new Excel workbook", name = "create_excel_workbook")
     ToolResponse createExcelWorkbook(@ToolArg(description = "Path to create new Excel workbook") String filepath) {
-        try (Workbook workbook = new XSSFWorkbook(); FileOutputStream fileOut = new FileOutputStream(filepath)) {
+        try (var lock = locks.write(filepath); Workbook workbook = new XSSFWorkbook()) {
             workbook.createSheet("Sheet1");
-            workbook.write(fileOut);
+            saver.save(filepath, workbook::write);
+            documentCache.invalidate(filepath);
             return ToolResponse.success(
                 new TextContent("Excel workbook created at: " + filepath));
         } catch (IOException e) {
@@ -31,55 +93,379 @@ public class OfficeMcpServerExcelFeatures {
         }
     }
 
+    @RunOnVirtualThread
     @Tool(description = "Create a new sheet in an Excel workbook", name = "create_excel_sheet")
     ToolResponse createExcelSheet(@ToolArg(description = "Path to the Excel workbook") String filepath,
                                    @ToolArg(description = "Name of the new sheet") String sheetName) {
-        try (FileInputStream fileIn = new FileInputStream(filepath); Workbook workbook = new XSSFWorkbook(fileIn)) {
-            workbook.createSheet(sheetName);
-            try (FileOutputStream fileOut = new FileOutputStream(filepath)) {
-                workbook.write(fileOut);
+        try (var lock = locks.write(filepath)) {
+            engines.load(filepath);
+            XSSFWorkbook workbook = openWorkbook(filepath);
+            try {
+                workbook.createSheet(sheetName);
+                formulas(filepath, workbook).reset();
+            } catch (RuntimeException e) {
+                // POI may have applied part of the change, so the next call reloads the file
+                documentCache.invalidate(filepath);
+                throw e;
             }
+            documentCache.modified(filepath, workbook);
             return ToolResponse.success(
                 new TextContent("Sheet '" + sheetName + "' created in workbook: " + filepath));
-        } catch (IOException e) {
+        } catch (IOException | RuntimeException e) {
             return ToolResponse.error("Failed to create sheet: " + e.getMessage());
         }
     }
 
+    @RunOnVirtualThread
     @Tool(description = "Add a row to an Excel sheet", name = "add_excel_row")
     ToolResponse addExcelRow(@ToolArg(description = "Path to the Excel workbook") String filepath,
                               @ToolArg(description = "Name of the sheet") String sheetName,
                               @ToolArg(description = "Row data") String rowData) {
-        try (FileInputStream fileIn = new FileInputStream(filepath); Workbook workbook = new XSSFWorkbook(fileIn)) {
+        try (var lock = locks.write(filepath)) {
+            if (engines.write(filepath) == EngineSelector.Engine.STREAMING_WRITE) {
+                StreamingSheetAppender appender = StreamingSheetAppender.open(Path.of(filepath), sheetName);
+                if (appender == null) {
+                    return ToolResponse.error("Sheet '" + sheetName + "' does not exist.");
+                }
+                appender.row(List.of(rowData.contains(",") ? rowData.split(",") : new String[] { rowData }));
+                saver.save(filepath, appender.content());
+                return ToolResponse.success(
+                    new TextContent("Row added to sheet '" + sheetName + "' in workbook: " + filepath));
+            }
+            XSSFWorkbook workbook = openWorkbook(filepath);
             var sheet = workbook.getSheet(sheetName);
             if (sheet == null) {
                 return ToolResponse.error("Sheet '" + sheetName + "' does not exist.");
             }
-            var row = sheet.createRow(sheet.getLastRowNum() + 1);
-            if (rowData.contains(",")) {
-                String[] cellValues = rowData.split(",");
-                for (int i = 0; i < cellValues.length; i++) {
-                    row.createCell(i).setCellValue(cellValues[i]);
+            try {
+                var row = sheet.createRow(sheet.getLastRowNum() + 1);
+                if (rowData.contains(",")) {
+                    String[] cellValues = rowData.split(",");
+                    for (int i = 0; i < cellValues.length; i++) {
+                        row.createCell(i).setCellValue(cellValues[i]);
+                    }
+                } else {
+                    row.createCell(0).setCellValue(rowData);
                 }
-            } else {
-                row.createCell(0).setCellValue(rowData);
-            }
-            try (FileOutputStream fileOut = new FileOutputStream(filepath)) {
-                workbook.write(fileOut);
+                CachedFormulaEvaluator formulas = formulas(filepath, workbook);
+                row.forEach(formulas::updated);
+            } catch (RuntimeException e) {
+                // POI may have applied part of the change, so the next call reloads the file
+                documentCache.invalidate(filepath);
+                throw e;
             }
+            documentCache.modified(filepath, workbook);
             return ToolResponse.success(
                 new TextContent("Row added to sheet '" + sheetName + "' in workbook: " + filepath));
-        } catch (IOException e) {
+        } catch (IOException | RuntimeException e) {
             return ToolResponse.error("Failed to add row: " + e.getMessage());
         }
     }
 
-    @Tool(description = "Read a cell from an Excel sheet", name = "read_excel_cell")
+    @RunOnVirtualThread
+    @Tool(description = "Add many rows to an Excel sheet in one call. Numbers, booleans and ISO-8601 dates are stored as typed cells.", name = "add_excel_rows")
+    ToolResponse addExcelRows(@ToolArg(description = "Path to the Excel workbook") String filepath,
+                               @ToolArg(description = "Name of the sheet") String sheetName,
+                               @ToolArg(description = "Rows as a JSON array of arrays, or as CSV lines with optional double-quoted fields") String rows,
+                               @ToolArg(description = "Format of the rows: 'json' or 'csv'. Detected from the content when omitted", required = false) String format) {
+        boolean json = format == null || format.isBlank() ? rows.stripLeading().startsWith("[") : format.equalsIgnoreCase("json");
+        if (format != null && !format.isBlank() && !json && !format.equalsIgnoreCase("csv")) {
+            return ToolResponse.error("Unsupported row format '" + format + "', expected 'json' or 'csv'.");
+        }
+        try (var lock = locks.write(filepath)) {
+            if (engines.write(filepath) == EngineSelector.Engine.STREAMING_WRITE) {
+                return appendRows(filepath, sheetName, rows, json);
+            }
+            XSSFWorkbook workbook = openWorkbook(filepath);
+            XSSFSheet sheet = workbook.getSheet(sheetName);
+            if (sheet == null) {
+                return ToolResponse.error("Sheet '" + sheetName + "' does not exist.");
+            }
+            int firstRow = sheet.getPhysicalNumberOfRows() == 0 ? 0 : sheet.getLastRowNum() + 1;
+            // Rows are streamed through a bounded window into temporary files, the cached
+            // workbook only serves as template and does not see the new rows
+            SXSSFWorkbook streaming = new SXSSFWorkbook(workbook, bulkRowWindow);
+            // SXSSF derives the <dimension> of the sheet from the streamed rows only, which
+            // would hide the existing ones from the metadata index
+            streaming.setShouldCalculateSheetDimensions(false);
+            CellRangeAddress used = WorkbookMetadataIndex.usedRange(sheet);
+            try {
+                SXSSFSheet target = streaming.getSheet(sheetName);
+                ExcelCellWriter cells = new ExcelCellWriter(streaming);
+                int added = 0;
+                int width = 0;
+                if (json) {
+                    try (JsonRowReader reader = new JsonRowReader(rows)) {
+                        for (List<Object> values = reader.next(); values != null; values = reader.next()) {
+                            Row row = target.createRow(firstRow + added++);
+                            for (int i = 0; i < values.size(); i++) {
+                                cells.write(row.createCell(i), values.get(i));
+                            }
+                            width = Math.max(width, values.size());
+                        }
+                    }
+                } else {
+                    try (CsvReader reader = new CsvReader(new StringReader(rows))) {
+                        for (List<String> values = reader.next(); values != null; values = reader.next()) {
+                            if (values.size() == 1 && values.get(0).isEmpty()) {
+                                continue;
+                            }
+                            Row row = target.createRow(firstRow + added++);
+                            for (int i = 0; i < values.size(); i++) {
+                                cells.writeInferred(row.createCell(i), values.get(i));
+                            }
+                            width = Math.max(width, values.size());
+                        }
+                    }
+                }
+                if (added > 0) {
+                    int lastCol = Math.max(width - 1, 0);
+                    sheet.setDimensionOverride(used == null ? new CellRangeAddress(firstRow, firstRow + added - 1, 0, lastCol)
+                        : new CellRangeAddress(used.getFirstRow(), firstRow + added - 1, 0, Math.max(used.getLastColumn(), lastCol)));
+                }
+                saver.save(filepath, streaming::write);
+                // The file now holds rows the cached instance does not have, including any
+                // pending write-behind changes that were part of the template
+                documentCache.invalidate(filepath);
+                return ToolResponse.success(
+                    new TextContent(added + " rows added to sheet '" + sheetName + "' in workbook: " + filepath));
+            } catch (RuntimeException e) {
+                // The cached workbook was the template of the streamed rows, so the next call reloads the file
+                documentCache.invalidate(filepath);
+                throw e;
+            } finally {
+                sheet.setDimensionOverride(null);
+                streaming.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            return ToolResponse.error("Failed to add rows: " + e.getMessage());
+        }
+    }
+
+    @RunOnVirtualThread
+    @Tool(description = "Import a CSV file into an Excel sheet, after the rows the sheet already has. The sheet, and the workbook, are created when they do not exist. "
+        + "The file is streamed into the workbook without loading it, so files with millions of rows can be imported. Numbers, booleans and ISO-8601 dates are stored as typed cells. "
+        + "Empty lines are skipped.", name = "import_csv_to_excel_sheet")
+    ToolResponse importCsvToExcelSheet(@ToolArg(description = "Path to the Excel workbook") String filepath,
+                                       @ToolArg(description = "Name of the sheet") String sheetName,
+                                       @ToolArg(description = "Path to the UTF-8 CSV file to import") String csvPath,
+                                       @ToolArg(description = "Field delimiter, one character or 'tab' (default ',')", required = false) String delimiter,
+                                       @ToolArg(description = "Quote character of quoted fields (default '\"')", required = false) String quote,
+                                       @ToolArg(description = "Store numbers, booleans and dates as typed cells (default true); otherwise every field is stored as text", required = false) Boolean inferTypes) {
+        try {
+            char fieldDelimiter = csvCharacter(delimiter, ',', "Delimiter");
+            char quoteCharacter = csvCharacter(quote, '"', "Quote");
+            if (fieldDelimiter == quoteCharacter) {
+                return ToolResponse.error("Delimiter and quote must be different characters.");
+            }
+            Path csv = Path.of(csvPath);
+            if (!Files.isRegularFile(csv)) {
+                return ToolResponse.error("CSV file does not exist: " + csvPath);
+            }
+            boolean typed = inferTypes == null || inferTypes;
+            try (var lock = locks.write(filepath)) {
+                long start = System.nanoTime();
+                Path file = DocumentCache.key(filepath);
+                if (Files.exists(file)) {
+                    // The rows are added to the file on disk, so pending changes are written first
+                    documentCache.flush(filepath);
+                } else {
+                    try (Workbook workbook = new XSSFWorkbook()) {
+                        workbook.createSheet(sheetName);
+                        saver.save(filepath, workbook::write);
+                    }
+                }
+                engines.record(EngineSelector.Engine.STREAMING_WRITE);
+                StreamingSheetAppender appender = StreamingSheetAppender.open(file, sheetName, true);
+                DocumentSaver.Content content = appender.content(target -> {
+                    try (CsvReader reader = new CsvReader(openCsv(csv), fieldDelimiter, quoteCharacter)) {
+                        for (List<String> values = reader.next(); values != null; values = reader.next()) {
+                            if (values.size() == 1 && values.get(0).isEmpty()) {
+                                continue;
+                            }
+                            target.row(values.stream().map(typed ? ExcelCellWriter::inferred : OfficeMcpServerExcelFeatures::text).toList());
+                        }
+                    }
+                });
+                if (appender.added() > 0 || appender.createsSheet()) {
+                    saver.save(filepath, content);
+                }
+                // The cached instance, if any, does not have the new rows
+                documentCache.invalidate(filepath);
+                return ToolResponse.success(new TextContent(appender.added() + " rows imported into sheet '" + sheetName + "' of workbook " + filepath
+                    + " from " + csvPath + " " + throughput(appender.added(), System.nanoTime() - start) + "."));
+            }
+        } catch (IllegalArgumentException e) {
+            return ToolResponse.error(e.getMessage());
+        } catch (IOException e) {
+            return ToolResponse.error("Failed to import CSV: " + e.getMessage());
+        }
+    }
+
+    @RunOnVirtualThread
+    @Tool(description = "Export an Excel sheet to a CSV file. The sheet is streamed from disk without loading the workbook, so sheets with millions of rows can be exported. "
+        + "Record n of the file holds row n of the sheet, with empty records for empty rows, from column A to the last cell of the row. The file is written as UTF-8 with CRLF line endings.",
+        name = "export_excel_sheet_to_csv")
+    ToolResponse exportExcelSheetToCsv(@ToolArg(description = "Path to the Excel workbook") String filepath,
+                                       @ToolArg(description = "Name of the sheet") String sheetName,
+                                       @ToolArg(description = "Path of the CSV file to write; an existing file is replaced") String csvPath,
+                                       @ToolArg(description = "Field delimiter, one character or 'tab' (default ',')", required = false) String delimiter,
+                                       @ToolArg(description = "Quote character of quoted fields (default '\"')", required = false) String quote,
+                                       @ToolArg(description = "Write numbers and dates as they are displayed in Excel (default true); otherwise as raw values", required = false) Boolean formatNumbers) {
+        try {
+            char fieldDelimiter = csvCharacter(delimiter, ',', "Delimiter");
+            char quoteCharacter = csvCharacter(quote, '"', "Quote");
+            if (fieldDelimiter == quoteCharacter) {
+                return ToolResponse.error("Delimiter and quote must be different characters.");
+            }
+            // Sheets are always streamed from disk, so pending changes are written first
+            try (var lock = documentCache.readFlushed(filepath)) {
+                long start = System.nanoTime();
+                engines.record(EngineSelector.Engine.STREAMING_READ);
+                try (SheetRowCursor rows = SheetRowCursor.open(DocumentCache.key(filepath), sheetName, formatNumbers == null || formatNumbers)) {
+                    if (rows == null) {
+                        return ToolResponse.error("Sheet '" + sheetName + "' does not exist.");
+                    }
+                    long[] written = { 0 };
+                    saver.save(csvPath, out -> {
+                        CsvWriter csv = new CsvWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), fieldDelimiter, quoteCharacter);
+                        for (SheetRowCursor.SheetRow row = rows.next(0, SheetRowCursor.LAST_ROW, 0, SheetRowCursor.LAST_COLUMN);
+                             row != null; row = rows.next(0, SheetRowCursor.LAST_ROW, 0, SheetRowCursor.LAST_COLUMN)) {
+                            while (csv.recordNumber() < row.rowNum()) {
+                                csv.write(new String[0]);
+                            }
+                            csv.write(row.values());
+                        }
+                        csv.flush();
+                        written[0] = csv.recordNumber();
+                    });
+                    return ToolResponse.success(new TextContent(written[0] + " rows of sheet '" + sheetName + "' of workbook " + filepath
+                        + " exported to " + csvPath + " " + throughput(written[0], System.nanoTime() - start) + "."));
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            return ToolResponse.error(e.getMessage());
+        } catch (IOException e) {
+            return ToolResponse.error("Failed to export CSV: " + e.getMessage());
+        }
+    }
+
+    @RunOnVirtualThread
+    @Tool(description = "Write one cell of an Excel sheet. Values starting with '=' are stored as formulas, e.g. =SUM(B2:B10); numbers, booleans and ISO-8601 dates are stored as typed cells. "
+        + "Returns the value of the cell after the write, computed for formulas. Formulas that depend on the cell are recomputed when they are read next.", name = "write_excel_cell")
+    ToolResponse writeExcelCell(@ToolArg(description = "Path to the Excel workbook") String filepath,
+                                @ToolArg(description = "Name of the sheet") String sheetName,
+                                @ToolArg(description = "Row number (0-based)") int rowNum,
+                                @ToolArg(description = "Column number (0-based)") int colNum,
+                                @ToolArg(description = "Value or formula; an empty value clears the cell") String value) {
+        if (rowNum < 0 || rowNum > SheetRowCursor.LAST_ROW || colNum < 0 || colNum > SheetRowCursor.LAST_COLUMN) {
+            return ToolResponse.error("Cell (" + rowNum + ", " + colNum + ") is outside of the sheet.");
+        }
+        try (var lock = locks.write(filepath)) {
+            engines.load(filepath);
+            XSSFWorkbook workbook = openWorkbook(filepath);
+            XSSFSheet sheet = workbook.getSheet(sheetName);
+            if (sheet == null) {
+                return ToolResponse.error("Sheet '" + sheetName + "' does not exist.");
+            }
+            CachedFormulaEvaluator formulas = formulas(filepath, workbook);
+            Cell cell;
+            try {
+                // Existing cells are reused, the evaluator tracks cells by instance
+                boolean newRow = sheet.getRow(rowNum) == null;
+                Row row = newRow ? sheet.createRow(rowNum) : sheet.getRow(rowNum);
+                boolean newCell = row.getCell(colNum) == null;
+                cell = newCell ? row.createCell(colNum) : row.getCell(colNum);
+                if (value.startsWith("=") && value.length() > 1) {
+                    try {
+                        cell.setCellFormula(value.substring(1));
+                    } catch (FormulaParseException e) {
+                        if (newRow) {
+                            sheet.removeRow(row);
+                        } else if (newCell) {
+                            row.removeCell(cell);
+                        }
+                        return ToolResponse.error("Invalid formula '" + value + "': " + e.getMessage());
+                    }
+                } else {
+                    if (cell.getCellType() == CellType.FORMULA) {
+                        cell.removeFormula();
+                    }
+                    new ExcelCellWriter(workbook).writeInferred(cell, value);
+                }
+                formulas.updated(cell);
+            } catch (RuntimeException e) {
+                // POI may have applied part of the change, so the next call reloads the file
+                documentCache.invalidate(filepath);
+                throw e;
+            }
+            documentCache.modified(filepath, workbook);
+            return ToolResponse.success(new TextContent(formulas.format(cell)));
+        } catch (IOException | RuntimeException e) {
+            return ToolResponse.error("Failed to write cell: " + e.getMessage());
+        }
+    }
+
+    @RunOnVirtualThread
+    @Tool(description = "Recompute the formulas of a sheet, or of all sheets, and store the results in the workbook, so that range reads, queries and other applications see current values. "
+        + "Formulas whose inputs did not change since they were last computed are not computed again.", name = "recalculate_excel_sheet")
+    ToolResponse recalculateExcelSheet(@ToolArg(description = "Path to the Excel workbook") String filepath,
+                                       @ToolArg(description = "Name of the sheet (default: all sheets)", required = false) String sheetName) {
+        try (var lock = locks.write(filepath)) {
+            engines.load(filepath);
+            XSSFWorkbook workbook = openWorkbook(filepath);
+            List<XSSFSheet> sheets = new ArrayList<>();
+            if (sheetName == null || sheetName.isBlank()) {
+                workbook.forEach(sheet -> sheets.add((XSSFSheet) sheet));
+            } else if (workbook.getSheet(sheetName) != null) {
+                sheets.add(workbook.getSheet(sheetName));
+            } else {
+                return ToolResponse.error("Sheet '" + sheetName + "' does not exist.");
+            }
+            CachedFormulaEvaluator.Recalculation result;
+            try {
+                result = formulas(filepath, workbook).recalculate(sheets);
+            } catch (RuntimeException e) {
+                // POI may have applied part of the change, so the next call reloads the file
+                documentCache.invalidate(filepath);
+                throw e;
+            }
+            if (result.formulas() > 0) {
+                documentCache.modified(filepath, workbook);
+            }
+            List<TextContent> content = new ArrayList<>();
+            content.add(new TextContent(String.format(Locale.ROOT, "%d formulas recalculated in %.1f ms%s.", result.formulas(),
+                result.nanos() / 1e6, result.failed() > 0 ? ", " + result.failed() + " kept their stored value" : "")));
+            result.problems().forEach(problem -> content.add(new TextContent(problem)));
+            return ToolResponse.success(content);
+        } catch (IOException | RuntimeException e) {
+            return ToolResponse.error("Failed to recalculate: " + e.getMessage());
+        }
+    }
+
+    @RunOnVirtualThread
+    @Tool(description = "Read a cell from an Excel sheet. Formula cells return their computed value.", name = "read_excel_cell")
     ToolResponse readExcelCell(@ToolArg(description = "Path to the Excel workbook") String filepath,
                                 @ToolArg(description = "Name of the sheet") String sheetName,
                                 @ToolArg(description = "Row number") int rowNum,
                                 @ToolArg(description = "Column number") int colNum) {
-        try (Workbook workbook = new XSSFWorkbook(filepath)) {
+        try (var lock = locks.read(filepath)) {
+            // Large workbooks that are not open yet are read with the streaming reader instead of
+            // being parsed into the document cache; open workbooks may have unflushed changes
+            if (engines.read(filepath, streamingReadThreshold) == EngineSelector.Engine.STREAMING_READ) {
+                var lookup = StreamingSheetReader.readCell(Path.of(filepath), sheetName, rowNum, colNum);
+                if (lookup == null) {
+                    return ToolResponse.error("Sheet '" + sheetName + "' does not exist.");
+                }
+                if (!lookup.rowExists()) {
+                    return ToolResponse.error("Row " + rowNum + " does not exist in sheet '" + sheetName + "'.");
+                }
+                if (lookup.value() == null) {
+                    return ToolResponse.error("Cell (" + rowNum + ", " + colNum + ") does not exist in sheet '" + sheetName + "'.");
+                }
+                return ToolResponse.success(new TextContent(lookup.value()));
+            }
+            XSSFWorkbook workbook = openWorkbook(filepath);
             var sheet = workbook.getSheet(sheetName);
             if (sheet == null) {
                 return ToolResponse.error("Sheet '" + sheetName + "' does not exist.");
@@ -92,16 +478,102 @@ public class OfficeMcpServerExcelFeatures {
             if (cell == null) {
                 return ToolResponse.error("Cell (" + rowNum + ", " + colNum + ") does not exist in sheet '" + sheetName + "'.");
             }
-            return ToolResponse.success(new TextContent(cell.toString()));
+            return ToolResponse.success(new TextContent(formulas(filepath, workbook).format(cell)));
         } catch (IOException e) {
             return ToolResponse.error("Failed to read cell: " + e.getMessage());
         }
     }
 
+    @RunOnVirtualThread
+    @Tool(description = "Read a rectangular range of an Excel sheet one page at a time, as CSV or JSON. Rows are numbered as in Excel. When more rows remain the response contains a cursor to pass back for the next page.", name = "read_excel_range")
+    ToolResponse readExcelRange(@ToolArg(description = "Path to the Excel workbook") String filepath,
+                                 @ToolArg(description = "Name of the sheet") String sheetName,
+                                 @ToolArg(description = "Range in A1 notation, e.g. 'A1:D100', 'B:D' or 'A2:F' for all rows from row 2. The whole sheet when omitted", required = false) String range,
+                                 @ToolArg(description = "Maximum number of rows per page (default 500)", required = false) Integer pageSize,
+                                 @ToolArg(description = "Output format: 'csv' (default) or 'json'", required = false) String format,
+                                 @ToolArg(description = "Cursor returned with the previous page; the range is taken from the cursor when set", required = false) String cursor) {
+        boolean json = format != null && format.equalsIgnoreCase("json");
+        if (format != null && !format.isBlank() && !json && !format.equalsIgnoreCase("csv")) {
+            return ToolResponse.error("Unsupported output format '" + format + "', expected 'csv' or 'json'.");
+        }
+        int limit = pageSize != null ? pageSize : rangePageSize;
+        if (limit < 1) {
+            return ToolResponse.error("Page size must be at least 1.");
+        }
+        RangeCursorStore.RangeCursor rangeCursor = null;
+        boolean stored = false;
+        try {
+            // Ranges are always streamed from disk, so pending changes are written before the first
+            // page; later pages fail if the file changed since
+            boolean first = cursor == null || cursor.isBlank();
+            try (var lock = first ? documentCache.readFlushed(filepath) : locks.read(filepath)) {
+                engines.record(EngineSelector.Engine.STREAMING_READ);
+                if (!first) {
+                    rangeCursor = rangeCursors.take(cursor);
+                    if (rangeCursor == null) {
+                        return ToolResponse.error("Cursor '" + cursor + "' is unknown or has expired, read the range again without a cursor.");
+                    }
+                    if (!rangeCursor.file.equals(DocumentCache.key(filepath)) || !rangeCursor.sheetName.equals(sheetName)) {
+                        return ToolResponse.error("Cursor '" + cursor + "' belongs to a different workbook or sheet.");
+                    }
+                    if (!rangeCursor.rows.isCurrent(rangeCursor.file)) {
+                        return ToolResponse.error("Workbook changed since cursor '" + cursor + "' was created, read the range again without a cursor.");
+                    }
+                } else {
+                    SheetRange bounds;
+                    try {
+                        bounds = SheetRange.parse(range);
+                    } catch (IllegalArgumentException e) {
+                        return ToolResponse.error(e.getMessage());
+                    }
+                    Path file = DocumentCache.key(filepath);
+                    SheetRowCursor rows = SheetRowCursor.open(file, sheetName);
+                    if (rows == null) {
+                        return ToolResponse.error("Sheet '" + sheetName + "' does not exist.");
+                    }
+                    rangeCursor = new RangeCursorStore.RangeCursor(file, sheetName, bounds, rows);
+                }
+
+                SheetRange bounds = rangeCursor.range;
+                List<SheetRowCursor.SheetRow> page = new ArrayList<>();
+                SheetRowCursor.SheetRow row = rangeCursor.pending != null ? rangeCursor.pending
+                    : rangeCursor.rows.next(bounds.firstRow(), bounds.lastRow(), bounds.firstCol(), bounds.lastCol());
+                while (row != null && page.size() < limit) {
+                    page.add(row);
+                    row = rangeCursor.rows.next(bounds.firstRow(), bounds.lastRow(), bounds.firstCol(), bounds.lastCol());
+                }
+                String next = null;
+                if (row != null) {
+                    rangeCursor.pending = row;
+                    next = rangeCursors.put(rangeCursor);
+                    stored = true;
+                }
+
+                int width = bounds.hasLastColumn() ? bounds.lastCol() - bounds.firstCol() + 1
+                    : page.stream().mapToInt(r -> r.values().length).max().orElse(0);
+                if (json) {
+                    return ToolResponse.success(new TextContent(rangeAsJson(bounds.firstCol(), width, page, next)));
+                }
+                String status = next != null
+                    ? page.size() + " rows read, more rows available. Pass cursor '" + next + "' to read the next page."
+                    : page.size() + " rows read, end of range.";
+                return ToolResponse.success(new TextContent(rangeAsCsv(bounds.firstCol(), width, page)), new TextContent(status));
+            }
+        } catch (IOException e) {
+            return ToolResponse.error("Failed to read range: " + e.getMessage());
+        } finally {
+            if (rangeCursor != null && !stored) {
+                RangeCursorStore.close(rangeCursor);
+            }
+        }
+    }
+
+    @RunOnVirtualThread
     @Tool(description = "Close an Excel workbook", name = "close_excel_workbook")
     ToolResponse closeExcelWorkbook(@ToolArg(description = "Path to the Excel workbook") String filepath) {
-        try (Workbook workbook = new XSSFWorkbook(filepath)) {
-            workbook.close();
+        try (var lock = locks.write(filepath)) {
+            documentCache.flush(filepath);
+            documentCache.invalidate(filepath);
             return ToolResponse.success(
                 new TextContent("Excel workbook closed: " + filepath));
         } catch (IOException e) {
@@ -109,9 +581,17 @@ public class OfficeMcpServerExcelFeatures {
         }
     }
 
+    @RunOnVirtualThread
     @Tool(description = "Get the number of sheets in an Excel workbook", name = "get_excel_sheet_count")
     ToolResponse getExcelSheetCount(@ToolArg(description = "Path to the Excel workbook") String filepath) {
-        try (Workbook workbook = new XSSFWorkbook(filepath)) {
+        try (var lock = locks.read(filepath)) {
+            if (!documentCache.contains(filepath)) {
+                engines.record(EngineSelector.Engine.STREAMING_READ);
+                int sheetCount = metadataIndex.sheetCount(filepath);
+                return ToolResponse.success("Workbook has " + sheetCount + " sheets.");
+            }
+            engines.record(EngineSelector.Engine.CACHED);
+            XSSFWorkbook workbook = openWorkbook(filepath);
             int sheetCount = workbook.getNumberOfSheets();
             return ToolResponse.success("Workbook has " + sheetCount + " sheets.");
         } catch (IOException e) {
@@ -119,34 +599,373 @@ public class OfficeMcpServerExcelFeatures {
         }
     }
 
+    @RunOnVirtualThread
     @Tool(description = "Get the number of rows in a sheet", name = "get_excel_row_count")
     ToolResponse getExcelRowCount(@ToolArg(description = "Path to the Excel workbook") String filepath,
                                     @ToolArg(description = "Name of the sheet") String sheetName) {
-        try (Workbook workbook = new XSSFWorkbook(filepath)) {
-            var sheet = workbook.getSheet(sheetName);
-            if (sheet == null) {
+        try (var lock = locks.read(filepath)) {
+            var dimension = sheetDimension(filepath, sheetName);
+            if (dimension == null) {
                 return ToolResponse.error("Sheet '" + sheetName + "' does not exist.");
             }
-            int rowCount = sheet.getPhysicalNumberOfRows();
-            return ToolResponse.success("Sheet has " + rowCount + " rows.");
+            return ToolResponse.success("Sheet has " + dimension.rowCount() + " rows.");
         } catch (IOException e) {
             return ToolResponse.error("Failed to get row count: " + e.getMessage());
         }
     }
 
+    @RunOnVirtualThread
     @Tool(description = "Get the number of columns in a sheet", name = "get_excel_column_count")
     ToolResponse getExcelColumnCount(@ToolArg(description = "Path to the Excel workbook") String filepath,
                                        @ToolArg(description = "Name of the sheet") String sheetName) {
-        try (Workbook workbook = new XSSFWorkbook(filepath)) {
-            var sheet = workbook.getSheet(sheetName);
-            if (sheet == null) {
+        try (var lock = locks.read(filepath)) {
+            var dimension = sheetDimension(filepath, sheetName);
+            if (dimension == null) {
                 return ToolResponse.error("Sheet '" + sheetName + "' does not exist.");
             }
-            int columnCount = sheet.getRow(0).getPhysicalNumberOfCells();
-            return ToolResponse.success("Sheet has " + columnCount + " columns.");
+            return ToolResponse.success("Sheet has " + dimension.columnCount() + " columns.");
         } catch (IOException e) {
             return ToolResponse.error("Failed to get column count: " + e.getMessage());
         }
     }
 
+    @RunOnVirtualThread
+    @Tool(description = "Compute aggregates over the rows of an Excel sheet, optionally filtered and grouped, e.g. the sum of Amount per Region for the rows where Year = 2024. "
+        + "Columns are named by their header text (in double quotes when it contains spaces) or by their letter. "
+        + "The filter joins conditions with 'and'; the operators are =, !=, <, <=, >, >=, contains and in (...), text values go in single quotes and = '' matches blank cells. "
+        + "The aggregates are count(*), count(column), sum(column), avg(column), min(column) and max(column). "
+        + "The sheet is read into an in-memory column store once and reused until the file changes, so follow-up queries on the same sheet are fast.", name = "query_excel_sheet")
+    ToolResponse queryExcelSheet(@ToolArg(description = "Path to the Excel workbook") String filepath,
+                                 @ToolArg(description = "Name of the sheet") String sheetName,
+                                 @ToolArg(description = "Conditions the rows must meet, e.g. Region = 'EU' and Amount > 100 (default: all rows)", required = false) String filter,
+                                 @ToolArg(description = "Comma separated columns to group by, e.g. Region, Product (default: no grouping)", required = false) String groupBy,
+                                 @ToolArg(description = "Comma separated aggregates, e.g. sum(Amount), count(*) (default: count(*))", required = false) String aggregates,
+                                 @ToolArg(description = "Whether the first row holds the column names (default true)", required = false) Boolean header,
+                                 @ToolArg(description = "Maximum number of groups to return (default 500)", required = false) Integer limit) {
+        return querySheet(filepath, sheetName, header, limit, (snapshot, max) -> SheetQuery.parse(snapshot, filter, groupBy, aggregates).aggregate(max));
+    }
+
+    @RunOnVirtualThread
+    @Tool(description = "Return the rows of an Excel sheet that match a filter as CSV, with their row numbers. "
+        + "Uses the same filter syntax and in-memory column store as query_excel_sheet.", name = "filter_excel_rows")
+    ToolResponse filterExcelRows(@ToolArg(description = "Path to the Excel workbook") String filepath,
+                                 @ToolArg(description = "Name of the sheet") String sheetName,
+                                 @ToolArg(description = "Conditions the rows must meet, e.g. Region = 'EU' and Amount > 100 (default: all rows)", required = false) String filter,
+                                 @ToolArg(description = "Comma separated columns to return (default: all columns)", required = false) String columns,
+                                 @ToolArg(description = "Whether the first row holds the column names (default true)", required = false) Boolean header,
+                                 @ToolArg(description = "Maximum number of rows to return (default 500)", required = false) Integer limit) {
+        return querySheet(filepath, sheetName, header, limit,
+            (snapshot, max) -> SheetQuery.parse(snapshot, filter, null, null).filter(SheetQuery.columns(snapshot, columns), max));
+    }
+
+    @RunOnVirtualThread
+    @Tool(description = "Apply a list of operations to one Excel workbook in a single call: the workbook is loaded once, the operations run in order and the workbook is saved once at the end. If any operation fails, none of the changes are saved. "
+        + "Operations are JSON objects with an 'op' field: "
+        + "{\"op\": \"create_sheet\", \"sheet\": name}, "
+        + "{\"op\": \"add_row\", \"sheet\": name, \"values\": [...]}, "
+        + "{\"op\": \"add_rows\", \"sheet\": name, \"rows\": [[...], ...]}, "
+        + "{\"op\": \"read_cell\", \"sheet\": name, \"row\": n, \"column\": n} (0-based, sees earlier operations), "
+        + "{\"op\": \"row_count\", \"sheet\": name}. Numbers, booleans and ISO-8601 dates are stored as typed cells.", name = "batch_excel_operations")
+    ToolResponse batchExcelOperations(@ToolArg(description = "Path to the Excel workbook") String filepath,
+                                       @ToolArg(description = "Operations as a JSON array of objects") String operations) {
+        try {
+            List<BatchOperation> batch = BatchOperation.parse(operations);
+            try (var lock = locks.write(filepath)) {
+                // Start from the file on disk, so that a failed batch can be rolled back by reloading it
+                documentCache.flush(filepath);
+                engines.load(filepath);
+                XSSFWorkbook workbook = openWorkbook(filepath);
+                ExcelCellWriter cells = new ExcelCellWriter(workbook);
+                CachedFormulaEvaluator formulas = formulas(filepath, workbook);
+                List<String> results;
+                try {
+                    results = BatchOperation.applyAll(batch, operation -> applyExcelOperation(workbook, cells, formulas, operation));
+                } catch (BatchOperation.BatchException e) {
+                    documentCache.invalidate(filepath);
+                    return ToolResponse.error("Batch failed. " + e.getMessage());
+                }
+                boolean modified = batch.stream().anyMatch(operation -> !EXCEL_READ_OPERATIONS.contains(operation.op()));
+                if (modified) {
+                    saveBatch(filepath, workbook);
+                }
+                List<TextContent> content = new ArrayList<>();
+                for (String result : results) {
+                    content.add(new TextContent(result));
+                }
+                content.add(new TextContent(batch.size() + " operations applied to workbook: " + filepath
+                    + (modified ? "" : " (nothing to save)")));
+                return ToolResponse.success(content);
+            }
+        } catch (IllegalArgumentException | IOException e) {
+            return ToolResponse.error("Failed to apply operations: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Appends rows with the streaming writer, which leaves all parts of the workbook except the
+     * sheet as they are. Only used for workbooks that are not cached, so there are no pending
+     * changes to keep. The caller holds the write lock of the file.
+     */
+    private ToolResponse appendRows(String filepath, String sheetName, String rows, boolean json) throws IOException {
+        StreamingSheetAppender appender = StreamingSheetAppender.open(Path.of(filepath), sheetName);
+        if (appender == null) {
+            return ToolResponse.error("Sheet '" + sheetName + "' does not exist.");
+        }
+        if (json) {
+            try (JsonRowReader reader = new JsonRowReader(rows)) {
+                for (List<Object> values = reader.next(); values != null; values = reader.next()) {
+                    appender.row(values.stream().map(ExcelCellWriter::typed).toList());
+                }
+            }
+        } else {
+            try (CsvReader reader = new CsvReader(new StringReader(rows))) {
+                for (List<String> values = reader.next(); values != null; values = reader.next()) {
+                    if (values.size() == 1 && values.get(0).isEmpty()) {
+                        continue;
+                    }
+                    appender.row(values.stream().map(ExcelCellWriter::inferred).toList());
+                }
+            }
+        }
+        if (appender.added() > 0) {
+            saver.save(filepath, appender.content());
+        }
+        return ToolResponse.success(
+            new TextContent(appender.added() + " rows added to sheet '" + sheetName + "' in workbook: " + filepath));
+    }
+
+    // A delimiter or quote argument: a single character, or 'tab'
+    private static char csvCharacter(String value, char defaultValue, String name) {
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        if (value.equalsIgnoreCase("tab") || value.equals("\\t")) {
+            return '\t';
+        }
+        if (value.length() != 1 || value.charAt(0) == '\n' || value.charAt(0) == '\r') {
+            throw new IllegalArgumentException(name + " must be a single character or 'tab', not '" + value + "'.");
+        }
+        return value.charAt(0);
+    }
+
+    // UTF-8, without the byte order mark some editors write at the start
+    private static Reader openCsv(Path csv) throws IOException {
+        Reader reader = Files.newBufferedReader(csv, StandardCharsets.UTF_8);
+        reader.mark(1);
+        if (reader.read() != '\uFEFF') {
+            reader.reset();
+        }
+        return reader;
+    }
+
+    private static Object text(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    private static String throughput(long rows, long nanos) {
+        double seconds = nanos / 1e9;
+        return String.format(Locale.ROOT, "in %.1f s (%.0f rows/s)", seconds, seconds > 0 ? rows / seconds : 0);
+    }
+
+    // Saves the result of a batch, discarding it from the cache as well when the save fails
+    private void saveBatch(String filepath, XSSFWorkbook workbook) throws IOException {
+        try {
+            documentCache.modified(filepath, workbook);
+        } catch (IOException e) {
+            documentCache.invalidate(filepath);
+            throw e;
+        }
+    }
+
+    private static String applyExcelOperation(XSSFWorkbook workbook, ExcelCellWriter cells, CachedFormulaEvaluator formulas,
+                                              BatchOperation operation) {
+        switch (operation.op()) {
+            case "create_sheet" -> {
+                String sheetName = operation.text("sheet");
+                workbook.createSheet(sheetName);
+                formulas.reset();
+                return "Sheet '" + sheetName + "' created.";
+            }
+            case "add_row" -> {
+                XSSFSheet sheet = batchSheet(workbook, operation);
+                appendRow(sheet, cells, formulas, operation.values("values"));
+                return "Row added to sheet '" + sheet.getSheetName() + "'.";
+            }
+            case "add_rows" -> {
+                XSSFSheet sheet = batchSheet(workbook, operation);
+                List<List<Object>> rows = operation.rows("rows");
+                for (List<Object> values : rows) {
+                    appendRow(sheet, cells, formulas, values);
+                }
+                return rows.size() + " rows added to sheet '" + sheet.getSheetName() + "'.";
+            }
+            case "read_cell" -> {
+                XSSFSheet sheet = batchSheet(workbook, operation);
+                int rowNum = operation.integer("row");
+                int colNum = operation.integer("column");
+                var row = sheet.getRow(rowNum);
+                if (row == null) {
+                    throw new IllegalArgumentException("Row " + rowNum + " does not exist in sheet '" + sheet.getSheetName() + "'.");
+                }
+                var cell = row.getCell(colNum);
+                if (cell == null) {
+                    throw new IllegalArgumentException("Cell (" + rowNum + ", " + colNum + ") does not exist in sheet '" + sheet.getSheetName() + "'.");
+                }
+                return formulas.format(cell);
+            }
+            case "row_count" -> {
+                XSSFSheet sheet = batchSheet(workbook, operation);
+                return "Sheet has " + WorkbookMetadataIndex.SheetDimension.of(sheet).rowCount() + " rows.";
+            }
+            default -> throw new IllegalArgumentException("Unknown operation '" + operation.op() + "'.");
+        }
+    }
+
+    private static XSSFSheet batchSheet(XSSFWorkbook workbook, BatchOperation operation) {
+        String sheetName = operation.text("sheet");
+        XSSFSheet sheet = workbook.getSheet(sheetName);
+        if (sheet == null) {
+            throw new IllegalArgumentException("Sheet '" + sheetName + "' does not exist.");
+        }
+        return sheet;
+    }
+
+    private static void appendRow(XSSFSheet sheet, ExcelCellWriter cells, CachedFormulaEvaluator formulas, List<Object> values) {
+        Row row = sheet.createRow(sheet.getPhysicalNumberOfRows() == 0 ? 0 : sheet.getLastRowNum() + 1);
+        for (int i = 0; i < values.size(); i++) {
+            cells.write(row.createCell(i), values.get(i));
+            formulas.updated(row.getCell(i));
+        }
+    }
+
+    /**
+     * Runs a query against the cached snapshot of a sheet. Snapshots are read from disk, so pending
+     * changes of the workbook are written first.
+     */
+    private ToolResponse querySheet(String filepath, String sheetName, Boolean header, Integer limit,
+                                    BiFunction<SheetSnapshot, Integer, SheetQuery.Table> query) {
+        int max = limit != null ? limit : rangePageSize;
+        if (max < 1) {
+            return ToolResponse.error("Limit must be at least 1.");
+        }
+        try {
+            try (var lock = documentCache.readFlushed(filepath)) {
+                engines.record(EngineSelector.Engine.STREAMING_READ);
+                SheetSnapshotCache.Lookup lookup = snapshots.get(filepath, sheetName, header == null || header);
+                if (lookup == null) {
+                    return ToolResponse.error("Sheet '" + sheetName + "' does not exist.");
+                }
+                long start = System.nanoTime();
+                SheetQuery.Table table = query.apply(lookup.snapshot(), max);
+                long queryNanos = System.nanoTime() - start;
+                String source = lookup.loadNanos() > 0
+                    ? String.format(Locale.ROOT, "sheet read in %.1f ms", lookup.loadNanos() / 1e6)
+                    : "cached sheet";
+                String status = String.format(Locale.ROOT, "%d of %d rows matched, %d rows returned. Query took %.1f ms (%s).",
+                    table.matched(), lookup.snapshot().rowCount(), table.rows().size(), queryNanos / 1e6, source);
+                return ToolResponse.success(new TextContent(tableAsCsv(table)), new TextContent(status));
+            }
+        } catch (IllegalArgumentException e) {
+            return ToolResponse.error(e.getMessage());
+        } catch (IOException e) {
+            return ToolResponse.error("Failed to query sheet: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Rows and columns spanned by the used range of a sheet, or {@code null} when the sheet does
+     * not exist. Workbooks on disk are answered by the metadata index without being parsed; open
+     * workbooks may have unflushed changes, so they are answered from memory. The caller holds the
+     * read lock of the file.
+     */
+    private WorkbookMetadataIndex.SheetDimension sheetDimension(String filepath, String sheetName) throws IOException {
+        if (!documentCache.contains(filepath)) {
+            engines.record(EngineSelector.Engine.STREAMING_READ);
+            return metadataIndex.dimension(filepath, sheetName);
+        }
+        engines.record(EngineSelector.Engine.CACHED);
+        XSSFWorkbook workbook = openWorkbook(filepath);
+        var sheet = workbook.getSheet(sheetName);
+        return sheet == null ? null : WorkbookMetadataIndex.SheetDimension.of(sheet);
+    }
+
+    private static String rangeAsCsv(int firstCol, int width, List<SheetRowCursor.SheetRow> rows) {
+        StringBuilder csv = new StringBuilder("row");
+        for (int i = 0; i < width; i++) {
+            csv.append(',').append(CellReference.convertNumToColString(firstCol + i));
+        }
+        csv.append('\n');
+        for (SheetRowCursor.SheetRow row : rows) {
+            csv.append(row.rowNum() + 1);
+            for (int i = 0; i < width; i++) {
+                csv.append(',');
+                appendCsvValue(csv, i < row.values().length ? row.values()[i] : null);
+            }
+            csv.append('\n');
+        }
+        return csv.toString();
+    }
+
+    private static String tableAsCsv(SheetQuery.Table table) {
+        StringBuilder csv = new StringBuilder();
+        appendCsvRow(csv, table.header());
+        table.rows().forEach(row -> appendCsvRow(csv, row));
+        return csv.toString();
+    }
+
+    private static void appendCsvRow(StringBuilder csv, List<String> values) {
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                csv.append(',');
+            }
+            appendCsvValue(csv, values.get(i));
+        }
+        csv.append('\n');
+    }
+
+    private static void appendCsvValue(StringBuilder csv, String value) {
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+            csv.append('"').append(value.replace("\"", "\"\"")).append('"');
+        } else {
+            csv.append(value);
+        }
+    }
+
+    private static String rangeAsJson(int firstCol, int width, List<SheetRowCursor.SheetRow> rows, String cursor) throws IOException {
+        StringWriter out = new StringWriter();
+        try (JsonGenerator json = JSON.createGenerator(out)) {
+            json.writeStartObject();
+            json.writeArrayFieldStart("columns");
+            json.writeString("row");
+            for (int i = 0; i < width; i++) {
+                json.writeString(CellReference.convertNumToColString(firstCol + i));
+            }
+            json.writeEndArray();
+            json.writeArrayFieldStart("rows");
+            for (SheetRowCursor.SheetRow row : rows) {
+                json.writeStartArray();
+                json.writeNumber(row.rowNum() + 1);
+                for (int i = 0; i < width; i++) {
+                    json.writeString(i < row.values().length ? row.values()[i] : null);
+                }
+                json.writeEndArray();
+            }
+            json.writeEndArray();
+            json.writeStringField("cursor", cursor);
+            json.writeEndObject();
+        }
+        return out.toString();
+    }
+
+    private XSSFWorkbook openWorkbook(String filepath) throws IOException {
+        return documentCache.open(filepath, XSSFWorkbook.class, XSSFWorkbook::new);
+    }
+
+    private CachedFormulaEvaluator formulas(String filepath, XSSFWorkbook workbook) {
+        return CachedFormulaEvaluator.of(documentCache, filepath, workbook);
+    }
+
 }
\ No newline at end of file
@@ -1,10 +1,10 @@
 package dev.lescoggi;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.poi.sl.usermodel.Placeholder;
 import org.apache.poi.xslf.usermodel.XMLSlideShow;
 import org.apache.poi.xslf.usermodel.XSLFShape;
 import org.apache.poi.xslf.usermodel.XSLFSlide;
@@ -15,16 +15,34 @@ import io.quarkiverse.mcp.server.TextContent;
 import io.quarkiverse.mcp.server.Tool;
 import io.quarkiverse.mcp.server.ToolArg;
 import io.quarkiverse.mcp.server.ToolResponse;
+import io.smallrye.common.annotation.RunOnVirtualThread;
+import jakarta.inject.Inject;
 
+@Admitted
+@Metered
 public class OfficeMcpServerPowerPointFeatures {
 
     @ConfigProperty(name = "office.files.path")
     String officeFilesPath;
 
+    @Inject
+    DocumentCache documentCache;
+
+    @Inject
+    DocumentLockManager locks;
+
+    @Inject
+    DocumentSaver saver;
+
+    @Inject
+    EngineSelector engines;
+
+    @RunOnVirtualThread
     @Tool(description = "Create a new PowerPoint presentation", name = "create_powerpoint_presentation")
     ToolResponse createPowerPointPresentation(@ToolArg(description = "Path to create new PowerPoint presentation") String filepath) {
-        try (XMLSlideShow presentation = new XMLSlideShow(); FileOutputStream fileOut = new FileOutputStream(filepath)) {
-            presentation.write(fileOut);
+        try (var lock = locks.write(filepath); XMLSlideShow presentation = new XMLSlideShow()) {
+            saver.save(filepath, presentation::write);
+            documentCache.invalidate(filepath);
             return ToolResponse.success(
                 new TextContent("PowerPoint presentation created at: " + filepath));
         } catch (Exception e) {
@@ -32,55 +50,79 @@ public class OfficeMcpServerPowerPointFeatures {
         }
     }
 
+    @RunOnVirtualThread
     @Tool(description = "Add a slide to a PowerPoint presentation", name = "add_slide_to_powerpoint")
     ToolResponse addSlideToPowerPoint(@ToolArg(description = "Path to the PowerPoint presentation") String filepath) {
-        try (FileInputStream fileIn = new FileInputStream(filepath); XMLSlideShow presentation = new XMLSlideShow(fileIn)) {
-            XSLFSlide slide = presentation.createSlide();
-            
-            try (FileOutputStream fileOut = new FileOutputStream(filepath)) {
-                presentation.write(fileOut);
+        try (var lock = locks.write(filepath)) {
+            engines.load(filepath);
+            XMLSlideShow presentation = openPresentation(filepath);
+            try {
+                presentation.createSlide();
+            } catch (RuntimeException e) {
+                // POI may have applied part of the change, so the next call reloads the file
+                documentCache.invalidate(filepath);
+                throw e;
             }
+            documentCache.modified(filepath, presentation);
             
             return ToolResponse.success(
                 new TextContent("Slide added to PowerPoint presentation at: " + filepath));
-        } catch (IOException e) {
+        } catch (IOException | RuntimeException e) {
             return ToolResponse.error("Failed to add slide to PowerPoint presentation: " + e.getMessage());
         }
     }
 
+    @RunOnVirtualThread
     @Tool(description = "Add text to a PowerPoint slide", name = "add_text_to_powerpoint_slide")
     ToolResponse addTextToPowerPointSlide(
             @ToolArg(description = "Path to the PowerPoint presentation") String filepath,
             @ToolArg(description = "Slide index (0-based)") int slideIndex, 
             @ToolArg(description = "Text to add") String text) {
-        try (FileInputStream fileIn = new FileInputStream(filepath); XMLSlideShow presentation = new XMLSlideShow(fileIn)) {
+        try (var lock = locks.write(filepath)) {
+            engines.load(filepath);
+            XMLSlideShow presentation = openPresentation(filepath);
             if (slideIndex >= presentation.getSlides().size()) {
                 return ToolResponse.error("Slide index " + slideIndex + " is out of bounds. The presentation has " + 
                                          presentation.getSlides().size() + " slides.");
             }
             
-            XSLFSlide slide = presentation.getSlides().get(slideIndex);
-            XSLFTextShape textShape = slide.createTextBox();
-            textShape.setText(text);
-            
-            // Set default position for text box
-            textShape.setAnchor(new java.awt.Rectangle(50, 50, 400, 200));
+            try {
+                XSLFSlide slide = presentation.getSlides().get(slideIndex);
+                XSLFTextShape textShape = slide.createTextBox();
+                textShape.setText(text);
             
-            try (FileOutputStream fileOut = new FileOutputStream(filepath)) {
-                presentation.write(fileOut);
+                // Set default position for text box
+                textShape.setAnchor(new java.awt.Rectangle(50, 50, 400, 200));
+            } catch (RuntimeException e) {
+                // POI may have applied part of the change, so the next call reloads the file
+                documentCache.invalidate(filepath);
+                throw e;
             }
             
+            documentCache.modified(filepath, presentation);
+            
             return ToolResponse.success(
                 new TextContent("Text added to slide " + slideIndex + " in PowerPoint presentation at: " + filepath));
-        } catch (IOException e) {
+        } catch (IOException | RuntimeException e) {
             return ToolResponse.error("Failed to add text to PowerPoint slide: " + e.getMessage());
         }
     }
 
+    @RunOnVirtualThread
     @Tool(description = "Read slide titles from a PowerPoint presentation", name = "read_slide_titles_from_powerpoint")
     ToolResponse readSlideTitlesFromPowerPoint(@ToolArg(description = "Path to the PowerPoint presentation") String filepath) {
-        try (FileInputStream fileIn = new FileInputStream(filepath); XMLSlideShow presentation = new XMLSlideShow(fileIn)) {
-            int slideCount = presentation.getSlides().size();
+        try (var lock = locks.read(filepath)) {
+            List<String> slideTitles;
+            if (engines.read(filepath, 0) == EngineSelector.Engine.CACHED) {
+                slideTitles = new ArrayList<>();
+                for (XSLFSlide slide : openPresentation(filepath).getSlides()) {
+                    slideTitles.add(title(slide));
+                }
+            } else {
+                // Only presentation.xml and the slide parts are read, layouts and media are skipped
+                slideTitles = StreamingSlideReader.readSlideTitles(DocumentCache.key(filepath));
+            }
+            int slideCount = slideTitles.size();
             if (slideCount == 0) {
                 return ToolResponse.success(
                     new TextContent("PowerPoint presentation at " + filepath + " has no slides."));
@@ -90,24 +132,9 @@ public class OfficeMcpServerPowerPointFeatures {
             titles.append("Presentation has " + slideCount + " slides.\n");
             
             int slideIndex = 0;
-            for (XSLFSlide slide : presentation.getSlides()) {
+            for (String title : slideTitles) {
                 titles.append("Slide ").append(slideIndex++).append(": ");
-                
-                // Try to find a title in the slide - simplified approach 
-                String title = "No title";
-                List<XSLFShape> shapes = slide.getShapes();
-                for (XSLFShape shape : shapes) {
-                    if (shape instanceof XSLFTextShape) {
-                        XSLFTextShape textShape = (XSLFTextShape) shape;
-                        String text = textShape.getText();
-                        if (text != null && !text.isEmpty()) {
-                            title = text;
-                            break;
-                        }
-                    }
-                }
-                
-                titles.append(title).append("\n");
+                titles.append(title != null && !title.isEmpty() ? title : "No title").append("\n");
             }
             
             return ToolResponse.success(
@@ -117,14 +144,101 @@ public class OfficeMcpServerPowerPointFeatures {
         }
     }
     
+    @RunOnVirtualThread
     @Tool(description = "Get slide count from a PowerPoint presentation", name = "get_powerpoint_slide_count")
     ToolResponse getPowerPointSlideCount(@ToolArg(description = "Path to the PowerPoint presentation") String filepath) {
-        try (FileInputStream fileIn = new FileInputStream(filepath); XMLSlideShow presentation = new XMLSlideShow(fileIn)) {
-            int slideCount = presentation.getSlides().size();
+        try (var lock = locks.read(filepath)) {
+            int slideCount = engines.read(filepath, 0) == EngineSelector.Engine.CACHED
+                ? openPresentation(filepath).getSlides().size()
+                : StreamingSlideReader.slideCount(DocumentCache.key(filepath));
             return ToolResponse.success(
                 new TextContent("PowerPoint presentation at " + filepath + " has " + slideCount + " slides."));
         } catch (IOException e) {
             return ToolResponse.error("Failed to get slide count from PowerPoint presentation: " + e.getMessage());
         }
     }
+
+    @RunOnVirtualThread
+    @Tool(description = "Apply a list of operations to one PowerPoint presentation in a single call: the presentation is loaded once, the operations run in order and it is saved once at the end. If any operation fails, none of the changes are saved. "
+        + "Operations are JSON objects with an 'op' field: "
+        + "{\"op\": \"add_slide\"}, "
+        + "{\"op\": \"add_text\", \"slide\": n, \"text\": text} (0-based slide index, sees slides added earlier in the batch), "
+        + "{\"op\": \"slide_count\"}.", name = "batch_powerpoint_operations")
+    ToolResponse batchPowerPointOperations(@ToolArg(description = "Path to the PowerPoint presentation") String filepath,
+                                            @ToolArg(description = "Operations as a JSON array of objects") String operations) {
+        try {
+            List<BatchOperation> batch = BatchOperation.parse(operations);
+            try (var lock = locks.write(filepath)) {
+                // Start from the file on disk, so that a failed batch can be rolled back by reloading it
+                documentCache.flush(filepath);
+                engines.load(filepath);
+                XMLSlideShow presentation = openPresentation(filepath);
+                List<String> results;
+                try {
+                    results = BatchOperation.applyAll(batch, operation -> applyPowerPointOperation(presentation, operation));
+                } catch (BatchOperation.BatchException e) {
+                    documentCache.invalidate(filepath);
+                    return ToolResponse.error("Batch failed. " + e.getMessage());
+                }
+                boolean modified = batch.stream().anyMatch(operation -> !"slide_count".equals(operation.op()));
+                if (modified) {
+                    try {
+                        documentCache.modified(filepath, presentation);
+                    } catch (IOException e) {
+                        documentCache.invalidate(filepath);
+                        throw e;
+                    }
+                }
+                List<TextContent> content = new ArrayList<>();
+                for (String result : results) {
+                    content.add(new TextContent(result));
+                }
+                content.add(new TextContent(batch.size() + " operations applied to PowerPoint presentation: " + filepath
+                    + (modified ? "" : " (nothing to save)")));
+                return ToolResponse.success(content);
+            }
+        } catch (IllegalArgumentException | IOException e) {
+            return ToolResponse.error("Failed to apply operations: " + e.getMessage());
+        }
+    }
+
+    private static String applyPowerPointOperation(XMLSlideShow presentation, BatchOperation operation) {
+        switch (operation.op()) {
+            case "add_slide" -> {
+                presentation.createSlide();
+                return "Slide " + (presentation.getSlides().size() - 1) + " added.";
+            }
+            case "add_text" -> {
+                int slideIndex = operation.integer("slide");
+                String text = operation.text("text");
+                if (slideIndex < 0 || slideIndex >= presentation.getSlides().size()) {
+                    throw new IllegalArgumentException("Slide index " + slideIndex + " is out of bounds. The presentation has "
+                        + presentation.getSlides().size() + " slides.");
+                }
+                XSLFTextShape textShape = presentation.getSlides().get(slideIndex).createTextBox();
+                textShape.setText(text);
+                textShape.setAnchor(new java.awt.Rectangle(50, 50, 400, 200));
+                return "Text added to slide " + slideIndex + ".";
+            }
+            case "slide_count" -> {
+                return "Presentation has " + presentation.getSlides().size() + " slides.";
+            }
+            default -> throw new IllegalArgumentException("Unknown operation '" + operation.op() + "'.");
+        }
+    }
+
+    // Text of the title placeholder of a parsed slide, like StreamingSlideReader.readSlideTitles
+    private static String title(XSLFSlide slide) {
+        for (XSLFShape shape : slide.getShapes()) {
+            if (shape instanceof XSLFTextShape textShape
+                    && (shape.getPlaceholder() == Placeholder.TITLE || shape.getPlaceholder() == Placeholder.CENTERED_TITLE)) {
+                return textShape.getText();
+            }
+        }
+        return null;
+    }
+
+    private XMLSlideShow openPresentation(String filepath) throws IOException {
+        return documentCache.open(filepath, XMLSlideShow.class, XMLSlideShow::new);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,105 @@
+package dev.lescoggi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import io.quarkiverse.mcp.server.McpLog;
+import io.quarkiverse.mcp.server.TextContent;
+import io.quarkiverse.mcp.server.Tool;
+import io.quarkiverse.mcp.server.ToolArg;
+import io.quarkiverse.mcp.server.ToolResponse;
+import io.smallrye.common.annotation.RunOnVirtualThread;
+import jakarta.inject.Inject;
+
+@Metered
+public class OfficeMcpServerSearchFeatures {
+
+    private static final int DEFAULT_MAX_RESULTS = 20;
+
+    @Inject
+    SearchIndex searchIndex;
+
+    @Inject
+    OfficeFileSummaries summaries;
+
+    @ConfigProperty(name = "office.summary.page-size", defaultValue = "500")
+    int summaryPageSize;
+
+    @RunOnVirtualThread
+    @Tool(description = "Search the text of all Word, Excel and PowerPoint files under the office files directory. Returns the paragraphs, cells and slides that contain every word of the query, each with its file, location and a snippet. Matching is case-insensitive on whole words.", name = "search_office_documents")
+    ToolResponse searchOfficeDocuments(@ToolArg(description = "Words to search for") String query,
+                                       @ToolArg(description = "Maximum number of hits to return (default 20)", required = false) Integer maxResults,
+                                       @ToolArg(description = "Bring the index up to date with the directory before searching (default false); otherwise it is refreshed in the background", required = false) Boolean refresh) {
+        int limit = maxResults != null ? maxResults : DEFAULT_MAX_RESULTS;
+        if (limit < 1) {
+            return ToolResponse.error("Maximum number of results must be at least 1.");
+        }
+        try {
+            SearchIndex.Result result = searchIndex.search(query, limit, Boolean.TRUE.equals(refresh));
+            if (result.totalHits() == 0) {
+                return ToolResponse.success(new TextContent("No documents match: " + query));
+            }
+            List<TextContent> content = new ArrayList<>();
+            for (SearchIndex.Hit hit : result.hits()) {
+                content.add(new TextContent(hit.path() + " — " + hit.location() + ": " + hit.snippet()));
+            }
+            content.add(new TextContent("Showing " + result.hits().size() + " of " + result.totalHits() + " hits."));
+            return ToolResponse.success(content);
+        } catch (Exception e) {
+            return ToolResponse.error("Failed to search documents: " + e.getMessage());
+        }
+    }
+
+    @RunOnVirtualThread
+    @Tool(description = "Summarize the Word, Excel and PowerPoint files under the office files directory in one call: the sheets of each workbook with their row and column counts, "
+        + "the slide titles of each presentation, and the number of paragraphs and opening words of each Word document. Files are listed in path order, a page at a time; "
+        + "summaries of files that did not change since they were last listed are returned from memory. While a page is read, finished summaries are also sent as log notifications.",
+        name = "summarize_office_files")
+    ToolResponse summarizeOfficeFiles(@ToolArg(description = "Only list files of this type: 'excel', 'word' or 'powerpoint' (default all)", required = false) String type,
+                                      @ToolArg(description = "Glob the path relative to the office files directory must match, e.g. 'finance/**.xlsx' (default all)", required = false) String pattern,
+                                      @ToolArg(description = "Index of the first file to return (default 0)", required = false) Integer offset,
+                                      @ToolArg(description = "Maximum number of files to return (default 500)", required = false) Integer limit,
+                                      McpLog log) {
+        OfficeFileSummaries.Type fileType = type == null || type.isBlank() ? null : OfficeFileSummaries.Type.of(type);
+        if (fileType == null && type != null && !type.isBlank()) {
+            return ToolResponse.error("Unsupported file type '" + type + "', expected 'excel', 'word' or 'powerpoint'.");
+        }
+        int start = offset != null ? offset : 0;
+        int count = limit != null ? limit : summaryPageSize;
+        if (start < 0 || count < 1) {
+            return ToolResponse.error("Offset must not be negative and limit must be at least 1.");
+        }
+        try {
+            long begin = System.nanoTime();
+            OfficeFileSummaries.Result result = summaries.summarize(fileType, pattern == null || pattern.isBlank() ? null : pattern, start, count,
+                log == null ? null : (page, done, total) -> log.send(McpLog.LogLevel.INFO,
+                    done + " of " + total + " files summarized:\n" + page.stream().map(OfficeMcpServerSearchFeatures::line).collect(Collectors.joining("\n"))));
+            if (result.totalFiles() == 0) {
+                return ToolResponse.success(new TextContent("No files match."));
+            }
+            if (start >= result.totalFiles()) {
+                return ToolResponse.error("Offset " + start + " is past the end of the list, which has " + result.totalFiles() + " files.");
+            }
+            List<TextContent> content = new ArrayList<>();
+            for (OfficeFileSummaries.Summary summary : result.summaries()) {
+                content.add(new TextContent(line(summary)));
+            }
+            int end = start + result.summaries().size();
+            String status = "Files " + start + " to " + end + " of " + result.totalFiles()
+                + (end < result.totalFiles() ? ". Pass offset " + end + " to read the next page." : ", end of list.")
+                + " " + result.read() + " read from disk in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin) + " ms.";
+            content.add(new TextContent(status));
+            return ToolResponse.success(content);
+        } catch (Exception e) {
+            return ToolResponse.error("Failed to summarize files: " + e.getMessage());
+        }
+    }
+
+    private static String line(OfficeFileSummaries.Summary summary) {
+        return summary.path() + " — " + summary.text();
+    }
+}
@@ -0,0 +1,116 @@
+package dev.lescoggi;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.quarkiverse.mcp.server.McpLog;
+import io.quarkiverse.mcp.server.TextContent;
+import io.quarkiverse.mcp.server.Tool;
+import io.quarkiverse.mcp.server.ToolArg;
+import io.quarkiverse.mcp.server.ToolResponse;
+import io.smallrye.common.annotation.RunOnVirtualThread;
+import jakarta.inject.Inject;
+
+@Admitted
+@Metered
+public class OfficeMcpServerTemplateFeatures {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    // Errors listed in the response of a batch; the rest are only counted
+    private static final int MAX_LISTED_FAILURES = 20;
+
+    @Inject
+    OfficeTemplates templates;
+
+    @Inject
+    EngineSelector engines;
+
+    @RunOnVirtualThread
+    @Tool(description = "Fill a Word, PowerPoint or Excel template with JSON data and save the result as a new document. The template holds Qute tags in its text: "
+        + "{customer.name} for a value, {#if}/{#else}/{/if} around paragraphs, and {#for line in lines}...{/for} in a table row to repeat the row, or alone in a text box of a slide to repeat the slide. "
+        + "A sheet cell holding only a value such as {line.amount} keeps its number type. Templates are compiled once and reused until they change.",
+        name = "render_office_template")
+    ToolResponse renderOfficeTemplate(@ToolArg(description = "Path to the .docx, .pptx or .xlsx template") String filepath,
+                                      @ToolArg(description = "Path of the document to write, with the extension of the template; an existing file is replaced") String outputPath,
+                                      @ToolArg(description = "JSON object with the values the template uses, e.g. {\"customer\": {\"name\": \"Ada\"}, \"lines\": [{\"amount\": 12.5}]}") String data) {
+        try {
+            if (!Files.exists(DocumentCache.key(filepath))) {
+                return ToolResponse.error("Template does not exist: " + filepath);
+            }
+            Map<String, Object> values = JSON.readValue(data, new TypeReference<Map<String, Object>>() { });
+            long start = System.nanoTime();
+            engines.record(EngineSelector.Engine.STREAMING_WRITE);
+            templates.render(filepath, outputPath, values);
+            return ToolResponse.success(new TextContent("Document rendered from " + filepath + " to " + outputPath
+                + String.format(Locale.ROOT, " in %.1f ms.", (System.nanoTime() - start) / 1e6)));
+        } catch (JsonProcessingException e) {
+            return ToolResponse.error("Data must be a JSON object: " + e.getOriginalMessage());
+        } catch (IllegalArgumentException e) {
+            return ToolResponse.error(e.getMessage());
+        } catch (IOException e) {
+            return ToolResponse.error("Failed to render template: " + e.getMessage());
+        }
+    }
+
+    @RunOnVirtualThread
+    @Tool(description = "Fill a Word, PowerPoint or Excel template once per entry of a JSON array and save each result, rendering the documents in parallel. "
+        + "Takes the same tags as render_office_template. A document that fails is reported without stopping the others; progress is sent as log notifications.",
+        name = "render_office_templates")
+    ToolResponse renderOfficeTemplates(@ToolArg(description = "Path to the .docx, .pptx or .xlsx template") String filepath,
+                                       @ToolArg(description = "JSON array of documents to write, each {\"output\": path with the extension of the template, \"data\": JSON object with the values the template uses}") String documents,
+                                       McpLog log) {
+        try {
+            if (!Files.exists(DocumentCache.key(filepath))) {
+                return ToolResponse.error("Template does not exist: " + filepath);
+            }
+            List<OfficeTemplates.Render> renders = new ArrayList<>();
+            for (Map<String, Object> document : JSON.readValue(documents, new TypeReference<List<Map<String, Object>>>() { })) {
+                if (!(document.get("output") instanceof String output) || output.isBlank()) {
+                    return ToolResponse.error("Document " + renders.size() + " has no output path.");
+                }
+                if (!(document.getOrDefault("data", Map.of()) instanceof Map<?, ?> data)) {
+                    return ToolResponse.error("Data of document " + renders.size() + " must be a JSON object.");
+                }
+                @SuppressWarnings("unchecked")
+                Map<String, Object> values = (Map<String, Object>) data;
+                renders.add(new OfficeTemplates.Render(output, values));
+            }
+            if (renders.isEmpty()) {
+                return ToolResponse.error("No documents to render.");
+            }
+            long start = System.nanoTime();
+            engines.record(EngineSelector.Engine.STREAMING_WRITE);
+            OfficeTemplates.Result result = templates.render(filepath, renders,
+                log == null ? null : (done, total) -> log.send(McpLog.LogLevel.INFO, done + " of " + total + " documents rendered"));
+            double seconds = (System.nanoTime() - start) / 1e9;
+            List<TextContent> content = new ArrayList<>();
+            content.add(new TextContent(result.rendered() + " of " + renders.size() + " documents rendered from " + filepath
+                + String.format(Locale.ROOT, " in %.1f s (%.0f documents/s).", seconds, seconds > 0 ? result.rendered() / seconds : 0)));
+            result.failures().entrySet().stream().limit(MAX_LISTED_FAILURES)
+                .forEach(failure -> content.add(new TextContent("Failed: " + failure.getKey() + " — " + failure.getValue())));
+            if (result.failures().size() > MAX_LISTED_FAILURES) {
+                content.add(new TextContent((result.failures().size() - MAX_LISTED_FAILURES) + " more documents failed."));
+            }
+            if (result.rendered() == 0) {
+                return ToolResponse.error(content.stream().map(TextContent::text).collect(Collectors.joining("\n")));
+            }
+            return ToolResponse.success(content);
+        } catch (JsonProcessingException e) {
+            return ToolResponse.error("Documents must be a JSON array of objects: " + e.getOriginalMessage());
+        } catch (IllegalArgumentException e) {
+            return ToolResponse.error(e.getMessage());
+        } catch (IOException e) {
+            return ToolResponse.error("Failed to render templates: " + e.getMessage());
+        }
+    }
+}
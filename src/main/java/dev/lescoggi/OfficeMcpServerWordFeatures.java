@@ -1,7 +1,7 @@
 package dev.lescoggi;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
 
 import org.apache.poi.xwpf.usermodel.XWPFDocument;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
@@ -10,16 +10,37 @@ import io.quarkiverse.mcp.server.TextContent;
 import io.quarkiverse.mcp.server.Tool;
 import io.quarkiverse.mcp.server.ToolArg;
 import io.quarkiverse.mcp.server.ToolResponse;
+import io.smallrye.common.annotation.RunOnVirtualThread;
+import jakarta.inject.Inject;
 
+@Admitted
+@Metered
 public class OfficeMcpServerWordFeatures {
 
     @ConfigProperty(name = "office.files.path")
     String officeFilesPath;
 
+    @ConfigProperty(name = "office.word.text-page-size", defaultValue = "20000")
+    int textPageSize;
+
+    @Inject
+    DocumentCache documentCache;
+
+    @Inject
+    DocumentLockManager locks;
+
+    @Inject
+    DocumentSaver saver;
+
+    @Inject
+    EngineSelector engines;
+
+    @RunOnVirtualThread
     @Tool(description = "Create a new Word document", name = "create_word_document")
     ToolResponse createWordDocument(@ToolArg(description = "Path to create new Word document") String filepath) {
-        try (XWPFDocument document = new XWPFDocument(); FileOutputStream fileOut = new FileOutputStream(filepath)) {
-            document.write(fileOut);
+        try (var lock = locks.write(filepath); XWPFDocument document = new XWPFDocument()) {
+            saver.save(filepath, document::write);
+            documentCache.invalidate(filepath);
             return ToolResponse.success(
                 new TextContent("Word document created at: " + filepath));
         } catch (Exception e) {
@@ -27,14 +48,26 @@ public class OfficeMcpServerWordFeatures {
         }
     }
 
+    @RunOnVirtualThread
     @Tool(description = "Add text to a Word document", name = "add_text_to_word_document")
     ToolResponse addTextToWordDocument(@ToolArg(description = "Path to the Word document") String filepath,
                                         @ToolArg(description = "Text to add") String text) {
-        try (FileInputStream fileIn = new FileInputStream(filepath); XWPFDocument document = new XWPFDocument(fileIn)) {
-            document.createParagraph().createRun().setText(text);
-            try (FileOutputStream fileOut = new FileOutputStream(filepath)) {
-                document.write(fileOut);
+        try (var lock = locks.write(filepath)) {
+            if (engines.write(filepath) == EngineSelector.Engine.STREAMING_WRITE) {
+                // Not cached, so there are no pending changes the appended paragraph could miss
+                saver.save(filepath, StreamingParagraphAppender.append(Path.of(filepath), text));
+                return ToolResponse.success(
+                    new TextContent("Text added to Word document at: " + filepath));
             }
+            XWPFDocument document = openDocument(filepath);
+            try {
+                document.createParagraph().createRun().setText(text);
+            } catch (RuntimeException e) {
+                // POI may have applied part of the change, so the next call reloads the file
+                documentCache.invalidate(filepath);
+                throw e;
+            }
+            documentCache.modified(filepath, document);
             return ToolResponse.success(
                 new TextContent("Text added to Word document at: " + filepath));
         } catch (Exception e) {
@@ -42,17 +75,36 @@ public class OfficeMcpServerWordFeatures {
         }
     }
 
-    @Tool(description = "Read text from a Word document", name = "read_text_from_word_document")
-    ToolResponse readTextFromWordDocument(@ToolArg(description = "Path to the Word document") String filepath) {
-        try (FileInputStream fileIn = new FileInputStream(filepath); XWPFDocument document = new XWPFDocument(fileIn)) {
-            StringBuilder text = new StringBuilder();
-            for (var paragraph : document.getParagraphs()) {
-                text.append(paragraph.getText());
+    @RunOnVirtualThread
+    @Tool(description = "Read the text of a Word document, including tables, headers and footers, one page at a time. Paragraphs and table rows end with a line break, table cells are separated by tabs. The response reports the total length and the offset of the next page.", name = "read_text_from_word_document")
+    ToolResponse readTextFromWordDocument(@ToolArg(description = "Path to the Word document") String filepath,
+                                           @ToolArg(description = "Character offset to start reading at (default 0)", required = false) Integer offset,
+                                           @ToolArg(description = "Maximum number of characters to return (default 20000)", required = false) Integer length) {
+        int start = offset != null ? offset : 0;
+        int limit = length != null ? length : textPageSize;
+        if (start < 0 || limit < 1) {
+            return ToolResponse.error("Offset must not be negative and length must be at least 1.");
+        }
+        try {
+            // Text is always streamed from disk, so pending changes are written first
+            try (var lock = documentCache.readFlushed(filepath)) {
+                engines.record(EngineSelector.Engine.STREAMING_READ);
+                WordTextExtractor.Page page = WordTextExtractor.read(DocumentCache.key(filepath), start, limit);
+                if (start > 0 && start >= page.totalLength()) {
+                    return ToolResponse.error("Offset " + start + " is past the end of the text, which has " + page.totalLength() + " characters.");
+                }
+                String status = page.end() < page.totalLength()
+                    ? "Characters " + start + " to " + page.end() + " of " + page.totalLength() + ". Pass offset " + page.end() + " to read the next page."
+                    : "Characters " + start + " to " + page.end() + " of " + page.totalLength() + ", end of text.";
+                return ToolResponse.success(
+                    new TextContent("Text from Word document at " + filepath + ": " + page.text()), new TextContent(status));
             }
-            return ToolResponse.success(
-                new TextContent("Text from Word document at " + filepath + ": " + text));
         } catch (Exception e) {
             return ToolResponse.error("Failed to read text from Word document: " + e.getMessage());
         }
     }
-}
+
+    private XWPFDocument openDocument(String filepath) throws IOException {
+        return documentCache.open(filepath, XWPFDocument.class, XWPFDocument::new);
+    }
+}
\ No newline at end of file
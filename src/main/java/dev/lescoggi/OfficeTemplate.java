@@ -0,0 +1,724 @@
+package dev.lescoggi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import io.quarkus.qute.Engine;
+import io.quarkus.qute.RawString;
+import io.quarkus.qute.Results;
+import io.quarkus.qute.Template;
+import io.quarkus.qute.TemplateData;
+import io.quarkus.qute.TemplateException;
+import io.quarkus.qute.ValueResolver;
+import io.quarkus.qute.Variant;
+
+/**
+ * A .docx, .pptx or .xlsx file whose text holds Qute tags, e.g. {@code Dear {customer.name}},
+ * compiled once and rendered with different data. Every part with tags in its text is turned into
+ * a Qute template by {@link TemplateXml}; all other entries are copied from the template in their
+ * compressed form, so a render only costs evaluating the templates and deflating their output.
+ * <p>
+ * Besides placeholders and sections in text, a {@code {#for}} left open by a paragraph of a table
+ * row repeats the row, in Word and PowerPoint tables and in sheets, where the rows below are moved
+ * down. A slide with a text box that only holds a {@code {#for}} or {@code {#each}} is repeated
+ * for each element, without the text box. A sheet cell whose text is a single value, such as
+ * {@code {line.amount}}, becomes a number or boolean cell when the value is one.
+ */
+final class OfficeTemplate {
+
+    private static final Variant XML = Variant.forContentType("text/xml");
+
+    // Between the copies of a repeated slide in its rendered output; cannot occur in XML
+    private static final String SLIDE_SEPARATOR = "\u0000";
+    private static final String SLIDE_TYPE = TemplateXml.RELATIONSHIPS + "/slide";
+    private static final String NOTES_SLIDE_TYPE = TemplateXml.RELATIONSHIPS + "/notesSlide";
+    private static final String CALC_CHAIN_TYPE = TemplateXml.RELATIONSHIPS + "/calcChain";
+    private static final Pattern VALUE = Pattern.compile("\\{([A-Za-z_][\\w.]*)\\}");
+    // Properties of Results.NotFound that other resolvers would find
+    private static final Set<String> NOT_FOUND_PROPERTIES = Set.of("name", "base", "params", "getName", "getBase", "getParams", "asMessage", "toString");
+    private static final Pattern SLIDE_NAME = Pattern.compile("(.*/)?[^/]*?(\\d+)\\.xml");
+
+    /**
+     * A part that is rendered; sheets get their own row numbering.
+     */
+    private record Part(Template template, boolean sheet) {
+    }
+
+    /**
+     * A slide that is rendered once per element of a list, with its relationships as they are and
+     * without the link to the notes slide, which only the first copy keeps.
+     */
+    private record RepeatedSlide(String part, String relationshipsPart, String relationshipId, long id, String target,
+                                 Template template, byte[] relationships, byte[] relationshipsWithoutNotes) {
+    }
+
+    private final byte[] bytes;
+    private final Map<String, Part> parts;
+    private final Map<String, RepeatedSlide> slides;
+    private final Set<String> dropped;
+    private final long firstSlideId;
+    private final int firstSlideRelationship;
+    private final int firstSlideNumber;
+
+    private OfficeTemplate(byte[] bytes, Map<String, Part> parts, Map<String, RepeatedSlide> slides, Set<String> dropped,
+                           long firstSlideId, int firstSlideRelationship, int firstSlideNumber) {
+        this.bytes = bytes;
+        this.parts = parts;
+        this.slides = slides;
+        this.dropped = dropped;
+        this.firstSlideId = firstSlideId;
+        this.firstSlideRelationship = firstSlideRelationship;
+        this.firstSlideNumber = firstSlideNumber;
+    }
+
+    /**
+     * The engine to compile templates with: {@code engine}, where a value that is missing stays
+     * missing. Otherwise {@code {customer.name}} would render the name of Qute's marker for the
+     * missing customer instead of failing.
+     */
+    static Engine engine(Engine engine) {
+        return engine.newBuilder().addValueResolver(ValueResolver.builder()
+            .priority(Integer.MAX_VALUE)
+            .appliesTo(context -> context.getBase() instanceof Results.NotFound && NOT_FOUND_PROPERTIES.contains(context.getName()))
+            .resolveSync(context -> {
+                throw new TemplateException(((Results.NotFound) context.getBase()).asMessage());
+            })
+            .build()).build();
+    }
+
+    /**
+     * Compiles a template.
+     *
+     * @throws IllegalArgumentException when the file is not a .docx, .pptx or .xlsx file, or when
+     * its tags are not valid Qute
+     */
+    static OfficeTemplate compile(Engine engine, Path file) throws IOException {
+        OfficeFileSummaries.Type type = type(file);
+        if (type == null) {
+            throw new IllegalArgumentException("Templates have to be .docx, .pptx or .xlsx files: " + file);
+        }
+        ToolMetrics.opened(file);
+        byte[] bytes = Files.readAllBytes(file);
+        try (ZipFile zip = new ZipFile(file.toFile())) {
+            Compiler compiler = new Compiler(engine, zip);
+            switch (type) {
+                case WORD -> compiler.document();
+                case POWERPOINT -> compiler.presentation();
+                case EXCEL -> compiler.workbook();
+            }
+            return new OfficeTemplate(bytes, compiler.parts, compiler.slides, compiler.dropped,
+                compiler.firstSlideId, compiler.firstSlideRelationship, compiler.firstSlideNumber);
+        } catch (TemplateException e) {
+            throw new IllegalArgumentException(message(e), e);
+        }
+    }
+
+    static OfficeFileSummaries.Type type(Path file) {
+        String name = file.getFileName().toString();
+        for (OfficeFileSummaries.Type type : OfficeFileSummaries.Type.values()) {
+            if (type.matches(name)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Number of parts that are rendered, repeated slides included.
+     */
+    int renderedParts() {
+        return parts.size() + slides.size();
+    }
+
+    /**
+     * Writes the document for {@code data}, a JSON object read into maps, lists and scalars.
+     *
+     * @throws IllegalArgumentException when the data lacks a value the template uses
+     */
+    void render(Map<String, Object> data, OutputStream out) throws IOException {
+        try {
+            Map<String, List<SlideCopy>> copies = new HashMap<>();
+            Map<String, String[]> slideXml = new HashMap<>();
+            Slides slideList = new Slides(copies);
+            long nextId = firstSlideId;
+            int nextRelationship = firstSlideRelationship;
+            int nextNumber = firstSlideNumber;
+            for (RepeatedSlide slide : slides.values()) {
+                String[] xml = split(slide.template().instance().data(data(data, null, slideList)).render());
+                List<SlideCopy> list = new ArrayList<>(xml.length);
+                for (int i = 0; i < xml.length; i++) {
+                    if (i == 0) {
+                        list.add(new SlideCopy(slide.id(), slide.relationshipId(), slide.target(), slide.part()));
+                    } else {
+                        String part = slide.part().substring(0, slide.part().lastIndexOf('/') + 1) + "slide" + nextNumber++ + ".xml";
+                        String target = slide.target().substring(0, slide.target().lastIndexOf('/') + 1) + part.substring(part.lastIndexOf('/') + 1);
+                        list.add(new SlideCopy(nextId++, "rId" + nextRelationship++, target, part));
+                    }
+                }
+                copies.put(slide.relationshipId(), list);
+                slideXml.put(slide.part(), xml);
+            }
+
+            Map<String, RepeatedSlide> slideRelationships = new HashMap<>();
+            slides.values().forEach(slide -> slideRelationships.put(slide.relationshipsPart(), slide));
+            try (org.apache.commons.compress.archivers.zip.ZipFile original = org.apache.commons.compress.archivers.zip.ZipFile.builder()
+                     .setSeekableByteChannel(new SeekableInMemoryByteChannel(bytes)).get();
+                 ZipArchiveOutputStream zip = new ZipArchiveOutputStream(CloseShieldOutputStream.wrap(out))) {
+                for (ZipArchiveEntry entry : Collections.list(original.getEntriesInPhysicalOrder())) {
+                    String name = entry.getName();
+                    RepeatedSlide slide = slides.get(name);
+                    RepeatedSlide relationshipsOf = slideRelationships.get(name);
+                    Part part = parts.get(name);
+                    if (dropped.contains(name)) {
+                        continue;
+                    } else if (slide != null) {
+                        List<SlideCopy> list = copies.get(slide.relationshipId());
+                        for (int i = 0; i < list.size(); i++) {
+                            write(zip, list.get(i).part(), slideXml.get(name)[i].getBytes(StandardCharsets.UTF_8));
+                        }
+                    } else if (relationshipsOf != null) {
+                        List<SlideCopy> list = copies.get(relationshipsOf.relationshipId());
+                        for (int i = 0; i < list.size(); i++) {
+                            write(zip, relationshipsPart(list.get(i).part()),
+                                i == 0 ? relationshipsOf.relationships() : relationshipsOf.relationshipsWithoutNotes());
+                        }
+                    } else if (part != null) {
+                        Map<String, Object> partData = data(data, part.sheet() ? new SheetRows() : null, slideList);
+                        write(zip, name, part.template().instance().data(partData).render().getBytes(StandardCharsets.UTF_8));
+                    } else {
+                        try (InputStream raw = original.getRawInputStream(entry)) {
+                            zip.addRawArchiveEntry(entry, raw);
+                        }
+                    }
+                }
+            }
+        } catch (TemplateException e) {
+            throw new IllegalArgumentException(message(e), e);
+        }
+    }
+
+    // Rendering errors come wrapped in exceptions of their own without a message
+    private static String message(Throwable e) {
+        Throwable cause = e;
+        while (cause.getMessage() == null && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage();
+    }
+
+    private static Map<String, Object> data(Map<String, Object> data, SheetRows rows, Slides slides) {
+        Map<String, Object> partData = new HashMap<>(data);
+        partData.put("_cells", Cells.INSTANCE);
+        partData.put("_slides", slides);
+        if (rows != null) {
+            partData.put("_rows", rows);
+        }
+        return partData;
+    }
+
+    private static String[] split(String rendered) {
+        if (rendered.isEmpty()) {
+            return new String[0];
+        }
+        // The separator ends each copy
+        return rendered.substring(0, rendered.length() - SLIDE_SEPARATOR.length()).split(SLIDE_SEPARATOR, -1);
+    }
+
+    private static void write(ZipArchiveOutputStream zip, String name, byte[] content) throws IOException {
+        ZipArchiveEntry entry = new ZipArchiveEntry(name);
+        entry.setMethod(ZipEntry.DEFLATED);
+        zip.putArchiveEntry(entry);
+        zip.write(content);
+        zip.closeArchiveEntry();
+    }
+
+    private static String relationshipsPart(String part) {
+        int slash = part.lastIndexOf('/');
+        return part.substring(0, slash + 1) + "_rels/" + part.substring(slash + 1) + ".rels";
+    }
+
+    private static String directory(String part) {
+        return part.substring(0, part.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Row numbers of a sheet whose rows are repeated: rows keep their number plus the rows added
+     * or dropped above them.
+     */
+    @TemplateData
+    public static final class SheetRows {
+        private int offset;
+        private int repeated;
+        private int current;
+
+        /**
+         * The number of a row that is written once.
+         */
+        public int row(int number) {
+            current = number + offset;
+            return current;
+        }
+
+        /**
+         * The number of the next copy of a repeated row.
+         */
+        public int repeat(int number) {
+            current = number + offset + repeated++;
+            return current;
+        }
+
+        /**
+         * Called after the copies of a repeated row; the rows below move by the copies made
+         * beyond the one of the template.
+         */
+        public String end(int number) {
+            offset += repeated - 1;
+            repeated = 0;
+            return "";
+        }
+
+        public int current() {
+            return current;
+        }
+    }
+
+    /**
+     * Writes a sheet cell that holds a single value as a typed cell.
+     */
+    @TemplateData
+    public static final class Cells {
+        static final Cells INSTANCE = new Cells();
+
+        /**
+         * The rest of the cell after its attributes: a number, a boolean or an inline string.
+         */
+        public RawString value(Object value) throws IOException {
+            StringBuilder cell = new StringBuilder();
+            if (value == null) {
+                cell.append('>');
+            } else if (value instanceof Number number && Double.isFinite(number.doubleValue())) {
+                cell.append("><v>").append(number).append("</v>");
+            } else if (value instanceof Boolean bool) {
+                cell.append(" t=\"b\"><v>").append(bool ? '1' : '0').append("</v>");
+            } else {
+                String text = value.toString();
+                cell.append(" t=\"inlineStr\"><is><t").append(XmlTagScanner.needsPreserve(text) ? " xml:space=\"preserve\">" : ">");
+                XmlTagScanner.appendText(cell, text);
+                cell.append("</t></is>");
+            }
+            return new RawString(cell.toString());
+        }
+    }
+
+    /**
+     * The copies of the repeated slides, for the presentation, its relationships and the content
+     * types.
+     */
+    @TemplateData
+    public static final class Slides {
+        private final Map<String, List<SlideCopy>> copies;
+
+        Slides(Map<String, List<SlideCopy>> copies) {
+            this.copies = copies;
+        }
+
+        public List<SlideCopy> copies(String relationshipId) {
+            return copies.getOrDefault(relationshipId, List.of());
+        }
+    }
+
+    /**
+     * A copy of a repeated slide: its id in the slide list, the id and target of its relationship
+     * from the presentation, and its part.
+     */
+    @TemplateData
+    public record SlideCopy(long id, String relationshipId, String target, String part) {
+
+        public String partName() {
+            return "/" + part;
+        }
+    }
+
+    // Compiles the parts of one template
+    private static final class Compiler {
+        private final Engine engine;
+        private final ZipFile zip;
+        private final Map<String, Part> parts = new HashMap<>();
+        private final Map<String, RepeatedSlide> slides = new LinkedHashMap<>();
+        private final Set<String> dropped = new HashSet<>();
+        private long firstSlideId;
+        private int firstSlideRelationship;
+        private int firstSlideNumber;
+
+        Compiler(Engine engine, ZipFile zip) {
+            this.engine = engine;
+            this.zip = zip;
+        }
+
+        void document() throws IOException {
+            String main = ZipPartReader.mainPart(zip);
+            for (ZipEntry entry : Collections.list(zip.entries())) {
+                if (entry.getName().startsWith(directory(main)) && entry.getName().endsWith(".xml")) {
+                    Document part = templatePart(entry.getName());
+                    if (part != null) {
+                        TemplateXml.moveSectionsAroundRows(part);
+                        TemplateXml.replaceSectionParagraphs(part);
+                        add(entry.getName(), part, false);
+                    }
+                }
+            }
+        }
+
+        void presentation() throws IOException {
+            String main = ZipPartReader.mainPart(zip);
+            String relationshipsName = relationshipsPart(main);
+            Document relationships = TemplateXml.parse(read(relationshipsName));
+            Map<String, Element> slideRelationships = new LinkedHashMap<>();
+            int lastRelationship = 0;
+            for (Element relationship : children(relationships.getDocumentElement(), "Relationship")) {
+                String id = relationship.getAttribute("Id");
+                if (id.matches("rId\\d{1,9}")) {
+                    lastRelationship = Math.max(lastRelationship, Integer.parseInt(id.substring(3)));
+                }
+                if (SLIDE_TYPE.equals(relationship.getAttribute("Type")) && !"External".equals(relationship.getAttribute("TargetMode"))) {
+                    slideRelationships.put(id, relationship);
+                }
+            }
+            int lastSlideNumber = 0;
+            for (ZipEntry entry : Collections.list(zip.entries())) {
+                Matcher name = SLIDE_NAME.matcher(entry.getName());
+                if (name.matches() && entry.getName().startsWith(directory(main) + "slides/")) {
+                    lastSlideNumber = Math.max(lastSlideNumber, Integer.parseInt(name.group(2)));
+                }
+            }
+            firstSlideRelationship = lastRelationship + 1;
+            firstSlideNumber = lastSlideNumber + 1;
+
+            Document presentation = TemplateXml.parse(read(main));
+            Map<String, Element> slideIds = new HashMap<>();
+            for (Element slideId : TemplateXml.elements(presentation.getDocumentElement(),
+                    node -> node instanceof Element element && "sldId".equals(element.getLocalName()), node -> false)) {
+                slideIds.put(slideId.getAttributeNS(TemplateXml.RELATIONSHIPS, "id"), slideId);
+                firstSlideId = Math.max(firstSlideId, Long.parseLong(slideId.getAttribute("id")) + 1);
+            }
+
+            Set<String> slideParts = new HashSet<>();
+            for (Map.Entry<String, Element> relationship : slideRelationships.entrySet()) {
+                String target = relationship.getValue().getAttribute("Target");
+                String slidePart = resolve(directory(main), target);
+                slideParts.add(slidePart);
+                Document slide = templatePart(slidePart);
+                if (slide == null) {
+                    continue;
+                }
+                TemplateXml.moveSectionsAroundRows(slide);
+                TemplateXml.SectionTag loop = slideLoop(slide);
+                TemplateXml.replaceSectionParagraphs(slide);
+                if (loop == null) {
+                    add(slidePart, slide, false);
+                    continue;
+                }
+                Element slideId = slideIds.get(relationship.getKey());
+                if (slideId == null) {
+                    throw new IllegalArgumentException("Repeated slide " + slidePart + " is not in the slide list");
+                }
+                String source = loop.text() + TemplateXml.source(slide) + SLIDE_SEPARATOR + "{/" + loop.name() + "}";
+                String slideRelationshipsPart = relationshipsPart(slidePart);
+                byte[] own = zip.getEntry(slideRelationshipsPart) != null ? read(slideRelationshipsPart) : null;
+                byte[] withoutNotes = own;
+                if (own != null) {
+                    Document notes = TemplateXml.parse(own);
+                    for (Element link : children(notes.getDocumentElement(), "Relationship")) {
+                        if (NOTES_SLIDE_TYPE.equals(link.getAttribute("Type"))) {
+                            TemplateXml.replace(link, "");
+                        }
+                    }
+                    withoutNotes = TemplateXml.source(notes).getBytes(StandardCharsets.UTF_8);
+                }
+                slides.put(slidePart, new RepeatedSlide(slidePart, slideRelationshipsPart, relationship.getKey(),
+                    Long.parseLong(slideId.getAttribute("id")), target, parse(slidePart, source), own, withoutNotes));
+
+                String prefix = slideId.getPrefix() == null ? "" : slideId.getPrefix() + ":";
+                String loopStart = "{#for copy in _slides.copies('" + relationship.getKey() + "')}";
+                TemplateXml.replace(slideId, loopStart + "<" + prefix + "sldId id=\"{copy.id}\" "
+                    + slideId.getAttributeNodeNS(TemplateXml.RELATIONSHIPS, "id").getName() + "=\"{copy.relationshipId}\"/>{/for}");
+                TemplateXml.replace(relationship.getValue(), loopStart + "<Relationship Id=\"{copy.relationshipId}\" Type=\"" + SLIDE_TYPE
+                    + "\" Target=\"{copy.target}\"/>{/for}");
+            }
+            // Other parts, such as notes, layouts and masters, are filled with the data too
+            for (ZipEntry entry : Collections.list(zip.entries())) {
+                String name = entry.getName();
+                if (name.startsWith(directory(main)) && name.endsWith(".xml") && !name.equals(main) && !slideParts.contains(name)) {
+                    Document part = templatePart(name);
+                    if (part != null) {
+                        TemplateXml.replaceSectionParagraphs(part);
+                        add(name, part, false);
+                    }
+                }
+            }
+            if (!slides.isEmpty()) {
+                Document contentTypes = TemplateXml.parse(read("[Content_Types].xml"));
+                for (Element override : children(contentTypes.getDocumentElement(), "Override")) {
+                    String part = override.getAttribute("PartName").substring(1);
+                    RepeatedSlide slide = slides.get(part);
+                    if (slide != null) {
+                        TemplateXml.replace(override, "{#for copy in _slides.copies('" + slide.relationshipId() + "')}<Override PartName=\"{copy.partName}\" ContentType=\""
+                            + override.getAttribute("ContentType") + "\"/>{/for}");
+                    }
+                }
+                add("[Content_Types].xml", contentTypes, false);
+                add(main, presentation, false);
+                add(relationshipsName, relationships, false);
+            }
+        }
+
+        void workbook() throws IOException {
+            String main = ZipPartReader.mainPart(zip);
+            List<String> sharedStrings = new ArrayList<>();
+            String sharedStringsPart = ZipPartReader.relationshipOfType(zip, main, "/sharedStrings");
+            if (sharedStringsPart != null) {
+                Document table = TemplateXml.parse(read(sharedStringsPart));
+                for (Element item : children(table.getDocumentElement(), "si")) {
+                    StringBuilder text = new StringBuilder();
+                    // Phonetic runs are not part of the text
+                    TemplateXml.elements(item, TemplateXml::isText, node -> node instanceof Element element && "rPh".equals(element.getLocalName()))
+                        .forEach(t -> text.append(t.getTextContent()));
+                    sharedStrings.add(text.toString());
+                }
+            }
+            boolean compiled = false;
+            for (String sheetPart : WorkbookMetadataIndex.readSheetParts(zip).values()) {
+                Document sheet = TemplateXml.parse(read(sheetPart));
+                inlineSharedStrings(sheet, sharedStrings);
+                if (!TemplateXml.hasTemplateText(sheet)) {
+                    continue;
+                }
+                TemplateXml.joinSplitTags(sheet);
+                List<Element> repeated = TemplateXml.moveSectionsAroundRows(sheet);
+                typedCells(sheet);
+                if (!repeated.isEmpty()) {
+                    numberRows(sheet, repeated);
+                }
+                add(sheetPart, sheet, true);
+                compiled = true;
+            }
+            String calcChain = ZipPartReader.relationshipOfType(zip, main, "/calcChain");
+            if (compiled && calcChain != null) {
+                // Lists the formula cells of the template, which repeated rows no longer match; Excel rebuilds it
+                dropped.add(calcChain);
+                String relationshipsName = relationshipsPart(main);
+                Document relationships = TemplateXml.parse(read(relationshipsName));
+                for (Element relationship : children(relationships.getDocumentElement(), "Relationship")) {
+                    if (CALC_CHAIN_TYPE.equals(relationship.getAttribute("Type"))) {
+                        TemplateXml.replace(relationship, "");
+                    }
+                }
+                add(relationshipsName, relationships, false);
+                Document contentTypes = TemplateXml.parse(read("[Content_Types].xml"));
+                for (Element override : children(contentTypes.getDocumentElement(), "Override")) {
+                    if (override.getAttribute("PartName").equals("/" + calcChain)) {
+                        TemplateXml.replace(override, "");
+                    }
+                }
+                add("[Content_Types].xml", contentTypes, false);
+            }
+        }
+
+        // The part, parsed and with its split tags joined, when its text has tags; otherwise null
+        private Document templatePart(String name) throws IOException {
+            byte[] content = read(name);
+            if (indexOf(content, (byte) '{') < 0) {
+                return null;
+            }
+            Document part = TemplateXml.parse(content);
+            if (!TemplateXml.hasTemplateText(part)) {
+                return null;
+            }
+            TemplateXml.joinSplitTags(part);
+            return part;
+        }
+
+        private void add(String name, Document part, boolean sheet) {
+            parts.put(name, new Part(parse(name, TemplateXml.source(part)), sheet));
+        }
+
+        private Template parse(String name, String source) {
+            return engine.parse(source, XML, name);
+        }
+
+        private byte[] read(String name) throws IOException {
+            ZipEntry entry = zip.getEntry(name);
+            if (entry == null) {
+                throw new IOException("Missing part " + name + " in template");
+            }
+            try (InputStream in = zip.getInputStream(entry)) {
+                return in.readAllBytes();
+            }
+        }
+
+        // Cells that show a shared string with a tag get the string inline, where it can be rendered per row
+        private static void inlineSharedStrings(Document sheet, List<String> sharedStrings) {
+            for (Element cell : cells(sheet)) {
+                if (!"s".equals(cell.getAttribute("t"))) {
+                    continue;
+                }
+                Element value = first(cell, "v");
+                int index = value == null ? -1 : Integer.parseInt(value.getTextContent().strip());
+                if (index < 0 || index >= sharedStrings.size() || sharedStrings.get(index).indexOf('{') < 0) {
+                    continue;
+                }
+                String prefix = cell.getPrefix() == null ? "" : cell.getPrefix() + ":";
+                cell.removeChild(value);
+                cell.setAttribute("t", "inlineStr");
+                Element inline = sheet.createElementNS(TemplateXml.SPREADSHEET, prefix + "is");
+                Element text = sheet.createElementNS(TemplateXml.SPREADSHEET, prefix + "t");
+                text.setTextContent(sharedStrings.get(index));
+                inline.appendChild(text);
+                cell.appendChild(inline);
+            }
+        }
+
+        private static void typedCells(Document sheet) {
+            for (Element cell : cells(sheet)) {
+                Element inline = first(cell, "is");
+                if (!"inlineStr".equals(cell.getAttribute("t")) || inline == null) {
+                    continue;
+                }
+                Matcher value = VALUE.matcher(TemplateXml.paragraphText(inline));
+                if (value.matches()) {
+                    cell.removeAttribute("t");
+                    TemplateXml.rest(cell, "{_cells.value(" + value.group(1) + ")}");
+                }
+            }
+        }
+
+        // Row and cell references of a sheet whose rows repeat are computed while it renders
+        private static void numberRows(Document sheet, List<Element> repeated) {
+            for (Element row : TemplateXml.elements(sheet.getDocumentElement(), TemplateXml::isRow, node -> false)) {
+                String r = row.getAttribute("r");
+                if (r.isEmpty()) {
+                    continue;
+                }
+                if (repeated.contains(row)) {
+                    TemplateXml.rawAttribute(row, "r", "{_rows.repeat(" + Integer.parseInt(r) + ")}");
+                    TemplateXml.after(row, "{_rows.end(" + Integer.parseInt(r) + ")}");
+                } else {
+                    TemplateXml.rawAttribute(row, "r", "{_rows.row(" + Integer.parseInt(r) + ")}");
+                }
+                for (Element cell : children(row, "c")) {
+                    String reference = cell.getAttribute("r");
+                    int digits = 0;
+                    while (digits < reference.length() && !Character.isDigit(reference.charAt(digits))) {
+                        digits++;
+                    }
+                    if (!reference.isEmpty()) {
+                        TemplateXml.rawAttribute(cell, "r", reference.substring(0, digits) + "{_rows.current}");
+                    }
+                }
+            }
+            // The used range moves with the rows; readers fall back to the rows themselves
+            for (Element dimension : TemplateXml.elements(sheet.getDocumentElement(),
+                    node -> node instanceof Element element && "dimension".equals(element.getLocalName()), node -> false)) {
+                TemplateXml.replace(dimension, "");
+            }
+        }
+
+        // The {#for} or {#each} that a slide leaves open in a paragraph of its own, which is removed
+        private static TemplateXml.SectionTag slideLoop(Document slide) {
+            List<Element> open = new ArrayList<>();
+            List<TemplateXml.SectionTag> tags = new ArrayList<>();
+            for (Element paragraph : TemplateXml.elements(slide.getDocumentElement(), TemplateXml::isParagraph, node -> false)) {
+                TemplateXml.SectionTag tag = TemplateXml.sectionParagraph(paragraph);
+                if (tag == null || tag.isElse()) {
+                    continue;
+                }
+                if (!tag.isEnd()) {
+                    open.add(paragraph);
+                    tags.add(tag);
+                } else if (!open.isEmpty()) {
+                    open.remove(open.size() - 1);
+                    tags.remove(tags.size() - 1);
+                }
+            }
+            if (open.isEmpty()) {
+                return null;
+            }
+            TemplateXml.SectionTag loop = tags.get(0);
+            if (open.size() > 1 || !loop.name().equals("for") && !loop.name().equals("each")) {
+                throw new IllegalArgumentException("A slide can only leave one {#for} or {#each} open, to be repeated by it");
+            }
+            // The paragraph stays, empty, as a text body needs one; a text box left without text is dropped
+            Element paragraph = open.get(0);
+            TemplateXml.elements(paragraph, TemplateXml::isText, TemplateXml::isParagraph).forEach(text -> text.setTextContent(""));
+            for (org.w3c.dom.Node node = paragraph.getParentNode(); node instanceof Element element; node = node.getParentNode()) {
+                if ("sp".equals(element.getLocalName()) && TemplateXml.PRESENTATION.equals(element.getNamespaceURI())) {
+                    if (TemplateXml.elements(element, TemplateXml::isParagraph, n -> false).stream().allMatch(p -> TemplateXml.paragraphText(p).isBlank())) {
+                        element.getParentNode().removeChild(element);
+                    }
+                    break;
+                }
+            }
+            return loop;
+        }
+
+        private static List<Element> cells(Document sheet) {
+            return TemplateXml.elements(sheet.getDocumentElement(),
+                node -> node instanceof Element element && "c".equals(element.getLocalName()) && TemplateXml.SPREADSHEET.equals(element.getNamespaceURI()),
+                node -> false);
+        }
+
+        private static List<Element> children(Element parent, String localName) {
+            List<Element> children = new ArrayList<>();
+            for (org.w3c.dom.Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+                if (node instanceof Element element && localName.equals(element.getLocalName())) {
+                    children.add(element);
+                }
+            }
+            return children;
+        }
+
+        private static Element first(Element parent, String localName) {
+            List<Element> children = children(parent, localName);
+            return children.isEmpty() ? null : children.get(0);
+        }
+
+        private static String resolve(String directory, String target) {
+            if (target.startsWith("/")) {
+                return target.substring(1);
+            }
+            return Path.of(directory).resolve(target).normalize().toString().replace('\\', '/');
+        }
+
+        private static int indexOf(byte[] content, byte b) {
+            for (int i = 0; i < content.length; i++) {
+                if (content[i] == b) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
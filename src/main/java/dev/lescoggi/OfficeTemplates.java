@@ -0,0 +1,207 @@
+package dev.lescoggi;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import io.quarkus.qute.Engine;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Singleton;
+
+/**
+ * Renders documents from {@link OfficeTemplate}s. A template is compiled the first time it is
+ * used and kept, by path, while the file keeps its modification time and size, so rendering the
+ * same report for many customers parses its XML once. At most {@code office.template.max-entries}
+ * templates are kept, the least recently used are dropped first.
+ * <p>
+ * A batch renders its documents on virtual threads of which at most
+ * {@code office.template.parallelism} run at once. A document that fails does not stop the
+ * others; its error is returned with the documents that were written.
+ */
+@Singleton
+public class OfficeTemplates {
+
+    private static final Logger LOG = Logger.getLogger(OfficeTemplates.class);
+
+    // Documents between two calls of the listener
+    private static final int LISTENER_BATCH = 100;
+
+    @FunctionalInterface
+    interface Listener {
+        /**
+         * Called once {@code done} of the {@code total} documents of a batch are written; not
+         * called when the last ones are.
+         */
+        void rendered(int done, int total);
+    }
+
+    /**
+     * A document of a batch: the file to write and the data to fill the template with.
+     */
+    public record Render(String output, Map<String, Object> data) {
+    }
+
+    /**
+     * The outcome of a batch: the number of documents written and the errors of the others, by
+     * output path.
+     */
+    public record Result(int rendered, Map<String, String> failures) {
+    }
+
+    public record Stats(long compilations, long hits, long documents, long failures) {
+    }
+
+    private record Entry(long lastModified, long size, OfficeTemplate template) {
+    }
+
+    private final Engine engine;
+    private final DocumentCache documentCache;
+    private final DocumentLockManager locks;
+    private final DocumentSaver saver;
+    private final int maxEntries;
+    private final Semaphore renderers;
+
+    // Access order, so iteration starts with the least recently used entry
+    private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LongAdder compilations = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder documents = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    OfficeTemplates(Engine engine, DocumentCache documentCache, DocumentLockManager locks, DocumentSaver saver,
+                    @ConfigProperty(name = "office.template.max-entries", defaultValue = "32") int maxEntries,
+                    @ConfigProperty(name = "office.template.parallelism", defaultValue = "8") int parallelism) {
+        this.engine = OfficeTemplate.engine(engine);
+        this.documentCache = documentCache;
+        this.locks = locks;
+        this.saver = saver;
+        this.maxEntries = maxEntries;
+        this.renderers = new Semaphore(Math.max(parallelism, 1));
+    }
+
+    /**
+     * Returns the compiled template, compiling it when it is not cached or the file changed.
+     * Pending changes of the template are written first.
+     *
+     * @throws IllegalArgumentException when the file is not a .docx, .pptx or .xlsx file, or its
+     * tags are not valid
+     */
+    public OfficeTemplate template(String templatePath) throws IOException {
+        Path key = DocumentCache.key(templatePath);
+        try (var lock = documentCache.readFlushed(templatePath)) {
+            BasicFileAttributes attributes = Files.readAttributes(key, BasicFileAttributes.class);
+            synchronized (this) {
+                Entry entry = entries.get(key);
+                if (entry != null && entry.lastModified() == attributes.lastModifiedTime().toMillis() && entry.size() == attributes.size()) {
+                    hits.increment();
+                    return entry.template();
+                }
+            }
+            compilations.increment();
+            OfficeTemplate template = OfficeTemplate.compile(engine, key);
+            synchronized (this) {
+                entries.put(key, new Entry(attributes.lastModifiedTime().toMillis(), attributes.size(), template));
+                while (entries.size() > maxEntries) {
+                    entries.remove(entries.keySet().iterator().next());
+                }
+            }
+            return template;
+        }
+    }
+
+    /**
+     * Renders one document, replacing {@code output} if it exists.
+     *
+     * @throws IllegalArgumentException when the output is not of the type of the template, or the
+     * data lacks a value the template uses
+     */
+    public void render(String templatePath, String output, Map<String, Object> data) throws IOException {
+        OfficeTemplate template = template(templatePath);
+        write(templatePath, template, output, data);
+    }
+
+    /**
+     * Renders the documents of a batch in parallel.
+     */
+    public Result render(String templatePath, List<Render> renders, Listener listener) throws IOException {
+        OfficeTemplate template = template(templatePath);
+        Map<String, String> failed = new LinkedHashMap<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<String>> pending = new ArrayList<>(renders.size());
+            for (Render render : renders) {
+                pending.add(executor.submit(() -> {
+                    renderers.acquire();
+                    try {
+                        write(templatePath, template, render.output(), render.data());
+                        return null;
+                    } catch (IOException | RuntimeException e) {
+                        LOG.debugf("Cannot render %s: %s", render.output(), e.getMessage());
+                        return e.getMessage();
+                    } finally {
+                        renderers.release();
+                    }
+                }));
+            }
+            for (int i = 0; i < renders.size(); i++) {
+                String error = pending.get(i).get();
+                if (error != null) {
+                    failed.put(renders.get(i).output(), error);
+                }
+                if (listener != null && (i + 1) % LISTENER_BATCH == 0 && i < renders.size() - 1) {
+                    listener.rendered(i + 1, renders.size());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while rendering documents", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        }
+        return new Result(renders.size() - failed.size(), failed);
+    }
+
+    public Stats stats() {
+        return new Stats(compilations.sum(), hits.sum(), documents.sum(), failures.sum());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        LOG.infof("Template statistics: %s", stats());
+    }
+
+    private void write(String templatePath, OfficeTemplate template, String output, Map<String, Object> data) throws IOException {
+        try {
+            Path target = DocumentCache.key(output);
+            if (OfficeTemplate.type(target) != OfficeTemplate.type(Path.of(templatePath))) {
+                throw new IllegalArgumentException("Output " + output + " must have the extension of the template");
+            }
+            if (target.equals(DocumentCache.key(templatePath))) {
+                throw new IllegalArgumentException("Output must not be the template itself");
+            }
+            try (var lock = locks.write(output)) {
+                saver.save(target, out -> template.render(data, out));
+                // Any copy of the previous file is stale now
+                documentCache.invalidate(output);
+            }
+            documents.increment();
+        } catch (IOException | RuntimeException e) {
+            failures.increment();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package dev.lescoggi;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.graalvm.nativeimage.hosted.Feature;
+import org.graalvm.nativeimage.hosted.RuntimeReflection;
+import org.jboss.logging.Logger;
+
+/**
+ * Makes POI work in a native executable. XMLBeans loads the type system of the OOXML schemas and
+ * instantiates the generated {@code *Impl} classes by name, so every class of the schema packages
+ * is registered for reflection, with its constructors, methods and fields. The schema files those
+ * classes are read from ({@code .xsb}) and the templates POI creates new documents from are
+ * included as resources by {@code quarkus.native.resources.includes}.
+ * <p>
+ * Enabled with {@code --features} in {@code quarkus.native.additional-build-args}; it is only
+ * loaded by the native image builder.
+ */
+public class PoiNativeImageFeature implements Feature {
+
+    private static final Logger LOG = Logger.getLogger(PoiNativeImageFeature.class);
+
+    // Packages of the classes generated from the OOXML schemas by XMLBeans, and of XMLBeans' own
+    private static final List<String> SCHEMA_PACKAGES = List.of(
+        "org/openxmlformats/schemas/",
+        "com/microsoft/schemas/",
+        "org/etsi/uri/",
+        "org/w3/x2000/",
+        "org/apache/poi/schemas/",
+        "org/apache/xmlbeans/impl/schema/",
+        "org/apache/xmlbeans/impl/values/");
+
+    @Override
+    public String getDescription() {
+        return "Registers the XMLBeans schema classes of POI for reflection";
+    }
+
+    @Override
+    public void beforeAnalysis(BeforeAnalysisAccess access) {
+        int registered = 0;
+        for (Path entry : access.getApplicationClassPath()) {
+            if (!Files.isRegularFile(entry) || !entry.getFileName().toString().endsWith(".jar")) {
+                continue;
+            }
+            try (JarFile jar = new JarFile(entry.toFile())) {
+                for (JarEntry file : (Iterable<JarEntry>) jar.stream()::iterator) {
+                    String name = file.getName();
+                    if (name.endsWith(".class") && !name.endsWith("module-info.class") && isSchemaClass(name)) {
+                        registered += register(access, name.substring(0, name.length() - ".class".length()).replace('/', '.'));
+                    }
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot read " + entry, e);
+            }
+        }
+        LOG.debugf("Registered %d schema classes for reflection", registered);
+    }
+
+    private static boolean isSchemaClass(String name) {
+        for (String prefix : SCHEMA_PACKAGES) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int register(BeforeAnalysisAccess access, String className) {
+        Class<?> type = access.findClassByName(className);
+        if (type == null) {
+            return 0;
+        }
+        try {
+            RuntimeReflection.register(type);
+            RuntimeReflection.register(type.getDeclaredConstructors());
+            RuntimeReflection.register(type.getDeclaredMethods());
+            RuntimeReflection.register(type.getDeclaredFields());
+            return 1;
+        } catch (LinkageError e) {
+            // A class that refers to an optional dependency that is not on the class path
+            return 0;
+        }
+    }
+}
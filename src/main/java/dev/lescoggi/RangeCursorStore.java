@@ -0,0 +1,143 @@
+package dev.lescoggi;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.UUID;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Singleton;
+
+/**
+ * Server-side state of paged range reads. Each open cursor keeps a {@link SheetRowCursor}
+ * positioned after the last row returned, so the next page continues where the previous one
+ * stopped instead of re-scanning the sheet from its first row.
+ * <p>
+ * Open cursors hold a file handle and the shared strings of their workbook, so the store is
+ * bounded: cursors not used for {@code office.excel.range-cursor.ttl} expire, and once
+ * {@code office.excel.range-cursor.max-open} cursors are open the least recently used one is
+ * closed. A cursor is removed from the store while a page is being read, so a token can only be
+ * used by one call at a time.
+ */
+@Singleton
+public class RangeCursorStore {
+
+    private static final Logger LOG = Logger.getLogger(RangeCursorStore.class);
+
+    /**
+     * An open range read. {@code pending} is the first row of the next page, read ahead to know
+     * whether another page exists.
+     */
+    static final class RangeCursor {
+        final Path file;
+        final String sheetName;
+        final SheetRange range;
+        final SheetRowCursor rows;
+        SheetRowCursor.SheetRow pending;
+        long expiresAt;
+
+        RangeCursor(Path file, String sheetName, SheetRange range, SheetRowCursor rows) {
+            this.file = file;
+            this.sheetName = sheetName;
+            this.range = range;
+            this.rows = rows;
+        }
+    }
+
+    private final int maxOpen;
+    private final long ttlNanos;
+
+    // Insertion order; cursors are re-inserted on every use, so iteration starts with the least
+    // recently used one
+    private final LinkedHashMap<String, RangeCursor> cursors = new LinkedHashMap<>();
+
+    RangeCursorStore(@ConfigProperty(name = "office.excel.range-cursor.max-open", defaultValue = "16") int maxOpen,
+                     @ConfigProperty(name = "office.excel.range-cursor.ttl", defaultValue = "5m") Duration ttl) {
+        this.maxOpen = maxOpen;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    /**
+     * Stores the cursor and returns the token that identifies it, closing expired cursors and, if
+     * the store is full, the least recently used one.
+     */
+    String put(RangeCursor cursor) {
+        String token = UUID.randomUUID().toString();
+        List<RangeCursor> closed = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            removeExpired(now, closed);
+            Iterator<RangeCursor> eldest = cursors.values().iterator();
+            while (cursors.size() >= maxOpen && eldest.hasNext()) {
+                closed.add(eldest.next());
+                eldest.remove();
+            }
+            cursor.expiresAt = now + ttlNanos;
+            cursors.put(token, cursor);
+        }
+        closeAll(closed);
+        return token;
+    }
+
+    /**
+     * Removes and returns the cursor for the given token, or returns {@code null} when the token is
+     * unknown, has expired or its cursor was closed to make room for others. The caller either
+     * stores the cursor again with {@link #put} or closes it.
+     */
+    RangeCursor take(String token) {
+        List<RangeCursor> closed = new ArrayList<>();
+        RangeCursor cursor;
+        synchronized (this) {
+            removeExpired(System.nanoTime(), closed);
+            cursor = cursors.remove(token);
+        }
+        closeAll(closed);
+        return cursor;
+    }
+
+    synchronized int size() {
+        return cursors.size();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        List<RangeCursor> closed;
+        synchronized (this) {
+            closed = new ArrayList<>(cursors.values());
+            cursors.clear();
+        }
+        closeAll(closed);
+    }
+
+    static void close(RangeCursor cursor) {
+        try {
+            cursor.rows.close();
+        } catch (IOException e) {
+            LOG.warnf(e, "Failed to close range cursor on %s", cursor.file);
+        }
+    }
+
+    private void removeExpired(long now, List<RangeCursor> closed) {
+        Iterator<RangeCursor> iterator = cursors.values().iterator();
+        while (iterator.hasNext()) {
+            RangeCursor cursor = iterator.next();
+            if (now - cursor.expiresAt >= 0) {
+                closed.add(cursor);
+                iterator.remove();
+            }
+        }
+    }
+
+    private static void closeAll(List<RangeCursor> cursors) {
+        for (RangeCursor cursor : cursors) {
+            close(cursor);
+        }
+    }
+}
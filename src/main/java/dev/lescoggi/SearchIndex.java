@@ -0,0 +1,526 @@
+package dev.lescoggi;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.poi.ss.formula.SheetNameFormatter;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Singleton;
+
+/**
+ * Full-text index over every .docx, .xlsx and .pptx file under {@code office.files.path}. Each
+ * paragraph of a Word document, cell of a workbook and slide of a presentation is indexed as one
+ * unit, and a search returns the units that contain all terms of the query.
+ * <p>
+ * The index lives in {@code office.search.index-path} as a list of immutable
+ * {@link IndexSegment segments}. A refresh walks the directory, extracts the text of new and
+ * changed files (by modification time and size) in parallel with the streaming readers, and writes
+ * them into new segments, together with tombstones for removed files; the latest segment that
+ * mentions a file wins. Once there are more than {@code office.search.max-segments} segments they
+ * are merged. Only changed files are ever re-read, including after a restart.
+ * <p>
+ * The index is loaded and brought up to date by the first search, and refreshed in the background
+ * every {@code office.search.refresh-interval} after that. Searches run against an immutable
+ * snapshot of the segments and never wait for a refresh.
+ */
+@Singleton
+public class SearchIndex {
+
+    private static final Logger LOG = Logger.getLogger(SearchIndex.class);
+
+    private static final int MAX_TERM_LENGTH = 64;
+    private static final int SNIPPET_LENGTH = 160;
+    // Flush a segment after this many extracted files or characters of text
+    private static final int SEGMENT_FILES = 1000;
+    private static final long SEGMENT_CHARS = 32L * 1024 * 1024;
+
+    /**
+     * A unit that matches a query; {@code path} is relative to {@code office.files.path}.
+     */
+    public record Hit(String path, String location, String snippet) {
+    }
+
+    /**
+     * The first hits of a query, ordered by path and position in the file, and the number of all
+     * matching units.
+     */
+    public record Result(List<Hit> hits, int totalHits) {
+    }
+
+    public record Stats(int documents, int segments, long refreshes, long extractedFiles, long failedFiles) {
+    }
+
+    // Where the latest version of a file lives
+    private record DocumentRef(int segment, int document) {
+    }
+
+    /**
+     * An immutable view of the open segments; {@code live} marks, per segment, the documents that
+     * are the latest version of their file.
+     */
+    private record Snapshot(List<IndexSegment> segments, List<BitSet> live, Map<String, DocumentRef> documents) {
+
+        static Snapshot of(List<IndexSegment> segments) {
+            Map<String, DocumentRef> documents = new HashMap<>();
+            List<BitSet> live = new ArrayList<>(segments.size());
+            for (int s = 0; s < segments.size(); s++) {
+                IndexSegment segment = segments.get(s);
+                BitSet bits = new BitSet(segment.documentCount());
+                for (int d = 0; d < segment.documentCount(); d++) {
+                    DocumentRef previous = documents.put(segment.document(d).path(), new DocumentRef(s, d));
+                    if (previous != null) {
+                        live.get(previous.segment()).clear(previous.document());
+                    }
+                    bits.set(d);
+                }
+                live.add(bits);
+            }
+            return new Snapshot(List.copyOf(segments), live, documents);
+        }
+
+        IndexSegment.Document document(DocumentRef ref) {
+            return segments.get(ref.segment()).document(ref.document());
+        }
+    }
+
+    private final Path root;
+    private final Path indexDirectory;
+    private final Duration refreshInterval;
+    private final int threads;
+    private final int maxSegments;
+
+    // Guards closing segments that a search may still be reading
+    private final ReentrantReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+    private volatile Snapshot snapshot;
+    // Guards refreshes and the generation counter
+    private final Object refreshLock = new Object();
+    private long nextGeneration;
+    private ForkJoinPool extractors;
+    private ScheduledExecutorService refresher;
+
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder extractedFiles = new LongAdder();
+    private final LongAdder failedFiles = new LongAdder();
+
+    SearchIndex(@ConfigProperty(name = "office.files.path") String filesPath,
+                @ConfigProperty(name = "office.search.index-path", defaultValue = "./office_index") String indexPath,
+                @ConfigProperty(name = "office.search.refresh-interval", defaultValue = "30s") Duration refreshInterval,
+                @ConfigProperty(name = "office.search.threads", defaultValue = "0") int threads,
+                @ConfigProperty(name = "office.search.max-segments", defaultValue = "8") int maxSegments) {
+        this.root = Path.of(filesPath).toAbsolutePath().normalize();
+        this.indexDirectory = Path.of(indexPath).toAbsolutePath().normalize();
+        this.refreshInterval = refreshInterval;
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.maxSegments = Math.max(maxSegments, 1);
+    }
+
+    /**
+     * Returns up to {@code maxResults} units that contain every term of {@code query}. With
+     * {@code refresh} the index is brought up to date with the directory first; otherwise it may lag
+     * behind by up to one refresh interval.
+     */
+    public Result search(String query, int maxResults, boolean refresh) throws IOException {
+        List<String> terms = List.copyOf(new LinkedHashSet<>(terms(query)));
+        if (terms.isEmpty()) {
+            throw new IllegalArgumentException("The query contains no words to search for");
+        }
+        if (refresh || snapshot == null) {
+            refresh();
+        }
+        startBackgroundRefresh();
+
+        snapshotLock.readLock().lock();
+        try {
+            Snapshot current = snapshot;
+            List<long[]> matches = new ArrayList<>();
+            for (int s = 0; s < current.segments().size(); s++) {
+                long[] postings = intersect(current.segments().get(s), terms);
+                BitSet live = current.live().get(s);
+                for (long posting : postings) {
+                    if (live.get((int) (posting >>> 32))) {
+                        matches.add(new long[] {s, posting});
+                    }
+                }
+            }
+            Comparator<long[]> order = Comparator.comparing(
+                (long[] m) -> current.segments().get((int) m[0]).document((int) (m[1] >>> 32)).path())
+                .thenComparingInt(m -> (int) m[1]);
+            List<Hit> hits = new ArrayList<>();
+            for (long[] match : matches.stream().sorted(order).limit(maxResults).toList()) {
+                IndexSegment segment = current.segments().get((int) match[0]);
+                int document = (int) (match[1] >>> 32);
+                IndexSegment.Unit unit = segment.unit(document, (int) match[1]);
+                hits.add(new Hit(segment.document(document).path(), unit.location(), snippet(unit.text(), terms)));
+            }
+            return new Result(hits, matches.size());
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Brings the index up to date with the files under {@code office.files.path}, loading it from
+     * disk first if needed. Concurrent calls are serialized.
+     */
+    public void refresh() throws IOException {
+        synchronized (refreshLock) {
+            if (snapshot == null) {
+                load();
+            }
+            long start = System.nanoTime();
+            Map<String, BasicFileAttributes> files = scan();
+            Snapshot current = snapshot;
+            List<String> changed = new ArrayList<>();
+            for (Map.Entry<String, BasicFileAttributes> file : files.entrySet()) {
+                DocumentRef ref = current.documents().get(file.getKey());
+                IndexSegment.Document document = ref == null ? null : current.document(ref);
+                if (document == null || document.deleted()
+                    || document.lastModified() != file.getValue().lastModifiedTime().toMillis()
+                    || document.size() != file.getValue().size()) {
+                    changed.add(file.getKey());
+                }
+            }
+            List<IndexSegment.Source> pending = new ArrayList<>();
+            for (Map.Entry<String, DocumentRef> document : current.documents().entrySet()) {
+                if (!files.containsKey(document.getKey()) && !current.document(document.getValue()).deleted()) {
+                    pending.add(IndexSegment.Source.deleted(document.getKey()));
+                }
+            }
+            changed.sort(null);
+
+            long pendingChars = 0;
+            int chunk = threads * 4;
+            for (int i = 0; i < changed.size(); i += chunk) {
+                List<String> paths = changed.subList(i, Math.min(i + chunk, changed.size()));
+                for (IndexSegment.Source source : extract(paths, files)) {
+                    pending.add(source);
+                    pendingChars += source.units().stream().mapToLong(u -> u.text().length()).sum();
+                }
+                if (pending.size() >= SEGMENT_FILES || pendingChars >= SEGMENT_CHARS) {
+                    addSegment(pending);
+                    pending.clear();
+                    pendingChars = 0;
+                }
+            }
+            if (!pending.isEmpty()) {
+                addSegment(pending);
+            }
+            if (snapshot.segments().size() > maxSegments) {
+                merge();
+            }
+            refreshes.increment();
+            if (!changed.isEmpty() || current != snapshot) {
+                LOG.infof("Search index refreshed in %d ms: %d changed files, %d segments",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), changed.size(), snapshot.segments().size());
+            }
+        }
+    }
+
+    public Stats stats() {
+        Snapshot current = snapshot;
+        int documents = 0;
+        int segments = 0;
+        if (current != null) {
+            segments = current.segments().size();
+            for (DocumentRef ref : current.documents().values()) {
+                if (!current.document(ref).deleted()) {
+                    documents++;
+                }
+            }
+        }
+        return new Stats(documents, segments, refreshes.sum(), extractedFiles.sum(), failedFiles.sum());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        synchronized (refreshLock) {
+            if (refresher != null) {
+                refresher.shutdownNow();
+            }
+            if (extractors != null) {
+                extractors.shutdownNow();
+            }
+            if (snapshot != null) {
+                LOG.infof("Search index statistics: %s", stats());
+                snapshotLock.writeLock().lock();
+                try {
+                    close(snapshot.segments());
+                } finally {
+                    snapshotLock.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Splits text into lower-case runs of letters and digits, cut at 64 characters.
+     */
+    static List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            int c = text.codePointAt(i);
+            if (!Character.isLetterOrDigit(c)) {
+                i += Character.charCount(c);
+                continue;
+            }
+            int start = i;
+            while (i < length && Character.isLetterOrDigit(c = text.codePointAt(i))) {
+                i += Character.charCount(c);
+            }
+            String term = text.substring(start, i).toLowerCase(Locale.ROOT);
+            terms.add(term.length() > MAX_TERM_LENGTH ? term.substring(0, term.offsetByCodePoints(0, MAX_TERM_LENGTH)) : term);
+        }
+        return terms;
+    }
+
+    private void load() throws IOException {
+        Files.createDirectories(indexDirectory);
+        List<IndexSegment> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(indexDirectory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    // Left behind by an interrupted refresh
+                    Files.deleteIfExists(file);
+                } else if (name.startsWith("segment-") && name.endsWith(".idx")) {
+                    try {
+                        segments.add(IndexSegment.open(file));
+                    } catch (IOException e) {
+                        LOG.warnf(e, "Ignoring unreadable search index segment %s", file);
+                    }
+                }
+            }
+        }
+        segments.sort(Comparator.comparingLong(IndexSegment::generation));
+        // Segments whose content was merged into a later one are left over from an interrupted merge
+        List<IndexSegment> obsolete = segments.stream()
+            .filter(s -> segments.stream().anyMatch(m -> m.generation() > s.generation()
+                && m.mergedFrom() <= s.generation() && s.generation() <= m.mergedThrough()))
+            .toList();
+        segments.removeAll(obsolete);
+        delete(obsolete);
+        nextGeneration = segments.isEmpty() ? 1 : segments.get(segments.size() - 1).generation() + 1;
+        snapshot = Snapshot.of(segments);
+    }
+
+    private Map<String, BasicFileAttributes> scan() throws IOException {
+        if (!Files.isDirectory(root)) {
+            LOG.warnf("Office files directory %s does not exist; the search index is empty", root);
+        }
+        return OfficeFiles.walk(root, indexDirectory);
+    }
+
+    private List<IndexSegment.Source> extract(List<String> paths, Map<String, BasicFileAttributes> files) throws IOException {
+        if (extractors == null) {
+            extractors = new ForkJoinPool(threads);
+        }
+        try {
+            return extractors.submit(() -> paths.parallelStream().map(path -> extract(path, files.get(path))).toList()).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while indexing", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private IndexSegment.Source extract(String path, BasicFileAttributes attributes) {
+        Path file = root.resolve(path);
+        String name = path.toLowerCase(Locale.ROOT);
+        List<IndexSegment.Unit> units = new ArrayList<>();
+        try {
+            if (name.endsWith(".docx")) {
+                WordTextExtractor.readParagraphs(file, (index, offset, text) ->
+                    units.add(new IndexSegment.Unit("paragraph " + (index + 1) + " (offset " + offset + ")", text)));
+            } else if (name.endsWith(".xlsx")) {
+                StreamingSheetReader.readAllCells(file, (sheet, cell, value) -> {
+                    if (!value.isBlank()) {
+                        units.add(new IndexSegment.Unit(SheetNameFormatter.format(sheet) + "!" + cell, value));
+                    }
+                });
+            } else {
+                List<String> slides = StreamingSlideReader.readSlideTexts(file);
+                for (int i = 0; i < slides.size(); i++) {
+                    if (!slides.get(i).isBlank()) {
+                        units.add(new IndexSegment.Unit("slide " + (i + 1), slides.get(i).strip()));
+                    }
+                }
+            }
+            extractedFiles.increment();
+        } catch (IOException | RuntimeException e) {
+            // Indexed without text, so it is not retried until it changes
+            LOG.debugf("Cannot extract the text of %s: %s", file, e.getMessage());
+            failedFiles.increment();
+            units.clear();
+        }
+        return new IndexSegment.Source(path, attributes.lastModifiedTime().toMillis(), attributes.size(), units);
+    }
+
+    private void addSegment(List<IndexSegment.Source> sources) throws IOException {
+        long generation = nextGeneration++;
+        Path file = segmentFile(generation);
+        IndexSegment.write(file, generation, sources);
+        List<IndexSegment> segments = new ArrayList<>(snapshot.segments());
+        segments.add(IndexSegment.open(file));
+        publish(segments, List.of());
+    }
+
+    /**
+     * Merges the newer segments into one, or all of them when the newer ones together are at
+     * least as large as the oldest, so that large segments are rewritten rarely.
+     */
+    private void merge() throws IOException {
+        Snapshot current = snapshot;
+        List<IndexSegment> segments = current.segments();
+        int newer = segments.stream().skip(1).mapToInt(IndexSegment::documentCount).sum();
+        int from = newer < segments.get(0).documentCount() && segments.size() > 2 ? 1 : 0;
+        List<IndexSegment> merged = segments.subList(from, segments.size());
+        long generation = nextGeneration++;
+        Path file = segmentFile(generation);
+        IndexSegment.merge(file, generation, merged, current.live().subList(from, segments.size()), from > 0);
+        List<IndexSegment> result = new ArrayList<>(segments.subList(0, from));
+        result.add(IndexSegment.open(file));
+        publish(result, merged);
+    }
+
+    private void publish(List<IndexSegment> segments, List<IndexSegment> retired) throws IOException {
+        Snapshot next = Snapshot.of(segments);
+        snapshotLock.writeLock().lock();
+        try {
+            snapshot = next;
+            close(retired);
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+        delete(retired);
+    }
+
+    private Path segmentFile(long generation) {
+        return indexDirectory.resolve(String.format("segment-%012d.idx", generation));
+    }
+
+    private void startBackgroundRefresh() {
+        synchronized (refreshLock) {
+            if (refresher != null || refreshInterval.isZero()) {
+                return;
+            }
+            refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "office-search-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = refreshInterval.toMillis();
+            refresher.scheduleWithFixedDelay(() -> {
+                try {
+                    refresh();
+                } catch (IOException | RuntimeException e) {
+                    LOG.warnf(e, "Refreshing the search index failed");
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Units of one segment that contain every term, rarest term first
+    private static long[] intersect(IndexSegment segment, List<String> terms) throws IOException {
+        List<long[]> lists = new ArrayList<>(terms.size());
+        for (String term : terms) {
+            long[] postings = segment.postings(term);
+            if (postings.length == 0) {
+                return postings;
+            }
+            lists.add(postings);
+        }
+        lists.sort(Comparator.comparingInt(l -> l.length));
+        long[] result = lists.get(0);
+        for (int l = 1; l < lists.size() && result.length > 0; l++) {
+            long[] other = lists.get(l);
+            long[] common = new long[result.length];
+            int count = 0;
+            for (int i = 0, j = 0; i < result.length && j < other.length; ) {
+                if (result[i] < other[j]) {
+                    i++;
+                } else if (result[i] > other[j]) {
+                    j++;
+                } else {
+                    common[count++] = result[i];
+                    i++;
+                    j++;
+                }
+            }
+            result = Arrays.copyOf(common, count);
+        }
+        return result;
+    }
+
+    /**
+     * Returns about 160 characters of the text around the first occurrence of a query term, with
+     * whitespace collapsed.
+     */
+    static String snippet(String text, List<String> terms) {
+        String flat = text.strip().replaceAll("\\s+", " ");
+        if (flat.length() <= SNIPPET_LENGTH) {
+            return flat;
+        }
+        String lower = flat.toLowerCase(Locale.ROOT);
+        int match = -1;
+        if (lower.length() == flat.length()) {
+            for (String term : terms) {
+                int index = lower.indexOf(term);
+                if (index >= 0 && (match < 0 || index < match)) {
+                    match = index;
+                }
+            }
+        }
+        int start = Math.max(0, Math.min(match - SNIPPET_LENGTH / 3, flat.length() - SNIPPET_LENGTH));
+        int end = Math.min(flat.length(), start + SNIPPET_LENGTH);
+        if (start > 0 && Character.isLowSurrogate(flat.charAt(start))) {
+            start++;
+        }
+        if (end < flat.length() && Character.isLowSurrogate(flat.charAt(end))) {
+            end--;
+        }
+        return (start > 0 ? "…" : "") + flat.substring(start, end) + (end < flat.length() ? "…" : "");
+    }
+
+    private static void close(List<IndexSegment> segments) {
+        for (IndexSegment segment : segments) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                LOG.debugf("Closing %s failed: %s", segment.file(), e.getMessage());
+            }
+        }
+    }
+
+    private static void delete(List<IndexSegment> segments) throws IOException {
+        for (IndexSegment segment : segments) {
+            segment.close();
+            Files.deleteIfExists(segment.file());
+        }
+    }
+}
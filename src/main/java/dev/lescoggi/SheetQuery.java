@@ -0,0 +1,611 @@
+package dev.lescoggi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * A filter, group-by and aggregate query over a {@link SheetSnapshot}, for example the filter
+ * {@code Region = 'EU' and Amount > 100}, grouped by {@code Product} with the aggregates
+ * {@code sum(Amount), count(*)}.
+ * <p>
+ * Columns are named by their header text, in double quotes when it is not a single word, or by
+ * their letter. A filter is a list of conditions joined by {@code and}, each comparing a column
+ * with {@code =}, {@code !=}, {@code <}, {@code <=}, {@code >}, {@code >=}, {@code contains} or
+ * {@code in (...)} to a number or to text in single quotes. Text is compared ignoring case, as in
+ * Excel, and {@code = ''} matches blank cells. The aggregates are {@code count(*)},
+ * {@code count(column)} for the non-blank cells, and {@code sum}, {@code avg}, {@code min} and
+ * {@code max} of the numbers in a column.
+ * <p>
+ * Conditions are compiled against the dictionaries of the snapshot once, so a scan only compares
+ * numbers and integer codes. Snapshots of more than {@value #CHUNK_ROWS} rows are scanned in
+ * chunks on the common fork-join pool, one chunk per task, and the partial results are merged in
+ * row order.
+ */
+final class SheetQuery {
+
+    static final int CHUNK_ROWS = 65536;
+
+    enum Function {
+        COUNT, SUM, AVG, MIN, MAX
+    }
+
+    record Aggregate(Function function, SheetSnapshot.Column column) {
+        String label() {
+            return function.name().toLowerCase(Locale.ROOT) + "(" + (column != null ? column.label() : "*") + ")";
+        }
+    }
+
+    /**
+     * Result of a query: the header and the rows of a table, and the number of snapshot rows that
+     * matched the filter.
+     */
+    record Table(List<String> header, List<List<String>> rows, long matched) {
+    }
+
+    private final SheetSnapshot snapshot;
+    private final IntPredicate filter;
+    private final List<SheetSnapshot.Column> groupBy;
+    private final List<Aggregate> aggregates;
+    // Per group-by column, the code of the first dictionary entry equal to each code ignoring case
+    private final int[][] groupCodes;
+
+    private SheetQuery(SheetSnapshot snapshot, IntPredicate filter, List<SheetSnapshot.Column> groupBy, List<Aggregate> aggregates) {
+        this.snapshot = snapshot;
+        this.filter = filter;
+        this.groupBy = groupBy;
+        this.aggregates = aggregates;
+        this.groupCodes = groupBy.stream().map(SheetQuery::foldCase).toArray(int[][]::new);
+    }
+
+    /**
+     * Parses a query; {@code filter}, {@code groupBy} and {@code aggregates} may be {@code null}
+     * or blank, in which case all rows match, nothing is grouped and the rows are counted.
+     *
+     * @throws IllegalArgumentException with a message for the client when the query is invalid
+     */
+    static SheetQuery parse(SheetSnapshot snapshot, String filter, String groupBy, String aggregates) {
+        IntPredicate predicate = filter == null || filter.isBlank() ? null : new Parser(snapshot, filter).filter();
+        List<SheetSnapshot.Column> groups = groupBy == null || groupBy.isBlank() ? List.of() : new Parser(snapshot, groupBy).columns();
+        List<Aggregate> functions = aggregates == null || aggregates.isBlank()
+            ? List.of(new Aggregate(Function.COUNT, null)) : new Parser(snapshot, aggregates).aggregates();
+        return new SheetQuery(snapshot, predicate, groups, functions);
+    }
+
+    /**
+     * Groups the matching rows and computes the aggregates of each group, ordered by the group
+     * values; at most {@code limit} groups are returned.
+     */
+    Table aggregate(int limit) {
+        Map<GroupKey, Group> groups = new LinkedHashMap<>();
+        for (Map<GroupKey, Group> partial : chunks().mapToObj(chunk -> scanGroups(chunk * CHUNK_ROWS, chunkEnd(chunk))).toList()) {
+            partial.forEach((key, group) -> groups.merge(key, group, this::merge));
+        }
+        long matched = groups.values().stream().mapToLong(group -> group.rows).sum();
+        if (groupBy.isEmpty() && groups.isEmpty()) {
+            // An aggregate without groups always has a row, even when nothing matched
+            groups.put(new GroupKey(new long[0]), newGroup(-1));
+        }
+
+        List<String> header = new ArrayList<>();
+        groupBy.forEach(column -> header.add(column.label()));
+        aggregates.forEach(aggregate -> header.add(aggregate.label()));
+        List<List<String>> rows = new ArrayList<>();
+        groups.values().stream().sorted(groupOrder()).limit(limit).forEach(group -> {
+            List<String> row = new ArrayList<>();
+            for (SheetSnapshot.Column column : groupBy) {
+                String value = column.text(group.firstRow);
+                row.add(value != null ? value : "");
+            }
+            for (int i = 0; i < aggregates.size(); i++) {
+                row.add(result(aggregates.get(i).function(), group.state[2 * i], group.state[2 * i + 1]));
+            }
+            rows.add(row);
+        });
+        return new Table(header, rows, matched);
+    }
+
+    /**
+     * Returns the first {@code limit} matching rows in sheet order, with the Excel row number and
+     * the given columns, or all columns when {@code columns} is empty.
+     */
+    Table filter(List<SheetSnapshot.Column> columns, int limit) {
+        List<SheetSnapshot.Column> selected = columns.isEmpty() ? snapshot.columns() : columns;
+        int[] rows = new int[0];
+        long matched = 0;
+        for (int[] partial : chunks().mapToObj(chunk -> scanRows(chunk * CHUNK_ROWS, chunkEnd(chunk), limit)).toList()) {
+            // The last element of a partial result is the number of matches in its chunk
+            matched += partial[partial.length - 1];
+            if (rows.length < limit) {
+                int take = Math.min(limit - rows.length, partial.length - 1);
+                int length = rows.length;
+                rows = Arrays.copyOf(rows, length + take);
+                System.arraycopy(partial, 0, rows, length, take);
+            }
+        }
+
+        List<String> header = new ArrayList<>();
+        header.add("row");
+        selected.forEach(column -> header.add(column.label()));
+        List<List<String>> table = new ArrayList<>();
+        for (int row : rows) {
+            List<String> values = new ArrayList<>();
+            values.add(Integer.toString(snapshot.rowNum(row) + 1));
+            for (SheetSnapshot.Column column : selected) {
+                String value = column.text(row);
+                values.add(value != null ? value : "");
+            }
+            table.add(values);
+        }
+        return new Table(header, table, matched);
+    }
+
+    /**
+     * Parses a comma separated list of column references.
+     */
+    static List<SheetSnapshot.Column> columns(SheetSnapshot snapshot, String columns) {
+        return columns == null || columns.isBlank() ? List.of() : new Parser(snapshot, columns).columns();
+    }
+
+    private IntStream chunks() {
+        int chunks = Math.max(1, (snapshot.rowCount() + CHUNK_ROWS - 1) / CHUNK_ROWS);
+        IntStream stream = IntStream.range(0, chunks);
+        return chunks > 1 ? stream.parallel() : stream;
+    }
+
+    private int chunkEnd(int chunk) {
+        return (int) Math.min(snapshot.rowCount(), (long) (chunk + 1) * CHUNK_ROWS);
+    }
+
+    private Map<GroupKey, Group> scanGroups(int from, int to) {
+        Map<GroupKey, Group> groups = new LinkedHashMap<>();
+        // Looked up with a scratch key, copied only when a group is added
+        long[] parts = new long[2 * groupBy.size()];
+        GroupKey probe = new GroupKey(parts);
+        for (int row = from; row < to; row++) {
+            if (filter != null && !filter.test(row)) {
+                continue;
+            }
+            Arrays.fill(parts, 0);
+            for (int i = 0; i < groupBy.size(); i++) {
+                SheetSnapshot.Column column = groupBy.get(i);
+                double number = column.number(row);
+                if (!Double.isNaN(number)) {
+                    parts[2 * i] = 1;
+                    parts[2 * i + 1] = Double.doubleToLongBits(number == 0 ? 0.0 : number);
+                } else if (column.code(row) >= 0) {
+                    parts[2 * i] = 2;
+                    parts[2 * i + 1] = groupCodes[i][column.code(row)];
+                }
+            }
+            Group group = groups.get(probe);
+            if (group == null) {
+                group = newGroup(row);
+                groups.put(new GroupKey(parts.clone()), group);
+            }
+            group.rows++;
+            for (int i = 0; i < aggregates.size(); i++) {
+                accumulate(aggregates.get(i), row, group.state, 2 * i);
+            }
+        }
+        return groups;
+    }
+
+    private static int[] foldCase(SheetSnapshot.Column column) {
+        int[] folded = new int[column.dictionary.length];
+        Map<String, Integer> first = new HashMap<>();
+        for (int code = 0; code < folded.length; code++) {
+            Integer previous = first.putIfAbsent(column.dictionary[code].toLowerCase(Locale.ROOT), code);
+            folded[code] = previous != null ? previous : code;
+        }
+        return folded;
+    }
+
+    // Up to limit matching rows followed by the number of matches in [from, to)
+    private int[] scanRows(int from, int to, int limit) {
+        int[] rows = new int[Math.min(limit, to - from) + 1];
+        int found = 0;
+        int matched = 0;
+        for (int row = from; row < to; row++) {
+            if (filter == null || filter.test(row)) {
+                if (found < limit) {
+                    rows[found++] = row;
+                }
+                matched++;
+            }
+        }
+        int[] result = Arrays.copyOf(rows, found + 1);
+        result[found] = matched;
+        return result;
+    }
+
+    // Each aggregate keeps two values: count, sum and count, sum and count, min and count, max and count
+    private Group newGroup(int firstRow) {
+        Group group = new Group(firstRow, new double[2 * aggregates.size()]);
+        for (int i = 0; i < aggregates.size(); i++) {
+            Function function = aggregates.get(i).function();
+            if (function == Function.MIN) {
+                group.state[2 * i] = Double.POSITIVE_INFINITY;
+            } else if (function == Function.MAX) {
+                group.state[2 * i] = Double.NEGATIVE_INFINITY;
+            }
+        }
+        return group;
+    }
+
+    private static void accumulate(Aggregate aggregate, int row, double[] state, int slot) {
+        SheetSnapshot.Column column = aggregate.column();
+        if (aggregate.function() == Function.COUNT) {
+            if (column == null || !Double.isNaN(column.number(row)) || column.code(row) >= 0) {
+                state[slot]++;
+            }
+            return;
+        }
+        double number = column.number(row);
+        if (Double.isNaN(number)) {
+            return;
+        }
+        switch (aggregate.function()) {
+            case SUM, AVG -> state[slot] += number;
+            case MIN -> state[slot] = Math.min(state[slot], number);
+            case MAX -> state[slot] = Math.max(state[slot], number);
+            default -> throw new IllegalStateException();
+        }
+        state[slot + 1]++;
+    }
+
+    private Group merge(Group into, Group from) {
+        into.rows += from.rows;
+        for (int i = 0; i < aggregates.size(); i++) {
+            int slot = 2 * i;
+            switch (aggregates.get(i).function()) {
+                case COUNT, SUM, AVG -> into.state[slot] += from.state[slot];
+                case MIN -> into.state[slot] = Math.min(into.state[slot], from.state[slot]);
+                case MAX -> into.state[slot] = Math.max(into.state[slot], from.state[slot]);
+            }
+            into.state[slot + 1] += from.state[slot + 1];
+        }
+        return into;
+    }
+
+    private static String result(Function function, double value, double count) {
+        return switch (function) {
+            case COUNT -> SheetSnapshot.format(value);
+            case SUM -> SheetSnapshot.format(value);
+            case AVG -> count > 0 ? SheetSnapshot.format(value / count) : "";
+            case MIN, MAX -> count > 0 ? SheetSnapshot.format(value) : "";
+        };
+    }
+
+    // Numbers before text before blanks, numbers by value and text ignoring case
+    private Comparator<Group> groupOrder() {
+        return (a, b) -> {
+            for (SheetSnapshot.Column column : groupBy) {
+                int order = compare(column, a.firstRow, b.firstRow);
+                if (order != 0) {
+                    return order;
+                }
+            }
+            return 0;
+        };
+    }
+
+    private static int compare(SheetSnapshot.Column column, int a, int b) {
+        double x = column.number(a);
+        double y = column.number(b);
+        if (!Double.isNaN(x) || !Double.isNaN(y)) {
+            return Double.isNaN(x) ? 1 : Double.isNaN(y) ? -1 : Double.compare(x, y);
+        }
+        String s = column.text(a);
+        String t = column.text(b);
+        if (s == null || t == null) {
+            return s == null ? (t == null ? 0 : 1) : -1;
+        }
+        return s.compareToIgnoreCase(t);
+    }
+
+    private static final class Group {
+        final int firstRow;
+        final double[] state;
+        long rows;
+
+        Group(int firstRow, double[] state) {
+            this.firstRow = firstRow;
+            this.state = state;
+        }
+    }
+
+    private record GroupKey(long[] parts) {
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof GroupKey key && Arrays.equals(parts, key.parts);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(parts);
+        }
+    }
+
+    private enum Kind {
+        WORD, NAME, TEXT, NUMBER, OPERATOR, OPEN, CLOSE, COMMA, END
+    }
+
+    private record Token(Kind kind, String text) {
+        boolean isWord(String word) {
+            return kind == Kind.WORD && text.equalsIgnoreCase(word);
+        }
+    }
+
+    // Recursive descent over the tokens of a filter, column list or aggregate list
+    private static final class Parser {
+        private final SheetSnapshot snapshot;
+        private final String source;
+        private final List<Token> tokens;
+        private int position;
+
+        Parser(SheetSnapshot snapshot, String source) {
+            this.snapshot = snapshot;
+            this.source = source;
+            this.tokens = tokenize(source);
+        }
+
+        IntPredicate filter() {
+            IntPredicate predicate = condition();
+            while (peek().isWord("and")) {
+                position++;
+                predicate = predicate.and(condition());
+            }
+            if (peek().isWord("or")) {
+                throw error("Only 'and' can join conditions; use 'in (...)' for several values of one column");
+            }
+            expect(Kind.END);
+            return predicate;
+        }
+
+        List<SheetSnapshot.Column> columns() {
+            List<SheetSnapshot.Column> columns = new ArrayList<>();
+            do {
+                columns.add(column());
+            } while (accept(Kind.COMMA));
+            expect(Kind.END);
+            return columns;
+        }
+
+        List<Aggregate> aggregates() {
+            List<Aggregate> aggregates = new ArrayList<>();
+            do {
+                Token name = expect(Kind.WORD);
+                Function function = switch (name.text().toLowerCase(Locale.ROOT)) {
+                    case "count" -> Function.COUNT;
+                    case "sum" -> Function.SUM;
+                    case "avg", "average", "mean" -> Function.AVG;
+                    case "min" -> Function.MIN;
+                    case "max" -> Function.MAX;
+                    default -> throw error("Unknown aggregate '" + name.text() + "', expected count, sum, avg, min or max");
+                };
+                expect(Kind.OPEN);
+                SheetSnapshot.Column column = null;
+                if (peek().isWord("*")) {
+                    if (function != Function.COUNT) {
+                        throw error(name.text() + "(*) is not supported, name a column");
+                    }
+                    position++;
+                } else {
+                    column = column();
+                }
+                expect(Kind.CLOSE);
+                aggregates.add(new Aggregate(function, column));
+            } while (accept(Kind.COMMA));
+            expect(Kind.END);
+            return aggregates;
+        }
+
+        private IntPredicate condition() {
+            SheetSnapshot.Column column = column();
+            Token operator = tokens.get(position++);
+            if (operator.isWord("in")) {
+                expect(Kind.OPEN);
+                List<String> values = new ArrayList<>();
+                do {
+                    values.add(value());
+                } while (accept(Kind.COMMA));
+                expect(Kind.CLOSE);
+                return equalTo(column, values);
+            }
+            if (operator.isWord("contains")) {
+                return contains(column, value());
+            }
+            if (operator.kind() != Kind.OPERATOR) {
+                position--;
+                throw error("Expected a comparison after column '" + column.label() + "'");
+            }
+            String value = value();
+            return switch (operator.text()) {
+                case "=", "==" -> equalTo(column, List.of(value));
+                case "!=", "<>" -> equalTo(column, List.of(value)).negate();
+                default -> compare(column, operator.text(), value);
+            };
+        }
+
+        private SheetSnapshot.Column column() {
+            Token token = tokens.get(position);
+            if (token.kind() != Kind.WORD && token.kind() != Kind.NAME && token.kind() != Kind.NUMBER) {
+                throw error("Expected a column");
+            }
+            position++;
+            return snapshot.column(token.text());
+        }
+
+        private String value() {
+            Token token = tokens.get(position);
+            if (token.kind() != Kind.TEXT && token.kind() != Kind.NUMBER && token.kind() != Kind.WORD) {
+                throw error("Expected a number or text in single quotes");
+            }
+            position++;
+            return token.text();
+        }
+
+        private Token peek() {
+            return tokens.get(position);
+        }
+
+        private boolean accept(Kind kind) {
+            if (peek().kind() == kind) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private Token expect(Kind kind) {
+            Token token = peek();
+            if (token.kind() != kind) {
+                throw error("Expected " + switch (kind) {
+                    case OPEN -> "'('";
+                    case CLOSE -> "')'";
+                    case END -> "the end";
+                    case WORD -> "a name";
+                    default -> kind.name().toLowerCase(Locale.ROOT);
+                });
+            }
+            position++;
+            return token;
+        }
+
+        private IllegalArgumentException error(String message) {
+            Token token = peek();
+            String at = token.kind() == Kind.END ? "at the end" : "at '" + token.text() + "'";
+            return new IllegalArgumentException(message + " " + at + " in \"" + source + "\".");
+        }
+
+        private static List<Token> tokenize(String source) {
+            List<Token> tokens = new ArrayList<>();
+            int i = 0;
+            while (i < source.length()) {
+                char c = source.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                } else if (c == '\'' || c == '"') {
+                    StringBuilder text = new StringBuilder();
+                    int j = i + 1;
+                    while (true) {
+                        if (j >= source.length()) {
+                            throw new IllegalArgumentException("Unterminated " + (c == '"' ? "name" : "text") + " in \"" + source + "\".");
+                        }
+                        char d = source.charAt(j++);
+                        if (d == c) {
+                            if (j < source.length() && source.charAt(j) == c) {
+                                j++;
+                            } else {
+                                break;
+                            }
+                        }
+                        text.append(d);
+                    }
+                    tokens.add(new Token(c == '"' ? Kind.NAME : Kind.TEXT, text.toString()));
+                    i = j;
+                } else if (c == '(' || c == ')' || c == ',') {
+                    tokens.add(new Token(c == '(' ? Kind.OPEN : c == ')' ? Kind.CLOSE : Kind.COMMA, String.valueOf(c)));
+                    i++;
+                } else if (c == '=' || c == '!' || c == '<' || c == '>') {
+                    String two = source.substring(i, Math.min(i + 2, source.length()));
+                    String operator = two.equals("==") || two.equals("!=") || two.equals("<>") || two.equals("<=") || two.equals(">=")
+                        ? two : String.valueOf(c);
+                    if (operator.equals("!")) {
+                        throw new IllegalArgumentException("Unknown operator '!' in \"" + source + "\", use '!='.");
+                    }
+                    tokens.add(new Token(Kind.OPERATOR, operator));
+                    i += operator.length();
+                } else {
+                    int j = i;
+                    while (j < source.length() && !Character.isWhitespace(source.charAt(j)) && "'\"(),=!<>".indexOf(source.charAt(j)) < 0) {
+                        j++;
+                    }
+                    String word = source.substring(i, j);
+                    tokens.add(new Token(Double.isNaN(SheetSnapshot.parseNumber(word)) ? Kind.WORD : Kind.NUMBER, word));
+                    i = j;
+                }
+            }
+            tokens.add(new Token(Kind.END, ""));
+            return tokens;
+        }
+    }
+
+    // Conditions, compiled against the dictionary of the column
+
+    private static IntPredicate equalTo(SheetSnapshot.Column column, List<String> values) {
+        double[] numbers = values.stream().mapToDouble(SheetSnapshot::parseNumber).filter(n -> !Double.isNaN(n)).toArray();
+        boolean blank = values.stream().anyMatch(String::isEmpty);
+        boolean[] codes = new boolean[column.dictionary.length];
+        for (int code = 0; code < codes.length; code++) {
+            for (String value : values) {
+                codes[code] |= column.dictionary[code].equalsIgnoreCase(value);
+            }
+        }
+        return row -> {
+            double number = column.number(row);
+            if (!Double.isNaN(number)) {
+                for (double candidate : numbers) {
+                    if (number == candidate) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            int code = column.code(row);
+            return code >= 0 ? codes[code] : blank;
+        };
+    }
+
+    private static IntPredicate contains(SheetSnapshot.Column column, String value) {
+        String needle = value.toLowerCase(Locale.ROOT);
+        boolean[] codes = new boolean[column.dictionary.length];
+        for (int code = 0; code < codes.length; code++) {
+            codes[code] = column.dictionary[code].toLowerCase(Locale.ROOT).contains(needle);
+        }
+        return row -> {
+            double number = column.number(row);
+            if (!Double.isNaN(number)) {
+                return SheetSnapshot.format(number).contains(needle);
+            }
+            int code = column.code(row);
+            return code >= 0 && codes[code];
+        };
+    }
+
+    private static IntPredicate compare(SheetSnapshot.Column column, String operator, String value) {
+        double bound = SheetSnapshot.parseNumber(value);
+        if (!Double.isNaN(bound)) {
+            return row -> {
+                double number = column.number(row);
+                return !Double.isNaN(number) && holds(operator, Double.compare(number, bound));
+            };
+        }
+        boolean[] codes = new boolean[column.dictionary.length];
+        for (int code = 0; code < codes.length; code++) {
+            codes[code] = holds(operator, column.dictionary[code].compareToIgnoreCase(value));
+        }
+        return row -> {
+            int code = column.code(row);
+            return code >= 0 && codes[code];
+        };
+    }
+
+    private static boolean holds(String operator, int order) {
+        return switch (operator) {
+            case "<" -> order < 0;
+            case "<=" -> order <= 0;
+            case ">" -> order > 0;
+            case ">=" -> order >= 0;
+            default -> throw new IllegalStateException(operator);
+        };
+    }
+}
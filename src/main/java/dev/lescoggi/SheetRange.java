@@ -0,0 +1,55 @@
+package dev.lescoggi;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.poi.ss.util.CellReference;
+
+/**
+ * Rectangular block of a sheet with 0-based, inclusive bounds. Open-ended bounds are set to the
+ * last row or column of the .xlsx format.
+ */
+record SheetRange(int firstRow, int lastRow, int firstCol, int lastCol) {
+
+    static final SheetRange WHOLE_SHEET = new SheetRange(0, SheetRowCursor.LAST_ROW, 0, SheetRowCursor.LAST_COLUMN);
+
+    private static final Pattern REFERENCE = Pattern.compile("\\$?([A-Za-z]{0,3})\\$?([0-9]{0,7})");
+
+    /**
+     * Parses a range in A1 notation: a single cell ({@code C3}), a block ({@code A1:D100}), whole
+     * columns ({@code B:D}), whole rows ({@code 2:10}) or a block without a last row
+     * ({@code A2:F}). A missing or blank range selects the whole sheet.
+     */
+    static SheetRange parse(String range) {
+        if (range == null || range.isBlank()) {
+            return WHOLE_SHEET;
+        }
+        String[] parts = range.strip().split(":", -1);
+        if (parts.length > 2) {
+            throw new IllegalArgumentException("Invalid range '" + range + "'.");
+        }
+        Matcher first = match(parts[0], range);
+        Matcher last = parts.length == 2 ? match(parts[1], range) : first;
+        int firstCol = first.group(1).isEmpty() ? 0 : CellReference.convertColStringToIndex(first.group(1));
+        int firstRow = first.group(2).isEmpty() ? 0 : Integer.parseInt(first.group(2)) - 1;
+        int lastCol = last.group(1).isEmpty() ? SheetRowCursor.LAST_COLUMN : CellReference.convertColStringToIndex(last.group(1));
+        int lastRow = last.group(2).isEmpty() ? SheetRowCursor.LAST_ROW : Integer.parseInt(last.group(2)) - 1;
+        if (firstRow < 0 || firstRow > lastRow || firstCol > lastCol
+                || lastRow > SheetRowCursor.LAST_ROW || lastCol > SheetRowCursor.LAST_COLUMN) {
+            throw new IllegalArgumentException("Invalid range '" + range + "'.");
+        }
+        return new SheetRange(firstRow, lastRow, firstCol, lastCol);
+    }
+
+    boolean hasLastColumn() {
+        return lastCol < SheetRowCursor.LAST_COLUMN;
+    }
+
+    private static Matcher match(String reference, String range) {
+        Matcher matcher = REFERENCE.matcher(reference.strip());
+        if (!matcher.matches() || matcher.group(1).isEmpty() && matcher.group(2).isEmpty()) {
+            throw new IllegalArgumentException("Invalid range '" + range + "'.");
+        }
+        return matcher;
+    }
+}
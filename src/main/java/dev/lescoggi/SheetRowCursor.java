@@ -0,0 +1,270 @@
+package dev.lescoggi;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.xml.sax.SAXException;
+
+/**
+ * Pull-based reader over the rows of one sheet of an .xlsx file. Unlike the SAX based
+ * {@link StreamingSheetReader} it can stop after any row and resume later from the same position,
+ * which lets a client page through a large sheet without re-scanning it from the first row.
+ * <p>
+ * An open cursor keeps the package, the shared strings table and the inflating sheet stream open
+ * until it is closed.
+ */
+class SheetRowCursor implements Closeable {
+
+    /**
+     * A row read by the cursor. {@code values} covers the requested columns; missing cells are
+     * {@code null}.
+     */
+    record SheetRow(int rowNum, String[] values) {
+    }
+
+    static final int LAST_COLUMN = SpreadsheetVersion.EXCEL2007.getLastColumnIndex();
+    static final int LAST_ROW = SpreadsheetVersion.EXCEL2007.getLastRowIndex();
+
+    private final OPCPackage pkg;
+    private final InputStream sheetStream;
+    private final XMLStreamReader xml;
+    private final ReadOnlySharedStringsTable strings;
+    private final StylesTable styles;
+    private final DataFormatter formatter = new DataFormatter();
+    private final boolean formatNumbers;
+    private final long lastModified;
+    private final long size;
+    private int nextRow;
+    private boolean finished;
+
+    private SheetRowCursor(OPCPackage pkg, InputStream sheetStream, XMLStreamReader xml,
+                           ReadOnlySharedStringsTable strings, StylesTable styles, BasicFileAttributes attributes,
+                           boolean formatNumbers) {
+        this.pkg = pkg;
+        this.sheetStream = sheetStream;
+        this.xml = xml;
+        this.strings = strings;
+        this.styles = styles;
+        this.formatNumbers = formatNumbers;
+        this.lastModified = attributes.lastModifiedTime().toMillis();
+        this.size = attributes.size();
+    }
+
+    /**
+     * Opens a cursor positioned before the first row of the given sheet, or returns {@code null}
+     * when the workbook has no sheet with that name.
+     */
+    static SheetRowCursor open(Path file, String sheetName) throws IOException {
+        return open(file, sheetName, true);
+    }
+
+    /**
+     * Like {@link #open(Path, String)}; with {@code formatNumbers} false numeric cells are returned
+     * as the number stored in the file, e.g. {@code 1234.5} for a cell displayed as
+     * {@code 1,234.50} and the serial number of a date.
+     */
+    static SheetRowCursor open(Path file, String sheetName, boolean formatNumbers) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        OPCPackage pkg = null;
+        try {
+            ToolMetrics.opened(file);
+            pkg = OPCPackage.open(file.toFile(), PackageAccess.READ);
+            XSSFReader reader = new XSSFReader(pkg);
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            while (sheets.hasNext()) {
+                InputStream sheet = sheets.next();
+                if (!sheets.getSheetName().equals(sheetName)) {
+                    sheet.close();
+                    continue;
+                }
+                ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg, false);
+                XMLStreamReader xml = XMLHelper.newXMLInputFactory().createXMLStreamReader(sheet);
+                SheetRowCursor cursor = new SheetRowCursor(pkg, sheet, xml, strings, reader.getStylesTable(), attributes, formatNumbers);
+                pkg = null;
+                return cursor;
+            }
+            return null;
+        } catch (OpenXML4JException | SAXException | XMLStreamException e) {
+            throw new IOException(e.getMessage(), e);
+        } finally {
+            if (pkg != null) {
+                pkg.revert();
+            }
+        }
+    }
+
+    /**
+     * Returns {@code true} when the file still has the modification time and size it had when the
+     * cursor was opened.
+     */
+    boolean isCurrent(Path file) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        return attributes.lastModifiedTime().toMillis() == lastModified && attributes.size() == size;
+    }
+
+    /**
+     * Returns the next row between {@code firstRow} and {@code lastRow} (0-based, inclusive),
+     * restricted to columns {@code firstCol} to {@code lastCol}, or {@code null} when there are no
+     * more rows in that window. Rows before {@code firstRow} are skipped without decoding their
+     * cells. When {@code lastCol} is {@link #LAST_COLUMN} the values end at the last cell present in
+     * the row instead.
+     */
+    SheetRow next(int firstRow, int lastRow, int firstCol, int lastCol) throws IOException {
+        try {
+            while (!finished && xml.hasNext()) {
+                int event = xml.next();
+                if (event != XMLStreamConstants.START_ELEMENT || !"row".equals(xml.getLocalName())) {
+                    continue;
+                }
+                String r = xml.getAttributeValue(null, "r");
+                int rowNum = r != null ? Integer.parseInt(r) - 1 : nextRow;
+                nextRow = rowNum + 1;
+                if (rowNum > lastRow) {
+                    finished = true;
+                    return null;
+                }
+                if (rowNum < firstRow) {
+                    skipElement();
+                    continue;
+                }
+                return new SheetRow(rowNum, readCells(firstCol, lastCol));
+            }
+            finished = true;
+            return null;
+        } catch (XMLStreamException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            xml.close();
+        } catch (XMLStreamException e) {
+            // Closing the underlying stream below is what matters
+        } finally {
+            sheetStream.close();
+            pkg.revert();
+        }
+    }
+
+    // Positioned on <row>, returns after its end element
+    private String[] readCells(int firstCol, int lastCol) throws XMLStreamException {
+        boolean bounded = lastCol < LAST_COLUMN;
+        String[] values = new String[bounded ? lastCol - firstCol + 1 : 16];
+        int width = 0;
+        int nextCol = 0;
+        while (xml.hasNext()) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.END_ELEMENT && "row".equals(xml.getLocalName())) {
+                break;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT || !"c".equals(xml.getLocalName())) {
+                continue;
+            }
+            String ref = xml.getAttributeValue(null, "r");
+            int col = ref != null ? new CellReference(ref).getCol() : nextCol;
+            nextCol = col + 1;
+            if (col < firstCol || col > lastCol) {
+                skipElement();
+                continue;
+            }
+            String value = readCell(xml.getAttributeValue(null, "t"), xml.getAttributeValue(null, "s"));
+            int index = col - firstCol;
+            if (index >= values.length) {
+                values = Arrays.copyOf(values, Math.max(index + 1, values.length * 2));
+            }
+            values[index] = value;
+            width = Math.max(width, index + 1);
+        }
+        return bounded ? values : Arrays.copyOf(values, width);
+    }
+
+    // Positioned on <c>, returns after its end element
+    private String readCell(String type, String styleIndex) throws XMLStreamException {
+        String value = null;
+        StringBuilder inline = null;
+        int depth = 1;
+        while (depth > 0 && xml.hasNext()) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                String name = xml.getLocalName();
+                if ("v".equals(name)) {
+                    value = xml.getElementText();
+                    depth--;
+                } else if ("t".equals(name)) {
+                    if (inline == null) {
+                        inline = new StringBuilder();
+                    }
+                    inline.append(xml.getElementText());
+                    depth--;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+        if ("inlineStr".equals(type)) {
+            return inline != null ? inline.toString() : null;
+        }
+        if (value == null) {
+            return null;
+        }
+        if (type == null || "n".equals(type)) {
+            return formatNumbers ? formatNumber(value, styleIndex) : value;
+        }
+        return switch (type) {
+            case "s" -> strings.getItemAt(Integer.parseInt(value)).getString();
+            case "b" -> "0".equals(value) ? "FALSE" : "TRUE";
+            case "e" -> "ERROR:" + value;
+            default -> value;
+        };
+    }
+
+    private String formatNumber(String value, String styleIndex) {
+        if (styleIndex == null || styles == null) {
+            return formatter.formatRawCellContents(Double.parseDouble(value), 0, "General");
+        }
+        XSSFCellStyle style = styles.getStyleAt(Integer.parseInt(styleIndex));
+        short formatIndex = style.getDataFormat();
+        String formatString = style.getDataFormatString();
+        if (formatString == null) {
+            formatString = BuiltinFormats.getBuiltinFormat(formatIndex);
+        }
+        return formatter.formatRawCellContents(Double.parseDouble(value), formatIndex, formatString);
+    }
+
+    // Skips the element the reader is positioned on, including its children
+    private void skipElement() throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && xml.hasNext()) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package dev.lescoggi;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+
+import org.apache.poi.ss.util.CellReference;
+
+/**
+ * Columnar copy of the values of one sheet, read once with the streaming {@link SheetRowCursor} and
+ * then queried many times by {@link SheetQuery}. Each column keeps its numbers in a
+ * {@code double[]} and its text dictionary encoded in an {@code int[]} of codes, so a million-row
+ * column of amounts takes 8 MB and a column of a few distinct regions 4 MB.
+ * <p>
+ * Numbers are the values stored in the file, so dates are their serial numbers and percentages
+ * their fractions. Text that parses as a number, such as {@code "42"} in a CSV import, is stored
+ * as a number too. A snapshot is immutable and may be queried by several threads at once.
+ */
+final class SheetSnapshot {
+
+    /**
+     * One column of the snapshot. A cell is a number when {@code numbers[row]} is not NaN, text
+     * when {@code codes[row]} is not negative, and blank otherwise.
+     */
+    static final class Column {
+        final int index;
+        final String name;
+        final double[] numbers;
+        final int[] codes;
+        final String[] dictionary;
+
+        private Column(int index, String name, double[] numbers, int[] codes, String[] dictionary) {
+            this.index = index;
+            this.name = name;
+            this.numbers = numbers;
+            this.codes = codes;
+            this.dictionary = dictionary;
+        }
+
+        String letter() {
+            return CellReference.convertNumToColString(index);
+        }
+
+        /**
+         * The header text of the column, or its letter when the sheet has no header row.
+         */
+        String label() {
+            return name != null ? name : letter();
+        }
+
+        double number(int row) {
+            return numbers != null ? numbers[row] : Double.NaN;
+        }
+
+        int code(int row) {
+            return codes != null ? codes[row] : -1;
+        }
+
+        /**
+         * The value of a cell as text, or {@code null} when it is blank.
+         */
+        String text(int row) {
+            double number = number(row);
+            if (!Double.isNaN(number)) {
+                return format(number);
+            }
+            int code = code(row);
+            return code >= 0 ? dictionary[code] : null;
+        }
+    }
+
+    private final int[] rowNums;
+    private final Column[] columns;
+    private final long estimatedBytes;
+
+    private SheetSnapshot(int[] rowNums, Column[] columns, long estimatedBytes) {
+        this.rowNums = rowNums;
+        this.columns = columns;
+        this.estimatedBytes = estimatedBytes;
+    }
+
+    /**
+     * Reads a sheet into a snapshot, or returns {@code null} when the workbook has no sheet with
+     * that name. With {@code header} the first row holds the column names and is not part of the
+     * data.
+     */
+    static SheetSnapshot load(Path file, String sheetName, boolean header) throws IOException {
+        try (SheetRowCursor cursor = SheetRowCursor.open(file, sheetName, false)) {
+            if (cursor == null) {
+                return null;
+            }
+            Builder builder = new Builder();
+            SheetRowCursor.SheetRow row;
+            boolean first = true;
+            while ((row = cursor.next(0, SheetRowCursor.LAST_ROW, 0, SheetRowCursor.LAST_COLUMN)) != null) {
+                if (first && header) {
+                    builder.names = row.values();
+                } else {
+                    builder.add(row);
+                }
+                first = false;
+            }
+            return builder.build();
+        }
+    }
+
+    int rowCount() {
+        return rowNums.length;
+    }
+
+    /**
+     * The 0-based sheet row a snapshot row was read from.
+     */
+    int rowNum(int row) {
+        return rowNums[row];
+    }
+
+    List<Column> columns() {
+        return List.of(columns);
+    }
+
+    long estimatedBytes() {
+        return estimatedBytes;
+    }
+
+    /**
+     * Finds a column by its header text, ignoring case, or by its letter.
+     *
+     * @throws IllegalArgumentException when there is no such column
+     */
+    Column column(String reference) {
+        for (Column column : columns) {
+            if (column.name != null && column.name.equalsIgnoreCase(reference)) {
+                return column;
+            }
+        }
+        if (reference.matches("[A-Za-z]{1,3}")) {
+            int index = CellReference.convertColStringToIndex(reference.toUpperCase(Locale.ROOT));
+            if (index < columns.length) {
+                return columns[index];
+            }
+            if (index <= SheetRowCursor.LAST_COLUMN) {
+                // A column right of the used range: all of its cells are blank
+                return new Column(index, null, null, null, new String[0]);
+            }
+        }
+        StringJoiner known = new StringJoiner(", ");
+        for (Column column : columns) {
+            known.add(column.name != null ? column.letter() + " (" + column.name + ")" : column.letter());
+        }
+        throw new IllegalArgumentException("Unknown column '" + reference + "'. Columns: " + known + ".");
+    }
+
+    /**
+     * Formats a number the way it is written in a sheet: without a fraction when it is whole and
+     * without an exponent.
+     */
+    static String format(double number) {
+        if (Double.isNaN(number) || Double.isInfinite(number)) {
+            return "";
+        }
+        if (number == Math.rint(number) && Math.abs(number) < 1e15) {
+            return Long.toString((long) number);
+        }
+        return BigDecimal.valueOf(number).stripTrailingZeros().toPlainString();
+    }
+
+    // Text of a cell that is read as a number; anything Double.parseDouble accepts except NaN,
+    // Infinity, hexadecimal and type suffixes, which are not numbers in a sheet
+    static double parseNumber(String value) {
+        if (value.isEmpty()) {
+            return Double.NaN;
+        }
+        char first = value.charAt(0);
+        char last = value.charAt(value.length() - 1);
+        if (!(first >= '0' && first <= '9' || first == '-' || first == '+' || first == '.') || !(last >= '0' && last <= '9' || last == '.')) {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static final class Builder {
+        private String[] names = new String[0];
+        private int[] rowNums = new int[1024];
+        private int rows;
+        private final List<ColumnBuilder> columns = new ArrayList<>();
+
+        void add(SheetRowCursor.SheetRow row) {
+            if (rows == rowNums.length) {
+                rowNums = Arrays.copyOf(rowNums, rows * 2);
+            }
+            rowNums[rows] = row.rowNum();
+            String[] values = row.values();
+            for (int col = 0; col < values.length; col++) {
+                if (values[col] == null || values[col].isEmpty()) {
+                    continue;
+                }
+                while (columns.size() <= col) {
+                    columns.add(new ColumnBuilder());
+                }
+                columns.get(col).set(rows, values[col]);
+            }
+            rows++;
+        }
+
+        SheetSnapshot build() {
+            int width = Math.max(columns.size(), names.length);
+            Column[] built = new Column[width];
+            long bytes = 4L * rows;
+            for (int col = 0; col < width; col++) {
+                String name = col < names.length && names[col] != null && !names[col].isBlank() ? names[col].trim() : null;
+                ColumnBuilder column = col < columns.size() ? columns.get(col) : new ColumnBuilder();
+                built[col] = column.build(col, name, rows);
+                bytes += column.estimatedBytes(rows);
+            }
+            return new SheetSnapshot(Arrays.copyOf(rowNums, rows), built, bytes);
+        }
+    }
+
+    private static final class ColumnBuilder {
+        private double[] numbers;
+        private int[] codes;
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> dictionary = new ArrayList<>();
+        private long dictionaryBytes;
+
+        void set(int row, String value) {
+            double number = parseNumber(value);
+            if (!Double.isNaN(number)) {
+                numbers = ensure(numbers, row);
+                numbers[row] = number;
+                return;
+            }
+            Integer code = ids.get(value);
+            if (code == null) {
+                code = dictionary.size();
+                ids.put(value, code);
+                dictionary.add(value);
+                dictionaryBytes += 48 + 2L * value.length();
+            }
+            codes = ensure(codes, row);
+            codes[row] = code;
+        }
+
+        Column build(int index, String name, int rows) {
+            return new Column(index, name, numbers != null ? Arrays.copyOf(ensure(numbers, rows - 1), rows) : null,
+                codes != null ? Arrays.copyOf(ensure(codes, rows - 1), rows) : null, dictionary.toArray(String[]::new));
+        }
+
+        long estimatedBytes(int rows) {
+            return (numbers != null ? 8L * rows : 0) + (codes != null ? 4L * rows : 0) + dictionaryBytes;
+        }
+
+        // Arrays grow in steps and are trimmed when the column is built; new cells are blank
+        private static double[] ensure(double[] array, int row) {
+            int length = array == null ? 0 : array.length;
+            if (row < length) {
+                return array;
+            }
+            double[] grown = Arrays.copyOf(array == null ? new double[0] : array, Math.max(row + 1, Math.max(1024, length * 2)));
+            Arrays.fill(grown, length, grown.length, Double.NaN);
+            return grown;
+        }
+
+        private static int[] ensure(int[] array, int row) {
+            int length = array == null ? 0 : array.length;
+            if (row < length) {
+                return array;
+            }
+            int[] grown = Arrays.copyOf(array == null ? new int[0] : array, Math.max(row + 1, Math.max(1024, length * 2)));
+            Arrays.fill(grown, length, grown.length, -1);
+            return grown;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package dev.lescoggi;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Singleton;
+
+/**
+ * Keeps the {@link SheetSnapshot}s of recently queried sheets, so that only the first query of a
+ * sheet reads the file. Snapshots are keyed by canonical path, sheet name and header flag, and are
+ * reused while the file keeps the modification time and size it had when the snapshot was read.
+ * The cache is bounded by the estimated size of the snapshots and evicts the least recently used
+ * first.
+ * <p>
+ * Snapshots are read from disk, so callers flush pending changes of the workbook first and hold its
+ * read lock while calling {@link #get}.
+ */
+@Singleton
+public class SheetSnapshotCache {
+
+    private static final Logger LOG = Logger.getLogger(SheetSnapshotCache.class);
+
+    public record Stats(long hits, long misses, long evictions, int entries, long estimatedBytes) {
+    }
+
+    /**
+     * A snapshot and how it was obtained: {@code loadNanos} is 0 when it came from the cache.
+     */
+    record Lookup(SheetSnapshot snapshot, long loadNanos) {
+    }
+
+    private record Key(Path file, String sheetName, boolean header) {
+    }
+
+    private record Entry(SheetSnapshot snapshot, long lastModified, long size) {
+    }
+
+    private final long maxBytes;
+
+    // Access order, so iteration starts with the least recently used entry
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    SheetSnapshotCache(@ConfigProperty(name = "office.excel.snapshot.max-bytes", defaultValue = "268435456") long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the snapshot of a sheet, reading it when it is not cached or the file changed, or
+     * {@code null} when the workbook has no sheet with that name.
+     */
+    Lookup get(String filepath, String sheetName, boolean header) throws IOException {
+        Key key = new Key(DocumentCache.key(filepath), sheetName, header);
+        BasicFileAttributes attributes = Files.readAttributes(key.file(), BasicFileAttributes.class);
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.lastModified() == lastModified && entry.size() == attributes.size()) {
+                hits.increment();
+                return new Lookup(entry.snapshot(), 0);
+            }
+        }
+        misses.increment();
+        long start = System.nanoTime();
+        SheetSnapshot snapshot = SheetSnapshot.load(key.file(), sheetName, header);
+        long loadNanos = Math.max(1, System.nanoTime() - start);
+        if (snapshot == null) {
+            return null;
+        }
+        synchronized (this) {
+            Entry previous = entries.put(key, new Entry(snapshot, lastModified, attributes.size()));
+            if (previous != null) {
+                totalBytes -= previous.snapshot().estimatedBytes();
+            }
+            totalBytes += snapshot.estimatedBytes();
+            // The snapshot just read is kept even when it alone exceeds the budget
+            var iterator = entries.entrySet().iterator();
+            while (totalBytes > maxBytes && entries.size() > 1) {
+                var eldest = iterator.next();
+                if (eldest.getKey().equals(key)) {
+                    continue;
+                }
+                iterator.remove();
+                totalBytes -= eldest.getValue().snapshot().estimatedBytes();
+                evictions.increment();
+            }
+        }
+        return new Lookup(snapshot, loadNanos);
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), entries.size(), totalBytes);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        LOG.infof("Sheet snapshot cache statistics: %s", stats());
+    }
+}
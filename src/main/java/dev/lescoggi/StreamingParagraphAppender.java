@@ -0,0 +1,70 @@
+package dev.lescoggi;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.zip.ZipFile;
+
+/**
+ * Appends a paragraph to a .docx file without loading the document. The main document part is
+ * streamed through {@link XmlTagScanner} with the paragraph inserted at the end of the body, before
+ * the section properties of the last section that Word keeps there; every other part is copied as
+ * it is by {@link ZipPartRewriter}.
+ */
+final class StreamingParagraphAppender {
+
+    private StreamingParagraphAppender() {
+    }
+
+    /**
+     * Returns the content of the document with a paragraph holding {@code text} appended, for
+     * {@link DocumentSaver#save(String, DocumentSaver.Content)}.
+     */
+    static DocumentSaver.Content append(Path file, String text) throws IOException {
+        String documentPart;
+        try (ZipFile zip = new ZipFile(file.toFile())) {
+            documentPart = ZipPartReader.mainPart(zip);
+        }
+        return ZipPartRewriter.rewrite(file, Map.of(documentPart, (in, out) -> {
+            boolean[] appended = { false };
+            XmlTagScanner.copy(in, out, (tag, before) -> {
+                if (tag.depth() == 3 && tag.kind() != XmlTagScanner.Kind.END && tag.is("sectPr")) {
+                    paragraph(before, tag.prefix(), text);
+                    appended[0] = true;
+                    return XmlTagScanner.Action.COPY_REST;
+                }
+                if (tag.depth() == 2 && tag.is("body") && tag.kind() == XmlTagScanner.Kind.END) {
+                    paragraph(before, tag.prefix(), text);
+                    appended[0] = true;
+                    return XmlTagScanner.Action.COPY_REST;
+                }
+                if (tag.depth() == 2 && tag.is("body") && tag.kind() == XmlTagScanner.Kind.EMPTY) {
+                    before.write(("<" + tag.prefix() + "body>").getBytes(StandardCharsets.UTF_8));
+                    paragraph(before, tag.prefix(), text);
+                    before.write(("</" + tag.prefix() + "body>").getBytes(StandardCharsets.UTF_8));
+                    appended[0] = true;
+                    return XmlTagScanner.Action.REPLACE;
+                }
+                return XmlTagScanner.Action.COPY;
+            });
+            if (!appended[0]) {
+                throw new IOException("Document part " + documentPart + " has no body element");
+            }
+        }));
+    }
+
+    // The paragraph XWPFDocument writes for createParagraph().createRun().setText(text)
+    private static void paragraph(OutputStream out, String prefix, String text) throws IOException {
+        StringBuilder xml = new StringBuilder(text.length() + 64);
+        xml.append('<').append(prefix).append("p><").append(prefix).append("r><").append(prefix).append('t');
+        if (XmlTagScanner.needsPreserve(text)) {
+            xml.append(" xml:space=\"preserve\"");
+        }
+        xml.append('>');
+        XmlTagScanner.appendText(xml, text);
+        xml.append("</").append(prefix).append("t></").append(prefix).append("r></").append(prefix).append("p>");
+        out.write(xml.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,459 @@
+package dev.lescoggi;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.ss.util.WorkbookUtil;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+
+/**
+ * Appends rows to a sheet of an .xlsx file without loading the workbook. The sheet part is
+ * streamed through {@link XmlTagScanner} with the new rows inserted before {@code </sheetData>}
+ * and its {@code <dimension>} widened to cover them; every other part is copied as it is by
+ * {@link ZipPartRewriter}. Text is stored as inline strings, so the shared string table is not
+ * touched, and the styles part is only rewritten when a date needs a date style the workbook does
+ * not have yet.
+ * <p>
+ * The sheet part is read twice: when the appender is opened, to find the last row and the used
+ * range, and when it is saved. Rows passed to {@link #row} are kept as XML in between, so the heap
+ * needed is about the size of the new rows whatever the size of the workbook; rows from a
+ * {@link RowSource} are not kept at all. A sheet that does not exist yet can be created as a new
+ * part, with entries in the workbook, its relationships and the content types.
+ */
+final class StreamingSheetAppender {
+
+    private static final String MAIN_NAMESPACE = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+    private static final String RELATIONSHIPS_NAMESPACE = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+    private static final String WORKSHEET_TYPE = "application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml";
+
+    @FunctionalInterface
+    interface RowSource {
+        /**
+         * Passes every row to {@link StreamingSheetAppender#row}. Called twice, and has to pass the
+         * same rows both times.
+         */
+        void rows(StreamingSheetAppender appender) throws IOException;
+    }
+
+    // Where a sheet that does not exist yet is added to the workbook
+    private record NewSheet(String name, int sheetId, String relationshipId, String workbookPart) {
+    }
+
+    private final Path file;
+    private final String sheetPart;
+    private final String stylesPart;
+    private final boolean date1904;
+    private final ByteArrayOutputStream rowsXml = new ByteArrayOutputStream();
+    private Writer rows = new OutputStreamWriter(rowsXml, StandardCharsets.UTF_8);
+    private NewSheet newSheet;
+
+    // Read from the sheet part: the namespace prefix of its elements and the used range
+    private String prefix = "";
+    private boolean sheetData;
+    private int firstRow = Integer.MAX_VALUE;
+    private int lastRow = -1;
+    private int lastCol = -1;
+
+    private int nextRow;
+    private int added;
+    private int width;
+
+    private StylesTable styles;
+    private boolean stylesModified;
+    private final Map<String, Integer> dateStyles = new LinkedHashMap<>();
+
+    private StreamingSheetAppender(Path file, String sheetPart, String stylesPart, boolean date1904) {
+        this.file = file;
+        this.sheetPart = sheetPart;
+        this.stylesPart = stylesPart;
+        this.date1904 = date1904;
+    }
+
+    /**
+     * Opens a sheet for appending, or returns {@code null} when the workbook has no sheet with
+     * that name.
+     */
+    static StreamingSheetAppender open(Path file, String sheetName) throws IOException {
+        return open(file, sheetName, false);
+    }
+
+    /**
+     * Opens a sheet for appending. A sheet that does not exist is created with the content when
+     * {@code create} is set; otherwise {@code null} is returned.
+     */
+    static StreamingSheetAppender open(Path file, String sheetName, boolean create) throws IOException {
+        ToolMetrics.opened(file);
+        try (ZipFile zip = new ZipFile(file.toFile())) {
+            Map<String, String> sheetParts = WorkbookMetadataIndex.readSheetParts(zip);
+            String sheetPart = sheetParts.get(sheetName);
+            if (sheetPart == null && !create) {
+                return null;
+            }
+            String workbookPart = ZipPartReader.mainPart(zip);
+            boolean[] date1904 = { false };
+            int[] lastSheetId = { 0 };
+            ZipPartReader.parse(zip, workbookPart, xml -> {
+                if ("workbookPr".equals(xml.getLocalName())) {
+                    String value = xml.getAttributeValue(null, "date1904");
+                    date1904[0] = "1".equals(value) || "true".equals(value);
+                } else if ("sheet".equals(xml.getLocalName())) {
+                    lastSheetId[0] = Math.max(lastSheetId[0], Integer.parseInt(xml.getAttributeValue(null, "sheetId")));
+                }
+                return !"definedNames".equals(xml.getLocalName()) && !"calcPr".equals(xml.getLocalName());
+            });
+            NewSheet newSheet = null;
+            if (sheetPart == null) {
+                validateNewSheet(sheetName, sheetParts.keySet());
+                String directory = workbookPart.substring(0, workbookPart.lastIndexOf('/') + 1);
+                int number = sheetParts.size() + 1;
+                while (zip.getEntry(directory + "worksheets/sheet" + number + ".xml") != null) {
+                    number++;
+                }
+                sheetPart = directory + "worksheets/sheet" + number + ".xml";
+                newSheet = new NewSheet(sheetName, lastSheetId[0] + 1,
+                    newRelationshipId(ZipPartReader.relationships(zip, workbookPart).keySet()), workbookPart);
+            }
+            StreamingSheetAppender appender = new StreamingSheetAppender(file, sheetPart,
+                ZipPartReader.relationshipOfType(zip, workbookPart, "/styles"), date1904[0]);
+            if (newSheet != null) {
+                appender.newSheet = newSheet;
+            } else {
+                try (InputStream in = zip.getInputStream(entry(zip, sheetPart))) {
+                    appender.scan(in);
+                }
+            }
+            return appender;
+        }
+    }
+
+    /**
+     * Appends a row of typed values as returned by {@link ExcelCellWriter#typed}; {@code null}
+     * leaves the cell empty.
+     */
+    void row(List<?> values) throws IOException {
+        int rowNum = nextRow++;
+        if (rowNum > SheetRowCursor.LAST_ROW) {
+            throw new IOException("Sheet is full, it already has " + (SheetRowCursor.LAST_ROW + 1) + " rows");
+        }
+        if (values.size() > SheetRowCursor.LAST_COLUMN + 1) {
+            throw new IOException("Row has " + values.size() + " values, more than the " + (SheetRowCursor.LAST_COLUMN + 1) + " columns of a sheet");
+        }
+        String r = Integer.toString(rowNum + 1);
+        rows.append('<').append(prefix).append("row r=\"").append(r).append("\">");
+        for (int i = 0; i < values.size(); i++) {
+            Object value = values.get(i);
+            if (value == null) {
+                continue;
+            }
+            rows.append('<').append(prefix).append("c r=\"").append(CellReference.convertNumToColString(i)).append(r).append('"');
+            if (value instanceof Number number) {
+                number(number.doubleValue());
+            } else if (value instanceof Boolean bool) {
+                rows.append(" t=\"b\"><").append(prefix).append("v>").append(bool ? "1" : "0");
+                rows.append("</").append(prefix).append("v>");
+            } else if (value instanceof LocalDate date && style(ExcelCellWriter.DATE_FORMAT) >= 0) {
+                rows.append(" s=\"").append(Integer.toString(style(ExcelCellWriter.DATE_FORMAT))).append('"');
+                number(DateUtil.getExcelDate(date, date1904));
+            } else if (value instanceof LocalDateTime dateTime && style(ExcelCellWriter.DATE_TIME_FORMAT) >= 0) {
+                rows.append(" s=\"").append(Integer.toString(style(ExcelCellWriter.DATE_TIME_FORMAT))).append('"');
+                number(DateUtil.getExcelDate(dateTime, date1904));
+            } else {
+                String text = value.toString();
+                rows.append(" t=\"inlineStr\"><").append(prefix).append("is><").append(prefix).append('t');
+                if (XmlTagScanner.needsPreserve(text)) {
+                    rows.append(" xml:space=\"preserve\"");
+                }
+                rows.append('>');
+                XmlTagScanner.appendText(rows, text);
+                rows.append("</").append(prefix).append("t></").append(prefix).append("is>");
+            }
+            rows.append("</").append(prefix).append("c>");
+        }
+        rows.append("</").append(prefix).append("row>");
+        added++;
+        width = Math.max(width, values.size());
+    }
+
+    /**
+     * Number of rows appended so far.
+     */
+    int added() {
+        return added;
+    }
+
+    /**
+     * Whether the sheet does not exist yet and is created by the content.
+     */
+    boolean createsSheet() {
+        return newSheet != null;
+    }
+
+    /**
+     * Returns the new content of the workbook, for {@link DocumentSaver#save(String, DocumentSaver.Content)}.
+     */
+    DocumentSaver.Content content() throws IOException {
+        rows.flush();
+        return rewrite(dimension(), rowsXml::writeTo);
+    }
+
+    /**
+     * Returns the new content of the workbook with the rows of {@code source} appended. The source
+     * is read twice: right away, to size the sheet and find the styles its rows need, and while
+     * the content is written, straight into the sheet part, so the heap needed does not depend on
+     * the number of rows. Used instead of {@link #row}, not after it.
+     */
+    DocumentSaver.Content content(RowSource source) throws IOException {
+        int firstNewRow = nextRow;
+        rows.flush();
+        rows = Writer.nullWriter();
+        source.rows(this);
+        int end = nextRow;
+        int count = added;
+        return rewrite(dimension(), out -> {
+            nextRow = firstNewRow;
+            added = 0;
+            rows = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            source.rows(this);
+            rows.flush();
+            if (nextRow != end || added != count) {
+                throw new IOException("The rows changed while they were written, " + added + " rows instead of " + count);
+            }
+        });
+    }
+
+    private DocumentSaver.Content rewrite(String dimension, DocumentSaver.Content newRows) throws IOException {
+        Map<String, ZipPartRewriter.PartWriter> parts = new LinkedHashMap<>();
+        Map<String, DocumentSaver.Content> newParts = new LinkedHashMap<>();
+        if (newSheet == null) {
+            parts.put(sheetPart, (in, out) -> writeSheet(in, out, dimension, newRows));
+        } else {
+            addSheet(parts);
+            newParts.put(sheetPart, out -> {
+                out.write(("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n<worksheet xmlns=\"" + MAIN_NAMESPACE
+                    + "\"><dimension ref=\"" + dimension + "\"/><sheetData>").getBytes(StandardCharsets.UTF_8));
+                newRows.write(out);
+                out.write("</sheetData></worksheet>".getBytes(StandardCharsets.UTF_8));
+            });
+        }
+        if (stylesModified) {
+            parts.put(stylesPart, (in, out) -> styles.writeTo(out));
+        }
+        return ZipPartRewriter.rewrite(file, parts, newParts);
+    }
+
+    private void scan(InputStream in) throws IOException {
+        int[] nextCol = { 0 };
+        XmlTagScanner.copy(in, null, (tag, out) -> {
+            if (tag.kind() == XmlTagScanner.Kind.END) {
+                if (tag.is("sheetData")) {
+                    return XmlTagScanner.Action.STOP;
+                }
+                return XmlTagScanner.Action.COPY;
+            }
+            if (tag.is("row")) {
+                String r = tag.attribute("r");
+                int row = r != null ? Integer.parseInt(r) - 1 : lastRow + 1;
+                firstRow = Math.min(firstRow, row);
+                lastRow = Math.max(lastRow, row);
+                nextCol[0] = 0;
+            } else if (tag.is("c")) {
+                String r = tag.attribute("r");
+                int col = r != null ? column(r) : nextCol[0];
+                nextCol[0] = col + 1;
+                lastCol = Math.max(lastCol, col);
+            } else if (tag.is("sheetData")) {
+                sheetData = true;
+                prefix = tag.prefix();
+                if (tag.kind() == XmlTagScanner.Kind.EMPTY) {
+                    return XmlTagScanner.Action.STOP;
+                }
+            }
+            return XmlTagScanner.Action.COPY;
+        });
+        if (!sheetData) {
+            throw new IOException("Sheet part " + sheetPart + " has no sheetData element");
+        }
+        nextRow = lastRow + 1;
+    }
+
+    private void writeSheet(InputStream in, OutputStream out, String dimension, DocumentSaver.Content newRows) throws IOException {
+        XmlTagScanner.copy(in, out, (tag, before) -> {
+            if (tag.depth() != 2 || tag.kind() == XmlTagScanner.Kind.START && !tag.is("dimension")) {
+                return XmlTagScanner.Action.COPY;
+            }
+            if (tag.is("dimension") && tag.kind() == XmlTagScanner.Kind.EMPTY) {
+                before.write(("<" + tag.prefix() + "dimension ref=\"" + dimension + "\"/>").getBytes(StandardCharsets.UTF_8));
+                return XmlTagScanner.Action.REPLACE;
+            }
+            if (tag.is("sheetData") && tag.kind() == XmlTagScanner.Kind.END) {
+                newRows.write(before);
+                return XmlTagScanner.Action.COPY_REST;
+            }
+            if (tag.is("sheetData") && tag.kind() == XmlTagScanner.Kind.EMPTY) {
+                before.write(("<" + prefix + "sheetData>").getBytes(StandardCharsets.UTF_8));
+                newRows.write(before);
+                before.write(("</" + prefix + "sheetData>").getBytes(StandardCharsets.UTF_8));
+                return XmlTagScanner.Action.REPLACE;
+            }
+            return XmlTagScanner.Action.COPY;
+        });
+    }
+
+    // The used range after the append, as the metadata index reads it from the dimension
+    private String dimension() {
+        if (lastRow < 0 && added == 0) {
+            // What Excel writes for an empty sheet
+            return "A1";
+        }
+        int first = lastRow < 0 ? nextRow - added : firstRow;
+        return new CellRangeAddress(first, nextRow - 1, 0, Math.max(Math.max(lastCol, width - 1), 0)).formatAsString();
+    }
+
+    // Adds the new sheet to the sheet list, the relationships of the workbook and the content types
+    private void addSheet(Map<String, ZipPartRewriter.PartWriter> parts) throws IOException {
+        String workbookPart = newSheet.workbookPart();
+        String directory = workbookPart.substring(0, workbookPart.lastIndexOf('/') + 1);
+        StringBuilder name = new StringBuilder();
+        XmlTagScanner.appendAttribute(name, newSheet.name());
+        parts.put(workbookPart, (in, out) -> insert(in, out, 2, "sheets", prefix -> "<" + prefix + "sheet name=\"" + name
+            + "\" sheetId=\"" + newSheet.sheetId() + "\" r:id=\"" + newSheet.relationshipId() + "\" xmlns:r=\"" + RELATIONSHIPS_NAMESPACE + "\"/>"));
+        int slash = workbookPart.lastIndexOf('/');
+        parts.put(workbookPart.substring(0, slash + 1) + "_rels/" + workbookPart.substring(slash + 1) + ".rels",
+            (in, out) -> insert(in, out, 1, "Relationships", prefix -> "<" + prefix + "Relationship Id=\"" + newSheet.relationshipId()
+                + "\" Type=\"" + RELATIONSHIPS_NAMESPACE + "/worksheet\" Target=\"" + sheetPart.substring(directory.length()) + "\"/>"));
+        parts.put("[Content_Types].xml", (in, out) -> insert(in, out, 1, "Types",
+            prefix -> "<" + prefix + "Override PartName=\"/" + sheetPart + "\" ContentType=\"" + WORKSHEET_TYPE + "\"/>"));
+    }
+
+    // Copies a part with an element added at the end of the element with the given name and depth
+    private static void insert(InputStream in, OutputStream out, int depth, String parent,
+                               Function<String, String> element) throws IOException {
+        boolean[] inserted = { false };
+        XmlTagScanner.copy(in, out, (tag, before) -> {
+            if (tag.depth() != depth || !tag.is(parent) || tag.kind() == XmlTagScanner.Kind.START) {
+                return XmlTagScanner.Action.COPY;
+            }
+            inserted[0] = true;
+            byte[] bytes = element.apply(tag.prefix()).getBytes(StandardCharsets.UTF_8);
+            if (tag.kind() == XmlTagScanner.Kind.END) {
+                before.write(bytes);
+                return XmlTagScanner.Action.COPY_REST;
+            }
+            before.write(("<" + tag.prefix() + parent + ">").getBytes(StandardCharsets.UTF_8));
+            before.write(bytes);
+            before.write(("</" + tag.prefix() + parent + ">").getBytes(StandardCharsets.UTF_8));
+            return XmlTagScanner.Action.REPLACE;
+        });
+        if (!inserted[0]) {
+            throw new IOException("No " + parent + " element to add the sheet to");
+        }
+    }
+
+    private static void validateNewSheet(String sheetName, Set<String> existing) throws IOException {
+        try {
+            WorkbookUtil.validateSheetName(sheetName);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        for (String name : existing) {
+            // Sheet names are unique ignoring case
+            if (name.equalsIgnoreCase(sheetName)) {
+                throw new IOException("Workbook already has a sheet named '" + name + "'");
+            }
+        }
+    }
+
+    // A relationship id that is not used yet, following the rIdN convention
+    private static String newRelationshipId(Set<String> ids) {
+        int next = ids.size() + 1;
+        while (ids.contains("rId" + next)) {
+            next++;
+        }
+        return "rId" + next;
+    }
+
+    private void number(double value) throws IOException {
+        rows.append("><").append(prefix).append("v>").append(Double.toString(value)).append("</").append(prefix).append("v>");
+    }
+
+    /**
+     * Index of the cell style with the given number format, created when the workbook has none.
+     * Returns -1 for workbooks without a styles part, whose dates are then stored as text.
+     */
+    private int style(String format) throws IOException {
+        Integer cached = dateStyles.get(format);
+        if (cached != null) {
+            return cached;
+        }
+        if (stylesPart == null) {
+            dateStyles.put(format, -1);
+            return -1;
+        }
+        if (styles == null) {
+            try (ZipFile zip = new ZipFile(file.toFile()); InputStream in = zip.getInputStream(entry(zip, stylesPart))) {
+                styles = new StylesTable(in);
+            }
+        }
+        int formats = styles.getNumberFormats().size();
+        int dataFormat = BuiltinFormats.getBuiltinFormat(format);
+        if (dataFormat < 0) {
+            dataFormat = styles.putNumberFormat(format);
+            stylesModified |= styles.getNumberFormats().size() != formats;
+        }
+        int index = -1;
+        for (int i = 1; i < styles.getNumCellStyles() && index < 0; i++) {
+            if (styles.getStyleAt(i).getDataFormat() == dataFormat) {
+                index = i;
+            }
+        }
+        if (index < 0) {
+            XSSFCellStyle style = styles.createCellStyle();
+            style.setDataFormat(dataFormat);
+            index = style.getIndex();
+            stylesModified = true;
+        }
+        dateStyles.put(format, index);
+        return index;
+    }
+
+    // Column index of a cell reference such as "AB12"
+    private static int column(String reference) {
+        int col = 0;
+        for (int i = 0; i < reference.length(); i++) {
+            char c = reference.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                break;
+            }
+            col = col * 26 + c - 'A' + 1;
+        }
+        return col - 1;
+    }
+
+    private static ZipEntry entry(ZipFile zip, String part) throws IOException {
+        ZipEntry entry = zip.getEntry(part);
+        if (entry == null) {
+            throw new IOException("Missing part " + part + " in " + zip.getName());
+        }
+        return entry;
+    }
+}
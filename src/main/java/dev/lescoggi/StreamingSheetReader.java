@@ -0,0 +1,223 @@
+package dev.lescoggi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.SheetContentsHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Read-only access to a single sheet of an .xlsx file using the SAX based event API instead of
+ * the DOM based {@code XSSFWorkbook}. Only the shared strings, the styles and the requested sheet
+ * part are parsed, rows outside the requested window are skipped without formatting their cells,
+ * and parsing stops once the window has been passed, so memory use does not depend on the size of
+ * the sheet.
+ */
+class StreamingSheetReader {
+
+    /**
+     * Thrown by a {@link SheetContentsHandler} to end parsing early.
+     */
+    static final class StopReading extends RuntimeException {
+
+        static final StopReading INSTANCE = new StopReading();
+
+        private StopReading() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Result of a single cell lookup; {@code value} is {@code null} when the row exists but the
+     * cell does not.
+     */
+    record CellLookup(boolean rowExists, String value) {
+    }
+
+    @FunctionalInterface
+    interface SheetCellConsumer {
+        void cell(String sheetName, String cellReference, String formattedValue);
+    }
+
+    @FunctionalInterface
+    private interface HandlerFactory {
+        ContentHandler create(OPCPackage pkg, XSSFReader reader) throws IOException, SAXException, OpenXML4JException;
+    }
+
+    private StreamingSheetReader() {
+    }
+
+    /**
+     * Streams rows {@code firstRow} to {@code lastRow} (0-based, inclusive) of the given sheet into
+     * {@code handler}. Returns {@code false} when the workbook has no sheet with that name.
+     */
+    static boolean read(Path file, String sheetName, int firstRow, int lastRow, DataFormatter formatter,
+                        SheetContentsHandler handler) throws IOException {
+        return parse(file, sheetName, (pkg, reader) -> {
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg, false);
+            XSSFSheetXMLHandler cells = new XSSFSheetXMLHandler(reader.getStylesTable(), strings, handler, formatter, false);
+            return new RowWindow(cells, firstRow, lastRow);
+        });
+    }
+
+    /**
+     * Looks up a single cell, reading the sheet only up to the requested row. Returns {@code null}
+     * when the sheet does not exist.
+     */
+    static CellLookup readCell(Path file, String sheetName, int rowNum, int colNum) throws IOException {
+        CellLookup[] result = { new CellLookup(false, null) };
+        boolean found = read(file, sheetName, rowNum, rowNum, new DataFormatter(), new SheetContentsHandler() {
+            @Override
+            public void startRow(int row) {
+                result[0] = new CellLookup(true, null);
+            }
+
+            @Override
+            public void endRow(int row) {
+                throw StopReading.INSTANCE;
+            }
+
+            @Override
+            public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+                if (new CellReference(cellReference).getCol() == colNum) {
+                    result[0] = new CellLookup(true, formattedValue);
+                }
+            }
+        });
+        return found ? result[0] : null;
+    }
+
+    /**
+     * Streams every cell with a value of every sheet into {@code consumer}, sheet by sheet in
+     * workbook order.
+     */
+    static void readAllCells(Path file, SheetCellConsumer consumer) throws IOException {
+        ToolMetrics.opened(file);
+        try (OPCPackage pkg = OPCPackage.open(file.toFile(), PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg, false);
+            StylesTable styles = reader.getStylesTable();
+            DataFormatter formatter = new DataFormatter();
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            while (sheets.hasNext()) {
+                try (InputStream sheet = sheets.next()) {
+                    String sheetName = sheets.getSheetName();
+                    XMLReader parser = XMLHelper.newXMLReader();
+                    parser.setContentHandler(new XSSFSheetXMLHandler(styles, strings, new SheetContentsHandler() {
+                        @Override
+                        public void startRow(int row) {
+                        }
+
+                        @Override
+                        public void endRow(int row) {
+                        }
+
+                        @Override
+                        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+                            consumer.cell(sheetName, cellReference, formattedValue);
+                        }
+                    }, formatter, false));
+                    parser.parse(new InputSource(sheet));
+                }
+            }
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    private static boolean parse(Path file, String sheetName, HandlerFactory handlerFactory) throws IOException {
+        ToolMetrics.opened(file);
+        try (OPCPackage pkg = OPCPackage.open(file.toFile(), PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            while (sheets.hasNext()) {
+                try (InputStream sheet = sheets.next()) {
+                    if (!sheets.getSheetName().equals(sheetName)) {
+                        continue;
+                    }
+                    XMLReader parser = XMLHelper.newXMLReader();
+                    parser.setContentHandler(handlerFactory.create(pkg, reader));
+                    try {
+                        parser.parse(new InputSource(sheet));
+                    } catch (StopReading e) {
+                        // The handler has seen everything it needs
+                    }
+                    return true;
+                }
+            }
+            return false;
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Forwards only the rows inside the window to the delegate, so cells of other rows are never
+     * resolved or formatted, and stops parsing after the last row of the window.
+     */
+    private static final class RowWindow extends DefaultHandler {
+
+        private final ContentHandler delegate;
+        private final int firstRow;
+        private final int lastRow;
+        private int nextRow;
+        private boolean skipping;
+
+        RowWindow(ContentHandler delegate, int firstRow, int lastRow) {
+            this.delegate = delegate;
+            this.firstRow = firstRow;
+            this.lastRow = lastRow;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+            if ("row".equals(localName)) {
+                String r = attributes.getValue("r");
+                int row = r != null ? Integer.parseInt(r) - 1 : nextRow;
+                nextRow = row + 1;
+                if (row > lastRow) {
+                    throw StopReading.INSTANCE;
+                }
+                skipping = row < firstRow;
+            }
+            if (!skipping) {
+                delegate.startElement(uri, localName, qName, attributes);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            if (skipping) {
+                skipping = !"row".equals(localName);
+                return;
+            }
+            delegate.endElement(uri, localName, qName);
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            if (!skipping) {
+                delegate.characters(ch, start, length);
+            }
+        }
+    }
+}
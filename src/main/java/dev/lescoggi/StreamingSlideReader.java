@@ -0,0 +1,259 @@
+package dev.lescoggi;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.zip.ZipFile;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Read-only access to the slides of a .pptx file with a StAX parser instead of the DOM based
+ * {@code XMLSlideShow}. The slide order comes from the slide list of {@code presentation.xml},
+ * and only the slide parts themselves are parsed, in parallel; layouts, masters and media are
+ * never loaded.
+ * <p>
+ * Slides are parsed on virtual threads of which at most one per core runs at once, however many
+ * tool calls read slides, as inflating and parsing them is CPU bound.
+ */
+class StreamingSlideReader {
+
+    private static final String MARKUP_COMPATIBILITY = "http://schemas.openxmlformats.org/markup-compatibility/2006";
+
+    private static final Semaphore PARSERS = new Semaphore(Runtime.getRuntime().availableProcessors());
+
+    private StreamingSlideReader() {
+    }
+
+    /**
+     * Returns the number of slides, read from {@code presentation.xml} alone.
+     */
+    static int slideCount(Path file) throws IOException {
+        ToolMetrics.opened(file);
+        try (ZipFile zip = new ZipFile(file.toFile())) {
+            return slideIds(zip, ZipPartReader.mainPart(zip)).size();
+        }
+    }
+
+    /**
+     * Returns the text of the title placeholder of every slide in presentation order, or
+     * {@code null} for slides without one. Paragraphs of a title are separated by line breaks.
+     */
+    static List<String> readSlideTitles(Path file) throws IOException {
+        return readSlides(file, true);
+    }
+
+    /**
+     * Returns the text of every slide in presentation order. The paragraphs of a slide end with a
+     * line break.
+     */
+    static List<String> readSlideTexts(Path file) throws IOException {
+        return readSlides(file, false);
+    }
+
+    private static List<String> readSlides(Path file, boolean titles) throws IOException {
+        ToolMetrics.opened(file);
+        try (ZipFile zip = new ZipFile(file.toFile())) {
+            String presentation = ZipPartReader.mainPart(zip);
+            Map<String, String> targets = ZipPartReader.relationships(zip, presentation);
+            List<String> slides = new ArrayList<>();
+            for (String id : slideIds(zip, presentation)) {
+                String slide = targets.get(id);
+                if (slide == null) {
+                    throw new IOException("Missing slide " + id + " in " + file);
+                }
+                slides.add(slide);
+            }
+            return parseSlides(zip, slides, titles);
+        }
+    }
+
+    // Parses the slides on virtual threads, at most PARSERS at once over all calls
+    private static List<String> parseSlides(ZipFile zip, List<String> slides, boolean titles) throws IOException {
+        if (slides.size() == 1) {
+            // A slide without a title reads as null
+            return Collections.singletonList(parseSlide(zip, slides.get(0), titles));
+        }
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<String>> pending = new ArrayList<>(slides.size());
+            for (String slide : slides) {
+                pending.add(executor.submit(() -> {
+                    PARSERS.acquire();
+                    try {
+                        return parseSlide(zip, slide, titles);
+                    } finally {
+                        PARSERS.release();
+                    }
+                }));
+            }
+            List<String> parsed = new ArrayList<>(slides.size());
+            for (Future<String> slide : pending) {
+                parsed.add(slide.get());
+            }
+            return parsed;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading slides", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private static String parseSlide(ZipFile zip, String slide, boolean titles) throws IOException {
+        return ZipPartReader.read(zip, slide, xml -> titles ? readTitle(xml) : readText(xml));
+    }
+
+    // Relationship ids of the slides, in presentation order
+    private static List<String> slideIds(ZipFile zip, String presentation) throws IOException {
+        List<String> ids = new ArrayList<>();
+        ZipPartReader.parse(zip, presentation, xml -> {
+            if ("sldId".equals(xml.getLocalName())) {
+                String id = ZipPartReader.relationshipId(xml);
+                if (id != null) {
+                    ids.add(id);
+                }
+            }
+            // The slide list is followed by the slide size
+            return !"sldSz".equals(xml.getLocalName());
+        });
+        return ids;
+    }
+
+    /**
+     * Returns the text of the first shape that is a title or centered title placeholder, reading
+     * the slide only up to the end of that shape.
+     */
+    private static String readTitle(XMLStreamReader xml) throws XMLStreamException {
+        StringBuilder text = null;
+        boolean title = false;
+        int paragraphs = 0;
+        boolean inText = false;
+        int skipDepth = 0;
+        while (xml.hasNext()) {
+            switch (xml.next()) {
+                case XMLStreamConstants.START_ELEMENT -> {
+                    String name = xml.getLocalName();
+                    if (skipDepth > 0) {
+                        skipDepth++;
+                    } else if (isFallback(xml)) {
+                        skipDepth = 1;
+                    } else if (isPresentation(xml.getNamespaceURI())) {
+                        if ("sp".equals(name)) {
+                            text = new StringBuilder();
+                            title = false;
+                            paragraphs = 0;
+                        } else if ("ph".equals(name) && text != null) {
+                            String type = xml.getAttributeValue(null, "type");
+                            title = "title".equals(type) || "ctrTitle".equals(type);
+                        }
+                    } else if (isDrawing(xml.getNamespaceURI()) && text != null) {
+                        switch (name) {
+                            case "p" -> {
+                                if (paragraphs++ > 0) {
+                                    text.append('\n');
+                                }
+                            }
+                            case "t" -> inText = true;
+                            case "br" -> text.append('\n');
+                            default -> {
+                            }
+                        }
+                    }
+                }
+                case XMLStreamConstants.END_ELEMENT -> {
+                    if (skipDepth > 0) {
+                        skipDepth--;
+                    } else if (isDrawing(xml.getNamespaceURI()) && "t".equals(xml.getLocalName())) {
+                        inText = false;
+                    } else if (isPresentation(xml.getNamespaceURI()) && "sp".equals(xml.getLocalName())) {
+                        if (title) {
+                            return text.toString();
+                        }
+                        text = null;
+                    }
+                }
+                case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA -> {
+                    if (inText && skipDepth == 0 && text != null) {
+                        text.append(xml.getText());
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+        return null;
+    }
+
+    // All text runs of a slide, ending each paragraph with a line break
+    private static String readText(XMLStreamReader xml) throws XMLStreamException {
+        StringBuilder text = new StringBuilder();
+        boolean inText = false;
+        int skipDepth = 0;
+        while (xml.hasNext()) {
+            switch (xml.next()) {
+                case XMLStreamConstants.START_ELEMENT -> {
+                    if (skipDepth > 0) {
+                        skipDepth++;
+                    } else if (isFallback(xml)) {
+                        skipDepth = 1;
+                    } else if (isDrawing(xml.getNamespaceURI())) {
+                        switch (xml.getLocalName()) {
+                            case "t" -> inText = true;
+                            case "br" -> text.append('\n');
+                            default -> {
+                            }
+                        }
+                    }
+                }
+                case XMLStreamConstants.END_ELEMENT -> {
+                    if (skipDepth > 0) {
+                        skipDepth--;
+                    } else if (isDrawing(xml.getNamespaceURI())) {
+                        switch (xml.getLocalName()) {
+                            case "t" -> inText = false;
+                            case "p" -> text.append('\n');
+                            default -> {
+                            }
+                        }
+                    }
+                }
+                case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA -> {
+                    if (inText && skipDepth == 0) {
+                        text.append(xml.getText());
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+        return text.toString();
+    }
+
+    // Legacy rendering of content that is also present in mc:Choice
+    private static boolean isFallback(XMLStreamReader xml) {
+        return MARKUP_COMPATIBILITY.equals(xml.getNamespaceURI()) && "Fallback".equals(xml.getLocalName());
+    }
+
+    // Transitional or strict PresentationML
+    private static boolean isPresentation(String uri) {
+        return uri != null && (uri.endsWith("/presentationml/2006/main") || uri.endsWith("/presentationml/main"));
+    }
+
+    // Transitional or strict DrawingML
+    private static boolean isDrawing(String uri) {
+        return uri != null && (uri.endsWith("/drawingml/2006/main") || uri.endsWith("/drawingml/main"));
+    }
+}
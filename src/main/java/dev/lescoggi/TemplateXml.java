@@ -0,0 +1,502 @@
+package dev.lescoggi;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+/**
+ * Turns an XML part of an Office template into the source of a Qute template. Text of
+ * {@code <w:t>}, {@code <a:t>} and {@code <t>} elements is template text: its Qute tags are kept
+ * as they are, the rest is escaped for XML. Everything else is literal, with braces protected from
+ * the Qute parser, so the part renders to itself apart from what its text produces.
+ * <p>
+ * Before the part is written out, the template text is brought into a shape Qute can work with:
+ * a tag that Word or PowerPoint split across runs is moved into the run it starts in, a paragraph
+ * that only holds a section tag is replaced by the tag, so that the paragraphs between a
+ * {@code {#for}} and its {@code {/for}} are repeated, and section tags that a paragraph of a table
+ * row does not close are moved around the row, so that the row is repeated. Elements can be given
+ * Qute source to write before, after or instead of them with {@link #before}, {@link #after},
+ * {@link #replace}, {@link #rest} and {@link #rawAttribute}.
+ */
+final class TemplateXml {
+
+    static final String WORD = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+    static final String DRAWING = "http://schemas.openxmlformats.org/drawingml/2006/main";
+    static final String SPREADSHEET = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+    static final String PRESENTATION = "http://schemas.openxmlformats.org/presentationml/2006/main";
+    static final String RELATIONSHIPS = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+
+    private static final String BEFORE = "qute.before";
+    private static final String AFTER = "qute.after";
+    private static final String REPLACE = "qute.replace";
+    private static final String REST = "qute.rest";
+    private static final String RAW_ATTRIBUTES = "qute.raw-attributes";
+
+    private TemplateXml() {
+    }
+
+    /**
+     * A section tag of template text, e.g. {@code {#for item in items}}, {@code {#else}} or
+     * {@code {/for}}.
+     */
+    record SectionTag(String text) {
+
+        boolean isEnd() {
+            return text.startsWith("{/");
+        }
+
+        boolean isElse() {
+            return text.startsWith("{#else") && (text.length() == 7 || !Character.isLetterOrDigit(text.charAt(6)));
+        }
+
+        /**
+         * The name of the section, {@code for} for {@code {#for item in items}} and {@code {/for}},
+         * or an empty string for {@code {/}}.
+         */
+        String name() {
+            int start = 2;
+            int end = start;
+            while (end < text.length() - 1 && !Character.isWhitespace(text.charAt(end))) {
+                end++;
+            }
+            return text.substring(start, end);
+        }
+
+        static SectionTag of(String tag) {
+            return tag.startsWith("{#") || tag.startsWith("{/") ? new SectionTag(tag) : null;
+        }
+    }
+
+    static Document parse(byte[] bytes) throws IOException {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            // Templates are user files: no document types, no external entities
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setExpandEntityReferences(false);
+            DocumentBuilder builder = factory.newDocumentBuilder();
+            return builder.parse(new ByteArrayInputStream(bytes));
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("Cannot parse template part: " + e.getMessage(), e);
+        }
+    }
+
+    static boolean isText(Node node) {
+        return node instanceof Element element && "t".equals(element.getLocalName())
+            && (WORD.equals(element.getNamespaceURI()) || DRAWING.equals(element.getNamespaceURI()) || SPREADSHEET.equals(element.getNamespaceURI()));
+    }
+
+    static boolean isParagraph(Node node) {
+        return node instanceof Element element && ("p".equals(element.getLocalName())
+            && (WORD.equals(element.getNamespaceURI()) || DRAWING.equals(element.getNamespaceURI()))
+            || "is".equals(element.getLocalName()) && SPREADSHEET.equals(element.getNamespaceURI()));
+    }
+
+    static boolean isRow(Node node) {
+        return node instanceof Element element && ("tr".equals(element.getLocalName())
+            && (WORD.equals(element.getNamespaceURI()) || DRAWING.equals(element.getNamespaceURI()))
+            || "row".equals(element.getLocalName()) && SPREADSHEET.equals(element.getNamespaceURI()));
+    }
+
+    /**
+     * Whether any template text of the part holds a brace, that is, whether the part has to be
+     * rendered at all.
+     */
+    static boolean hasTemplateText(Document document) {
+        for (Element text : elements(document.getDocumentElement(), TemplateXml::isText, node -> false)) {
+            if (text.getTextContent().indexOf('{') >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Moves every tag of the template text that spans several text elements of a paragraph into
+     * the element it starts in, so that each tag is in one piece.
+     */
+    static void joinSplitTags(Document document) {
+        for (Element paragraph : elements(document.getDocumentElement(), TemplateXml::isParagraph, node -> false)) {
+            List<Element> texts = elements(paragraph, TemplateXml::isText, TemplateXml::isParagraph);
+            if (texts.size() < 2) {
+                continue;
+            }
+            StringBuilder joined = new StringBuilder();
+            List<Integer> owners = new ArrayList<>();
+            for (int i = 0; i < texts.size(); i++) {
+                String text = texts.get(i).getTextContent();
+                joined.append(text);
+                for (int j = 0; j < text.length(); j++) {
+                    owners.add(i);
+                }
+            }
+            boolean moved = false;
+            for (int[] tag : tags(joined)) {
+                int owner = owners.get(tag[0]);
+                for (int i = tag[0]; i < tag[1]; i++) {
+                    moved |= owners.set(i, owner).intValue() != owner;
+                }
+            }
+            if (!moved) {
+                continue;
+            }
+            StringBuilder[] parts = new StringBuilder[texts.size()];
+            for (int i = 0; i < parts.length; i++) {
+                parts[i] = new StringBuilder();
+            }
+            for (int i = 0; i < joined.length(); i++) {
+                parts[owners.get(i)].append(joined.charAt(i));
+            }
+            for (int i = 0; i < parts.length; i++) {
+                texts.get(i).setTextContent(parts[i].toString());
+            }
+        }
+    }
+
+    /**
+     * Moves the section tags that a paragraph of a table row leaves open, or closes without
+     * opening them, out of the text and around the row, so that the section repeats or drops the
+     * whole row. Returns the rows that were given sections.
+     *
+     * @throws IllegalArgumentException for an {@code {#else}} of a section that is not closed in
+     * the same paragraph
+     */
+    static List<Element> moveSectionsAroundRows(Document document) {
+        List<Element> rows = new ArrayList<>();
+        // Innermost rows first, so a nested table keeps its own sections
+        List<Element> all = elements(document.getDocumentElement(), TemplateXml::isRow, node -> false);
+        for (int r = all.size() - 1; r >= 0; r--) {
+            Element row = all.get(r);
+            StringBuilder before = new StringBuilder();
+            StringBuilder after = new StringBuilder();
+            for (Element paragraph : elements(row, TemplateXml::isParagraph, TemplateXml::isRow)) {
+                List<Element> texts = elements(paragraph, TemplateXml::isText, TemplateXml::isParagraph);
+                StringBuilder joined = new StringBuilder();
+                texts.forEach(text -> joined.append(text.getTextContent()));
+                List<int[]> open = unbalanced(joined);
+                if (open.isEmpty()) {
+                    continue;
+                }
+                for (int[] tag : open) {
+                    SectionTag section = new SectionTag(joined.substring(tag[0], tag[1]));
+                    if (section.isElse()) {
+                        throw new IllegalArgumentException(section.text() + " in a table row has to be in the same paragraph as its section");
+                    }
+                    (section.isEnd() ? after : before).append(section.text());
+                }
+                removeRanges(texts, open);
+            }
+            if (!before.isEmpty() || !after.isEmpty()) {
+                before(row, before.toString());
+                after(row, after.toString());
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Replaces each paragraph whose whole text is one section tag by the tag.
+     */
+    static void replaceSectionParagraphs(Document document) {
+        for (Element paragraph : elements(document.getDocumentElement(), TemplateXml::isParagraph, node -> false)) {
+            SectionTag tag = sectionParagraph(paragraph);
+            if (tag != null) {
+                replace(paragraph, tag.text());
+            }
+        }
+    }
+
+    /**
+     * Returns the tag when the whole text of a paragraph is one section tag, otherwise
+     * {@code null}.
+     */
+    static SectionTag sectionParagraph(Element paragraph) {
+        String text = paragraphText(paragraph).strip();
+        List<int[]> tags = tags(text);
+        if (tags.size() != 1 || tags.get(0)[0] != 0 || tags.get(0)[1] != text.length()) {
+            return null;
+        }
+        return SectionTag.of(text);
+    }
+
+    static String paragraphText(Element paragraph) {
+        StringBuilder text = new StringBuilder();
+        elements(paragraph, TemplateXml::isText, TemplateXml::isParagraph).forEach(t -> text.append(t.getTextContent()));
+        return text.toString();
+    }
+
+    /**
+     * Elements below {@code root}, in document order, that match; elements below a match or below
+     * an element that {@code stop} accepts are not visited.
+     */
+    static List<Element> elements(Element root, Predicate<Node> match, Predicate<Node> stop) {
+        List<Element> found = new ArrayList<>();
+        Deque<Node> pending = new ArrayDeque<>();
+        for (Node child = root.getLastChild(); child != null; child = child.getPreviousSibling()) {
+            pending.push(child);
+        }
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            if (match.test(node)) {
+                found.add((Element) node);
+                continue;
+            }
+            if (stop.test(node)) {
+                continue;
+            }
+            for (Node child = node.getLastChild(); child != null; child = child.getPreviousSibling()) {
+                pending.push(child);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Writes {@code source} before the element, after what was added before.
+     */
+    static void before(Element element, String source) {
+        String added = (String) element.getUserData(BEFORE);
+        element.setUserData(BEFORE, added == null ? source : added + source, null);
+    }
+
+    /**
+     * Writes {@code source} after the element, after what was added before.
+     */
+    static void after(Element element, String source) {
+        String added = (String) element.getUserData(AFTER);
+        element.setUserData(AFTER, added == null ? source : added + source, null);
+    }
+
+    /**
+     * Writes {@code source} right after the attributes of the element, instead of the rest of its
+     * start tag and its content; the source has to close the start tag.
+     */
+    static void rest(Element element, String source) {
+        element.setUserData(REST, source, null);
+    }
+
+    /**
+     * Writes {@code source} instead of the element and everything in it.
+     */
+    static void replace(Element element, String source) {
+        element.setUserData(REPLACE, source, null);
+    }
+
+    /**
+     * Writes {@code source} as the value of an attribute of the element, without escaping it.
+     */
+    @SuppressWarnings("unchecked")
+    static void rawAttribute(Element element, String name, String source) {
+        Map<String, String> attributes = (Map<String, String>) element.getUserData(RAW_ATTRIBUTES);
+        if (attributes == null) {
+            attributes = new HashMap<>();
+            element.setUserData(RAW_ATTRIBUTES, attributes, null);
+        }
+        attributes.put(name, source);
+    }
+
+    /**
+     * Returns the Qute source of the part.
+     */
+    static String source(Document document) {
+        StringBuilder out = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+        write(document.getDocumentElement(), out);
+        return out.toString();
+    }
+
+    /**
+     * Start and end of the tags in template text, for brace pairs at the outermost level.
+     */
+    static List<int[]> tags(CharSequence text) {
+        List<int[]> tags = new ArrayList<>();
+        int depth = 0;
+        int start = -1;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\' && i + 1 < text.length() && text.charAt(i + 1) == '{') {
+                i++;
+            } else if (c == '{') {
+                if (depth++ == 0) {
+                    start = i;
+                }
+            } else if (c == '}' && depth > 0 && --depth == 0) {
+                tags.add(new int[] { start, i + 1 });
+            }
+        }
+        return tags;
+    }
+
+    // The section tags of the text that are not matched within it, in order
+    private static List<int[]> unbalanced(CharSequence text) {
+        List<int[]> open = new ArrayList<>();
+        List<int[]> closedWithoutStart = new ArrayList<>();
+        for (int[] tag : tags(text)) {
+            SectionTag section = SectionTag.of(text.subSequence(tag[0], tag[1]).toString());
+            if (section == null) {
+                continue;
+            }
+            if (section.isElse()) {
+                if (open.isEmpty()) {
+                    closedWithoutStart.add(tag);
+                }
+            } else if (section.isEnd()) {
+                if (open.isEmpty()) {
+                    closedWithoutStart.add(tag);
+                } else {
+                    open.remove(open.size() - 1);
+                }
+            } else if (!isSelfClosing(text, tag)) {
+                open.add(tag);
+            }
+        }
+        List<int[]> all = new ArrayList<>(closedWithoutStart);
+        all.addAll(open);
+        all.sort((a, b) -> Integer.compare(a[0], b[0]));
+        return all;
+    }
+
+    // {#include foo /} and the like do not open a section
+    private static boolean isSelfClosing(CharSequence text, int[] tag) {
+        return text.charAt(tag[1] - 2) == '/';
+    }
+
+    // Removes the given ranges of the joined text of the elements from their texts
+    private static void removeRanges(List<Element> texts, List<int[]> ranges) {
+        int offset = 0;
+        for (Element element : texts) {
+            String text = element.getTextContent();
+            StringBuilder kept = new StringBuilder();
+            for (int i = 0; i < text.length(); i++) {
+                int position = offset + i;
+                boolean removed = false;
+                for (int[] range : ranges) {
+                    removed |= position >= range[0] && position < range[1];
+                }
+                if (!removed) {
+                    kept.append(text.charAt(i));
+                }
+            }
+            offset += text.length();
+            if (kept.length() != text.length()) {
+                element.setTextContent(kept.toString());
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void write(Node node, StringBuilder out) {
+        switch (node.getNodeType()) {
+            case Node.ELEMENT_NODE -> {
+                Element element = (Element) node;
+                appendSource(out, (String) element.getUserData(BEFORE));
+                String replacement = (String) element.getUserData(REPLACE);
+                if (replacement != null) {
+                    out.append(replacement);
+                } else {
+                    out.append('<').append(element.getTagName());
+                    Map<String, String> raw = (Map<String, String>) element.getUserData(RAW_ATTRIBUTES);
+                    NamedNodeMap attributes = element.getAttributes();
+                    for (int i = 0; i < attributes.getLength(); i++) {
+                        Attr attribute = (Attr) attributes.item(i);
+                        out.append(' ').append(attribute.getName()).append("=\"");
+                        if (raw != null && raw.containsKey(attribute.getName())) {
+                            out.append(raw.get(attribute.getName()));
+                        } else {
+                            literal(out, attribute.getValue(), true);
+                        }
+                        out.append('"');
+                    }
+                    String rest = (String) element.getUserData(REST);
+                    if (rest != null) {
+                        out.append(rest).append("</").append(element.getTagName()).append('>');
+                        appendSource(out, (String) element.getUserData(AFTER));
+                        return;
+                    }
+                    boolean template = isText(element) && element.getTextContent().indexOf('{') >= 0;
+                    if (template && !DRAWING.equals(element.getNamespaceURI()) && !element.hasAttribute("xml:space")) {
+                        // Rendered values may start or end with spaces
+                        out.append(" xml:space=\"preserve\"");
+                    }
+                    if (!element.hasChildNodes()) {
+                        out.append("/>");
+                    } else {
+                        out.append('>');
+                        if (template) {
+                            templateText(out, element.getTextContent());
+                        } else {
+                            for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+                                write(child, out);
+                            }
+                        }
+                        out.append("</").append(element.getTagName()).append('>');
+                    }
+                }
+                appendSource(out, (String) element.getUserData(AFTER));
+            }
+            case Node.TEXT_NODE, Node.CDATA_SECTION_NODE -> literal(out, node.getNodeValue(), false);
+            default -> {
+                // Comments and processing instructions are not needed by Office
+            }
+        }
+    }
+
+    private static void appendSource(StringBuilder out, String source) {
+        if (source != null) {
+            out.append(source);
+        }
+    }
+
+    private static void templateText(StringBuilder out, String text) {
+        int end = 0;
+        for (int[] tag : tags(text)) {
+            literal(out, text.substring(end, tag[0]), false);
+            out.append(text, tag[0], tag[1]);
+            end = tag[1];
+        }
+        literal(out, text.substring(end), false);
+    }
+
+    // Escaped for XML, and kept away from the Qute parser when it has braces
+    private static void literal(StringBuilder out, String text, boolean attribute) {
+        if (text.isEmpty()) {
+            return;
+        }
+        boolean braces = text.indexOf('{') >= 0 || text.indexOf('}') >= 0;
+        if (braces) {
+            out.append("{|");
+        }
+        try {
+            if (attribute) {
+                XmlTagScanner.appendAttribute(out, text);
+            } else {
+                XmlTagScanner.appendText(out, text);
+            }
+        } catch (IOException e) {
+            // A StringBuilder does not throw
+            throw new IllegalStateException(e);
+        }
+        if (braces) {
+            out.append("|}");
+        }
+    }
+}
@@ -0,0 +1,464 @@
+package dev.lescoggi;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingStream;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Singleton;
+
+/**
+ * Per-tool metrics, kept in Micrometer meters tagged with the tool name: a latency timer, an error
+ * counter, a distribution summary of document sizes, counters of bytes read and written, of time
+ * spent parsing documents into memory and serializing them, and of bytes allocated by the calling
+ * thread, and a counter of calls per engine {@link EngineSelector} chose. Allocations are counted
+ * exactly for calls on platform threads, see {@link #allocatedBytes}, and estimated from the
+ * allocation samples of Flight Recorder for calls on virtual threads, which is how tools run over MCP.
+ * <p>
+ * Tool calls are measured by {@link ToolMetricsInterceptor}. The document cache, the saver and the
+ * streaming readers report their I/O for the call running on their thread through the static
+ * methods, so I/O done by background threads such as write-behind flushes or search index
+ * refreshes is not attributed to any tool.
+ * <p>
+ * The metrics are logged periodically and on shutdown. The meters are registered on the registry of
+ * the application, so that the SSE server serves them on {@code /q/metrics}, and on a Prometheus
+ * registry of their own, which the logs and, as a stdio server has no HTTP endpoint to scrape, the
+ * file for the node_exporter textfile collector are written from.
+ */
+@Singleton
+public class ToolMetrics {
+
+    private static final Logger LOG = Logger.getLogger(ToolMetrics.class);
+
+    private static final ThreadLocal<Call> CURRENT = new ThreadLocal<>();
+    private static final String ALLOCATION_SAMPLE = "jdk.ObjectAllocationSample";
+    // Samples are delivered about once a second, so a call keeps its samples for a while after it ended
+    private static final long SAMPLE_DELAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+
+    /**
+     * The metrics of one tool. The percentiles are those of the calls of the last few minutes,
+     * the other values cover every call since startup; {@code allocatedBytes} is -1 when no call
+     * could be measured.
+     */
+    public record Stats(long calls, long errors, long p50Nanos, long p99Nanos, long totalNanos, long documentP50Bytes,
+                        long readBytes, long writtenBytes, long parseNanos, long serializeNanos, long allocatedBytes,
+                        Map<String, Long> engines) {
+    }
+
+    // Calls the engine selector refused are counted under this engine label
+    static final String REFUSED = "refused";
+
+    private final MeterRegistry registry;
+    private final PrometheusMeterRegistry prometheus = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+    private final Map<String, Tool> tools = new ConcurrentHashMap<>();
+    private final Optional<Path> prometheusFile;
+    private final ScheduledExecutorService reporter;
+    // The calls on virtual threads by thread id, while their allocation samples may arrive
+    private final Map<Long, Sampled> sampled = new ConcurrentHashMap<>();
+    private final RecordingStream allocations;
+    private long loggedCalls;
+
+    ToolMetrics(MeterRegistry registry,
+                @ConfigProperty(name = "office.metrics.log-interval", defaultValue = "5m") Duration logInterval,
+                @ConfigProperty(name = "office.metrics.prometheus-file") Optional<String> prometheusFile,
+                @ConfigProperty(name = "office.metrics.prometheus-interval", defaultValue = "15s") Duration prometheusInterval,
+                @ConfigProperty(name = "office.metrics.sample-allocations", defaultValue = "true") boolean sampleAllocations) {
+        // Quarkus empties its registry on shutdown before the final report is logged, which only
+        // reads the meters of the own registry
+        this.registry = new CompositeMeterRegistry().add(registry).add(prometheus);
+        this.prometheusFile = prometheusFile.filter(file -> !file.isBlank()).map(Path::of);
+        boolean log = !logInterval.isZero();
+        boolean export = this.prometheusFile.isPresent() && !prometheusInterval.isZero();
+        reporter = log || export ? Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "office-metrics");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+        if (log) {
+            reporter.scheduleWithFixedDelay(() -> log(false), logInterval.toMillis(), logInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        if (export) {
+            reporter.scheduleWithFixedDelay(this::export, 0, prometheusInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        // Native images only have Flight Recorder when built with --enable-monitoring=jfr
+        allocations = sampleAllocations && FlightRecorder.isAvailable() ? sampleAllocations() : null;
+    }
+
+    /**
+     * The measurements of one tool call, collected on the thread that runs it.
+     */
+    static final class Call {
+        private long readBytes;
+        private long writtenBytes;
+        private long parseNanos;
+        private long serializeNanos;
+        private EngineSelector.Engine engine;
+        private boolean refused;
+        private Sampled sampled;
+    }
+
+    // A call on a virtual thread, to which the allocation samples of its thread are attributed
+    private static final class Sampled {
+        private final String tool;
+        private volatile long endNanos;
+        private volatile boolean ended;
+
+        Sampled(String tool) {
+            this.tool = tool;
+        }
+    }
+
+    /**
+     * Starts measuring a call of {@code tool} on the current thread and returns the call it
+     * interrupts, if any.
+     */
+    Call begin(String tool) {
+        Call previous = CURRENT.get();
+        Call call = new Call();
+        Thread thread = Thread.currentThread();
+        if (allocations != null && thread.isVirtual()) {
+            call.sampled = new Sampled(tool);
+            sampled.put(thread.threadId(), call.sampled);
+        }
+        CURRENT.set(call);
+        return previous;
+    }
+
+    /**
+     * Ends the call started by the matching {@link #begin} and records it for {@code tool}.
+     */
+    void end(String tool, Call previous, long nanos, long allocatedBytes, long documentBytes, boolean error) {
+        Call call = CURRENT.get();
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+        if (call.sampled != null) {
+            call.sampled.endNanos = System.nanoTime();
+            call.sampled.ended = true;
+            // Samples after a nested call belong to the call it interrupted
+            if (previous != null && previous.sampled != null) {
+                sampled.put(Thread.currentThread().threadId(), previous.sampled);
+            }
+        }
+        Tool meters = tools.computeIfAbsent(tool, this::register);
+        meters.latency.record(nanos, TimeUnit.NANOSECONDS);
+        if (error) {
+            meters.errors.increment();
+        }
+        if (documentBytes >= 0) {
+            meters.documents.record(documentBytes);
+        }
+        meters.readBytes.increment(call.readBytes);
+        meters.writtenBytes.increment(call.writtenBytes);
+        meters.parseSeconds.increment(call.parseNanos / 1e9);
+        meters.serializeSeconds.increment(call.serializeNanos / 1e9);
+        if (allocatedBytes >= 0) {
+            meters.allocated().increment(allocatedBytes);
+        }
+        if (call.engine != null) {
+            meters.engines[call.engine.ordinal()].increment();
+        }
+        if (call.refused) {
+            meters.refused.increment();
+        }
+    }
+
+    /**
+     * Records that a document of {@code bytes} bytes was parsed into memory in {@code nanos}.
+     */
+    static void parsed(long bytes, long nanos) {
+        Call call = CURRENT.get();
+        if (call != null) {
+            call.readBytes += bytes;
+            call.parseNanos += nanos;
+        }
+    }
+
+    /**
+     * Records that a document was serialized to {@code bytes} bytes in {@code nanos}.
+     */
+    static void serialized(long bytes, long nanos) {
+        Call call = CURRENT.get();
+        if (call != null) {
+            call.writtenBytes += bytes;
+            call.serializeNanos += nanos;
+        }
+    }
+
+    /**
+     * Records the engine selected for the current call; the last selection counts.
+     */
+    static void engine(EngineSelector.Engine engine) {
+        Call call = CURRENT.get();
+        if (call != null) {
+            call.engine = engine;
+        }
+    }
+
+    /**
+     * Records that the current call was refused because its document does not fit the heap budget.
+     */
+    static void refused() {
+        Call call = CURRENT.get();
+        if (call != null) {
+            call.refused = true;
+        }
+    }
+
+    /**
+     * Records that a streaming reader opened {@code file}, counting its size as read.
+     */
+    static void opened(Path file) {
+        Call call = CURRENT.get();
+        if (call != null) {
+            try {
+                call.readBytes += Files.size(file);
+            } catch (IOException e) {
+                // The reader reports the missing file itself
+            }
+        }
+    }
+
+    /**
+     * Returns the bytes allocated so far by the current thread, or -1 if the JVM does not count them.
+     * JDK 21 only counts them for platform threads; the allocations of calls on virtual threads are
+     * sampled instead. The allocation counter of a tool is only registered once a call was measured.
+     */
+    static long allocatedBytes() {
+        return THREADS != null && !Thread.currentThread().isVirtual() ? THREADS.getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    /**
+     * Returns the metrics of every tool called so far, by tool name.
+     */
+    public Map<String, Stats> stats() {
+        Map<String, Stats> stats = new TreeMap<>();
+        tools.forEach((name, tool) -> stats.put(name, tool.stats()));
+        return stats;
+    }
+
+    /**
+     * Returns the metrics in the Prometheus text exposition format.
+     */
+    public String prometheus() {
+        return prometheus.scrape();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+        }
+        if (allocations != null) {
+            allocations.close();
+        }
+        log(true);
+        if (prometheusFile.isPresent()) {
+            export();
+        }
+    }
+
+    private Tool register(String tool) {
+        Tool meters = new Tool(tool, registry, prometheus,
+            Timer.builder("office.tool.duration").description("Tool call latency.").tag("tool", tool)
+                .publishPercentiles(0.5, 0.99).publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(100_000)).maximumExpectedValue(Duration.ofMinutes(2)).register(registry),
+            counter("office.tool.errors", null, "Tool calls that returned an error or threw.", tool),
+            DistributionSummary.builder("office.tool.document").baseUnit("bytes").tag("tool", tool)
+                .description("Size of the document a tool call worked on, after the call.").publishPercentiles(0.5).register(registry),
+            counter("office.tool.read", "bytes", "Bytes of documents parsed or opened by streaming readers.", tool),
+            counter("office.tool.written", "bytes", "Bytes of documents saved.", tool),
+            counter("office.tool.parse", "seconds", "Time spent parsing documents into memory.", tool),
+            counter("office.tool.serialize", "seconds", "Time spent serializing documents to disk.", tool),
+            new AtomicReference<>(),
+            new Counter[EngineSelector.Engine.values().length],
+            engineCounter(tool, REFUSED));
+        for (EngineSelector.Engine engine : EngineSelector.Engine.values()) {
+            meters.engines[engine.ordinal()] = engineCounter(tool, engine.label());
+        }
+        return meters;
+    }
+
+    // Each sample weighs the bytes its thread allocated since the previous sample, so the weights of
+    // the samples of a call add up to an estimate of what it allocated
+    private RecordingStream sampleAllocations() {
+        RecordingStream stream = new RecordingStream();
+        stream.enable(ALLOCATION_SAMPLE).with("throttle", "150/s");
+        stream.onEvent(ALLOCATION_SAMPLE, this::sampled);
+        stream.onFlush(() -> {
+            long now = System.nanoTime();
+            sampled.values().removeIf(call -> call.ended && now - call.endNanos > SAMPLE_DELAY_NANOS);
+        });
+        stream.startAsync();
+        return stream;
+    }
+
+    private void sampled(RecordedEvent event) {
+        RecordedThread thread = event.getThread("eventThread");
+        Sampled call = thread != null ? sampled.get(thread.getJavaThreadId()) : null;
+        if (call != null) {
+            tools.computeIfAbsent(call.tool, this::register).allocated().increment(event.getLong("weight"));
+        }
+    }
+
+    private Counter counter(String name, String unit, String description, String tool) {
+        return Counter.builder(name).baseUnit(unit).description(description).tag("tool", tool).register(registry);
+    }
+
+    private Counter engineCounter(String tool, String engine) {
+        return Counter.builder("office.tool.engine.calls").description("Tool calls by the engine that worked on the document.")
+            .tag("tool", tool).tag("engine", engine).register(registry);
+    }
+
+    private synchronized void log(boolean always) {
+        Map<String, Stats> stats = stats();
+        long calls = stats.values().stream().mapToLong(Stats::calls).sum();
+        // Nothing to report if no tool was called since the last report
+        if (calls == 0 || calls == loggedCalls && !always) {
+            return;
+        }
+        loggedCalls = calls;
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        StringBuilder report = new StringBuilder(String.format(Locale.ROOT, "Tool metrics (heap used %s of %s):",
+            bytes(heap.getUsed()), bytes(heap.getMax())));
+        stats.forEach((name, tool) -> report.append(String.format(Locale.ROOT,
+            "%n  %s: %d calls, %d errors, p50 %s, p99 %s, document p50 %s, read %s, written %s, parse %s, serialize %s, allocated %s%s",
+            name, tool.calls(), tool.errors(), millis(tool.p50Nanos()), millis(tool.p99Nanos()), bytes(tool.documentP50Bytes()),
+            bytes(tool.readBytes()), bytes(tool.writtenBytes()), millis(tool.parseNanos()), millis(tool.serializeNanos()),
+            tool.allocatedBytes() < 0 ? "n/a" : bytes(tool.allocatedBytes()), tool.engines().isEmpty() ? "" : ", engines " + tool.engines())));
+        LOG.info(report);
+    }
+
+    private void export() {
+        Path file = prometheusFile.orElseThrow();
+        // The textfile collector may read the file at any time, so it is replaced atomically
+        Path temp = file.resolveSibling("." + file.getFileName() + ".tmp");
+        try {
+            try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                out.write(prometheus());
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            LOG.warnf(e, "Writing metrics to %s failed", file);
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.1f ms", nanos / 1e6);
+    }
+
+    private static String bytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        if (bytes < 1024 * 1024) {
+            return String.format(Locale.ROOT, "%.1f KB", bytes / 1024.0);
+        }
+        return String.format(Locale.ROOT, "%.1f MB", bytes / (1024.0 * 1024));
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                && threads.isThreadAllocatedMemorySupported()) {
+            threads.setThreadAllocatedMemoryEnabled(true);
+            return threads;
+        }
+        return null;
+    }
+
+    // The meters of one tool, registered on its first call, and the allocation counter on the first
+    // call that could be measured. Calls are recorded on the composite meters, and the statistics
+    // read from those of the Prometheus registry.
+    private record Tool(String name, MeterRegistry registry, PrometheusMeterRegistry prometheus, Timer latency, Counter errors, DistributionSummary documents,
+                        Counter readBytes, Counter writtenBytes, Counter parseSeconds, Counter serializeSeconds,
+                        AtomicReference<Counter> allocatedBytes, Counter[] engines, Counter refused) {
+
+        // Registering is idempotent, so a race only looks the counter up twice
+        Counter allocated() {
+            return allocatedBytes.updateAndGet(counter -> counter != null ? counter : Counter.builder("office.tool.allocated")
+                .baseUnit("bytes").description("Heap allocated by the thread running the tool call, sampled on virtual threads.").tag("tool", name)
+                .register(registry));
+        }
+
+        Stats stats() {
+            Timer latency = local(this.latency);
+            ValueAtPercentile[] latencies = latency.takeSnapshot().percentileValues();
+            ValueAtPercentile[] sizes = local(documents).takeSnapshot().percentileValues();
+            Counter allocated = allocatedBytes.get();
+            return new Stats(latency.count(), count(errors), nanos(latencies[0]), nanos(latencies[1]),
+                (long) latency.totalTime(TimeUnit.NANOSECONDS), (long) sizes[0].value(), count(readBytes),
+                count(writtenBytes), (long) (local(parseSeconds).count() * 1e9), (long) (local(serializeSeconds).count() * 1e9),
+                allocated != null ? count(allocated) : -1, engineCalls());
+        }
+
+        // Calls by engine label, only the engines that were used
+        Map<String, Long> engineCalls() {
+            Map<String, Long> calls = new LinkedHashMap<>();
+            for (EngineSelector.Engine engine : EngineSelector.Engine.values()) {
+                long count = count(engines[engine.ordinal()]);
+                if (count > 0) {
+                    calls.put(engine.label(), count);
+                }
+            }
+            if (count(refused) > 0) {
+                calls.put(REFUSED, count(refused));
+            }
+            return calls;
+        }
+
+        private long count(Counter counter) {
+            return (long) local(counter).count();
+        }
+
+        private Timer local(Timer timer) {
+            return prometheus.get(timer.getId().getName()).tags(timer.getId().getTags()).timer();
+        }
+
+        private Counter local(Counter counter) {
+            return prometheus.get(counter.getId().getName()).tags(counter.getId().getTags()).counter();
+        }
+
+        private DistributionSummary local(DistributionSummary summary) {
+            return prometheus.get(summary.getId().getName()).tags(summary.getId().getTags()).summary();
+        }
+
+        private static long nanos(ValueAtPercentile percentile) {
+            return (long) percentile.value(TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package dev.lescoggi;
+
+import java.io.IOException;
+import java.lang.reflect.Parameter;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+
+import io.quarkiverse.mcp.server.Tool;
+import io.quarkiverse.mcp.server.ToolResponse;
+import jakarta.annotation.Priority;
+import jakarta.inject.Inject;
+import jakarta.interceptor.AroundInvoke;
+import jakarta.interceptor.Interceptor;
+import jakarta.interceptor.InvocationContext;
+
+/**
+ * Measures every {@code @Tool} method of a {@link Metered} class. A call counts as an error when it
+ * returns an error response or throws; the document size is that of the {@code filepath} argument
+ * after the call.
+ */
+@Metered
+@Interceptor
+@Priority(Interceptor.Priority.APPLICATION)
+public class ToolMetricsInterceptor {
+
+    @Inject
+    ToolMetrics metrics;
+
+    @AroundInvoke
+    Object measure(InvocationContext context) throws Exception {
+        Tool tool = context.getMethod().getAnnotation(Tool.class);
+        if (tool == null) {
+            return context.proceed();
+        }
+        String name = tool.name().isEmpty() ? context.getMethod().getName() : tool.name();
+        ToolMetrics.Call previous = metrics.begin(name);
+        long allocated = ToolMetrics.allocatedBytes();
+        long start = System.nanoTime();
+        boolean error = true;
+        try {
+            Object result = context.proceed();
+            error = result instanceof ToolResponse response && response.isError();
+            return result;
+        } finally {
+            long nanos = System.nanoTime() - start;
+            long allocatedBytes = allocated >= 0 ? ToolMetrics.allocatedBytes() - allocated : -1;
+            metrics.end(name, previous, nanos, allocatedBytes, documentBytes(context), error);
+        }
+    }
+
+    // Size of the file named by the filepath argument, or -1 for tools without one
+    private static long documentBytes(InvocationContext context) {
+        String filepath = filepath(context);
+        if (filepath == null) {
+            return -1;
+        }
+        try {
+            Path file = Path.of(filepath);
+            return Files.isRegularFile(file) ? Files.size(file) : -1;
+        } catch (IOException | InvalidPathException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the {@code filepath} argument of a tool call, or {@code null} if the tool has none.
+     */
+    static String filepath(InvocationContext context) {
+        Parameter[] parameters = context.getMethod().getParameters();
+        for (int i = 0; i < parameters.length; i++) {
+            if ("filepath".equals(parameters[i].getName()) && context.getParameters()[i] instanceof String filepath) {
+                return filepath;
+            }
+        }
+        return null;
+    }
+}
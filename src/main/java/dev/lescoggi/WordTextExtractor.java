@@ -0,0 +1,333 @@
+package dev.lescoggi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.openxml4j.opc.PackageRelationship;
+import org.apache.poi.openxml4j.opc.PackageRelationshipTypes;
+import org.apache.poi.openxml4j.opc.TargetMode;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xwpf.usermodel.XWPFRelation;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Extracts the text of a .docx file with a SAX parser instead of the DOM based
+ * {@code XWPFDocument}. The text of the headers comes first, then the body and then the footers.
+ * Paragraphs and table rows end with a line break, table cells are separated by tabs and
+ * paragraphs within a cell by a space.
+ * <p>
+ * Only the requested window of characters is kept while the whole text is counted, so memory use
+ * is bounded by the page size rather than by the size of the document.
+ */
+class WordTextExtractor {
+
+    /**
+     * A window of the text; {@code totalLength} is the length of the whole text.
+     */
+    record Page(String text, int offset, int totalLength) {
+
+        int end() {
+            return offset + text.length();
+        }
+    }
+
+    private WordTextExtractor() {
+    }
+
+    /**
+     * Returns up to {@code length} characters of the text of the document, starting at
+     * {@code offset}. Offsets count UTF-16 characters.
+     */
+    static Page read(Path file, int offset, int length) throws IOException {
+        TextWindow window = new TextWindow(offset, length);
+        parse(file, window);
+        return window.page();
+    }
+
+    /**
+     * Passes every paragraph of the text that is not blank to {@code consumer}, in the same order
+     * and with the same offsets as {@link #read}. A table row counts as one paragraph.
+     */
+    static void readParagraphs(Path file, ParagraphConsumer consumer) throws IOException {
+        parse(file, new ParagraphSplitter(consumer));
+    }
+
+    @FunctionalInterface
+    interface ParagraphConsumer {
+        /**
+         * Called with the 0-based index of the paragraph among all paragraphs, including blank
+         * ones, and the offset of its first character.
+         */
+        void paragraph(int index, int offset, String text);
+    }
+
+    private interface TextSink {
+        void append(char[] ch, int start, int count);
+
+        void append(char c);
+    }
+
+    private static void parse(Path file, TextSink sink) throws IOException {
+        ToolMetrics.opened(file);
+        try (OPCPackage pkg = OPCPackage.open(file.toFile(), PackageAccess.READ)) {
+            PackagePart main = mainPart(pkg, file);
+            for (PackagePart part : relatedParts(main, XWPFRelation.HEADER.getRelation())) {
+                parse(part, sink);
+            }
+            parse(main, sink);
+            for (PackagePart part : relatedParts(main, XWPFRelation.FOOTER.getRelation())) {
+                parse(part, sink);
+            }
+        } catch (InvalidFormatException | SAXException | ParserConfigurationException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        if (sink instanceof ParagraphSplitter splitter) {
+            splitter.finish();
+        }
+    }
+
+    private static PackagePart mainPart(OPCPackage pkg, Path file) throws IOException {
+        List<PackagePart> parts = pkg.getPartsByRelationshipType(PackageRelationshipTypes.CORE_DOCUMENT);
+        if (parts.isEmpty()) {
+            parts = pkg.getPartsByRelationshipType(PackageRelationshipTypes.STRICT_CORE_DOCUMENT);
+        }
+        if (parts.isEmpty()) {
+            throw new IOException("No main document part found in " + file);
+        }
+        return parts.get(0);
+    }
+
+    private static List<PackagePart> relatedParts(PackagePart main, String relationshipType) throws InvalidFormatException {
+        List<PackagePart> parts = new ArrayList<>();
+        for (PackageRelationship relationship : main.getRelationshipsByType(relationshipType)) {
+            if (relationship.getTargetMode() != TargetMode.EXTERNAL) {
+                PackagePart part = main.getRelatedPart(relationship);
+                if (part != null) {
+                    parts.add(part);
+                }
+            }
+        }
+        return parts;
+    }
+
+    private static void parse(PackagePart part, TextSink sink) throws IOException, SAXException, ParserConfigurationException {
+        XMLReader parser = XMLHelper.newXMLReader();
+        parser.setContentHandler(new TextHandler(sink));
+        try (InputStream in = part.getInputStream()) {
+            parser.parse(new InputSource(in));
+        }
+    }
+
+    /**
+     * Counts all characters and keeps those between {@code offset} and {@code offset + length}.
+     */
+    private static final class TextWindow implements TextSink {
+
+        private final int offset;
+        private final int length;
+        private final StringBuilder text = new StringBuilder();
+        private final char[] single = new char[1];
+        private int position;
+
+        TextWindow(int offset, int length) {
+            this.offset = offset;
+            // Room for a whole surrogate pair, so every page makes progress
+            this.length = Math.max(length, 2);
+        }
+
+        @Override
+        public void append(char[] ch, int start, int count) {
+            int from = Math.max(offset - position, 0);
+            int to = Math.min(offset + length - position, count);
+            if (from < to) {
+                text.append(ch, start + from, to - from);
+            }
+            position += count;
+        }
+
+        @Override
+        public void append(char c) {
+            single[0] = c;
+            append(single, 0, 1);
+        }
+
+        Page page() {
+            // Never end a page between the two halves of a surrogate pair
+            if (position > offset + text.length() && !text.isEmpty() && Character.isHighSurrogate(text.charAt(text.length() - 1))) {
+                text.setLength(text.length() - 1);
+            }
+            return new Page(text.toString(), offset, position);
+        }
+    }
+
+    /**
+     * Cuts the text at line breaks into paragraphs.
+     */
+    private static final class ParagraphSplitter implements TextSink {
+
+        private final ParagraphConsumer consumer;
+        private final StringBuilder paragraph = new StringBuilder();
+        private int position;
+        private int start;
+        private int index;
+
+        ParagraphSplitter(ParagraphConsumer consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void append(char[] ch, int from, int count) {
+            for (int i = from; i < from + count; i++) {
+                append(ch[i]);
+            }
+        }
+
+        @Override
+        public void append(char c) {
+            if (c == '\n') {
+                finish();
+                index++;
+                start = position + 1;
+            } else {
+                paragraph.append(c);
+            }
+            position++;
+        }
+
+        // Emits the current paragraph, if it is not blank
+        void finish() {
+            if (!paragraph.toString().isBlank()) {
+                consumer.paragraph(index, start, paragraph.toString());
+            }
+            paragraph.setLength(0);
+        }
+    }
+
+    private static final class TextHandler extends DefaultHandler {
+
+        private static final String MARKUP_COMPATIBILITY = "http://schemas.openxmlformats.org/markup-compatibility/2006";
+
+        private final TextSink window;
+        // Number of cells started in each enclosing table row, innermost on top
+        private final Deque<int[]> rows = new ArrayDeque<>();
+        private int runDepth;
+        private int skipDepth;
+        private boolean inText;
+        private boolean cellParagraphEnded;
+
+        TextHandler(TextSink window) {
+            this.window = window;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            if (skipDepth > 0) {
+                skipDepth++;
+                return;
+            }
+            if (MARKUP_COMPATIBILITY.equals(uri) && "Fallback".equals(localName)) {
+                // Legacy rendering of content that is also present in mc:Choice
+                skipDepth = 1;
+                return;
+            }
+            if (!isWordprocessing(uri)) {
+                return;
+            }
+            switch (localName) {
+                case "r" -> runDepth++;
+                case "t" -> {
+                    if (runDepth > 0) {
+                        separateCellParagraph();
+                        inText = true;
+                    }
+                }
+                case "tab" -> {
+                    // Also used for tab stops in paragraph properties
+                    if (runDepth > 0) {
+                        separateCellParagraph();
+                        window.append('\t');
+                    }
+                }
+                case "br", "cr" -> {
+                    if (runDepth > 0) {
+                        separateCellParagraph();
+                        window.append('\n');
+                    }
+                }
+                case "tr" -> rows.push(new int[1]);
+                case "tc" -> {
+                    if (!rows.isEmpty() && rows.peek()[0]++ > 0) {
+                        window.append('\t');
+                    }
+                    cellParagraphEnded = false;
+                }
+                default -> {
+                }
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            if (skipDepth > 0) {
+                skipDepth--;
+                return;
+            }
+            if (!isWordprocessing(uri)) {
+                return;
+            }
+            switch (localName) {
+                case "r" -> runDepth--;
+                case "t" -> inText = false;
+                case "p" -> {
+                    if (rows.isEmpty()) {
+                        window.append('\n');
+                    } else {
+                        cellParagraphEnded = true;
+                    }
+                }
+                case "tc" -> cellParagraphEnded = false;
+                case "tr" -> {
+                    rows.pop();
+                    window.append('\n');
+                    cellParagraphEnded = false;
+                }
+                default -> {
+                }
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inText && skipDepth == 0) {
+                window.append(ch, start, length);
+            }
+        }
+
+        private void separateCellParagraph() {
+            if (cellParagraphEnded) {
+                cellParagraphEnded = false;
+                window.append(' ');
+            }
+        }
+
+        // Transitional or strict WordprocessingML
+        private static boolean isWordprocessing(String uri) {
+            return uri.endsWith("/wordprocessingml/2006/main") || uri.endsWith("/wordprocessingml/main");
+        }
+    }
+}
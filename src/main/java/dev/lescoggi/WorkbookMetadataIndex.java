@@ -0,0 +1,236 @@
+package dev.lescoggi;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.ZipFile;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.CellReference;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import jakarta.inject.Singleton;
+
+/**
+ * Answers sheet, row and column counts of .xlsx files without parsing them. The sheet list comes
+ * from {@code workbook.xml} and its relationships, and the size of a sheet from the
+ * {@code <dimension>} element at the top of the sheet part, so a lookup only inflates the first
+ * few KB of the parts involved. Sheets without a usable dimension are scanned once with a
+ * streaming parser.
+ * <p>
+ * Results are cached per canonical path and reused while the file keeps its modification time and
+ * size; the sizes of individual sheets are read on first use. Files that are open in the
+ * {@link DocumentCache} may have unflushed changes and must be answered from the parsed document
+ * instead.
+ */
+@Singleton
+public class WorkbookMetadataIndex {
+
+    /**
+     * Number of rows and columns spanned by the used range of a sheet.
+     */
+    public record SheetDimension(int rowCount, int columnCount) {
+
+        static final SheetDimension EMPTY = new SheetDimension(0, 0);
+
+        static SheetDimension of(CellRangeAddress range) {
+            return new SheetDimension(range.getLastRow() - range.getFirstRow() + 1,
+                range.getLastColumn() - range.getFirstColumn() + 1);
+        }
+
+        /**
+         * Computes the dimension of a parsed sheet the same way as it is stored in the file.
+         */
+        static SheetDimension of(Sheet sheet) {
+            CellRangeAddress range = usedRange(sheet);
+            return range == null ? EMPTY : of(range);
+        }
+    }
+
+    public record Stats(long hits, long misses, long sheetReads) {
+    }
+
+    private static final class Metadata {
+        final long lastModified;
+        final long size;
+        // Sheet name to ZIP entry name, in workbook order
+        final Map<String, String> sheetParts;
+        final Map<String, SheetDimension> dimensions = new ConcurrentHashMap<>();
+
+        Metadata(BasicFileAttributes attributes, Map<String, String> sheetParts) {
+            this.lastModified = attributes.lastModifiedTime().toMillis();
+            this.size = attributes.size();
+            this.sheetParts = sheetParts;
+        }
+    }
+
+    /**
+     * Returns the range spanned by the rows and cells of a parsed sheet, or {@code null} when it
+     * has no rows.
+     */
+    static CellRangeAddress usedRange(Sheet sheet) {
+        if (sheet.getPhysicalNumberOfRows() == 0) {
+            return null;
+        }
+        int firstCol = Integer.MAX_VALUE;
+        int lastCol = -1;
+        for (Row row : sheet) {
+            if (row.getFirstCellNum() >= 0) {
+                firstCol = Math.min(firstCol, row.getFirstCellNum());
+                lastCol = Math.max(lastCol, row.getLastCellNum() - 1);
+            }
+        }
+        if (lastCol < 0) {
+            // Rows without cells, stored as column A like Excel does
+            firstCol = lastCol = 0;
+        }
+        return new CellRangeAddress(sheet.getFirstRowNum(), sheet.getLastRowNum(), firstCol, lastCol);
+    }
+
+    private final int maxEntries;
+
+    // Access order, so iteration starts with the least recently used entry
+    private final LinkedHashMap<Path, Metadata> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder sheetReads = new LongAdder();
+
+    WorkbookMetadataIndex(@ConfigProperty(name = "office.excel.metadata-index.max-entries", defaultValue = "1024") int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Returns the number of sheets in the workbook.
+     */
+    public int sheetCount(String filepath) throws IOException {
+        return metadata(DocumentCache.key(filepath)).sheetParts.size();
+    }
+
+    /**
+     * Returns the dimension of the given sheet, or {@code null} when the workbook has no sheet with
+     * that name.
+     */
+    public SheetDimension dimension(String filepath, String sheetName) throws IOException {
+        Path key = DocumentCache.key(filepath);
+        Metadata metadata = metadata(key);
+        String part = metadata.sheetParts.get(sheetName);
+        if (part == null) {
+            return null;
+        }
+        SheetDimension dimension = metadata.dimensions.get(sheetName);
+        if (dimension == null) {
+            sheetReads.increment();
+            ToolMetrics.opened(key);
+            try (ZipFile zip = new ZipFile(key.toFile())) {
+                dimension = readDimension(zip, part);
+            }
+            metadata.dimensions.put(sheetName, dimension);
+        }
+        return dimension;
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), sheetReads.sum());
+    }
+
+    private Metadata metadata(Path key) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(key, BasicFileAttributes.class);
+        synchronized (this) {
+            Metadata metadata = entries.get(key);
+            if (metadata != null && metadata.lastModified == attributes.lastModifiedTime().toMillis()
+                    && metadata.size == attributes.size()) {
+                hits.increment();
+                return metadata;
+            }
+        }
+        misses.increment();
+        Map<String, String> sheetParts;
+        ToolMetrics.opened(key);
+        try (ZipFile zip = new ZipFile(key.toFile())) {
+            sheetParts = readSheetParts(zip);
+        }
+        Metadata metadata = new Metadata(attributes, sheetParts);
+        synchronized (this) {
+            entries.put(key, metadata);
+            while (entries.size() > maxEntries) {
+                entries.remove(entries.keySet().iterator().next());
+            }
+        }
+        return metadata;
+    }
+
+    /**
+     * Returns the ZIP entry of each sheet of a workbook by sheet name, in workbook order.
+     */
+    static Map<String, String> readSheetParts(ZipFile zip) throws IOException {
+        String workbookPart = ZipPartReader.mainPart(zip);
+        Map<String, String> targets = ZipPartReader.relationships(zip, workbookPart);
+        Map<String, String> sheetParts = new LinkedHashMap<>();
+        ZipPartReader.parse(zip, workbookPart, xml -> {
+            if ("sheet".equals(xml.getLocalName())) {
+                String id = ZipPartReader.relationshipId(xml);
+                if (id != null) {
+                    sheetParts.put(xml.getAttributeValue(null, "name"), targets.get(id));
+                }
+            }
+            // Nothing of interest follows the sheet list
+            return !"definedNames".equals(xml.getLocalName()) && !"calcPr".equals(xml.getLocalName());
+        });
+        return sheetParts;
+    }
+
+    /**
+     * Reads the {@code <dimension>} element of a sheet part. When it is missing, or when it is the
+     * single cell {@code A1} that is also written for empty sheets, the rows of the sheet are
+     * scanned instead.
+     */
+    static SheetDimension readDimension(ZipFile zip, String part) throws IOException {
+        SheetDimension[] dimension = { null };
+        int[] bounds = { Integer.MAX_VALUE, -1, Integer.MAX_VALUE, -1 };
+        int[] next = { 0, 0 };
+        ZipPartReader.parse(zip, part, xml -> {
+            switch (xml.getLocalName()) {
+                case "dimension" -> {
+                    String ref = xml.getAttributeValue(null, "ref");
+                    if (ref != null && !ref.equals("A1")) {
+                        dimension[0] = SheetDimension.of(CellRangeAddress.valueOf(ref));
+                        return false;
+                    }
+                }
+                case "row" -> {
+                    String r = xml.getAttributeValue(null, "r");
+                    int row = r != null ? Integer.parseInt(r) - 1 : next[0];
+                    next[0] = row + 1;
+                    next[1] = 0;
+                    bounds[0] = Math.min(bounds[0], row);
+                    bounds[1] = Math.max(bounds[1], row);
+                }
+                case "c" -> {
+                    String r = xml.getAttributeValue(null, "r");
+                    int col = r != null ? new CellReference(r).getCol() : next[1];
+                    next[1] = col + 1;
+                    bounds[2] = Math.min(bounds[2], col);
+                    bounds[3] = Math.max(bounds[3], col);
+                }
+                default -> {
+                }
+            }
+            return true;
+        });
+        if (dimension[0] != null) {
+            return dimension[0];
+        }
+        if (bounds[1] < 0) {
+            return SheetDimension.EMPTY;
+        }
+        return new SheetDimension(bounds[1] - bounds[0] + 1, bounds[3] < 0 ? 0 : bounds[3] - bounds[2] + 1);
+    }
+}
@@ -0,0 +1,398 @@
+package dev.lescoggi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Scans the tags of an XML part byte by byte and copies the part to an output stream, letting a
+ * visitor insert bytes before a tag or replace it. Nothing is parsed into objects and text is
+ * never decoded, so a part of any size is rewritten at the speed of a copy and the rest of it
+ * keeps its bytes exactly.
+ * <p>
+ * Every {@code <} outside comments, CDATA sections and processing instructions starts a tag, since
+ * XML requires it to be escaped in text and attribute values. Only UTF-8 parts are supported,
+ * which is what every OOXML producer writes; tag and attribute names are compared as ASCII.
+ */
+final class XmlTagScanner {
+
+    enum Kind {
+        START, END, EMPTY
+    }
+
+    /**
+     * What the visitor wants done with the tag it was shown.
+     */
+    enum Action {
+        /** Copy the tag and continue. */
+        COPY,
+        /** Drop the tag, the visitor wrote its replacement, and continue. */
+        REPLACE,
+        /** Copy the tag and the rest of the part without showing further tags. */
+        COPY_REST,
+        /** Stop reading; nothing more is written. */
+        STOP
+    }
+
+    @FunctionalInterface
+    interface TagVisitor {
+        /**
+         * Called for each start, end and empty-element tag before it is copied. Bytes written to
+         * {@code out} end up in front of the tag.
+         */
+        Action visit(Tag tag, OutputStream out) throws IOException;
+    }
+
+    /**
+     * The tag the visitor is called with; only valid during the call.
+     */
+    static final class Tag {
+        private byte[] bytes = new byte[256];
+        private int length;
+        private Kind kind;
+        private int depth;
+
+        Kind kind() {
+            return kind;
+        }
+
+        /**
+         * Nesting depth of the element, 1 for the root element.
+         */
+        int depth() {
+            return depth;
+        }
+
+        /**
+         * The name without its namespace prefix.
+         */
+        String localName() {
+            int start = nameStart();
+            int end = nameEnd(start);
+            for (int i = start; i < end; i++) {
+                if (bytes[i] == ':') {
+                    start = i + 1;
+                }
+            }
+            return new String(bytes, start, end - start, StandardCharsets.US_ASCII);
+        }
+
+        /**
+         * The namespace prefix followed by a colon, or an empty string for an unprefixed name, so
+         * that elements written next to this one can use the same prefix.
+         */
+        String prefix() {
+            int start = nameStart();
+            int end = nameEnd(start);
+            for (int i = end - 1; i >= start; i--) {
+                if (bytes[i] == ':') {
+                    return new String(bytes, start, i + 1 - start, StandardCharsets.US_ASCII);
+                }
+            }
+            return "";
+        }
+
+        boolean is(String localName) {
+            int start = nameStart();
+            int end = nameEnd(start);
+            int length = localName.length();
+            if (end - start < length || end - start > length && bytes[end - length - 1] != ':') {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (bytes[end - length + i] != localName.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Returns the raw value of an unprefixed attribute, without resolving entities, or
+         * {@code null} when the tag does not have it.
+         */
+        String attribute(String name) {
+            int i = nameEnd(nameStart());
+            int end = kind == Kind.EMPTY ? length - 2 : length - 1;
+            while (i < end) {
+                while (i < end && isSpace(bytes[i])) {
+                    i++;
+                }
+                int nameStart = i;
+                while (i < end && bytes[i] != '=' && !isSpace(bytes[i])) {
+                    i++;
+                }
+                int nameEnd = i;
+                while (i < end && bytes[i] != '"' && bytes[i] != '\'') {
+                    i++;
+                }
+                if (i >= end) {
+                    return null;
+                }
+                byte quote = bytes[i++];
+                int valueStart = i;
+                while (i < end && bytes[i] != quote) {
+                    i++;
+                }
+                if (nameEnd - nameStart == name.length()
+                        && new String(bytes, nameStart, nameEnd - nameStart, StandardCharsets.US_ASCII).equals(name)) {
+                    return new String(bytes, valueStart, i - valueStart, StandardCharsets.UTF_8);
+                }
+                i++;
+            }
+            return null;
+        }
+
+        private int nameStart() {
+            return kind == Kind.END ? 2 : 1;
+        }
+
+        private int nameEnd(int start) {
+            int i = start;
+            while (i < length && !isSpace(bytes[i]) && bytes[i] != '/' && bytes[i] != '>') {
+                i++;
+            }
+            return i;
+        }
+
+        private void append(int b) {
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, length * 2);
+            }
+            bytes[length++] = (byte) b;
+        }
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream in;
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private final Tag tag = new Tag();
+    private int depth;
+
+    private XmlTagScanner(InputStream in, OutputStream out) {
+        this.in = in;
+        this.out = out;
+    }
+
+    /**
+     * Copies {@code in} to {@code out}, showing every tag to the visitor. {@code out} may be
+     * {@code null} to only scan the part.
+     */
+    static void copy(InputStream in, OutputStream out, TagVisitor visitor) throws IOException {
+        new XmlTagScanner(in, out != null ? out : OutputStream.nullOutputStream()).run(visitor);
+    }
+
+    /**
+     * Appends text escaped for element content. Characters XML cannot hold are written as
+     * {@code _xHHHH_}, the escape Excel and POI use for them.
+     */
+    static void appendText(Appendable out, String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&' -> out.append("&amp;");
+                case '<' -> out.append("&lt;");
+                case '>' -> out.append("&gt;");
+                // Would be read back as a line feed otherwise
+                case '\r' -> out.append("&#13;");
+                case '\t', '\n' -> out.append(c);
+                default -> {
+                    if (c < 0x20 || c == 0xfffe || c == 0xffff) {
+                        out.append(String.format(Locale.ROOT, "_x%04X_", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends text escaped for an attribute value in double quotes.
+     */
+    static void appendAttribute(Appendable out, String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&' -> out.append("&amp;");
+                case '<' -> out.append("&lt;");
+                case '>' -> out.append("&gt;");
+                case '"' -> out.append("&quot;");
+                // Attribute values are normalized to spaces otherwise
+                case '\t' -> out.append("&#9;");
+                case '\n' -> out.append("&#10;");
+                case '\r' -> out.append("&#13;");
+                default -> out.append(c);
+            }
+        }
+    }
+
+    /**
+     * Whether text has to be marked with {@code xml:space="preserve"} to keep its leading or
+     * trailing whitespace.
+     */
+    static boolean needsPreserve(String text) {
+        return !text.isEmpty() && (Character.isWhitespace(text.charAt(0)) || Character.isWhitespace(text.charAt(text.length() - 1)));
+    }
+
+    private void run(TagVisitor visitor) throws IOException {
+        boolean visiting = true;
+        while (fill()) {
+            if (!visiting) {
+                out.write(buffer, position, limit - position);
+                position = limit;
+                continue;
+            }
+            // Text up to the next markup is copied as it is
+            int start = position;
+            while (position < limit && buffer[position] != '<') {
+                position++;
+            }
+            out.write(buffer, start, position - start);
+            if (position == limit) {
+                continue;
+            }
+            position++;
+            int next = peek();
+            if (next == '?') {
+                out.write('<');
+                copyUntil("?>");
+            } else if (next == '!') {
+                out.write('<');
+                copyDeclaration();
+            } else {
+                readTag();
+                if (tag.kind == Kind.END) {
+                    tag.depth = depth--;
+                } else {
+                    tag.depth = ++depth;
+                }
+                Action action = visitor.visit(tag, out);
+                if (action == Action.STOP) {
+                    return;
+                }
+                if (action != Action.REPLACE) {
+                    out.write(tag.bytes, 0, tag.length);
+                }
+                if (tag.kind == Kind.EMPTY) {
+                    depth--;
+                }
+                visiting = action != Action.COPY_REST;
+            }
+        }
+    }
+
+    private void readTag() throws IOException {
+        tag.length = 0;
+        tag.append('<');
+        int quote = 0;
+        int b;
+        while ((b = read()) >= 0) {
+            tag.append(b);
+            if (quote != 0) {
+                if (b == quote) {
+                    quote = 0;
+                }
+            } else if (b == '"' || b == '\'') {
+                quote = b;
+            } else if (b == '>') {
+                break;
+            }
+        }
+        if (b < 0) {
+            throw new IOException("Unexpected end of XML part in a tag");
+        }
+        if (tag.bytes[1] == '/') {
+            tag.kind = Kind.END;
+        } else if (tag.bytes[tag.length - 2] == '/') {
+            tag.kind = Kind.EMPTY;
+        } else {
+            tag.kind = Kind.START;
+        }
+    }
+
+    // Comments, CDATA sections and document type declarations may contain '<'
+    private void copyDeclaration() throws IOException {
+        if (matches("!--")) {
+            copyUntil("-->");
+        } else if (matches("![CDATA[")) {
+            copyUntil("]]>");
+        } else {
+            copyUntil(">");
+        }
+    }
+
+    // Copies bytes up to and including a terminator of at most 3 ASCII characters, comparing it
+    // with the last bytes read
+    private void copyUntil(String terminator) throws IOException {
+        int expected = 0;
+        for (int i = 0; i < terminator.length(); i++) {
+            expected = expected << 8 | terminator.charAt(i);
+        }
+        int mask = (1 << 8 * terminator.length()) - 1;
+        int last = 0;
+        int b;
+        while ((b = read()) >= 0) {
+            out.write(b);
+            last = (last << 8 | b) & mask;
+            if (last == expected) {
+                return;
+            }
+        }
+        throw new IOException("Unexpected end of XML part, missing " + terminator);
+    }
+
+    // Whether the unread input starts with the given ASCII text; does not consume it
+    private boolean matches(String text) throws IOException {
+        if (limit - position < text.length()) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+            int n;
+            while (limit < text.length() && (n = in.read(buffer, limit, buffer.length - limit)) > 0) {
+                limit += n;
+            }
+        }
+        if (limit - position < text.length()) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (buffer[position + i] != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int peek() throws IOException {
+        return fill() ? buffer[position] : -1;
+    }
+
+    private int read() throws IOException {
+        return fill() ? buffer[position++] & 0xff : -1;
+    }
+
+    private boolean fill() throws IOException {
+        if (position < limit) {
+            return true;
+        }
+        limit = in.read(buffer, 0, buffer.length);
+        position = 0;
+        if (limit < 0) {
+            limit = 0;
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+}
@@ -0,0 +1,149 @@
+package dev.lescoggi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.poi.util.XMLHelper;
+
+/**
+ * Reads single parts of an OOXML package straight from its ZIP file with a StAX parser, without
+ * opening an {@code OPCPackage}, so only the inflated bytes of the parts involved are touched.
+ * Different parts of the same {@link ZipFile} can be read concurrently.
+ */
+final class ZipPartReader {
+
+    @FunctionalInterface
+    interface ElementVisitor {
+        /**
+         * Called for every start element; returns {@code false} to stop reading the part.
+         */
+        boolean visit(XMLStreamReader xml) throws IOException;
+    }
+
+    @FunctionalInterface
+    interface PartReader<T> {
+        /**
+         * Reads as many events of the part as needed and returns the result.
+         */
+        T read(XMLStreamReader xml) throws IOException, XMLStreamException;
+    }
+
+    private ZipPartReader() {
+    }
+
+    static void parse(ZipFile zip, String part, ElementVisitor visitor) throws IOException {
+        read(zip, part, xml -> {
+            while (xml.hasNext()) {
+                if (xml.next() == XMLStreamConstants.START_ELEMENT && !visitor.visit(xml)) {
+                    break;
+                }
+            }
+            return null;
+        });
+    }
+
+    static <T> T read(ZipFile zip, String part, PartReader<T> reader) throws IOException {
+        ZipEntry entry = zip.getEntry(part);
+        if (entry == null) {
+            throw new IOException("Missing part " + part + " in " + zip.getName());
+        }
+        try (InputStream in = zip.getInputStream(entry)) {
+            XMLStreamReader xml = XMLHelper.newXMLInputFactory().createXMLStreamReader(in);
+            try {
+                return reader.read(xml);
+            } finally {
+                xml.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the name of the main part of the package, such as {@code xl/workbook.xml} or
+     * {@code ppt/presentation.xml}.
+     */
+    static String mainPart(ZipFile zip) throws IOException {
+        String[] main = { null };
+        parse(zip, "_rels/.rels", xml -> {
+            // Transitional and strict relationship types both end with /officeDocument
+            if ("Relationship".equals(xml.getLocalName()) && !isExternal(xml)
+                    && xml.getAttributeValue(null, "Type").endsWith("/officeDocument")) {
+                main[0] = resolve("", xml.getAttributeValue(null, "Target"));
+                return false;
+            }
+            return true;
+        });
+        if (main[0] == null) {
+            throw new IOException("No main document part found in " + zip.getName());
+        }
+        return main[0];
+    }
+
+    /**
+     * Returns the internal relationships of a part, as relationship id to target part.
+     */
+    static Map<String, String> relationships(ZipFile zip, String part) throws IOException {
+        int slash = part.lastIndexOf('/');
+        String relationshipsPart = part.substring(0, slash + 1) + "_rels/" + part.substring(slash + 1) + ".rels";
+        Map<String, String> targets = new LinkedHashMap<>();
+        parse(zip, relationshipsPart, xml -> {
+            if ("Relationship".equals(xml.getLocalName()) && !isExternal(xml)) {
+                targets.put(xml.getAttributeValue(null, "Id"), resolve(part, xml.getAttributeValue(null, "Target")));
+            }
+            return true;
+        });
+        return targets;
+    }
+
+    /**
+     * Returns the target of the first internal relationship of a part whose type ends with
+     * {@code typeSuffix}, such as {@code /styles}, or {@code null} when the part has none.
+     */
+    static String relationshipOfType(ZipFile zip, String part, String typeSuffix) throws IOException {
+        int slash = part.lastIndexOf('/');
+        String relationshipsPart = part.substring(0, slash + 1) + "_rels/" + part.substring(slash + 1) + ".rels";
+        String[] target = { null };
+        parse(zip, relationshipsPart, xml -> {
+            if ("Relationship".equals(xml.getLocalName()) && !isExternal(xml)
+                    && xml.getAttributeValue(null, "Type").endsWith(typeSuffix)) {
+                target[0] = resolve(part, xml.getAttributeValue(null, "Target"));
+                return false;
+            }
+            return true;
+        });
+        return target[0];
+    }
+
+    /**
+     * Returns the value of the {@code r:id} attribute of the current element, in the transitional or
+     * the strict relationships namespace, or {@code null}.
+     */
+    static String relationshipId(XMLStreamReader xml) {
+        for (int i = 0; i < xml.getAttributeCount(); i++) {
+            String namespace = xml.getAttributeNamespace(i);
+            if ("id".equals(xml.getAttributeLocalName(i)) && namespace != null && !namespace.isEmpty()) {
+                return xml.getAttributeValue(i);
+            }
+        }
+        return null;
+    }
+
+    private static boolean isExternal(XMLStreamReader xml) {
+        return "External".equals(xml.getAttributeValue(null, "TargetMode"));
+    }
+
+    // Resolves a relationship target against the part that owns the relationship
+    private static String resolve(String source, String target) {
+        return URI.create("/" + source).resolve(target).getPath().substring(1);
+    }
+}
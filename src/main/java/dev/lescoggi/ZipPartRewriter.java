@@ -0,0 +1,97 @@
+package dev.lescoggi;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+
+/**
+ * Writes a copy of an OOXML package in which some parts are rewritten while they are streamed from
+ * the original, without opening an {@code OPCPackage}. All other entries are copied in their
+ * compressed form, so the cost of a change is inflating and deflating the parts it touches, and the
+ * heap it needs is a few buffers whatever the size of the package.
+ */
+final class ZipPartRewriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @FunctionalInterface
+    interface PartWriter {
+        /**
+         * Writes the new content of a part, given its current content.
+         */
+        void write(InputStream original, OutputStream out) throws IOException;
+    }
+
+    private ZipPartRewriter() {
+    }
+
+    /**
+     * Returns the content of {@code file} with the given parts, by ZIP entry name, rewritten, for
+     * {@link DocumentSaver#save(String, DocumentSaver.Content)}. The file is read while the content
+     * is written, so the caller holds its write lock until the save completes.
+     */
+    static DocumentSaver.Content rewrite(Path file, Map<String, PartWriter> parts) {
+        return rewrite(file, parts, Map.of());
+    }
+
+    /**
+     * Like {@link #rewrite(Path, Map)}, with the {@code added} parts appended to the package as new
+     * entries.
+     */
+    static DocumentSaver.Content rewrite(Path file, Map<String, PartWriter> parts, Map<String, DocumentSaver.Content> added) {
+        return out -> {
+            ToolMetrics.opened(file);
+            Set<String> written = new HashSet<>();
+            // The saver still needs the channel under the stream once the archive is complete
+            try (ZipFile original = ZipFile.builder().setPath(file).get();
+                 ZipArchiveOutputStream zip = new ZipArchiveOutputStream(CloseShieldOutputStream.wrap(out))) {
+                for (ZipArchiveEntry entry : Collections.list(original.getEntriesInPhysicalOrder())) {
+                    PartWriter writer = parts.get(entry.getName());
+                    if (writer == null) {
+                        try (InputStream raw = original.getRawInputStream(entry)) {
+                            zip.addRawArchiveEntry(entry, raw);
+                        }
+                        continue;
+                    }
+                    ZipArchiveEntry rewritten = new ZipArchiveEntry(entry.getName());
+                    rewritten.setMethod(ZipEntry.DEFLATED);
+                    zip.putArchiveEntry(rewritten);
+                    // The writers emit many small pieces, which should not reach the deflater one by one
+                    OutputStream part = new BufferedOutputStream(CloseShieldOutputStream.wrap(zip), BUFFER_SIZE);
+                    try (InputStream in = original.getInputStream(entry)) {
+                        writer.write(in, part);
+                    }
+                    part.flush();
+                    zip.closeArchiveEntry();
+                    written.add(entry.getName());
+                }
+                for (Map.Entry<String, DocumentSaver.Content> entry : added.entrySet()) {
+                    ZipArchiveEntry part = new ZipArchiveEntry(entry.getKey());
+                    part.setMethod(ZipEntry.DEFLATED);
+                    zip.putArchiveEntry(part);
+                    OutputStream buffered = new BufferedOutputStream(CloseShieldOutputStream.wrap(zip), BUFFER_SIZE);
+                    entry.getValue().write(buffered);
+                    buffered.flush();
+                    zip.closeArchiveEntry();
+                }
+            }
+            for (String name : parts.keySet()) {
+                if (!written.contains(name)) {
+                    throw new IOException("Missing part " + name + " in " + file);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,109 @@
+package dev.lescoggi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class AdmissionControllerTest {
+
+    private static final int MB = 1024 * 1024;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testCallsBeyondTheLimitOfTheirTypeAreRejected() throws Exception {
+        AdmissionController admission = controller(1, 10 * MB, Duration.ofMillis(50));
+        String workbook = tempDir.resolve("a.xlsx").toString();
+
+        try (var first = admission.admit(workbook)) {
+            AdmissionController.AdmissionException e = assertThrows(AdmissionController.AdmissionException.class,
+                () -> admission.admit(tempDir.resolve("b.xlsx").toString()));
+            assertEquals("Server is busy: 1 Excel calls are already running. Retry later.", e.getMessage());
+            // Other document types have their own limit
+            admission.admit(tempDir.resolve("c.docx").toString()).close();
+        }
+        admission.admit(workbook).close();
+        assertEquals(1, admission.stats().rejected());
+    }
+
+    @Test
+    void testLargeFilesWaitForTheHeapBudget() throws Exception {
+        // 10 MB budget with an expansion factor of 10, so each large call needs 6 MB
+        AdmissionController admission = controller(16, 10 * MB, Duration.ofSeconds(10));
+        Path large = file("large.xlsx", 600 * 1024);
+        Path small = file("small.xlsx", 200 * 1024);
+
+        var first = admission.admit(large.toString());
+        CompletableFuture<AdmissionController.Permit> second = CompletableFuture.supplyAsync(() -> {
+            try {
+                return admission.admit(large.toString());
+            } catch (AdmissionController.AdmissionException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(100);
+        assertTrue(!second.isDone(), "the second large call waits");
+
+        first.close();
+        second.get(5, TimeUnit.SECONDS).close();
+        admission.admit(small.toString()).close();
+        assertEquals(10 * 1024, admission.stats().availableBudgetKb());
+    }
+
+    @Test
+    void testCallsThatDoNotFitAreRejectedAfterTheMaximumWait() throws Exception {
+        AdmissionController admission = controller(16, 10 * MB, Duration.ofMillis(50));
+        Path large = file("large.xlsx", 600 * 1024);
+
+        try (var first = admission.admit(large.toString())) {
+            AdmissionController.AdmissionException e = assertThrows(AdmissionController.AdmissionException.class,
+                () -> admission.admit(file("other.docx", 500 * 1024).toString()));
+            assertEquals("Server is busy: this call needs an estimated 5 MB of the 10 MB heap budget, which is in use by other calls."
+                + " Retry later.", e.getMessage());
+            // Files that do not exist yet weigh nothing
+            admission.admit(tempDir.resolve("new.xlsx").toString()).close();
+        }
+    }
+
+    @Test
+    void testDocumentsTooLargeForTheBudgetWeighTheirLargestPart() throws Exception {
+        AdmissionController admission = controller(16, 10 * MB, Duration.ofMillis(50));
+        // The DOM would take 20 MB, so the call streams the document or is refused
+        Path huge = file("huge.xlsx", 2 * MB);
+
+        try (var streaming = admission.admit(huge.toString()); var other = admission.admit(file("large.xlsx", 512 * 1024).toString())) {
+            assertEquals(3 * 1024, admission.stats().availableBudgetKb());
+        }
+        assertEquals(10 * 1024, admission.stats().availableBudgetKb());
+    }
+
+    private AdmissionController controller(int maxPerType, long budget, Duration maxWait) {
+        DocumentCache cache = new DocumentCache(new DocumentLockManager(), new DocumentSaver(false, true), Long.MAX_VALUE, 10,
+            false, Duration.ofHours(1), Duration.ofHours(1), 1000);
+        EngineSelector engines = new EngineSelector(cache, budget, 10, Long.MAX_VALUE);
+        return new AdmissionController(cache, engines, true, maxPerType, maxPerType, maxPerType, maxWait);
+    }
+
+    // A ZIP archive with one part of the given uncompressed size, which compresses to almost nothing
+    private Path file(String name, int uncompressedBytes) throws Exception {
+        Path file = tempDir.resolve(name);
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(file))) {
+            zip.putNextEntry(new ZipEntry("part.xml"));
+            zip.write(new byte[uncompressedBytes]);
+            zip.closeEntry();
+        }
+        return file;
+    }
+}
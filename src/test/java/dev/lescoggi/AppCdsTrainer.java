@@ -0,0 +1,43 @@
+package dev.lescoggi;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates the AppCDS archive of the runner jar: launches it with {@code -XX:ArchiveClassesAtExit},
+ * calls every tool through {@link EveryToolScenario} so that the classes of POI and XMLBeans they
+ * need are loaded, and stops it, at which point the JVM writes the loaded classes to the archive.
+ * Run by the {@code appcds} profile after packaging, with the jar and the archive as arguments.
+ */
+public class AppCdsTrainer {
+
+    public static void main(String[] args) throws Exception {
+        Path jar = Path.of(args[0]).toAbsolutePath();
+        Path archive = Path.of(args[1]).toAbsolutePath();
+        Path dir = Files.createTempDirectory("appcds-training-");
+        Files.deleteIfExists(archive);
+
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-XX:ArchiveClassesAtExit=" + archive);
+        command.addAll(PackagedServerIT.serverProperties(dir));
+        command.add("-jar");
+        command.add(jar.toString());
+
+        long start = System.nanoTime();
+        try (StdioMcpClient client = StdioMcpClient.start(command, dir, dir.resolve("stderr.log"))) {
+            client.initialize();
+            List<String> failures = EveryToolScenario.run(client, dir);
+            if (!failures.isEmpty()) {
+                throw new IllegalStateException("Tool calls failed while training the archive: " + failures);
+            }
+        }
+        if (!Files.isRegularFile(archive)) {
+            throw new IllegalStateException("The JVM did not write " + archive + ", see " + dir.resolve("stderr.log"));
+        }
+        System.out.printf("AppCDS archive %s written in %d ms (%d MB)%n", archive, (System.nanoTime() - start) / 1_000_000,
+            Files.size(archive) / (1024 * 1024));
+    }
+}
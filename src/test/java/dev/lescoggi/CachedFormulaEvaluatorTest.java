@@ -0,0 +1,84 @@
+package dev.lescoggi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.poi.ss.formula.WorkbookEvaluator;
+import org.apache.poi.xssf.usermodel.XSSFFormulaEvaluator;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class CachedFormulaEvaluatorTest {
+
+    private XSSFWorkbook workbook;
+    private XSSFSheet sheet;
+    private CachedFormulaEvaluator formulas;
+
+    @BeforeEach
+    void setUp() {
+        workbook = new XSSFWorkbook();
+        sheet = workbook.createSheet("Model");
+        XSSFRow row = sheet.createRow(0);
+        row.createCell(0).setCellValue(1);
+        row.createCell(1).setCellValue(2);
+        row.createCell(2).setCellFormula("A1*2");
+        row.createCell(3).setCellFormula("B1*2");
+        formulas = new CachedFormulaEvaluator(workbook);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        workbook.close();
+    }
+
+    @Test
+    void testWriteOnlyDiscardsDependentResults() {
+        assertEquals("2", formulas.format(sheet.getRow(0).getCell(2)));
+        assertEquals("4", formulas.format(sheet.getRow(0).getCell(3)));
+
+        sheet.getRow(0).getCell(0).setCellValue(5);
+        formulas.updated(sheet.getRow(0).getCell(0));
+        // B1 changes without being reported, so a result that is still cached shows the old value
+        sheet.getRow(0).getCell(1).setCellValue(7);
+
+        assertEquals("10", formulas.format(sheet.getRow(0).getCell(2)));
+        assertEquals("4", formulas.format(sheet.getRow(0).getCell(3)));
+        formulas.reset();
+        assertEquals("14", formulas.format(sheet.getRow(0).getCell(3)));
+    }
+
+    @Test
+    void testRecalculateStoresResults() {
+        sheet.getRow(0).createCell(4).setCellFormula("C1+D1");
+        CachedFormulaEvaluator.Recalculation result = formulas.recalculate(List.of(sheet));
+        assertEquals(3, result.formulas());
+        assertEquals(0, result.failed());
+        assertEquals(6, sheet.getRow(0).getCell(4).getNumericCellValue());
+    }
+
+    @Test
+    void testSheetIndexCacheStaysBounded() throws Exception {
+        Field evaluator = CachedFormulaEvaluator.class.getDeclaredField("evaluator");
+        evaluator.setAccessible(true);
+        // Private to POI, so an upgrade that renames it fails here rather than going unnoticed
+        Field sheetIndexes = WorkbookEvaluator.class.getDeclaredField("_sheetIndexesBySheet");
+        sheetIndexes.setAccessible(true);
+        Map<?, ?> entries = (Map<?, ?>) sheetIndexes.get(((XSSFFormulaEvaluator) evaluator.get(formulas))._getWorkbookEvaluator());
+
+        int max = 0;
+        for (int i = 0; i < 3 * CachedFormulaEvaluator.MAX_CALLS; i++) {
+            assertEquals("2", formulas.format(sheet.getRow(0).getCell(2)));
+            max = Math.max(max, entries.size());
+        }
+        assertTrue(max > 1, "XSSF no longer adds an entry per call, the bound can go");
+        assertTrue(max <= CachedFormulaEvaluator.MAX_CALLS, max + " sheet index entries");
+    }
+}
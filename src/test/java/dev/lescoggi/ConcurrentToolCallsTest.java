@@ -0,0 +1,137 @@
+package dev.lescoggi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.quarkiverse.mcp.server.TextContent;
+import io.quarkiverse.mcp.server.ToolResponse;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+
+/**
+ * Runs tool calls from many threads at once to check that the per-file locks lose no updates.
+ * Their throughput is measured by {@code ConcurrentToolBenchmark}.
+ */
+@QuarkusTest
+public class ConcurrentToolCallsTest {
+
+    private static final int THREADS = 8;
+    private static final int CALLS_PER_THREAD = 25;
+
+    private File tempDir;
+    @Inject
+    OfficeMcpServerExcelFeatures excelFeatures;
+    @Inject
+    OfficeMcpServerWordFeatures wordFeatures;
+    @Inject
+    DocumentCache documentCache;
+    @Inject
+    DocumentLockManager locks;
+
+    @BeforeEach
+    void setUp() {
+        tempDir = new File(System.getProperty("java.io.tmpdir"), "concurrency-test-" + UUID.randomUUID());
+        tempDir.mkdirs();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (tempDir != null && tempDir.exists()) {
+            File[] files = tempDir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    documentCache.invalidate(file.getAbsolutePath());
+                    file.delete();
+                }
+            }
+            tempDir.delete();
+        }
+    }
+
+    @Test
+    void testConcurrentRowAppendsLoseNoUpdates() throws Exception {
+        String workbookPath = tempDir.getAbsolutePath() + "/shared.xlsx";
+        excelFeatures.createExcelWorkbook(workbookPath);
+
+        runConcurrently(THREADS, (thread, call) -> {
+            ToolResponse response = excelFeatures.addExcelRow(workbookPath, "Sheet1", thread + "," + call);
+            assertFalse(response.isError());
+            // Reads interleaved with the writes must never see a half-written workbook
+            assertFalse(excelFeatures.getExcelRowCount(workbookPath, "Sheet1").isError());
+        });
+
+        try (FileInputStream in = new FileInputStream(workbookPath); XSSFWorkbook workbook = new XSSFWorkbook(in)) {
+            assertEquals(THREADS * CALLS_PER_THREAD, workbook.getSheet("Sheet1").getPhysicalNumberOfRows());
+        }
+        assertEquals(0, locks.size());
+    }
+
+    @Test
+    void testConcurrentWritesToDifferentDocuments() throws Exception {
+        String documentPath = tempDir.getAbsolutePath() + "/shared.docx";
+        wordFeatures.createWordDocument(documentPath);
+        List<String> workbooks = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            workbooks.add(tempDir.getAbsolutePath() + "/own-" + i + ".xlsx");
+            excelFeatures.createExcelWorkbook(workbooks.get(i));
+        }
+
+        runConcurrently(THREADS, (thread, call) -> {
+            assertFalse(wordFeatures.addTextToWordDocument(documentPath, "t" + thread + "c" + call).isError());
+            assertFalse(excelFeatures.addExcelRow(workbooks.get(thread), "Sheet1", "value").isError());
+        });
+
+        try (FileInputStream in = new FileInputStream(documentPath); XWPFDocument document = new XWPFDocument(in)) {
+            assertEquals(THREADS * CALLS_PER_THREAD, document.getParagraphs().size());
+        }
+        for (String workbookPath : workbooks) {
+            ToolResponse response = excelFeatures.getExcelRowCount(workbookPath, "Sheet1");
+            assertEquals("Sheet has " + CALLS_PER_THREAD + " rows.", ((TextContent) response.content().get(0)).text());
+        }
+    }
+
+    @FunctionalInterface
+    private interface Call {
+        void run(int thread, int call) throws Exception;
+    }
+
+    private static void runConcurrently(int threads, Call call) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CyclicBarrier start = new CyclicBarrier(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < CALLS_PER_THREAD; i++) {
+                        call.run(thread, i);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package dev.lescoggi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class CsvReaderTest {
+
+    @Test
+    void testQuotedFieldsAndLineEndings() throws Exception {
+        String csv = "a,\"b,c\",\"d \"\"e\"\"\"\r\n\"multi\nline\",,last\n";
+        try (CsvReader reader = new CsvReader(new StringReader(csv))) {
+            assertEquals(List.of("a", "b,c", "d \"e\""), reader.next());
+            assertEquals(List.of("multi\nline", "", "last"), reader.next());
+            assertNull(reader.next());
+            assertEquals(2, reader.recordNumber());
+        }
+    }
+
+    @Test
+    void testCustomDelimiterWithoutTrailingNewline() throws Exception {
+        try (CsvReader reader = new CsvReader(new StringReader("x;'y;z'\n1;2"), ';', '\'')) {
+            assertEquals(List.of("x", "y;z"), reader.next());
+            assertEquals(List.of("1", "2"), reader.next());
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    void testWriterOutputReadsBack() throws Exception {
+        StringWriter out = new StringWriter();
+        try (CsvWriter writer = new CsvWriter(out, ';', '\'')) {
+            writer.write(new String[] {"plain", "semi;colon", null, "it's", "two\nlines"});
+            writer.write(new String[0]);
+            assertEquals(2, writer.recordNumber());
+        }
+        assertEquals("plain;'semi;colon';;'it''s';'two\nlines'\r\n\r\n", out.toString());
+        try (CsvReader reader = new CsvReader(new StringReader(out.toString()), ';', '\'')) {
+            assertEquals(List.of("plain", "semi;colon", "", "it's", "two\nlines"), reader.next());
+            assertEquals(List.of(""), reader.next());
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    void testUnterminatedQuote() {
+        CsvReader reader = new CsvReader(new StringReader("a,\"open"));
+        assertThrows(IOException.class, reader::next);
+    }
+}
@@ -0,0 +1,277 @@
+package dev.lescoggi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class DocumentCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final DocumentLockManager locks = new DocumentLockManager();
+
+    @Test
+    void testReloadsWhenFileChangesOnDisk() throws Exception {
+        DocumentCache cache = cache(Long.MAX_VALUE, false);
+        String path = createWorkbook("changed.xlsx");
+
+        XSSFWorkbook first = cache.open(path, XSSFWorkbook.class, XSSFWorkbook::new);
+        assertSame(first, cache.open(path, XSSFWorkbook.class, XSSFWorkbook::new));
+
+        Files.setLastModifiedTime(Path.of(path), FileTime.fromMillis(System.currentTimeMillis() + 5_000));
+        assertNotSame(first, cache.open(path, XSSFWorkbook.class, XSSFWorkbook::new));
+
+        DocumentCache.Stats stats = cache.stats();
+        assertEquals(1, stats.hits());
+        assertEquals(2, stats.misses());
+        assertEquals(1, stats.entries());
+    }
+
+    @Test
+    void testAttachmentsLiveAsLongAsTheEntry() throws Exception {
+        DocumentCache cache = cache(Long.MAX_VALUE, false);
+        String path = createWorkbook("attached.xlsx");
+
+        XSSFWorkbook workbook = cache.open(path, XSSFWorkbook.class, XSSFWorkbook::new);
+        CachedFormulaEvaluator formulas = CachedFormulaEvaluator.of(cache, path, workbook);
+        assertSame(formulas, CachedFormulaEvaluator.of(cache, path, workbook));
+
+        cache.invalidate(path);
+        XSSFWorkbook reloaded = cache.open(path, XSSFWorkbook.class, XSSFWorkbook::new);
+        assertNotSame(formulas, CachedFormulaEvaluator.of(cache, path, reloaded));
+        // A document that is not the cached instance gets an attachment that is not kept
+        assertNotSame(CachedFormulaEvaluator.of(cache, path, workbook), CachedFormulaEvaluator.of(cache, path, workbook));
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsedWhenOverBudget() throws Exception {
+        String first = createWorkbook("first.xlsx");
+        String second = createWorkbook("second.xlsx");
+        String third = createWorkbook("third.xlsx");
+        // Room for two workbooks, but not three
+        long budget = 2 * Files.size(Path.of(first)) * 10 + 1024;
+        DocumentCache cache = cache(budget, false);
+
+        XSSFWorkbook firstWorkbook = cache.open(first, XSSFWorkbook.class, XSSFWorkbook::new);
+        cache.open(second, XSSFWorkbook.class, XSSFWorkbook::new);
+        cache.open(first, XSSFWorkbook.class, XSSFWorkbook::new);
+        cache.open(third, XSSFWorkbook.class, XSSFWorkbook::new);
+
+        assertEquals(1, cache.stats().evictions());
+        assertEquals(2, cache.stats().entries());
+        // "second" was the least recently used entry, so "first" must still be cached
+        assertSame(firstWorkbook, cache.open(first, XSSFWorkbook.class, XSSFWorkbook::new));
+    }
+
+    @Test
+    void testWriteBehindCoalescesMutationsUntilFlush() throws Exception {
+        DocumentCache cache = cache(Long.MAX_VALUE, true);
+        String path = createWorkbook("coalesced.xlsx");
+
+        XSSFWorkbook workbook = cache.open(path, XSSFWorkbook.class, XSSFWorkbook::new);
+        try (var lock = locks.write(path)) {
+            for (int i = 1; i <= 100; i++) {
+                workbook.getSheet("Sheet1").createRow(i).createCell(0).setCellValue(i);
+                cache.modified(path, workbook);
+            }
+        }
+        assertEquals(1, rowsOnDisk(path));
+        assertEquals(0, cache.stats().flushes());
+
+        assertTrue(cache.flush(path));
+        assertEquals(101, rowsOnDisk(path));
+        assertEquals(1, cache.stats().flushes());
+        // The cached copy is still valid after its own flush
+        assertSame(workbook, cache.open(path, XSSFWorkbook.class, XSSFWorkbook::new));
+    }
+
+    @Test
+    void testReadFlushedWritesPendingChangesAndHoldsTheReadLock() throws Exception {
+        DocumentCache cache = cache(Long.MAX_VALUE, true);
+        String path = createWorkbook("streamed.xlsx");
+
+        XSSFWorkbook workbook = cache.open(path, XSSFWorkbook.class, XSSFWorkbook::new);
+        try (var lock = locks.write(path)) {
+            workbook.getSheet("Sheet1").createRow(1).createCell(0).setCellValue("pending");
+            cache.modified(path, workbook);
+        }
+
+        try (var lock = cache.readFlushed(path)) {
+            assertEquals(2, rowsOnDisk(path));
+            // Downgraded, so other readers get in while writers wait for the stream to finish
+            try (var reader = locks.read(path)) {
+                assertNull(locks.tryWrite(Path.of(path).toRealPath()));
+            }
+        }
+        assertEquals(1, cache.stats().flushes());
+        try (var writer = locks.tryWrite(Path.of(path).toRealPath())) {
+            assertNotNull(writer);
+        }
+    }
+
+    @Test
+    void testWriteBehindFlushesAfterDelay() throws Exception {
+        DocumentCache cache = new DocumentCache(locks, new DocumentSaver(false, true), Long.MAX_VALUE, 10, true, Duration.ofMillis(50), Duration.ofMillis(200), 1000);
+        String path = createWorkbook("debounced.xlsx");
+
+        XSSFWorkbook workbook = cache.open(path, XSSFWorkbook.class, XSSFWorkbook::new);
+        try (var lock = locks.write(path)) {
+            workbook.getSheet("Sheet1").createRow(1).createCell(0).setCellValue("pending");
+            cache.modified(path, workbook);
+        }
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (cache.stats().flushes() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, rowsOnDisk(path));
+    }
+
+    @Test
+    void testWriteBehindFlushesOnEviction() throws Exception {
+        String dirty = createWorkbook("dirty.xlsx");
+        String other = createWorkbook("other.xlsx");
+        DocumentCache cache = cache(Files.size(Path.of(dirty)) * 10 + 1024, true);
+
+        XSSFWorkbook workbook = cache.open(dirty, XSSFWorkbook.class, XSSFWorkbook::new);
+        try (var lock = locks.write(dirty)) {
+            workbook.getSheet("Sheet1").createRow(1).createCell(0).setCellValue("pending");
+            cache.modified(dirty, workbook);
+        }
+        cache.open(other, XSSFWorkbook.class, XSSFWorkbook::new);
+
+        assertEquals(1, cache.stats().evictions());
+        assertEquals(2, rowsOnDisk(dirty));
+    }
+
+    private DocumentCache cache(long maxBytes, boolean writeBehind) {
+        return new DocumentCache(locks, new DocumentSaver(false, true), maxBytes, 10, writeBehind, Duration.ofHours(1), Duration.ofHours(1), 1000);
+    }
+
+    @Test
+    void testEvictionWaitsForTheFileLockInTheBackground() throws Exception {
+        String dirty = createWorkbook("locked.xlsx");
+        String other = createWorkbook("unlocked.xlsx");
+        DocumentCache cache = cache(Files.size(Path.of(dirty)) * 10 + 1024, true);
+
+        try (var lock = locks.write(dirty)) {
+            XSSFWorkbook workbook = cache.open(dirty, XSSFWorkbook.class, XSSFWorkbook::new);
+            workbook.getSheet("Sheet1").createRow(1).createCell(0).setCellValue("pending");
+            cache.modified(dirty, workbook);
+
+            // Evicted by another thread while this one still holds the lock
+            Thread opener = new Thread(() -> {
+                try (var otherLock = locks.read(other)) {
+                    cache.open(other, XSSFWorkbook.class, XSSFWorkbook::new);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            opener.start();
+            opener.join(5_000);
+            assertEquals(1, cache.stats().evictions());
+            assertEquals(1, rowsOnDisk(dirty));
+        }
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (cache.stats().flushes() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, rowsOnDisk(dirty));
+    }
+
+    @Test
+    void testEvictedDocumentIsServedUntilItIsFlushed() throws Exception {
+        String dirty = createWorkbook("served.xlsx");
+        String other = createWorkbook("evicting.xlsx");
+        DocumentCache cache = cache(Files.size(Path.of(dirty)) * 10 + 1024, true);
+
+        try (var lock = locks.write(dirty)) {
+            XSSFWorkbook workbook = cache.open(dirty, XSSFWorkbook.class, XSSFWorkbook::new);
+            workbook.getSheet("Sheet1").createRow(1).createCell(0).setCellValue("pending");
+            cache.modified(dirty, workbook);
+            evict(cache, other);
+
+            // The file on disk is stale until the flush runs, so the evicted copy is taken back
+            assertTrue(cache.contains(dirty));
+            XSSFWorkbook reopened = cache.open(dirty, XSSFWorkbook.class, XSSFWorkbook::new);
+            assertSame(workbook, reopened);
+            reopened.getSheet("Sheet1").createRow(2).createCell(0).setCellValue("more");
+            cache.modified(dirty, reopened);
+        }
+        awaitFlushes(cache, 1);
+        assertEquals(3, rowsOnDisk(dirty));
+    }
+
+    @Test
+    void testSavingAnEvictedDocumentCancelsItsPendingFlush() throws Exception {
+        String dirty = createWorkbook("saved.xlsx");
+        String other = createWorkbook("evicter.xlsx");
+        DocumentCache cache = cache(Files.size(Path.of(dirty)) * 10 + 1024, true);
+
+        try (var lock = locks.write(dirty)) {
+            XSSFWorkbook workbook = cache.open(dirty, XSSFWorkbook.class, XSSFWorkbook::new);
+            workbook.getSheet("Sheet1").createRow(1).createCell(0).setCellValue("pending");
+            cache.modified(dirty, workbook);
+            evict(cache, other);
+
+            // A mutation of the evicted document is saved right away
+            workbook.getSheet("Sheet1").createRow(2).createCell(0).setCellValue("saved");
+            cache.modified(dirty, workbook);
+            assertEquals(1, cache.stats().flushes());
+            assertEquals(3, rowsOnDisk(dirty));
+        }
+        Thread.sleep(200);
+        assertEquals(1, cache.stats().flushes(), "the pending flush has nothing left to write");
+    }
+
+    // Opens another file on another thread, evicting the documents this thread holds the lock of
+    private void evict(DocumentCache cache, String other) throws Exception {
+        long evictions = cache.stats().evictions();
+        Thread opener = new Thread(() -> {
+            try (var otherLock = locks.read(other)) {
+                cache.open(other, XSSFWorkbook.class, XSSFWorkbook::new);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        opener.start();
+        opener.join(5_000);
+        assertEquals(evictions + 1, cache.stats().evictions());
+    }
+
+    private static void awaitFlushes(DocumentCache cache, long flushes) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (cache.stats().flushes() < flushes && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static int rowsOnDisk(String path) throws Exception {
+        try (FileInputStream in = new FileInputStream(path); XSSFWorkbook workbook = new XSSFWorkbook(in)) {
+            return workbook.getSheet("Sheet1").getPhysicalNumberOfRows();
+        }
+    }
+
+    private String createWorkbook(String name) throws Exception {
+        Path path = tempDir.resolve(name);
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); FileOutputStream out = new FileOutputStream(path.toFile())) {
+            workbook.createSheet("Sheet1").createRow(0).createCell(0).setCellValue(name);
+            workbook.write(out);
+        }
+        return path.toString();
+    }
+}
@@ -0,0 +1,70 @@
+package dev.lescoggi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.File;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.quarkiverse.mcp.server.TextContent;
+import io.quarkiverse.mcp.server.ToolResponse;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+
+@QuarkusTest
+public class DocumentFeaturesTest {
+
+    private File tempDir;
+    @Inject
+    OfficeMcpServerDocumentFeatures documentFeatures;
+    @Inject
+    OfficeMcpServerWordFeatures wordFeatures;
+    private String documentPath;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // Create a temporary directory manually
+        String tempDirPath = System.getProperty("java.io.tmpdir");
+        tempDir = new File(tempDirPath, "document-test-" + UUID.randomUUID());
+        tempDir.mkdirs();
+
+        documentPath = tempDir.getAbsolutePath() + "/test.docx";
+    }
+
+    @AfterEach
+    void tearDown() {
+        // Clean up the test files
+        if (tempDir != null && tempDir.exists()) {
+            File[] files = tempDir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            tempDir.delete();
+        }
+    }
+
+    @Test
+    void testFlushOfficeDocument() throws Exception {
+        wordFeatures.createWordDocument(documentPath);
+        wordFeatures.addTextToWordDocument(documentPath, "Flushed text");
+
+        // Write-behind is disabled by default, so every mutation is already on disk
+        ToolResponse response = documentFeatures.flushOfficeDocument(documentPath);
+        assertFalse(response.isError());
+        assertEquals("No pending changes for: " + documentPath, ((TextContent) response.content().get(0)).text());
+    }
+
+    @Test
+    void testCloseOfficeDocument() throws Exception {
+        wordFeatures.createWordDocument(documentPath);
+        wordFeatures.addTextToWordDocument(documentPath, "Closed text");
+
+        assertFalse(documentFeatures.closeOfficeDocument(documentPath).isError());
+    }
+}
@@ -0,0 +1,93 @@
+package dev.lescoggi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class DocumentLockManagerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testReadsShareAndWritesExclude() throws Exception {
+        DocumentLockManager locks = new DocumentLockManager();
+        String file = tempDir.resolve("a.xlsx").toString();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (var first = locks.read(file)) {
+            // A second reader gets in while the first one holds the lock, a writer does not
+            assertTrue(executor.submit(() -> {
+                try (var second = locks.read(file)) {
+                    return true;
+                }
+            }).get(5, TimeUnit.SECONDS));
+            assertNull(executor.submit(() -> locks.tryWrite(DocumentCache.key(file))).get(5, TimeUnit.SECONDS));
+
+            CountDownLatch started = new CountDownLatch(1);
+            Future<?> writer = executor.submit(() -> {
+                started.countDown();
+                try (var lock = locks.write(file)) {
+                    return null;
+                }
+            });
+            started.await();
+            Thread.sleep(100);
+            assertFalse(writer.isDone());
+            first.close();
+            writer.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(0, locks.size());
+    }
+
+    @Test
+    void testUnrelatedFilesDoNotContend() throws Exception {
+        DocumentLockManager locks = new DocumentLockManager();
+        String file = tempDir.resolve("a.xlsx").toString();
+        String other = tempDir.resolve("b.xlsx").toString();
+        try (var lock = locks.write(file)) {
+            // The same file through another spelling of its path shares the lock
+            assertNull(CompletableFuture.supplyAsync(
+                () -> locks.tryWrite(DocumentCache.key(tempDir.resolve("x/../a.xlsx").toString()))).get(5, TimeUnit.SECONDS));
+            assertTrue(CompletableFuture.supplyAsync(() -> {
+                try (var otherLock = locks.tryWrite(DocumentCache.key(other))) {
+                    return otherLock != null && locks.size() == 2;
+                }
+            }).get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(0, locks.size());
+    }
+
+    @Test
+    void testLocksAreReentrantAndReleasedOnce() {
+        DocumentLockManager locks = new DocumentLockManager();
+        String file = tempDir.resolve("a.xlsx").toString();
+        try (var outer = locks.write(file)) {
+            try (var inner = locks.write(file); var read = locks.read(file)) {
+                assertEquals(1, locks.size());
+            }
+            outer.close();
+            // Closing twice must not release the lock a second time
+            outer.close();
+            assertEquals(0, locks.size());
+        }
+        try (var lock = locks.tryWrite(DocumentCache.key(file))) {
+            assertNotNull(lock);
+        }
+        assertEquals(0, locks.size());
+    }
+}
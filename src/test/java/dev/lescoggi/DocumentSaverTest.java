@@ -0,0 +1,194 @@
+package dev.lescoggi;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.poi.util.Units;
+import org.apache.poi.xwpf.usermodel.Document;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class DocumentSaverTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testSaveReplacesFileAndLeavesNoTemporaryFile() throws Exception {
+        Path file = tempDir.resolve("doc.docx");
+        Files.writeString(file, "old content that is longer than the new one");
+        Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-r-----"));
+        DocumentSaver saver = new DocumentSaver(true, true);
+
+        saver.save(file.toString(), out -> out.write("new".getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals("new", Files.readString(file));
+        assertEquals("rw-r-----", PosixFilePermissions.toString(Files.getPosixFilePermissions(file)));
+        assertEquals(List.of(file), listFiles());
+        DocumentSaver.Stats stats = saver.stats();
+        assertEquals(1, stats.saves());
+        assertEquals(0, stats.failures());
+        assertEquals(3, stats.bytes());
+    }
+
+    @Test
+    void testFailedSaveKeepsOriginalFile() throws Exception {
+        Path file = tempDir.resolve("doc.xlsx");
+        Files.writeString(file, "original");
+        FileTime lastModified = FileTime.fromMillis(1_000_000);
+        Files.setLastModifiedTime(file, lastModified);
+        DocumentSaver saver = new DocumentSaver(false, true);
+
+        assertThrows(IOException.class, () -> saver.save(file.toString(), out -> {
+            out.write(new byte[100_000]);
+            throw new IOException("Serialization failed");
+        }));
+
+        // Content, modification time and size are unchanged, so cached copies stay valid
+        assertEquals("original", Files.readString(file));
+        assertEquals(lastModified, Files.getLastModifiedTime(file));
+        assertEquals(List.of(file), listFiles());
+        assertEquals(1, saver.stats().failures());
+    }
+
+    @Test
+    void testSaveCreatesMissingFile() throws Exception {
+        Path file = tempDir.resolve("new.pptx");
+        DocumentSaver saver = new DocumentSaver(false, true);
+
+        saver.save(file.toString(), out -> out.write('x'));
+
+        assertEquals("x", Files.readString(file));
+    }
+
+    @Test
+    void testSaveThroughSymbolicLinkReplacesTarget() throws Exception {
+        Path file = tempDir.resolve("target.xlsx");
+        Files.writeString(file, "old");
+        Path link = Files.createSymbolicLink(tempDir.resolve("link.xlsx"), file);
+        DocumentSaver saver = new DocumentSaver(false, true);
+
+        saver.save(link.toString(), out -> out.write("new".getBytes(StandardCharsets.UTF_8)));
+
+        assertTrue(Files.isSymbolicLink(link));
+        assertEquals("new", Files.readString(file));
+        assertEquals(2, listFiles().size());
+    }
+
+    @Test
+    void testIncrementalSaveCopiesUnchangedParts() throws Exception {
+        Path file = tempDir.resolve("pictures.docx");
+        byte[] picture = new byte[512 * 1024];
+        new Random(42).nextBytes(picture);
+        try (XWPFDocument document = new XWPFDocument()) {
+            document.createParagraph().createRun().addPicture(new ByteArrayInputStream(picture),
+                Document.PICTURE_TYPE_PNG, "picture.png", Units.toEMU(100), Units.toEMU(100));
+            try (OutputStream out = Files.newOutputStream(file)) {
+                document.write(out);
+            }
+        }
+        String picturePart;
+        byte[] compressedPicture;
+        try (ZipFile zip = ZipFile.builder().setPath(file).get()) {
+            ZipArchiveEntry entry = Collections.list(zip.getEntries()).stream()
+                .filter(e -> e.getName().startsWith("word/media/")).findFirst().orElseThrow();
+            picturePart = entry.getName();
+            compressedPicture = zip.getRawInputStream(entry).readAllBytes();
+        }
+        DocumentSaver saver = new DocumentSaver(false, true);
+
+        try (XWPFDocument document = new XWPFDocument(Files.newInputStream(file))) {
+            document.createParagraph().createRun().setText("Added");
+            saver.save(file, document);
+        }
+
+        DocumentSaver.Stats stats = saver.stats();
+        assertTrue(stats.copiedEntries() > 0);
+        assertTrue(stats.compressedEntries() > 0);
+        try (ZipFile zip = ZipFile.builder().setPath(file).get()) {
+            assertArrayEquals(compressedPicture, zip.getRawInputStream(zip.getEntry(picturePart)).readAllBytes());
+        }
+        // Read back through the streaming ZIP reader, which is stricter about entry headers
+        try (XWPFDocument document = new XWPFDocument(Files.newInputStream(file))) {
+            assertEquals("Added", document.getParagraphs().get(1).getText());
+            assertArrayEquals(picture, document.getAllPictures().get(0).getData());
+        }
+    }
+
+    @Test
+    void testIncrementalZipComparesPartsAsTheyAreWritten() throws Exception {
+        byte[] large = new byte[300 * 1024];
+        new Random(7).nextBytes(large);
+        byte[] changedLate = large.clone();
+        changedLate[large.length - 1]++;
+        Path file = tempDir.resolve("parts.zip");
+        try (ZipArchiveOutputStream zip = new ZipArchiveOutputStream(file)) {
+            for (String name : List.of("same", "longer", "shorter", "changed-late")) {
+                zip.putArchiveEntry(new ZipArchiveEntry(name));
+                zip.write(large);
+                zip.closeArchiveEntry();
+            }
+        }
+        Map<String, byte[]> parts = new LinkedHashMap<>();
+        parts.put("same", large);
+        parts.put("longer", Arrays.copyOf(large, large.length + 1));
+        parts.put("shorter", Arrays.copyOf(large, large.length - 1));
+        parts.put("changed-late", changedLate);
+        parts.put("new", "new part".getBytes(StandardCharsets.UTF_8));
+
+        // Small writes compare within one read of the original entry, large ones across several
+        for (int chunk : new int[] { 1000, 200 * 1024 }) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (ZipFile original = ZipFile.builder().setPath(file).get();
+                    IncrementalZipOutputStream zip = new IncrementalZipOutputStream(out, original)) {
+                for (Map.Entry<String, byte[]> part : parts.entrySet()) {
+                    zip.putArchiveEntry(new ZipArchiveEntry(part.getKey()));
+                    byte[] bytes = part.getValue();
+                    for (int offset = 0; offset < bytes.length; offset += chunk) {
+                        zip.write(bytes, offset, Math.min(chunk, bytes.length - offset));
+                    }
+                    zip.closeArchiveEntry();
+                }
+                zip.finish();
+                assertEquals(1, zip.copiedEntries());
+                assertEquals(4, zip.compressedEntries());
+            }
+            try (ZipFile saved = ZipFile.builder().setByteArray(out.toByteArray()).get()) {
+                for (Map.Entry<String, byte[]> part : parts.entrySet()) {
+                    try (InputStream in = saved.getInputStream(saved.getEntry(part.getKey()))) {
+                        assertArrayEquals(part.getValue(), in.readAllBytes(), part.getKey());
+                    }
+                }
+            }
+        }
+    }
+
+    private List<Path> listFiles() throws IOException {
+        try (var files = Files.list(tempDir)) {
+            return files.toList();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package dev.lescoggi;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Calls every tool of the server once on new documents in a directory. Used to check a packaged
+ * server end to end and to train the AppCDS archive, so that the classes of every tool are loaded.
+ */
+final class EveryToolScenario {
+
+    private EveryToolScenario() {
+    }
+
+    /**
+     * Tool calls in the order they are made; each document is created before it is used.
+     */
+    static List<Map.Entry<String, Map<String, Object>>> calls(Path dir) {
+        String workbook = dir.resolve("scenario.xlsx").toString();
+        String document = dir.resolve("scenario.docx").toString();
+        String presentation = dir.resolve("scenario.pptx").toString();
+        String csv = dir.resolve("scenario.csv").toString();
+        List<Map.Entry<String, Map<String, Object>>> calls = new ArrayList<>();
+
+        calls.add(call("create_excel_workbook", "filepath", workbook));
+        calls.add(call("create_excel_sheet", "filepath", workbook, "sheetName", "Data"));
+        calls.add(call("add_excel_row", "filepath", workbook, "sheetName", "Data", "rowData", "Region,Amount"));
+        calls.add(call("add_excel_rows", "filepath", workbook, "sheetName", "Data", "rows", "EU,12.5\nUS,3\n", "format", "csv"));
+        calls.add(call("batch_excel_operations", "filepath", workbook, "operations",
+            "[{\"op\": \"add_row\", \"sheet\": \"Data\", \"values\": [\"APAC\", 7]}, {\"op\": \"row_count\", \"sheet\": \"Data\"}]"));
+        calls.add(call("write_excel_cell", "filepath", workbook, "sheetName", "Data", "rowNum", 0, "colNum", 2, "value", "=SUM(B2:B4)"));
+        calls.add(call("recalculate_excel_sheet", "filepath", workbook, "sheetName", "Data"));
+        calls.add(call("flush_office_document", "filepath", workbook));
+        calls.add(call("read_excel_cell", "filepath", workbook, "sheetName", "Data", "rowNum", 1, "colNum", 1));
+        calls.add(call("read_excel_range", "filepath", workbook, "sheetName", "Data", "range", "A1:B4", "format", "json"));
+        calls.add(call("get_excel_sheet_count", "filepath", workbook));
+        calls.add(call("get_excel_row_count", "filepath", workbook, "sheetName", "Data"));
+        calls.add(call("get_excel_column_count", "filepath", workbook, "sheetName", "Data"));
+        calls.add(call("query_excel_sheet", "filepath", workbook, "sheetName", "Data", "groupBy", "Region", "aggregates", "sum(Amount), count(*)"));
+        calls.add(call("filter_excel_rows", "filepath", workbook, "sheetName", "Data", "filter", "Amount > 5"));
+        calls.add(call("export_excel_sheet_to_csv", "filepath", workbook, "sheetName", "Data", "csvPath", csv));
+        calls.add(call("import_csv_to_excel_sheet", "filepath", workbook, "sheetName", "Copy", "csvPath", csv));
+        calls.add(call("close_excel_workbook", "filepath", workbook));
+
+        calls.add(call("create_word_document", "filepath", document));
+        calls.add(call("add_text_to_word_document", "filepath", document, "text", "Quarterly report"));
+        calls.add(call("add_text_to_word_document", "filepath", document, "text", "Prepared for {customer}"));
+        calls.add(call("close_office_document", "filepath", document));
+        calls.add(call("read_text_from_word_document", "filepath", document));
+        calls.add(call("render_office_template", "filepath", document, "outputPath", dir.resolve("scenario-ada.docx").toString(),
+            "data", "{\"customer\": \"Ada\"}"));
+        calls.add(call("render_office_templates", "filepath", document, "documents",
+            "[{\"output\": " + StdioMcpClient.JSON.valueToTree(dir.resolve("scenario-bo.docx").toString()) + ", \"data\": {\"customer\": \"Bo\"}}]"));
+
+        calls.add(call("create_powerpoint_presentation", "filepath", presentation));
+        calls.add(call("add_slide_to_powerpoint", "filepath", presentation));
+        calls.add(call("add_text_to_powerpoint_slide", "filepath", presentation, "slideIndex", 0, "text", "Results"));
+        calls.add(call("batch_powerpoint_operations", "filepath", presentation, "operations",
+            "[{\"op\": \"add_slide\"}, {\"op\": \"add_text\", \"slide\": 1, \"text\": \"Outlook\"}]"));
+        calls.add(call("close_office_document", "filepath", presentation));
+        calls.add(call("read_slide_titles_from_powerpoint", "filepath", presentation));
+        calls.add(call("get_powerpoint_slide_count", "filepath", presentation));
+
+        calls.add(call("search_office_documents", "query", "report", "refresh", true));
+        calls.add(call("summarize_office_files", "type", "excel"));
+        return calls;
+    }
+
+    /**
+     * Makes every call of {@link #calls} and returns the failures, as {@code tool: message}.
+     */
+    static List<String> run(StdioMcpClient client, Path dir) throws Exception {
+        List<String> failures = new ArrayList<>();
+        for (Map.Entry<String, Map<String, Object>> call : calls(dir)) {
+            JsonNode result = client.callTool(call.getKey(), call.getValue());
+            if (result.path("isError").asBoolean()) {
+                failures.add(call.getKey() + ": " + StdioMcpClient.text(result));
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Returns the tools listed by the server that the scenario does not call.
+     */
+    static Set<String> uncovered(StdioMcpClient client, Path dir) throws Exception {
+        JsonNode tools = StdioMcpClient.result(client.send("tools/list", StdioMcpClient.JSON.createObjectNode()).get());
+        Set<String> uncovered = new TreeSet<>();
+        tools.path("tools").forEach(tool -> uncovered.add(tool.path("name").asText()));
+        calls(dir).forEach(call -> uncovered.remove(call.getKey()));
+        return uncovered;
+    }
+
+    private static Map.Entry<String, Map<String, Object>> call(String tool, Object... arguments) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (int i = 0; i < arguments.length; i += 2) {
+            map.put((String) arguments[i], arguments[i + 1]);
+        }
+        return Map.entry(tool, map);
+    }
+}
@@ -1,24 +1,38 @@
 package dev.lescoggi;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.UUID;
 
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import io.quarkiverse.mcp.server.TextContent;
+import io.quarkiverse.mcp.server.ToolResponse;
 import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
 
 @QuarkusTest
 public class ExcelFeaturesTest {
 
     private File tempDir;
-    private OfficeMcpServerExcelFeatures excelFeatures;
+    @Inject
+    OfficeMcpServerExcelFeatures excelFeatures;
+    @Inject
+    DocumentCache documentCache;
     private String workbookPath;
     private final String SHEET_NAME = "TestSheet";
 
@@ -28,8 +42,7 @@ public class ExcelFeaturesTest {
         String tempDirPath = System.getProperty("java.io.tmpdir");
         tempDir = new File(tempDirPath, "excel-test-" + UUID.randomUUID());
         tempDir.mkdirs();
-        
-        excelFeatures = new OfficeMcpServerExcelFeatures();
+
         workbookPath = tempDir.getAbsolutePath() + "/test.xlsx";
     }
     
@@ -126,4 +139,371 @@ public class ExcelFeaturesTest {
         // Get column count
         assertNotNull(excelFeatures.getExcelColumnCount(workbookPath, "Sheet1"));
     }
+
+    @Test
+    void testReadExcelCellReusesCachedWorkbook() throws Exception {
+        excelFeatures.createExcelWorkbook(workbookPath);
+        excelFeatures.addExcelRow(workbookPath, "Sheet1", "Cell1,Cell2");
+
+        long hits = documentCache.stats().hits();
+        ToolResponse response = excelFeatures.readExcelCell(workbookPath, "Sheet1", 0, 1);
+        assertEquals("Cell2", ((TextContent) response.content().get(0)).text());
+        assertEquals(hits + 1, documentCache.stats().hits());
+
+        // Closing releases the cached instance, so the next read parses the file again
+        excelFeatures.closeExcelWorkbook(workbookPath);
+        long misses = documentCache.stats().misses();
+        excelFeatures.readExcelCell(workbookPath, "Sheet1", 0, 0);
+        assertEquals(misses + 1, documentCache.stats().misses());
+    }
+
+    @Test
+    void testAddExcelRows() throws Exception {
+        excelFeatures.createExcelWorkbook(workbookPath);
+        excelFeatures.addExcelRow(workbookPath, "Sheet1", "Region,Amount");
+
+        assertFalse(excelFeatures.addExcelRows(workbookPath, "Sheet1",
+            "[[\"EU\", 12.5, true], [\"US\", 3, false, \"2024-03-01\"]]", null).isError());
+        assertFalse(excelFeatures.addExcelRows(workbookPath, "Sheet1",
+            "APAC,\"1,5\",\"say \"\"hi\"\"\"\n", "csv").isError());
+
+        try (FileInputStream in = new FileInputStream(workbookPath); XSSFWorkbook workbook = new XSSFWorkbook(in)) {
+            var sheet = workbook.getSheet("Sheet1");
+            assertEquals(4, sheet.getPhysicalNumberOfRows());
+            assertEquals("Region", sheet.getRow(0).getCell(0).getStringCellValue());
+            assertEquals(12.5, sheet.getRow(1).getCell(1).getNumericCellValue());
+            assertTrue(sheet.getRow(1).getCell(2).getBooleanCellValue());
+            assertEquals(CellType.NUMERIC, sheet.getRow(2).getCell(3).getCellType());
+            assertEquals(LocalDate.of(2024, 3, 1), sheet.getRow(2).getCell(3).getLocalDateTimeCellValue().toLocalDate());
+            assertEquals("1,5", sheet.getRow(3).getCell(1).getStringCellValue());
+            assertEquals("say \"hi\"", sheet.getRow(3).getCell(2).getStringCellValue());
+        }
+    }
+
+    @Test
+    void testReadsUseStreamingForLargeWorkbooks() throws Exception {
+        excelFeatures.createExcelWorkbook(workbookPath);
+        excelFeatures.addExcelRows(workbookPath, "Sheet1", "Name,Amount\nEU,12.5\n", "csv");
+        excelFeatures.closeExcelWorkbook(workbookPath);
+
+        long threshold = excelFeatures.streamingReadThreshold;
+        excelFeatures.streamingReadThreshold = 0;
+        try {
+            long misses = documentCache.stats().misses();
+            assertEquals("12.5", text(excelFeatures.readExcelCell(workbookPath, "Sheet1", 1, 1)));
+            assertEquals("Sheet has 2 rows.", text(excelFeatures.getExcelRowCount(workbookPath, "Sheet1")));
+            assertEquals("Sheet has 2 columns.", text(excelFeatures.getExcelColumnCount(workbookPath, "Sheet1")));
+            assertTrue(excelFeatures.readExcelCell(workbookPath, "Sheet1", 5, 0).isError());
+            // Nothing was parsed into the document cache
+            assertEquals(misses, documentCache.stats().misses());
+        } finally {
+            excelFeatures.streamingReadThreshold = threshold;
+        }
+    }
+
+    @Test
+    void testWritesStreamForLargeWorkbooks() throws Exception {
+        excelFeatures.createExcelWorkbook(workbookPath);
+        excelFeatures.addExcelRow(workbookPath, "Sheet1", "Region,Amount");
+        excelFeatures.closeExcelWorkbook(workbookPath);
+
+        EngineSelector engines = excelFeatures.engines;
+        excelFeatures.engines = new EngineSelector(documentCache, 0, 12, 0);
+        try {
+            long misses = documentCache.stats().misses();
+            assertFalse(excelFeatures.addExcelRow(workbookPath, "Sheet1", "EU,12.5").isError());
+            assertFalse(excelFeatures.addExcelRows(workbookPath, "Sheet1", "[[\"US\", 3, true, \"2024-03-01\"]]", null).isError());
+            assertTrue(excelFeatures.addExcelRows(workbookPath, "Missing", "a,b", "csv").isError());
+            assertEquals(3, excelFeatures.engines.stats().streamingWrites());
+            // Nothing was parsed into the document cache
+            assertEquals(misses, documentCache.stats().misses());
+        } finally {
+            excelFeatures.engines = engines;
+        }
+
+        assertEquals("Sheet has 3 rows.", text(excelFeatures.getExcelRowCount(workbookPath, "Sheet1")));
+        assertEquals("Sheet has 4 columns.", text(excelFeatures.getExcelColumnCount(workbookPath, "Sheet1")));
+        try (FileInputStream in = new FileInputStream(workbookPath); XSSFWorkbook workbook = new XSSFWorkbook(in)) {
+            var sheet = workbook.getSheet("Sheet1");
+            assertEquals("Region", sheet.getRow(0).getCell(0).getStringCellValue());
+            assertEquals("12.5", sheet.getRow(1).getCell(1).getStringCellValue(), "add_excel_row stores text as before");
+            assertEquals(3, sheet.getRow(2).getCell(1).getNumericCellValue());
+            assertTrue(sheet.getRow(2).getCell(2).getBooleanCellValue());
+            assertEquals(LocalDate.of(2024, 3, 1), sheet.getRow(2).getCell(3).getLocalDateTimeCellValue().toLocalDate());
+        }
+    }
+
+    @Test
+    void testLoadsOverTheHeapBudgetAreRefused() throws Exception {
+        excelFeatures.createExcelWorkbook(workbookPath);
+        excelFeatures.addExcelRow(workbookPath, "Sheet1", "Region,Amount");
+        excelFeatures.closeExcelWorkbook(workbookPath);
+
+        EngineSelector engines = excelFeatures.engines;
+        excelFeatures.engines = new EngineSelector(documentCache, 1024, 12, Long.MAX_VALUE);
+        try {
+            ToolResponse refused = excelFeatures.writeExcelCell(workbookPath, "Sheet1", 0, 0, "x");
+            assertTrue(refused.isError());
+            assertTrue(text(refused).contains("office.engine.heap-budget"), text(refused));
+            assertEquals(1, excelFeatures.engines.stats().refused());
+
+            // Tools with a streaming implementation fall back to it
+            assertEquals("Amount", text(excelFeatures.readExcelCell(workbookPath, "Sheet1", 0, 1)));
+            assertFalse(excelFeatures.addExcelRows(workbookPath, "Sheet1", "EU,12.5", "csv").isError());
+            assertEquals(1, excelFeatures.engines.stats().streamingReads());
+            assertEquals(1, excelFeatures.engines.stats().streamingWrites());
+        } finally {
+            excelFeatures.engines = engines;
+        }
+        assertEquals("Region", text(excelFeatures.readExcelCell(workbookPath, "Sheet1", 0, 0)));
+    }
+
+    @Test
+    void testReadExcelRangePages() throws Exception {
+        excelFeatures.createExcelWorkbook(workbookPath);
+        excelFeatures.addExcelRows(workbookPath, "Sheet1", "Name,Amount,Note\nEU,12.5,\nUS,3,\"a,b\"\nAPAC,7,x\n", "csv");
+
+        ToolResponse first = excelFeatures.readExcelRange(workbookPath, "Sheet1", "A2:B", 2, null, null);
+        assertFalse(first.isError());
+        assertEquals("row,A,B\n2,EU,12.5\n3,US,3\n", text(first));
+        String status = ((TextContent) first.content().get(1)).text();
+        String cursor = status.substring(status.indexOf('\'') + 1, status.lastIndexOf('\''));
+
+        ToolResponse second = excelFeatures.readExcelRange(workbookPath, "Sheet1", null, 2, "json", cursor);
+        assertFalse(second.isError());
+        assertEquals("{\"columns\":[\"row\",\"A\",\"B\"],\"rows\":[[4,\"APAC\",\"7\"]],\"cursor\":null}", text(second));
+        // Cursors are single use
+        assertTrue(excelFeatures.readExcelRange(workbookPath, "Sheet1", null, 2, null, cursor).isError());
+
+        assertEquals("row,C\n2,\n3,\"a,b\"\n4,x\n", text(excelFeatures.readExcelRange(workbookPath, "Sheet1", "C2:C", null, null, null)));
+        assertTrue(excelFeatures.readExcelRange(workbookPath, "Sheet1", "B2:A1", null, null, null).isError());
+        assertTrue(excelFeatures.readExcelRange(workbookPath, "Missing", null, null, null, null).isError());
+    }
+
+    @Test
+    void testReadExcelRangeRejectsCursorAfterChange() throws Exception {
+        excelFeatures.createExcelWorkbook(workbookPath);
+        excelFeatures.addExcelRows(workbookPath, "Sheet1", "[[1], [2], [3]]", "json");
+
+        ToolResponse first = excelFeatures.readExcelRange(workbookPath, "Sheet1", null, 1, "json", null);
+        String page = text(first);
+        String cursor = page.substring(page.indexOf("\"cursor\":\"") + 10, page.lastIndexOf('"'));
+
+        excelFeatures.addExcelRow(workbookPath, "Sheet1", "4");
+        assertTrue(excelFeatures.readExcelRange(workbookPath, "Sheet1", null, 1, "json", cursor).isError());
+    }
+
+    @Test
+    void testCountsAnsweredFromMetadataIndex() throws Exception {
+        excelFeatures.createExcelWorkbook(workbookPath);
+        excelFeatures.addExcelRow(workbookPath, "Sheet1", "Name,Amount");
+        excelFeatures.addExcelRows(workbookPath, "Sheet1", "[[\"EU\", 1, true, \"x\"], [\"US\", 2]]", null);
+        excelFeatures.closeExcelWorkbook(workbookPath);
+
+        long misses = documentCache.stats().misses();
+        assertEquals("Workbook has 1 sheets.", text(excelFeatures.getExcelSheetCount(workbookPath)));
+        assertEquals("Sheet has 3 rows.", text(excelFeatures.getExcelRowCount(workbookPath, "Sheet1")));
+        assertEquals("Sheet has 4 columns.", text(excelFeatures.getExcelColumnCount(workbookPath, "Sheet1")));
+        assertTrue(excelFeatures.getExcelRowCount(workbookPath, "Missing").isError());
+        assertEquals(misses, documentCache.stats().misses());
+    }
+
+    @Test
+    void testColumnCountWithoutFirstRow() throws Exception {
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); FileOutputStream out = new FileOutputStream(workbookPath)) {
+            workbook.createSheet("Sheet1").createRow(3).createCell(2).setCellValue("x");
+            workbook.write(out);
+        }
+        assertEquals("Sheet has 1 columns.", text(excelFeatures.getExcelColumnCount(workbookPath, "Sheet1")));
+        // Open workbooks are answered from memory
+        excelFeatures.readExcelCell(workbookPath, "Sheet1", 3, 2);
+        assertTrue(documentCache.contains(workbookPath));
+        assertEquals("Sheet has 1 columns.", text(excelFeatures.getExcelColumnCount(workbookPath, "Sheet1")));
+        assertEquals("Sheet has 1 rows.", text(excelFeatures.getExcelRowCount(workbookPath, "Sheet1")));
+    }
+
+    @Test
+    void testBatchExcelOperations() throws Exception {
+        excelFeatures.createExcelWorkbook(workbookPath);
+        StringBuilder rows = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            rows.append(i == 0 ? "" : ", ").append("[\"Item ").append(i).append("\", ").append(i).append(']');
+        }
+
+        ToolResponse response = excelFeatures.batchExcelOperations(workbookPath, "["
+            + "{\"op\": \"create_sheet\", \"sheet\": \"Data\"},"
+            + "{\"op\": \"add_row\", \"sheet\": \"Data\", \"values\": [\"Name\", \"Amount\"]},"
+            + "{\"op\": \"add_rows\", \"sheet\": \"Data\", \"rows\": [" + rows + "]},"
+            + "{\"op\": \"read_cell\", \"sheet\": \"Data\", \"row\": 0, \"column\": 1},"
+            + "{\"op\": \"read_cell\", \"sheet\": \"Data\", \"row\": 50, \"column\": 0},"
+            + "{\"op\": \"row_count\", \"sheet\": \"Data\"}]");
+
+        assertFalse(response.isError());
+        assertEquals("1. create_sheet: Sheet 'Data' created.", text(response));
+        assertEquals("3. add_rows: 50 rows added to sheet 'Data'.", ((TextContent) response.content().get(2)).text());
+        assertEquals("4. read_cell: Amount", ((TextContent) response.content().get(3)).text());
+        assertEquals("5. read_cell: Item 49", ((TextContent) response.content().get(4)).text());
+        assertEquals("6. row_count: Sheet has 51 rows.", ((TextContent) response.content().get(5)).text());
+        try (FileInputStream in = new FileInputStream(workbookPath); XSSFWorkbook workbook = new XSSFWorkbook(in)) {
+            var sheet = workbook.getSheet("Data");
+            assertEquals(51, sheet.getPhysicalNumberOfRows());
+            assertEquals(49.0, sheet.getRow(50).getCell(1).getNumericCellValue());
+        }
+    }
+
+    @Test
+    void testFailedBatchSavesNothing() throws Exception {
+        excelFeatures.createExcelWorkbook(workbookPath);
+        excelFeatures.addExcelRow(workbookPath, "Sheet1", "Existing");
+        byte[] before = Files.readAllBytes(Paths.get(workbookPath));
+
+        ToolResponse response = excelFeatures.batchExcelOperations(workbookPath, "["
+            + "{\"op\": \"create_sheet\", \"sheet\": \"Data\"},"
+            + "{\"op\": \"add_row\", \"sheet\": \"Sheet1\", \"values\": [\"New\"]},"
+            + "{\"op\": \"add_row\", \"sheet\": \"Missing\", \"values\": [1]}]");
+
+        assertTrue(response.isError());
+        assertTrue(text(response).contains("Operation 3 (add_row) failed: Sheet 'Missing' does not exist."), text(response));
+        assertTrue(text(response).contains("2. add_row: Row added to sheet 'Sheet1'."), text(response));
+        assertTrue(Arrays.equals(before, Files.readAllBytes(Paths.get(workbookPath))));
+        // The cached workbook does not keep the changes of the failed batch either
+        assertEquals("Workbook has 1 sheets.", text(excelFeatures.getExcelSheetCount(workbookPath)));
+        assertEquals("Sheet has 1 rows.", text(excelFeatures.getExcelRowCount(workbookPath, "Sheet1")));
+
+        assertTrue(excelFeatures.batchExcelOperations(workbookPath, "{\"op\": \"create_sheet\"}").isError());
+        assertTrue(excelFeatures.batchExcelOperations(workbookPath, "[{\"op\": \"drop_sheet\", \"sheet\": \"Sheet1\"}]").isError());
+    }
+
+    @Test
+    void testFailedEditDropsTheHalfChangedWorkbook() throws Exception {
+        excelFeatures.createExcelWorkbook(workbookPath);
+        excelFeatures.addExcelRow(workbookPath, "Sheet1", "Existing");
+
+        // POI creates the first 16384 cells of the row before it refuses the next one
+        ToolResponse response = excelFeatures.addExcelRow(workbookPath, "Sheet1", "x,".repeat(16_385) + "x");
+
+        assertTrue(response.isError());
+        assertTrue(text(response).startsWith("Failed to add row: "), text(response));
+        assertTrue(!documentCache.contains(workbookPath));
+        assertEquals("Sheet has 1 rows.", text(excelFeatures.getExcelRowCount(workbookPath, "Sheet1")));
+        assertTrue(excelFeatures.createExcelSheet(workbookPath, "Sheet1").isError());
+        assertEquals("Workbook has 1 sheets.", text(excelFeatures.getExcelSheetCount(workbookPath)));
+    }
+
+    @Test
+    void testQueryExcelSheet() throws Exception {
+        excelFeatures.createExcelWorkbook(workbookPath);
+        excelFeatures.addExcelRows(workbookPath, "Sheet1", "Region,Amount\nEU,12.5\nUS,3\nEU,7\nAPAC,1\n", "csv");
+
+        ToolResponse grouped = excelFeatures.queryExcelSheet(workbookPath, "Sheet1", "Amount > 2", "Region", "sum(Amount), count(*)", null, null);
+        assertFalse(grouped.isError());
+        assertEquals("Region,sum(Amount),count(*)\nEU,19.5,2\nUS,3,1\n", text(grouped));
+        assertTrue(((TextContent) grouped.content().get(1)).text().startsWith("3 of 4 rows matched"));
+
+        ToolResponse rows = excelFeatures.filterExcelRows(workbookPath, "Sheet1", "Region in ('eu', 'apac')", "Amount", null, 2);
+        assertEquals("row,Amount\n2,12.5\n4,7\n", text(rows));
+        assertTrue(((TextContent) rows.content().get(1)).text().contains("cached sheet"));
+
+        assertTrue(excelFeatures.queryExcelSheet(workbookPath, "Sheet1", "Price > 2", null, null, null, null).isError());
+        assertTrue(excelFeatures.queryExcelSheet(workbookPath, "Missing", null, null, null, null, null).isError());
+    }
+
+    @Test
+    void testQueryExcelSheetSeesChanges() throws Exception {
+        excelFeatures.createExcelWorkbook(workbookPath);
+        excelFeatures.addExcelRows(workbookPath, "Sheet1", "[[1], [2]]", "json");
+        assertEquals("sum(A)\n3\n", text(excelFeatures.queryExcelSheet(workbookPath, "Sheet1", null, null, "sum(A)", false, null)));
+
+        // The new row is pending in the document cache until the query flushes it
+        excelFeatures.addExcelRow(workbookPath, "Sheet1", "4");
+        assertEquals("sum(A)\n7\n", text(excelFeatures.queryExcelSheet(workbookPath, "Sheet1", null, null, "sum(A)", false, null)));
+    }
+
+    @Test
+    void testFormulaCellsReturnComputedValues() throws Exception {
+        excelFeatures.createExcelWorkbook(workbookPath);
+        excelFeatures.addExcelRows(workbookPath, "Sheet1", "[[1, 2], [3, 4]]", "json");
+
+        assertEquals("3", text(excelFeatures.writeExcelCell(workbookPath, "Sheet1", 0, 2, "=A1+B1")));
+        assertEquals("6", text(excelFeatures.writeExcelCell(workbookPath, "Sheet1", 1, 2, "=C1*2")));
+        assertEquals("6", text(excelFeatures.readExcelCell(workbookPath, "Sheet1", 1, 2)));
+
+        // Writing a precedent changes the formulas that depend on it, directly or not
+        excelFeatures.writeExcelCell(workbookPath, "Sheet1", 0, 0, "10");
+        assertEquals("12", text(excelFeatures.readExcelCell(workbookPath, "Sheet1", 0, 2)));
+        assertEquals("24", text(excelFeatures.readExcelCell(workbookPath, "Sheet1", 1, 2)));
+        // Including cells that were blank when the formula was computed
+        assertEquals("13", text(excelFeatures.writeExcelCell(workbookPath, "Sheet1", 0, 3, "=SUM(A1:A3)")));
+        excelFeatures.writeExcelCell(workbookPath, "Sheet1", 2, 0, "5");
+        assertEquals("18", text(excelFeatures.readExcelCell(workbookPath, "Sheet1", 0, 3)));
+
+        assertTrue(excelFeatures.writeExcelCell(workbookPath, "Sheet1", 0, 4, "=SUM(").isError());
+        assertTrue(excelFeatures.writeExcelCell(workbookPath, "Missing", 0, 0, "1").isError());
+    }
+
+    @Test
+    void testRecalculateExcelSheet() throws Exception {
+        excelFeatures.createExcelWorkbook(workbookPath);
+        excelFeatures.addExcelRows(workbookPath, "Sheet1", "[[1, 2]]", "json");
+        excelFeatures.writeExcelCell(workbookPath, "Sheet1", 0, 2, "=A1+B1");
+        excelFeatures.writeExcelCell(workbookPath, "Sheet1", 0, 0, "10");
+        // Range reads see the result stored in the file until the sheet is recalculated
+        assertEquals("row,C\n1,3\n", text(excelFeatures.readExcelRange(workbookPath, "Sheet1", "C1", null, null, null)));
+
+        ToolResponse recalculated = excelFeatures.recalculateExcelSheet(workbookPath, "Sheet1");
+        assertFalse(recalculated.isError());
+        assertTrue(text(recalculated).startsWith("1 formulas recalculated"));
+        assertEquals("row,C\n1,12\n", text(excelFeatures.readExcelRange(workbookPath, "Sheet1", "C1", null, null, null)));
+
+        assertFalse(excelFeatures.recalculateExcelSheet(workbookPath, null).isError());
+        assertTrue(excelFeatures.recalculateExcelSheet(workbookPath, "Missing").isError());
+    }
+
+    @Test
+    void testImportAndExportCsv() throws Exception {
+        excelFeatures.createExcelWorkbook(workbookPath);
+        excelFeatures.addExcelRow(workbookPath, "Sheet1", "Region,Amount");
+        String csvPath = tempDir.getAbsolutePath() + "/in.csv";
+        Files.writeString(Paths.get(csvPath), "\uFEFFEU;12.5;2024-03-01\n\n\"a;b\";3;\n");
+
+        ToolResponse imported = excelFeatures.importCsvToExcelSheet(workbookPath, "Sheet1", csvPath, ";", null, null);
+        assertFalse(imported.isError(), text(imported));
+        assertTrue(text(imported).startsWith("2 rows imported into sheet 'Sheet1'"), text(imported));
+        assertTrue(text(imported).contains(" rows/s)"), text(imported));
+        // The cached workbook is reloaded with the imported rows after the row added before them
+        assertEquals("12.5", text(excelFeatures.readExcelCell(workbookPath, "Sheet1", 1, 1)));
+
+        String exportPath = tempDir.getAbsolutePath() + "/out.csv";
+        ToolResponse exported = excelFeatures.exportExcelSheetToCsv(workbookPath, "Sheet1", exportPath, null, null, null);
+        assertFalse(exported.isError(), text(exported));
+        assertTrue(text(exported).startsWith("3 rows of sheet 'Sheet1'"), text(exported));
+        assertEquals("Region,Amount\r\nEU,12.5,2024-03-01\r\na;b,3\r\n", Files.readString(Paths.get(exportPath)));
+        assertFalse(excelFeatures.exportExcelSheetToCsv(workbookPath, "Sheet1", exportPath, "tab", "'", false).isError());
+        assertEquals("Region\tAmount\r\nEU\t12.5\t45352.0\r\na;b\t3.0\r\n", Files.readString(Paths.get(exportPath)));
+
+        // Into a new sheet of the workbook, and into a workbook that does not exist yet
+        assertFalse(excelFeatures.importCsvToExcelSheet(workbookPath, "Text", exportPath, "\\t", null, false).isError());
+        String newWorkbookPath = tempDir.getAbsolutePath() + "/new.xlsx";
+        assertFalse(excelFeatures.importCsvToExcelSheet(newWorkbookPath, "Data", exportPath, "tab", null, true).isError());
+        try (FileInputStream in = new FileInputStream(workbookPath); XSSFWorkbook workbook = new XSSFWorkbook(in)) {
+            var sheet = workbook.getSheet("Text");
+            assertEquals(3, sheet.getPhysicalNumberOfRows());
+            assertEquals(CellType.STRING, sheet.getRow(1).getCell(1).getCellType());
+            assertEquals("45352.0", sheet.getRow(1).getCell(2).getStringCellValue());
+        }
+        try (FileInputStream in = new FileInputStream(newWorkbookPath); XSSFWorkbook workbook = new XSSFWorkbook(in)) {
+            assertEquals(1, workbook.getNumberOfSheets());
+            assertEquals(12.5, workbook.getSheet("Data").getRow(1).getCell(1).getNumericCellValue());
+        }
+        new File(newWorkbookPath).delete();
+
+        assertTrue(excelFeatures.importCsvToExcelSheet(workbookPath, "Sheet1", tempDir.getAbsolutePath() + "/missing.csv", null, null, null).isError());
+        assertTrue(excelFeatures.importCsvToExcelSheet(workbookPath, "Sheet1", csvPath, "ab", null, null).isError());
+        assertTrue(excelFeatures.importCsvToExcelSheet(workbookPath, "SHEET1", csvPath, ";", null, null).isError());
+        assertTrue(excelFeatures.exportExcelSheetToCsv(workbookPath, "Missing", exportPath, null, null, null).isError());
+    }
+
+    private static String text(ToolResponse response) {
+        return ((TextContent) response.content().get(0)).text();
+    }
 }
\ No newline at end of file
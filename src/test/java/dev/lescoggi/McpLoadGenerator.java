@@ -0,0 +1,277 @@
+package dev.lescoggi;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Drives a server built with the {@code sse} profile with many concurrent MCP sessions and reports
+ * throughput and latency percentiles per tool. Each session opens its own SSE stream, initializes,
+ * and calls tools back to back for the configured duration: cell and range reads of a workbook
+ * shared by all sessions, so that they hit the same cached document, and row appends and counts on
+ * a workbook of its own. Calls made during the warm-up are not reported.
+ * <p>
+ * Start the server, then run {@code ./mvnw test -Pload -DskipTests}. The generator is configured
+ * with system properties:
+ * <ul>
+ * <li>{@code load.url}: base URL of the server (default {@code http://localhost:8080})</li>
+ * <li>{@code load.sessions}: number of concurrent sessions (default 16)</li>
+ * <li>{@code load.duration}, {@code load.warmup}: measured time and warm-up time, in seconds (default 30 and 5)</li>
+ * <li>{@code load.dir}: directory the workbooks are created in; the server must be able to open them
+ * (default {@code target/load-files})</li>
+ * </ul>
+ */
+public class McpLoadGenerator {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final String SHARED_SHEET = "Sheet1";
+    private static final int SHARED_ROWS = 200;
+
+    private final HttpClient client = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+    private final URI base;
+    private final Path dir;
+    private final Map<String, ToolStats> stats = new ConcurrentHashMap<>();
+    private final ToolStats total = new ToolStats();
+    private volatile boolean measuring;
+    private volatile boolean stopped;
+
+    McpLoadGenerator(URI base, Path dir) {
+        this.base = base;
+        this.dir = dir;
+    }
+
+    public static void main(String[] args) throws Exception {
+        URI base = URI.create(System.getProperty("load.url", "http://localhost:8080"));
+        int sessions = Integer.getInteger("load.sessions", 16);
+        Duration duration = Duration.ofSeconds(Integer.getInteger("load.duration", 30));
+        Duration warmup = Duration.ofSeconds(Integer.getInteger("load.warmup", 5));
+        Path dir = Path.of(System.getProperty("load.dir", "target/load-files")).toAbsolutePath();
+        Files.createDirectories(dir);
+
+        McpLoadGenerator generator = new McpLoadGenerator(base, dir);
+        System.out.printf("Driving %s with %d sessions for %ds after a %ds warm-up%n", base, sessions, duration.toSeconds(),
+            warmup.toSeconds());
+        generator.run(sessions, warmup, duration);
+        generator.report(duration);
+    }
+
+    void run(int sessions, Duration warmup, Duration duration) throws Exception {
+        String shared = dir.resolve("shared.xlsx").toString();
+        try (Session setup = open()) {
+            setup.call("create_excel_workbook", Map.of("filepath", shared));
+            for (int row = 0; row < SHARED_ROWS; row++) {
+                setup.call("add_excel_row", Map.of("filepath", shared, "sheetName", SHARED_SHEET, "rowData",
+                    "EU,Widget," + row + "," + (row * 1.5)));
+            }
+        }
+
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<CompletableFuture<Void>> running = new ArrayList<>();
+            for (int i = 0; i < sessions; i++) {
+                String own = dir.resolve("session-" + i + ".xlsx").toString();
+                running.add(CompletableFuture.runAsync(() -> drive(shared, own), threads));
+            }
+            Thread.sleep(warmup.toMillis());
+            measuring = true;
+            Thread.sleep(duration.toMillis());
+            stopped = true;
+            CompletableFuture.allOf(running.toArray(CompletableFuture[]::new)).get(1, TimeUnit.MINUTES);
+        }
+    }
+
+    // One session: a closed loop of calls, each sent once the previous one was answered
+    private void drive(String shared, String own) {
+        try (Session session = open()) {
+            session.call("create_excel_workbook", Map.of("filepath", own));
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (!stopped) {
+                int pick = random.nextInt(10);
+                if (pick < 4) {
+                    session.call("read_excel_cell", Map.of("filepath", shared, "sheetName", SHARED_SHEET,
+                        "rowNum", random.nextInt(SHARED_ROWS), "colNum", random.nextInt(4)));
+                } else if (pick < 6) {
+                    int first = random.nextInt(1, SHARED_ROWS - 50);
+                    session.call("read_excel_range", Map.of("filepath", shared, "sheetName", SHARED_SHEET,
+                        "range", "A" + first + ":D" + (first + 49)));
+                } else if (pick < 8) {
+                    session.call("add_excel_row", Map.of("filepath", own, "sheetName", SHARED_SHEET,
+                        "rowData", "APAC,Gadget," + random.nextInt(1000)));
+                } else {
+                    session.call("get_excel_row_count", Map.of("filepath", own, "sheetName", SHARED_SHEET));
+                }
+            }
+        } catch (Exception e) {
+            if (!stopped) {
+                System.err.println("Session failed: " + e);
+            }
+        }
+    }
+
+    void report(Duration duration) {
+        System.out.printf("%-24s %10s %8s %10s %10s %10s %10s %10s%n", "Tool", "Calls", "Errors", "Calls/s", "p50 ms",
+            "p90 ms", "p99 ms", "p99.9 ms");
+        stats.entrySet().stream().sorted(Map.Entry.comparingByKey())
+            .forEach(entry -> print(entry.getKey(), entry.getValue(), duration));
+        print("total", total, duration);
+    }
+
+    private static void print(String name, ToolStats stats, Duration duration) {
+        Histogram latency = stats.latency;
+        System.out.printf(Locale.ROOT, "%-24s %10d %8d %10.1f %10.2f %10.2f %10.2f %10.2f%n", name, latency.getTotalCount(),
+            stats.errors.sum(), latency.getTotalCount() / (double) duration.toSeconds(), millis(latency.getValueAtPercentile(50)),
+            millis(latency.getValueAtPercentile(90)), millis(latency.getValueAtPercentile(99)), millis(latency.getValueAtPercentile(99.9)));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private Session open() throws Exception {
+        Session session = new Session();
+        session.connect();
+        return session;
+    }
+
+    // Latencies in nanoseconds with three significant digits, recorded by concurrent sessions
+    private static final class ToolStats {
+        final Histogram latency = new ConcurrentHistogram(3);
+        final LongAdder errors = new LongAdder();
+
+        void record(long nanos, boolean error) {
+            latency.recordValue(nanos);
+            if (error) {
+                errors.increment();
+            }
+        }
+    }
+
+    /**
+     * An MCP session over the SSE transport: requests are posted to the endpoint announced on the
+     * event stream, and their responses come back on that stream.
+     */
+    private final class Session implements AutoCloseable {
+
+        private final AtomicLong ids = new AtomicLong();
+        private final Map<Long, CompletableFuture<JsonNode>> pending = new ConcurrentHashMap<>();
+        private final CompletableFuture<URI> endpoint = new CompletableFuture<>();
+        private CompletableFuture<HttpResponse<Stream<String>>> stream;
+
+        void connect() throws Exception {
+            HttpRequest request = HttpRequest.newBuilder(base.resolve("/sse")).header("Accept", "text/event-stream").GET().build();
+            stream = client.sendAsync(request, HttpResponse.BodyHandlers.ofLines());
+            stream.thenAccept(response -> {
+                String event = "message";
+                StringBuilder data = new StringBuilder();
+                try (Stream<String> lines = response.body()) {
+                    for (String line : (Iterable<String>) lines::iterator) {
+                        if (line.startsWith("event:")) {
+                            event = line.substring(6).trim();
+                        } else if (line.startsWith("data:")) {
+                            data.append(line.substring(5).trim());
+                        } else if (line.isEmpty() && !data.isEmpty()) {
+                            dispatch(event, data.toString());
+                            event = "message";
+                            data.setLength(0);
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    // The stream was closed
+                }
+                endpoint.completeExceptionally(new IOException("Event stream closed"));
+                pending.values().forEach(call -> call.completeExceptionally(new IOException("Event stream closed")));
+            });
+            endpoint.get(30, TimeUnit.SECONDS);
+
+            ObjectNode params = JSON.createObjectNode();
+            params.put("protocolVersion", "2024-11-05");
+            params.putObject("capabilities");
+            params.putObject("clientInfo").put("name", "office-mcp-load-generator").put("version", "1.0");
+            request("initialize", params).get(30, TimeUnit.SECONDS);
+            ObjectNode initialized = JSON.createObjectNode().put("jsonrpc", "2.0").put("method", "notifications/initialized");
+            post(initialized);
+        }
+
+        void call(String tool, Map<String, Object> arguments) throws Exception {
+            ObjectNode params = JSON.createObjectNode().put("name", tool);
+            params.set("arguments", JSON.valueToTree(arguments));
+            long start = System.nanoTime();
+            JsonNode response = request("tools/call", params).get(1, TimeUnit.MINUTES);
+            long nanos = System.nanoTime() - start;
+            if (measuring && !stopped) {
+                boolean error = response.has("error") || response.path("result").path("isError").asBoolean();
+                stats.computeIfAbsent(tool, name -> new ToolStats()).record(nanos, error);
+                total.record(nanos, error);
+            }
+        }
+
+        private CompletableFuture<JsonNode> request(String method, JsonNode params) throws Exception {
+            long id = ids.incrementAndGet();
+            CompletableFuture<JsonNode> response = new CompletableFuture<>();
+            pending.put(id, response);
+            ObjectNode message = JSON.createObjectNode().put("jsonrpc", "2.0").put("id", id).put("method", method);
+            message.set("params", params);
+            post(message);
+            return response;
+        }
+
+        private void post(JsonNode message) throws Exception {
+            HttpRequest request = HttpRequest.newBuilder(endpoint.get())
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(JSON.writeValueAsString(message)))
+                .build();
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() >= 300) {
+                throw new IOException("POST " + request.uri() + " returned " + response.statusCode());
+            }
+        }
+
+        private void dispatch(String event, String data) {
+            if (event.equals("endpoint")) {
+                endpoint.complete(base.resolve(data));
+                return;
+            }
+            try {
+                JsonNode message = JSON.readTree(data);
+                CompletableFuture<JsonNode> call = message.has("id") ? pending.remove(message.get("id").asLong()) : null;
+                if (call != null) {
+                    call.complete(message);
+                }
+            } catch (IOException e) {
+                System.err.println("Unreadable message: " + data);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (stream != null) {
+                stream.thenAccept(response -> response.body().close());
+                stream.cancel(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package dev.lescoggi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.poi.xslf.usermodel.SlideLayout;
+import org.apache.poi.xslf.usermodel.XMLSlideShow;
+import org.apache.poi.xslf.usermodel.XSLFSlide;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class OfficeFileSummariesTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path files;
+    private OfficeFileSummaries summaries;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        files = Files.createDirectories(tempDir.resolve("files"));
+        writeDocument(files.resolve("contract.docx"), "Delivery terms", "The supplier ships within ten days.");
+        writeWorkbook(files.resolve("reports/prices.xlsx"));
+        writePresentation(files.resolve("reports/pitch.pptx"), "Quarterly review", "Outlook");
+        Files.writeString(files.resolve("~$contract.docx"), "lock file");
+        Files.writeString(files.resolve("broken.xlsx"), "not a workbook");
+        DocumentCache cache = new DocumentCache(new DocumentLockManager(), new DocumentSaver(false, true), Long.MAX_VALUE, 10,
+            false, Duration.ofHours(1), Duration.ofHours(1), 1000);
+        summaries = new OfficeFileSummaries(cache, files.toString(), tempDir.resolve("index").toString(), 4, 100);
+    }
+
+    @Test
+    void testSummarizesEveryFileInPathOrder() throws Exception {
+        OfficeFileSummaries.Result result = summaries.summarize(null, null, 0, 10, null);
+
+        assertEquals(List.of(
+            new OfficeFileSummaries.Summary("broken.xlsx", result.summaries().get(0).text()),
+            new OfficeFileSummaries.Summary("contract.docx", "2 paragraphs, starting \"Delivery terms\""),
+            new OfficeFileSummaries.Summary(Path.of("reports", "pitch.pptx").toString(), "2 slides: Quarterly review | Outlook"),
+            new OfficeFileSummaries.Summary(Path.of("reports", "prices.xlsx").toString(), "2 sheets: Prices (3 rows x 2 columns), Notes (empty)")),
+            result.summaries());
+        assertTrue(result.summaries().get(0).text().startsWith("unreadable: "), result.summaries().get(0).text());
+        assertEquals(4, result.totalFiles());
+        assertEquals(4, result.read());
+        assertEquals(1, summaries.stats().failures());
+    }
+
+    @Test
+    void testFiltersAndPages() throws Exception {
+        OfficeFileSummaries.Result excel = summaries.summarize(OfficeFileSummaries.Type.EXCEL, null, 1, 10, null);
+        assertEquals(2, excel.totalFiles());
+        assertEquals(List.of(Path.of("reports", "prices.xlsx").toString()),
+            excel.summaries().stream().map(OfficeFileSummaries.Summary::path).toList());
+
+        OfficeFileSummaries.Result reports = summaries.summarize(null, "reports/*", 0, 1, null);
+        assertEquals(2, reports.totalFiles());
+        assertEquals(Path.of("reports", "pitch.pptx").toString(), reports.summaries().get(0).path());
+    }
+
+    @Test
+    void testOnlyChangedFilesAreReadAgain() throws Exception {
+        summaries.summarize(null, null, 0, 10, null);
+
+        Path contract = files.resolve("contract.docx");
+        writeDocument(contract, "Payment terms");
+        Files.setLastModifiedTime(contract, FileTime.fromMillis(Files.getLastModifiedTime(contract).toMillis() + 2000));
+        OfficeFileSummaries.Result result = summaries.summarize(null, null, 0, 10, null);
+
+        assertEquals(1, result.read());
+        assertEquals("1 paragraph, starting \"Payment terms\"", result.summaries().get(1).text());
+        assertEquals(3, summaries.stats().hits());
+    }
+
+    @Test
+    void testListenerReceivesBatchesBeforeTheLast() throws Exception {
+        for (int i = 0; i < 250; i++) {
+            writeDocument(files.resolve(String.format("notes/note%03d.docx", i)), "Note " + i);
+        }
+        List<Integer> done = new ArrayList<>();
+
+        OfficeFileSummaries.Result result = summaries.summarize(OfficeFileSummaries.Type.WORD, "notes/*", 0, 1000,
+            (page, count, total) -> {
+                assertEquals(100, page.size());
+                assertEquals(250, total);
+                done.add(count);
+            });
+
+        assertEquals(List.of(100, 200), done);
+        assertEquals(250, result.summaries().size());
+        assertEquals("1 paragraph, starting \"Note 249\"", result.summaries().get(249).text());
+    }
+
+    private static void writeDocument(Path file, String... paragraphs) throws Exception {
+        Files.createDirectories(file.getParent());
+        try (XWPFDocument document = new XWPFDocument(); OutputStream out = Files.newOutputStream(file)) {
+            for (String paragraph : paragraphs) {
+                document.createParagraph().createRun().setText(paragraph);
+            }
+            document.write(out);
+        }
+    }
+
+    private static void writeWorkbook(Path file) throws Exception {
+        Files.createDirectories(file.getParent());
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+            XSSFSheet sheet = workbook.createSheet("Prices");
+            for (int i = 0; i < 3; i++) {
+                sheet.createRow(i).createCell(0).setCellValue("item " + i);
+                sheet.getRow(i).createCell(1).setCellValue(i);
+            }
+            workbook.createSheet("Notes");
+            workbook.write(out);
+        }
+    }
+
+    private static void writePresentation(Path file, String... titles) throws Exception {
+        Files.createDirectories(file.getParent());
+        try (XMLSlideShow presentation = new XMLSlideShow(); OutputStream out = Files.newOutputStream(file)) {
+            var layout = presentation.getSlideMasters().get(0).getLayout(SlideLayout.TITLE_ONLY);
+            for (String title : titles) {
+                XSLFSlide slide = presentation.createSlide(layout);
+                slide.getPlaceholder(0).setText(title);
+            }
+            presentation.write(out);
+        }
+    }
+}
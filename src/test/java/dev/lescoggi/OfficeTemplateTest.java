@@ -0,0 +1,196 @@
+package dev.lescoggi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.xslf.usermodel.XMLSlideShow;
+import org.apache.poi.xslf.usermodel.XSLFShape;
+import org.apache.poi.xslf.usermodel.XSLFSlide;
+import org.apache.poi.xslf.usermodel.XSLFTextShape;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.quarkus.qute.Engine;
+import io.quarkus.qute.HtmlEscaper;
+import io.quarkus.qute.ReflectionValueResolver;
+import io.quarkus.qute.ValueResolver;
+
+public class OfficeTemplateTest {
+
+    private static final ReflectionValueResolver REFLECTION = new ReflectionValueResolver();
+
+    // Outside of Quarkus the helpers of the templates are resolved by reflection instead of generated resolvers
+    static final Engine QUTE = Engine.builder().addDefaults()
+        .addValueResolver(ValueResolver.builder()
+            .appliesTo(context -> context.getBase() != null && context.getBase().getClass().getEnclosingClass() == OfficeTemplate.class
+                && REFLECTION.appliesTo(context))
+            .resolveAsync(REFLECTION::resolve).build())
+        .addResultMapper(new HtmlEscaper(List.of("text/xml"))).strictRendering(true).build();
+
+    private static final Engine ENGINE = OfficeTemplate.engine(QUTE);
+
+    private static final List<Map<String, Object>> LINES = List.of(
+        Map.of("item", "Apples", "amount", 12.5), Map.of("item", "Pears", "amount", 2), Map.of("item", "Plums", "amount", 3.25));
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testDocumentWithSplitTagsConditionsAndRepeatedRows() throws Exception {
+        Path file = tempDir.resolve("letter.docx");
+        try (XWPFDocument document = new XWPFDocument(); OutputStream out = Files.newOutputStream(file)) {
+            XWPFParagraph greeting = document.createParagraph();
+            greeting.createRun().setText("Dear {cust");
+            greeting.createRun().setText("omer.na");
+            greeting.getRuns().get(1).setBold(true);
+            greeting.createRun().setText("me},");
+            document.createParagraph().createRun().setText("{#if vip}");
+            document.createParagraph().createRun().setText("Thank you for being a VIP.");
+            document.createParagraph().createRun().setText("{/if}");
+            XWPFTable table = document.createTable(3, 2);
+            table.getRow(0).getCell(0).setText("Item");
+            table.getRow(0).getCell(1).setText("Amount");
+            table.getRow(1).getCell(0).setText("{#for line in lines}{line.item}");
+            table.getRow(1).getCell(1).setText("{line.amount}{/for}");
+            table.getRow(2).getCell(0).setText("Total");
+            table.getRow(2).getCell(1).setText("{total}");
+            document.createParagraph().createRun().setText("Kind regards :}");
+            document.write(out);
+        }
+        OfficeTemplate template = OfficeTemplate.compile(ENGINE, file);
+
+        try (XWPFDocument document = new XWPFDocument(new ByteArrayInputStream(render(template,
+                Map.of("customer", Map.of("name", "Ada & <Co>"), "vip", false, "lines", LINES, "total", 17.75))))) {
+            List<String> paragraphs = document.getParagraphs().stream().map(XWPFParagraph::getText).toList();
+            assertEquals("Dear Ada & <Co>,", paragraphs.get(0));
+            assertFalse(paragraphs.contains("Thank you for being a VIP."), "false condition drops its paragraphs");
+            assertTrue(paragraphs.contains("Kind regards :}"), "braces outside of tags stay as they are");
+            XWPFTable table = document.getTables().get(0);
+            assertEquals(5, table.getNumberOfRows());
+            assertEquals("Apples", table.getRow(1).getCell(0).getText());
+            assertEquals("2", table.getRow(2).getCell(1).getText());
+            assertEquals("Plums", table.getRow(3).getCell(0).getText());
+            assertEquals("17.75", table.getRow(4).getCell(1).getText());
+        }
+        try (XWPFDocument document = new XWPFDocument(new ByteArrayInputStream(render(template,
+                Map.of("customer", Map.of("name", "Bo"), "vip", true, "lines", List.of(), "total", 0))))) {
+            assertTrue(document.getParagraphs().stream().anyMatch(p -> p.getText().equals("Thank you for being a VIP.")));
+            assertEquals(2, document.getTables().get(0).getNumberOfRows(), "an empty list drops the row");
+        }
+
+        IllegalArgumentException missing = assertThrows(IllegalArgumentException.class,
+            () -> render(template, Map.of("vip", true, "lines", List.of(), "total", 0)));
+        assertTrue(missing.getMessage().contains("customer"), missing.getMessage());
+    }
+
+    @Test
+    void testPresentationWithRepeatedSlide() throws Exception {
+        Path file = tempDir.resolve("deck.pptx");
+        try (XMLSlideShow show = new XMLSlideShow(); OutputStream out = Files.newOutputStream(file)) {
+            show.createSlide().createTextBox().setText("Report {title}");
+            XSLFSlide region = show.createSlide();
+            region.createTextBox().setText("{#for region in regions}");
+            region.createTextBox().setText("{region.name}: {region.total}");
+            show.createSlide().createTextBox().setText("End");
+            show.write(out);
+        }
+        OfficeTemplate template = OfficeTemplate.compile(ENGINE, file);
+
+        byte[] rendered = render(template, Map.of("title", "Q3", "regions",
+            List.of(Map.of("name", "North", "total", 1), Map.of("name", "South", "total", 2), Map.of("name", "East", "total", 3))));
+        try (XMLSlideShow show = new XMLSlideShow(new ByteArrayInputStream(rendered))) {
+            List<String> texts = show.getSlides().stream().map(OfficeTemplateTest::text).toList();
+            assertEquals(List.of("Report Q3", "North: 1", "South: 2", "East: 3", "End"), texts);
+            assertEquals(1, show.getSlides().get(2).getShapes().size(), "the text box of the loop is dropped");
+        }
+        try (XMLSlideShow show = new XMLSlideShow(new ByteArrayInputStream(render(template, Map.of("title", "Q4", "regions", List.of()))))) {
+            assertEquals(List.of("Report Q4", "End"), show.getSlides().stream().map(OfficeTemplateTest::text).toList());
+        }
+    }
+
+    @Test
+    void testWorkbookWithTypedCellsAndRepeatedRows() throws Exception {
+        Path file = tempDir.resolve("invoice.xlsx");
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+            XSSFSheet sheet = workbook.createSheet("Invoice");
+            sheet.createRow(0).createCell(0).setCellValue("Invoice {number}");
+            sheet.createRow(1).createCell(0).setCellValue("Item");
+            sheet.getRow(1).createCell(1).setCellValue("Amount");
+            sheet.createRow(2).createCell(0).setCellValue("{#for line in lines}{line.item}");
+            sheet.getRow(2).createCell(1).setCellValue("{line.amount}{/for}");
+            sheet.createRow(3).createCell(0).setCellValue("Total");
+            sheet.getRow(3).createCell(1).setCellValue("{total}");
+            sheet.createRow(4).createCell(0).setCellValue("Paid");
+            sheet.getRow(4).createCell(1).setCellValue("{paid}");
+            workbook.createSheet("Notes").createRow(0).createCell(0).setCellValue("Item");
+            workbook.write(out);
+        }
+        OfficeTemplate template = OfficeTemplate.compile(ENGINE, file);
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(render(template,
+                Map.of("number", 7, "lines", LINES, "total", 17.75, "paid", true))))) {
+            XSSFSheet sheet = workbook.getSheet("Invoice");
+            assertEquals("Invoice 7", sheet.getRow(0).getCell(0).getStringCellValue());
+            assertEquals("Apples", sheet.getRow(2).getCell(0).getStringCellValue());
+            assertEquals(CellType.NUMERIC, sheet.getRow(2).getCell(1).getCellType());
+            assertEquals(2, sheet.getRow(3).getCell(1).getNumericCellValue());
+            assertEquals("Plums", sheet.getRow(4).getCell(0).getStringCellValue());
+            XSSFRow total = sheet.getRow(5);
+            assertEquals("Total", total.getCell(0).getStringCellValue());
+            assertEquals(17.75, total.getCell(1).getNumericCellValue());
+            assertTrue(sheet.getRow(6).getCell(1).getBooleanCellValue());
+            assertEquals("B7", sheet.getRow(6).getCell(1).getAddress().formatAsString());
+            assertEquals("Item", workbook.getSheet("Notes").getRow(0).getCell(0).getStringCellValue(), "other sheets are copied");
+        }
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(render(template,
+                Map.of("number", 8, "lines", List.of(), "total", 0, "paid", false))))) {
+            XSSFSheet sheet = workbook.getSheet("Invoice");
+            assertEquals("Total", sheet.getRow(2).getCell(0).getStringCellValue(), "rows below an empty list move up");
+            assertFalse(sheet.getRow(3).getCell(1).getBooleanCellValue());
+        }
+    }
+
+    @Test
+    void testRejectsInvalidTemplates() throws Exception {
+        Path file = tempDir.resolve("broken.docx");
+        try (XWPFDocument document = new XWPFDocument(); OutputStream out = Files.newOutputStream(file)) {
+            document.createParagraph().createRun().setText("{#if open}");
+            document.write(out);
+        }
+        assertThrows(IllegalArgumentException.class, () -> OfficeTemplate.compile(ENGINE, file));
+        assertThrows(IllegalArgumentException.class, () -> OfficeTemplate.compile(ENGINE, tempDir.resolve("notes.txt")));
+    }
+
+    private static byte[] render(OfficeTemplate template, Map<String, Object> data) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        template.render(data, out);
+        return out.toByteArray();
+    }
+
+    private static String text(XSLFSlide slide) {
+        StringBuilder text = new StringBuilder();
+        for (XSLFShape shape : slide.getShapes()) {
+            if (shape instanceof XSLFTextShape textShape && !textShape.getText().isBlank()) {
+                text.append(text.isEmpty() ? "" : " | ").append(textShape.getText());
+            }
+        }
+        return text.toString();
+    }
+}
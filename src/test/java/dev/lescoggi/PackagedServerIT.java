@@ -0,0 +1,110 @@
+package dev.lescoggi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Runs the packaged server the way clients launch it and talks MCP to it over stdio: the native
+ * executable when one was built, otherwise the runner jar, with the AppCDS archive when
+ * {@code appcds.archive} names one. Reports the time from launching the process to the first
+ * response, the median of {@code startup.runs} launches, and checks that every tool works in the
+ * packaged form. Run with {@code ./mvnw verify -Pnative}, {@code ./mvnw verify -Pappcds} or
+ * {@code ./mvnw verify -DskipITs=false} for the plain jar.
+ */
+public class PackagedServerIT {
+
+    private static final int STARTUP_RUNS = Integer.getInteger("startup.runs", 5);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testColdStartToFirstResponse() throws Exception {
+        long[] initialized = new long[STARTUP_RUNS];
+        long[] firstCall = new long[STARTUP_RUNS];
+        for (int run = 0; run < STARTUP_RUNS; run++) {
+            Path dir = Files.createDirectories(tempDir.resolve("startup-" + run));
+            try (StdioMcpClient client = StdioMcpClient.start(command(dir), dir, dir.resolve("stderr.log"))) {
+                client.initialize();
+                initialized[run] = System.nanoTime() - client.startNanos();
+                var result = client.callTool("create_excel_workbook", Map.of("filepath", dir.resolve("first.xlsx").toString()));
+                firstCall[run] = System.nanoTime() - client.startNanos();
+                assertFalse(result.path("isError").asBoolean(), StdioMcpClient.text(result));
+            }
+        }
+        System.out.printf("%s: initialize answered after %d ms, first tool call after %d ms (median of %d launches, fastest %d ms)%n",
+            mode(), medianMillis(initialized), medianMillis(firstCall), STARTUP_RUNS, Arrays.stream(firstCall).min().getAsLong() / 1_000_000);
+    }
+
+    @Test
+    void testEveryToolWorksInThePackagedServer() throws Exception {
+        try (StdioMcpClient client = StdioMcpClient.start(command(tempDir), tempDir, tempDir.resolve("stderr.log"))) {
+            client.initialize();
+            assertEquals(List.of(), EveryToolScenario.run(client, tempDir));
+            assertEquals(List.of(), List.copyOf(EveryToolScenario.uncovered(client, tempDir)), "tools missing from EveryToolScenario");
+        }
+    }
+
+    /**
+     * Command that launches the packaged server with its files and search index in {@code dir}.
+     */
+    static List<String> command(Path dir) {
+        List<String> command = new ArrayList<>();
+        Path nativeImage = nativeImage();
+        if (nativeImage != null) {
+            command.add(nativeImage.toAbsolutePath().toString());
+            command.addAll(serverProperties(dir));
+            return command;
+        }
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        Path archive = appCdsArchive();
+        if (archive != null) {
+            command.add("-XX:SharedArchiveFile=" + archive.toAbsolutePath());
+        }
+        command.addAll(serverProperties(dir));
+        command.add("-jar");
+        command.add(runnerJar().toAbsolutePath().toString());
+        return command;
+    }
+
+    static List<String> serverProperties(Path dir) {
+        return List.of("-Doffice.files.path=" + dir.toAbsolutePath(), "-Doffice.search.index-path=" + dir.resolve("index").toAbsolutePath());
+    }
+
+    private static Path runnerJar() {
+        return Path.of(System.getProperty("runner.jar.path", "target/office-mcp-server-0.0.1-SNAPSHOT-runner.jar"));
+    }
+
+    private static Path nativeImage() {
+        Path nativeImage = Path.of(System.getProperty("native.image.path", ""));
+        return Files.isRegularFile(nativeImage) && Files.isExecutable(nativeImage) ? nativeImage : null;
+    }
+
+    private static Path appCdsArchive() {
+        String archive = System.getProperty("appcds.archive", "");
+        return !archive.isBlank() && Files.isRegularFile(Path.of(archive)) ? Path.of(archive) : null;
+    }
+
+    private static String mode() {
+        if (nativeImage() != null) {
+            return "Native executable";
+        }
+        return appCdsArchive() != null ? "JVM with AppCDS" : "JVM";
+    }
+
+    private static long medianMillis(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2] / 1_000_000;
+    }
+}
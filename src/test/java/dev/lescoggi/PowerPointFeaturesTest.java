@@ -1,5 +1,7 @@
 package dev.lescoggi;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -12,13 +14,17 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import io.quarkiverse.mcp.server.TextContent;
+import io.quarkiverse.mcp.server.ToolResponse;
 import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
 
 @QuarkusTest
 public class PowerPointFeaturesTest {
 
     private File tempDir;
-    private OfficeMcpServerPowerPointFeatures powerPointFeatures;
+    @Inject
+    OfficeMcpServerPowerPointFeatures powerPointFeatures;
     private String presentationPath;
 
     @BeforeEach
@@ -27,8 +33,7 @@ public class PowerPointFeaturesTest {
         String tempDirPath = System.getProperty("java.io.tmpdir");
         tempDir = new File(tempDirPath, "ppt-test-" + UUID.randomUUID());
         tempDir.mkdirs();
-        
-        powerPointFeatures = new OfficeMcpServerPowerPointFeatures();
+
         presentationPath = tempDir.getAbsolutePath() + "/test.pptx";
     }
     
@@ -99,4 +104,60 @@ public class PowerPointFeaturesTest {
         // Get slide count
         assertNotNull(powerPointFeatures.getPowerPointSlideCount(presentationPath));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testSlideTitlesAreTheSameFromDiskAndFromCache() throws Exception {
+        powerPointFeatures.createPowerPointPresentation(presentationPath);
+        powerPointFeatures.addSlideToPowerPoint(presentationPath);
+        powerPointFeatures.addTextToPowerPointSlide(presentationPath, 0, "Text box, not a title");
+        powerPointFeatures.addSlideToPowerPoint(presentationPath);
+
+        String cached = text(powerPointFeatures.readSlideTitlesFromPowerPoint(presentationPath));
+        String cachedCount = text(powerPointFeatures.getPowerPointSlideCount(presentationPath));
+        powerPointFeatures.documentCache.invalidate(presentationPath);
+        String streamed = text(powerPointFeatures.readSlideTitlesFromPowerPoint(presentationPath));
+        String streamedCount = text(powerPointFeatures.getPowerPointSlideCount(presentationPath));
+
+        assertEquals("Presentation has 2 slides.\nSlide 0: No title\nSlide 1: No title\n", streamed);
+        assertEquals(streamed, cached);
+        assertEquals("PowerPoint presentation at " + presentationPath + " has 2 slides.", streamedCount);
+        assertEquals(streamedCount, cachedCount);
+    }
+
+    @Test
+    void testBatchPowerPointOperations() throws Exception {
+        powerPointFeatures.createPowerPointPresentation(presentationPath);
+        StringBuilder operations = new StringBuilder("[");
+        for (int i = 0; i < 20; i++) {
+            operations.append("{\"op\": \"add_slide\"}, {\"op\": \"add_text\", \"slide\": ").append(i)
+                .append(", \"text\": \"Text ").append(i).append("\"}, ");
+        }
+        operations.append("{\"op\": \"slide_count\"}]");
+
+        ToolResponse response = powerPointFeatures.batchPowerPointOperations(presentationPath, operations.toString());
+
+        assertFalse(response.isError());
+        assertEquals("1. add_slide: Slide 0 added.", text(response));
+        assertEquals("41. slide_count: Presentation has 20 slides.", ((TextContent) response.content().get(40)).text());
+        powerPointFeatures.documentCache.invalidate(presentationPath);
+        assertEquals("PowerPoint presentation at " + presentationPath + " has 20 slides.",
+            text(powerPointFeatures.getPowerPointSlideCount(presentationPath)));
+    }
+
+    @Test
+    void testFailedPowerPointBatchSavesNothing() throws Exception {
+        powerPointFeatures.createPowerPointPresentation(presentationPath);
+
+        ToolResponse response = powerPointFeatures.batchPowerPointOperations(presentationPath,
+            "[{\"op\": \"add_slide\"}, {\"op\": \"add_text\", \"slide\": 1, \"text\": \"Too far\"}]");
+
+        assertTrue(response.isError());
+        assertTrue(text(response).contains("Operation 2 (add_text) failed: Slide index 1 is out of bounds."), text(response));
+        assertEquals("PowerPoint presentation at " + presentationPath + " has 0 slides.",
+            text(powerPointFeatures.getPowerPointSlideCount(presentationPath)));
+    }
+
+    private static String text(ToolResponse response) {
+        return ((TextContent) response.content().get(0)).text();
+    }
+}
@@ -0,0 +1,157 @@
+package dev.lescoggi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.List;
+
+import org.apache.poi.xslf.usermodel.XMLSlideShow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class SearchIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path files;
+    private SearchIndex index;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        files = Files.createDirectories(tempDir.resolve("files"));
+        writeDocument(files.resolve("contract.docx"), "Delivery terms", "The supplier ships the Widgets within ten days.");
+        writeWorkbook(files.resolve("reports/prices.xlsx"), "Price list", "Blue widgets", "42");
+        writePresentation(files.resolve("reports/pitch.pptx"), "Quarterly review", "Widgets sold out twice");
+        Files.writeString(files.resolve("~$contract.docx"), "lock file");
+        index = open(8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        index.shutdown();
+    }
+
+    @Test
+    void testFindsParagraphsCellsAndSlides() throws Exception {
+        SearchIndex.Result result = index.search("widgets", 10, false);
+
+        assertEquals(3, result.totalHits());
+        assertEquals(List.of(
+            new SearchIndex.Hit("contract.docx", "paragraph 2 (offset 15)", "The supplier ships the Widgets within ten days."),
+            new SearchIndex.Hit(Path.of("reports", "pitch.pptx").toString(), "slide 1", "Quarterly review Widgets sold out twice"),
+            new SearchIndex.Hit(Path.of("reports", "prices.xlsx").toString(), "'Price list'!A1", "Blue widgets")),
+            result.hits());
+        assertEquals(1, index.search("SUPPLIER ten", 10, false).totalHits());
+        assertEquals(0, index.search("supplier widget", 10, false).totalHits());
+        assertEquals(1, index.search("widgets", 1, false).hits().size());
+        assertThrows(IllegalArgumentException.class, () -> index.search(" -- ", 10, false));
+    }
+
+    @Test
+    void testRefreshIndexesOnlyChangedFiles() throws Exception {
+        index.search("widgets", 10, false);
+        assertEquals(3, index.stats().extractedFiles());
+
+        Path contract = files.resolve("contract.docx");
+        writeDocument(contract, "Payment terms", "Invoices are due after thirty days.");
+        Files.setLastModifiedTime(contract, FileTime.fromMillis(Files.getLastModifiedTime(contract).toMillis() + 2000));
+        Files.delete(files.resolve("reports/pitch.pptx"));
+
+        SearchIndex.Result result = index.search("widgets", 10, true);
+
+        assertEquals(4, index.stats().extractedFiles());
+        assertEquals(1, result.totalHits());
+        assertEquals(Path.of("reports", "prices.xlsx").toString(), result.hits().get(0).path());
+        assertEquals(1, index.search("invoices", 10, false).totalHits());
+        assertEquals(2, index.stats().documents());
+    }
+
+    @Test
+    void testIndexIsReusedAfterRestart() throws Exception {
+        index.search("widgets", 10, false);
+        index.shutdown();
+
+        index = open(8);
+
+        assertEquals(3, index.search("widgets", 10, false).totalHits());
+        assertEquals(0, index.stats().extractedFiles());
+    }
+
+    @Test
+    void testSegmentsAreMerged() throws Exception {
+        index.shutdown();
+        index = open(1);
+        index.search("widgets", 10, false);
+        for (int i = 0; i < 3; i++) {
+            writeDocument(files.resolve("note" + i + ".docx"), "Note " + i, "More widgets");
+            if (i > 0) {
+                Files.delete(files.resolve("note" + (i - 1) + ".docx"));
+            }
+            index.refresh();
+        }
+
+        assertEquals(1, index.stats().segments());
+        assertEquals(4, index.stats().documents());
+        SearchIndex.Result result = index.search("widgets", 10, false);
+        assertEquals(List.of("contract.docx", "note2.docx", Path.of("reports", "pitch.pptx").toString(),
+                Path.of("reports", "prices.xlsx").toString()),
+            result.hits().stream().map(SearchIndex.Hit::path).toList());
+        try (var segments = Files.list(tempDir.resolve("index"))) {
+            assertEquals(1, segments.count());
+        }
+    }
+
+    @Test
+    void testSnippetIsCutAroundTheFirstMatch() {
+        String text = "a ".repeat(200) + "needle " + "b ".repeat(200);
+
+        String snippet = SearchIndex.snippet(text, List.of("needle"));
+
+        assertTrue(snippet.startsWith("…") && snippet.endsWith("…"), snippet);
+        assertTrue(snippet.contains("needle"), snippet);
+    }
+
+    private SearchIndex open(int maxSegments) {
+        return new SearchIndex(files.toString(), tempDir.resolve("index").toString(), Duration.ZERO, 2, maxSegments);
+    }
+
+    private static void writeDocument(Path file, String... paragraphs) throws Exception {
+        try (XWPFDocument document = new XWPFDocument(); OutputStream out = Files.newOutputStream(file)) {
+            for (String paragraph : paragraphs) {
+                document.createParagraph().createRun().setText(paragraph);
+            }
+            document.write(out);
+        }
+    }
+
+    private static void writeWorkbook(Path file, String sheetName, String... values) throws Exception {
+        Files.createDirectories(file.getParent());
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+            XSSFSheet sheet = workbook.createSheet(sheetName);
+            for (int i = 0; i < values.length; i++) {
+                sheet.createRow(i).createCell(0).setCellValue(values[i]);
+            }
+            workbook.write(out);
+        }
+    }
+
+    private static void writePresentation(Path file, String... lines) throws Exception {
+        Files.createDirectories(file.getParent());
+        try (XMLSlideShow presentation = new XMLSlideShow(); OutputStream out = Files.newOutputStream(file)) {
+            presentation.createSlide().createTextBox().setText(String.join("\n", lines));
+            presentation.write(out);
+        }
+    }
+}
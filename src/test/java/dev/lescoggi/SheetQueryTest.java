@@ -0,0 +1,103 @@
+package dev.lescoggi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.FileOutputStream;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class SheetQueryTest {
+
+    @TempDir
+    Path tempDir;
+
+    private SheetSnapshot snapshot;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Path file = tempDir.resolve("sales.xlsx");
+        Object[][] rows = {
+            { "Region", "Product", "Amount", "Order date" },
+            { "EU", "Desk", 120.5, "2024-01-03" },
+            { "US", "Chair", 80, "2024-01-04" },
+            { "EU", "Chair", 40, null },
+            { "APAC", "Desk", "75", "2024-02-01" },
+            { "eu", null, 10, "2024-02-02" },
+        };
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); FileOutputStream out = new FileOutputStream(file.toFile())) {
+            XSSFSheet sheet = workbook.createSheet("Sales");
+            for (int r = 0; r < rows.length; r++) {
+                Row row = sheet.createRow(r);
+                for (int c = 0; c < rows[r].length; c++) {
+                    if (rows[r][c] instanceof Number number) {
+                        row.createCell(c).setCellValue(number.doubleValue());
+                    } else if (rows[r][c] != null) {
+                        row.createCell(c).setCellValue((String) rows[r][c]);
+                    }
+                }
+            }
+            workbook.write(out);
+        }
+        snapshot = SheetSnapshot.load(file, "Sales", true);
+    }
+
+    @Test
+    void testLoadsColumns() throws Exception {
+        assertEquals(5, snapshot.rowCount());
+        assertEquals(4, snapshot.rowNum(3));
+        SheetSnapshot.Column amount = snapshot.column("amount");
+        assertEquals("C", amount.letter());
+        // Text that is a number is stored as a number
+        assertEquals(75, amount.number(3));
+        assertNull(snapshot.column("Product").text(4));
+        assertNull(SheetSnapshot.load(tempDir.resolve("sales.xlsx"), "Missing", true));
+    }
+
+    @Test
+    void testAggregatesGroups() {
+        SheetQuery.Table table = SheetQuery.parse(snapshot, null, "Region", "count(*), sum(Amount), avg(C), min(Amount), max(Amount)").aggregate(10);
+        assertEquals(List.of("Region", "count(*)", "sum(Amount)", "avg(Amount)", "min(Amount)", "max(Amount)"), table.header());
+        // Text is grouped ignoring case, like Excel compares it
+        assertEquals(List.of(
+            List.of("APAC", "1", "75", "75", "75", "75"),
+            List.of("EU", "3", "170.5", "56.833333333333336", "10", "120.5"),
+            List.of("US", "1", "80", "80", "80", "80")), table.rows());
+        assertEquals(5, table.matched());
+    }
+
+    @Test
+    void testFilters() {
+        assertEquals(List.of(List.of("2", "EU", "120.5"), List.of("4", "EU", "40")),
+            SheetQuery.parse(snapshot, "Region = 'EU' and Amount >= 40", null, null)
+                .filter(SheetQuery.columns(snapshot, "Region, Amount"), 10).rows());
+        assertEquals(List.of(List.of("4", "Chair")),
+            SheetQuery.parse(snapshot, "\"Order date\" = ''", null, null).filter(SheetQuery.columns(snapshot, "B"), 10).rows());
+        assertEquals("2", SheetQuery.parse(snapshot, "Product in ('desk') and Amount != 10", null, "count(*)").aggregate(10).rows().get(0).get(0));
+        assertEquals("2", SheetQuery.parse(snapshot, "Product contains 'ai'", null, null).aggregate(10).rows().get(0).get(0));
+        assertEquals("0", SheetQuery.parse(snapshot, "Amount > 1000", null, "count(*)").aggregate(10).rows().get(0).get(0));
+    }
+
+    @Test
+    void testLimitKeepsMatchedCount() {
+        SheetQuery.Table table = SheetQuery.parse(snapshot, "Amount > 0", null, null).filter(List.of(), 2);
+        assertEquals(2, table.rows().size());
+        assertEquals(5, table.matched());
+    }
+
+    @Test
+    void testRejectsInvalidQueries() {
+        assertThrows(IllegalArgumentException.class, () -> SheetQuery.parse(snapshot, "Price > 1", null, null));
+        assertThrows(IllegalArgumentException.class, () -> SheetQuery.parse(snapshot, "Amount >", null, null));
+        assertThrows(IllegalArgumentException.class, () -> SheetQuery.parse(snapshot, "Amount > 1 or Amount < 0", null, null));
+        assertThrows(IllegalArgumentException.class, () -> SheetQuery.parse(snapshot, null, null, "median(Amount)"));
+    }
+}
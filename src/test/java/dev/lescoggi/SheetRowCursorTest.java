@@ -0,0 +1,102 @@
+package dev.lescoggi;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.FileOutputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class SheetRowCursorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path workbookPath;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        workbookPath = tempDir.resolve("cursor.xlsx");
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); FileOutputStream out = new FileOutputStream(workbookPath.toFile())) {
+            XSSFSheet sheet = workbook.createSheet("Data");
+            sheet.createRow(0).createCell(0).setCellValue("Header");
+            sheet.getRow(0).createCell(2).setCellValue(42);
+            // Row 1 is missing on purpose
+            sheet.createRow(2).createCell(1).setCellValue(true);
+            sheet.createRow(3).createCell(3).setCellValue("Last");
+            workbook.write(out);
+        }
+    }
+
+    @Test
+    void testResumesWhereThePreviousCallStopped() throws Exception {
+        try (SheetRowCursor cursor = SheetRowCursor.open(workbookPath, "Data")) {
+            SheetRange range = SheetRange.parse("A1:C");
+            SheetRowCursor.SheetRow row = cursor.next(range.firstRow(), range.lastRow(), range.firstCol(), range.lastCol());
+            assertEquals(0, row.rowNum());
+            assertArrayEquals(new String[] { "Header", null, "42" }, row.values());
+            row = cursor.next(range.firstRow(), range.lastRow(), range.firstCol(), range.lastCol());
+            assertEquals(2, row.rowNum());
+            assertArrayEquals(new String[] { null, "TRUE", null }, row.values());
+            row = cursor.next(range.firstRow(), range.lastRow(), range.firstCol(), range.lastCol());
+            assertArrayEquals(new String[] { null, null, null }, row.values());
+            assertNull(cursor.next(range.firstRow(), range.lastRow(), range.firstCol(), range.lastCol()));
+        }
+    }
+
+    @Test
+    void testSkipsRowsAndColumnsOutsideTheRange() throws Exception {
+        try (SheetRowCursor cursor = SheetRowCursor.open(workbookPath, "Data")) {
+            SheetRange range = SheetRange.parse("B2:4");
+            SheetRowCursor.SheetRow row = cursor.next(range.firstRow(), range.lastRow(), range.firstCol(), range.lastCol());
+            assertEquals(2, row.rowNum());
+            assertArrayEquals(new String[] { "TRUE" }, row.values());
+            row = cursor.next(range.firstRow(), range.lastRow(), range.firstCol(), range.lastCol());
+            assertArrayEquals(new String[] { null, null, "Last" }, row.values());
+        }
+        assertNull(SheetRowCursor.open(workbookPath, "Missing"));
+    }
+
+    @Test
+    void testParseRange() {
+        assertEquals(new SheetRange(2, 2, 2, 2), SheetRange.parse("C3"));
+        assertEquals(new SheetRange(0, 99, 0, 3), SheetRange.parse("$A$1:$D$100"));
+        assertEquals(new SheetRange(0, SheetRowCursor.LAST_ROW, 1, 3), SheetRange.parse("B:D"));
+        assertEquals(new SheetRange(1, 9, 0, SheetRowCursor.LAST_COLUMN), SheetRange.parse("2:10"));
+        assertEquals(SheetRange.WHOLE_SHEET, SheetRange.parse(" "));
+        assertThrows(IllegalArgumentException.class, () -> SheetRange.parse("D1:A1"));
+        assertThrows(IllegalArgumentException.class, () -> SheetRange.parse("A0"));
+        assertThrows(IllegalArgumentException.class, () -> SheetRange.parse("A1:B2:C3"));
+    }
+
+    @Test
+    void testCursorStoreIsBounded() throws Exception {
+        RangeCursorStore store = new RangeCursorStore(2, Duration.ofMinutes(5));
+        String first = store.put(cursor());
+        String second = store.put(cursor());
+        String third = store.put(cursor());
+        assertEquals(2, store.size());
+        assertNull(store.take(first));
+        RangeCursorStore.RangeCursor taken = store.take(second);
+        assertNotNull(taken);
+        RangeCursorStore.close(taken);
+        assertNotNull(store.take(third));
+        store.shutdown();
+
+        RangeCursorStore expiring = new RangeCursorStore(2, Duration.ZERO);
+        assertNull(expiring.take(expiring.put(cursor())));
+    }
+
+    private RangeCursorStore.RangeCursor cursor() throws Exception {
+        return new RangeCursorStore.RangeCursor(workbookPath, "Data", SheetRange.WHOLE_SHEET, SheetRowCursor.open(workbookPath, "Data"));
+    }
+}
@@ -0,0 +1,168 @@
+package dev.lescoggi;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Talks MCP to a server process over its stdin and stdout, one JSON-RPC message per line. Requests
+ * may be pipelined: {@link #send} returns as soon as the request is written and its future
+ * completes when the response with the same id is read.
+ */
+final class StdioMcpClient implements AutoCloseable {
+
+    static final ObjectMapper JSON = new ObjectMapper();
+
+    private final Process process;
+    private final long startNanos;
+    private final OutputStream stdin;
+    private final AtomicLong ids = new AtomicLong();
+    private final Map<Long, CompletableFuture<JsonNode>> pending = new ConcurrentHashMap<>();
+    private final Thread reader;
+
+    private StdioMcpClient(Process process, long startNanos) {
+        this.process = process;
+        this.startNanos = startNanos;
+        this.stdin = process.getOutputStream();
+        this.reader = Thread.ofPlatform().daemon().name("mcp-stdout-reader").start(this::read);
+    }
+
+    /**
+     * Starts {@code command} in {@code directory}; the standard error of the server goes to
+     * {@code stderr}.
+     */
+    static StdioMcpClient start(List<String> command, Path directory, Path stderr) throws IOException {
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+            .directory(directory.toFile())
+            .redirectError(stderr.toFile())
+            .start();
+        return new StdioMcpClient(process, start);
+    }
+
+    Process process() {
+        return process;
+    }
+
+    /**
+     * Time the process was started at, on the {@link System#nanoTime()} clock.
+     */
+    long startNanos() {
+        return startNanos;
+    }
+
+    /**
+     * Performs the initialization handshake and returns the result of {@code initialize}.
+     */
+    JsonNode initialize() throws Exception {
+        ObjectNode params = JSON.createObjectNode();
+        params.put("protocolVersion", "2024-11-05");
+        params.putObject("capabilities");
+        params.putObject("clientInfo").put("name", "office-mcp-test-client").put("version", "1.0");
+        JsonNode result = result(send("initialize", params).get(1, TimeUnit.MINUTES));
+        write(JSON.createObjectNode().put("jsonrpc", "2.0").put("method", "notifications/initialized"));
+        return result;
+    }
+
+    /**
+     * Sends a {@code tools/call} request without waiting for its response.
+     */
+    CompletableFuture<JsonNode> sendToolCall(String tool, Map<String, ?> arguments) throws IOException {
+        ObjectNode params = JSON.createObjectNode().put("name", tool);
+        params.set("arguments", JSON.valueToTree(arguments));
+        return send("tools/call", params);
+    }
+
+    /**
+     * Calls a tool and returns its result, which has {@code isError} set when the tool failed.
+     */
+    JsonNode callTool(String tool, Map<String, ?> arguments) throws Exception {
+        return result(sendToolCall(tool, arguments).get(1, TimeUnit.MINUTES));
+    }
+
+    CompletableFuture<JsonNode> send(String method, JsonNode params) throws IOException {
+        long id = ids.incrementAndGet();
+        CompletableFuture<JsonNode> response = new CompletableFuture<>();
+        pending.put(id, response);
+        ObjectNode message = JSON.createObjectNode().put("jsonrpc", "2.0").put("id", id).put("method", method);
+        message.set("params", params);
+        write(message);
+        return response;
+    }
+
+    /**
+     * Returns the result of a response, or throws if the server answered with a JSON-RPC error.
+     */
+    static JsonNode result(JsonNode response) throws IOException {
+        if (response.has("error")) {
+            throw new IOException("JSON-RPC error: " + response.get("error"));
+        }
+        return response.get("result");
+    }
+
+    /**
+     * Returns the text of the first content item of a tool result.
+     */
+    static String text(JsonNode result) {
+        return result.path("content").path(0).path("text").asText();
+    }
+
+    /**
+     * Closes the standard input of the server and waits for it to exit; a server that is still
+     * running after the timeout is terminated, which runs its shutdown hooks.
+     */
+    @Override
+    public void close() throws Exception {
+        try {
+            stdin.close();
+        } catch (IOException e) {
+            // Already gone
+        }
+        if (!process.waitFor(10, TimeUnit.SECONDS)) {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+        reader.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    private synchronized void write(JsonNode message) throws IOException {
+        stdin.write(JSON.writeValueAsBytes(message));
+        stdin.write('\n');
+        stdin.flush();
+    }
+
+    private void read() {
+        try (BufferedReader stdout = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = stdout.readLine()) != null) {
+                if (!line.startsWith("{")) {
+                    continue;
+                }
+                JsonNode message = JSON.readTree(line);
+                CompletableFuture<JsonNode> response = message.has("id") ? pending.remove(message.get("id").asLong()) : null;
+                if (response != null) {
+                    response.complete(message);
+                }
+            }
+        } catch (IOException e) {
+            // The process exited
+        }
+        IOException closed = new IOException("Server exited with " + (process.isAlive() ? "its output closed" : "code " + process.exitValue()));
+        pending.values().forEach(response -> response.completeExceptionally(closed));
+    }
+}
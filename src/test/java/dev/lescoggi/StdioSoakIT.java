@@ -0,0 +1,476 @@
+package dev.lescoggi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Soak test of the packaged server over stdio, launched the way MCP clients launch it, see
+ * {@link PackagedServerIT}. A mixed workload of {@code tools/call} requests on workbooks, Word
+ * documents, presentations, templates and the search index is pipelined through the one session,
+ * with up to {@code soak.pipeline} requests in flight, for {@code soak.duration}. The documents
+ * that grow are replaced every few thousand calls, so a server that does not leak keeps a flat
+ * memory profile.
+ * <p>
+ * Every {@code soak.interval} one line is reported with the calls, errors and latency percentiles
+ * of the interval, the resident set size of the server process, and its garbage collections and
+ * the heap left after them, read from its GC log (JVM mode only). The lines are also written to
+ * {@code timeline.csv} in {@code soak.report-dir}. The run fails when a call failed, or when the
+ * heap after GC or the memory resident beside the heap kept growing after {@code soak.warmup}: by more than
+ * {@code soak.min-growth-mb} and faster than {@code soak.max-growth-mb-per-hour}.
+ * <p>
+ * Run with {@code ./mvnw verify -Psoak}, for example with {@code -Dsoak.duration=3600} and
+ * {@code -Dsoak.jvm-args=-Xmx256m}; durations are in seconds.
+ */
+@Tag("soak")
+public class StdioSoakIT {
+
+    private static final Duration DURATION = Duration.ofSeconds(Integer.getInteger("soak.duration", 300));
+    private static final Duration INTERVAL = Duration.ofSeconds(Integer.getInteger("soak.interval", 10));
+    private static final Duration WARMUP = Duration.ofSeconds(Integer.getInteger("soak.warmup", 120));
+    private static final int PIPELINE = Integer.getInteger("soak.pipeline", 8);
+    private static final double MAX_GROWTH_MB_PER_HOUR = Double.parseDouble(System.getProperty("soak.max-growth-mb-per-hour", "64"));
+    private static final double MIN_GROWTH_MB = Double.parseDouble(System.getProperty("soak.min-growth-mb", "16"));
+    private static final String JVM_ARGS = System.getProperty("soak.jvm-args", "");
+    private static final Path REPORT_DIR = Path.of(System.getProperty("soak.report-dir", "target/soak"));
+
+    private static final String SHEET = "Sheet1";
+    private static final int SHARED_ROWS = 500;
+    // Calls that append to a document between two replacements of the growing documents
+    private static final int REPLACE_EVERY = 2_000;
+    private static final int MAX_REPORTED_ERRORS = 10;
+
+    @TempDir
+    Path tempDir;
+
+    private record Call(String tool, Map<String, Object> arguments) {
+    }
+
+    /**
+     * Calls, errors and latencies of one interval.
+     */
+    private static final class Window {
+        final Histogram latency = latencyHistogram();
+        final LongAdder errors = new LongAdder();
+    }
+
+    /**
+     * Garbage collections of one interval; {@code heapAfterMb} is the smallest heap left after
+     * one of them and {@code committedMb} the heap reserved after the last one, both NaN when
+     * there was none.
+     */
+    private record Collections(int pauses, int full, double pauseMs, double maxPauseMs, double heapAfterMb, double committedMb) {
+    }
+
+    /**
+     * One reported interval.
+     */
+    private record Sample(double seconds, long calls, long errors, double p50Ms, double p99Ms, double p999Ms, double maxMs,
+                          double rssMb, Collections gc) {
+    }
+
+    private final Map<String, Histogram> latencies = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> errorCounts = new ConcurrentHashMap<>();
+    private final List<String> errors = java.util.Collections.synchronizedList(new ArrayList<>());
+    private final AtomicReference<Window> window = new AtomicReference<>(new Window());
+    private final List<Sample> samples = new ArrayList<>();
+
+    @Test
+    void testSoakOverStdio() throws Exception {
+        Path gcLog = tempDir.resolve("gc.log");
+        List<String> command = command(tempDir, gcLog);
+        Files.createDirectories(REPORT_DIR);
+        System.out.printf("Soaking %s for %d s with %d calls in flight, reporting every %d s%n", String.join(" ", command),
+            DURATION.toSeconds(), PIPELINE, INTERVAL.toSeconds());
+
+        try (StdioMcpClient client = StdioMcpClient.start(command, tempDir, tempDir.resolve("stderr.log"));
+             BufferedWriter timeline = Files.newBufferedWriter(REPORT_DIR.resolve("timeline.csv"))) {
+            client.initialize();
+            Workload workload = new Workload(client, tempDir);
+            workload.setUp();
+
+            timeline.write("seconds,calls,errors,calls_per_second,p50_ms,p99_ms,p999_ms,max_ms,rss_mb,gc_pauses,full_gcs,gc_pause_ms,max_gc_pause_ms,heap_after_gc_mb,heap_committed_mb\n");
+            GcLog gc = new GcLog(gcLog);
+            long start = System.nanoTime();
+            ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+            sampler.scheduleAtFixedRate(() -> sample(client.process().pid(), gc, start, timeline),
+                INTERVAL.toMillis(), INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+            try {
+                drive(client, workload, start + DURATION.toNanos());
+            } finally {
+                sampler.shutdown();
+                sampler.awaitTermination(1, TimeUnit.MINUTES);
+            }
+        }
+
+        report();
+        List<String> growth = new ArrayList<>();
+        checkGrowth("Heap after GC", samples.stream().filter(s -> !Double.isNaN(s.gc().heapAfterMb()))
+            .map(s -> new double[] { s.seconds(), s.gc().heapAfterMb() }).toList(), growth);
+        // The JVM grows its heap up to -Xmx without leaking; what is resident beside it should level off
+        checkGrowth("Resident set outside the heap", samples.stream().filter(s -> s.rssMb() >= 0)
+            .map(s -> new double[] { s.seconds(), s.rssMb() - (Double.isNaN(s.gc().committedMb()) ? 0 : s.gc().committedMb()) }).toList(), growth);
+        assertEquals(List.of(), errors, "failed calls");
+        assertEquals(List.of(), growth, "memory grew during the soak");
+    }
+
+    // Keeps PIPELINE calls in flight until the deadline, then waits for the last ones
+    private void drive(StdioMcpClient client, Workload workload, long deadline) throws Exception {
+        Semaphore inFlight = new Semaphore(PIPELINE);
+        while (System.nanoTime() < deadline) {
+            if (workload.appends() >= REPLACE_EVERY) {
+                drain(inFlight);
+                workload.replaceGrowingDocuments();
+                inFlight.release(PIPELINE);
+            }
+            inFlight.acquire();
+            Call call = workload.next(ThreadLocalRandom.current());
+            long sent = System.nanoTime();
+            client.sendToolCall(call.tool(), call.arguments()).whenComplete((response, failure) -> {
+                record(call.tool(), System.nanoTime() - sent, failure, response);
+                inFlight.release();
+            });
+        }
+        drain(inFlight);
+    }
+
+    private static void drain(Semaphore inFlight) throws InterruptedException {
+        if (!inFlight.tryAcquire(PIPELINE, 2, TimeUnit.MINUTES)) {
+            throw new IllegalStateException("Calls still unanswered after 2 minutes");
+        }
+    }
+
+    private void record(String tool, long nanos, Throwable failure, JsonNode response) {
+        String error = null;
+        if (failure != null) {
+            error = failure.toString();
+        } else if (response.has("error")) {
+            error = response.get("error").toString();
+        } else if (response.path("result").path("isError").asBoolean()) {
+            error = StdioMcpClient.text(response.get("result"));
+        }
+        latencies.computeIfAbsent(tool, name -> latencyHistogram()).recordValue(nanos);
+        Window current = window.get();
+        current.latency.recordValue(nanos);
+        if (error != null) {
+            current.errors.increment();
+            errorCounts.computeIfAbsent(tool, name -> new LongAdder()).increment();
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(tool + ": " + error);
+            }
+        }
+    }
+
+    private void sample(long pid, GcLog gcLog, long start, BufferedWriter timeline) {
+        try {
+            Window ended = window.getAndSet(new Window());
+            Collections gc = gcLog.read();
+            Histogram latency = ended.latency;
+            Sample sample = new Sample((System.nanoTime() - start) / 1e9, latency.getTotalCount(), ended.errors.sum(),
+                millis(latency.getValueAtPercentile(50)), millis(latency.getValueAtPercentile(99)), millis(latency.getValueAtPercentile(99.9)),
+                millis(latency.getMaxValue()), rssMb(pid), gc);
+            samples.add(sample);
+            System.out.printf(Locale.ROOT, "%6.0f s %8d calls %5d errors %8.1f calls/s  p50 %7.2f  p99 %7.2f  p99.9 %7.2f  max %8.2f ms"
+                    + "  RSS %6.1f MB  GC %3d pauses (%d full) %7.1f ms, heap after %s of %s%n",
+                sample.seconds(), sample.calls(), sample.errors(), sample.calls() / (double) INTERVAL.toSeconds(), sample.p50Ms(),
+                sample.p99Ms(), sample.p999Ms(), sample.maxMs(), sample.rssMb(), gc.pauses(), gc.full(), gc.pauseMs(),
+                Double.isNaN(gc.heapAfterMb()) ? "-" : String.format(Locale.ROOT, "%.1f MB", gc.heapAfterMb()),
+                Double.isNaN(gc.committedMb()) ? "-" : String.format(Locale.ROOT, "%.1f MB", gc.committedMb()));
+            timeline.write(String.format(Locale.ROOT, "%.0f,%d,%d,%.1f,%.3f,%.3f,%.3f,%.3f,%.1f,%d,%d,%.1f,%.1f,%s,%s%n",
+                sample.seconds(), sample.calls(), sample.errors(), sample.calls() / (double) INTERVAL.toSeconds(), sample.p50Ms(),
+                sample.p99Ms(), sample.p999Ms(), sample.maxMs(), sample.rssMb(), gc.pauses(), gc.full(), gc.pauseMs(), gc.maxPauseMs(),
+                Double.isNaN(gc.heapAfterMb()) ? "" : String.format(Locale.ROOT, "%.1f", gc.heapAfterMb()),
+                Double.isNaN(gc.committedMb()) ? "" : String.format(Locale.ROOT, "%.1f", gc.committedMb())));
+            timeline.flush();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Cannot sample the server: " + e);
+        }
+    }
+
+    private void report() {
+        System.out.printf("%-36s %10s %8s %10s %10s %10s %10s%n", "Tool", "Calls", "Errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms");
+        latencies.entrySet().stream().sorted(Map.Entry.comparingByKey()).forEach(entry -> {
+            Histogram latency = entry.getValue();
+            LongAdder failed = errorCounts.get(entry.getKey());
+            System.out.printf(Locale.ROOT, "%-36s %10d %8d %10.2f %10.2f %10.2f %10.2f%n", entry.getKey(), latency.getTotalCount(),
+                failed == null ? 0 : failed.sum(), millis(latency.getValueAtPercentile(50)), millis(latency.getValueAtPercentile(90)),
+                millis(latency.getValueAtPercentile(99)), millis(latency.getValueAtPercentile(99.9)));
+        });
+        System.out.println("Timeline written to " + REPORT_DIR.resolve("timeline.csv").toAbsolutePath());
+    }
+
+    /**
+     * Compares the lowest value of the first and of the second half of the intervals after the
+     * warm-up, so that the heap filling up between two collections of the old generation is not
+     * taken for growth, and reports growth over both limits.
+     */
+    private static void checkGrowth(String name, List<double[]> points, List<String> growth) {
+        List<double[]> measured = points.stream().filter(point -> point[0] >= WARMUP.toSeconds()).toList();
+        if (measured.size() < 4) {
+            System.out.printf("%s: too few intervals after the warm-up to judge growth%n", name);
+            return;
+        }
+        List<double[]> first = measured.subList(0, measured.size() / 2);
+        List<double[]> second = measured.subList(measured.size() / 2, measured.size());
+        double from = first.stream().mapToDouble(point -> point[1]).min().orElseThrow();
+        double to = second.stream().mapToDouble(point -> point[1]).min().orElseThrow();
+        double hours = (second.get(second.size() / 2)[0] - first.get(first.size() / 2)[0]) / 3600;
+        double mbPerHour = (to - from) / hours;
+        String trend = String.format(Locale.ROOT, "%s: lowest %.1f MB in the first half after the warm-up, %.1f MB in the second, %+.1f MB/h"
+            + " (limits %.0f MB and %.0f MB/h)", name, from, to, mbPerHour, MIN_GROWTH_MB, MAX_GROWTH_MB_PER_HOUR);
+        System.out.println(trend);
+        if (to - from > MIN_GROWTH_MB && mbPerHour > MAX_GROWTH_MB_PER_HOUR) {
+            growth.add("Possible leak. " + trend);
+        }
+    }
+
+    /**
+     * Command of {@link PackagedServerIT}, with the GC log and {@code soak.jvm-args} added when the
+     * server runs on a JVM.
+     */
+    private static List<String> command(Path dir, Path gcLog) {
+        List<String> command = new ArrayList<>(PackagedServerIT.command(dir));
+        if (command.contains("-jar")) {
+            List<String> options = new ArrayList<>();
+            options.add("-Xlog:gc:file=" + gcLog.toAbsolutePath());
+            for (String option : JVM_ARGS.trim().split("\\s+")) {
+                if (!option.isEmpty()) {
+                    options.add(option);
+                }
+            }
+            command.addAll(1, options);
+        }
+        return command;
+    }
+
+    private static double rssMb(long pid) {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc", Long.toString(pid), "status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("\\D", "")) / 1024.0;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Not Linux, or the process is gone
+        }
+        return -1;
+    }
+
+    // Latencies in nanoseconds with three significant digits, safe to record from concurrent calls
+    private static Histogram latencyHistogram() {
+        return new ConcurrentHistogram(3);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    /**
+     * Reads the pauses that the JVM appended to its {@code -Xlog:gc} file since the last read, e.g.
+     * {@code [12.3s][info][gc] GC(42) Pause Young (Normal) (G1 Evacuation Pause) 61M->9M(256M) 3.2ms}.
+     */
+    private static final class GcLog {
+        private static final Pattern PAUSE = Pattern.compile("GC\\(\\d+\\) Pause (.*?) (\\d+)([KMG])->(\\d+)([KMG])\\((\\d+)([KMG])\\) ([\\d.]+)ms");
+
+        private final Path file;
+        private long position;
+        private String partial = "";
+
+        GcLog(Path file) {
+            this.file = file;
+        }
+
+        Collections read() throws IOException {
+            if (!Files.exists(file)) {
+                return new Collections(0, 0, 0, 0, Double.NaN, Double.NaN);
+            }
+            String text;
+            try (SeekableByteChannel channel = Files.newByteChannel(file)) {
+                ByteBuffer buffer = ByteBuffer.allocate((int) Math.max(0, channel.size() - position));
+                channel.position(position);
+                while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+                    // Read up to the size seen when opening
+                }
+                position += buffer.position();
+                text = partial + new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+            }
+            int lastLine = text.lastIndexOf('\n') + 1;
+            partial = text.substring(lastLine);
+            int pauses = 0;
+            int full = 0;
+            double pauseMs = 0;
+            double maxPauseMs = 0;
+            double heapAfterMb = Double.NaN;
+            double committedMb = Double.NaN;
+            for (String line : text.substring(0, lastLine).split("\n")) {
+                Matcher pause = PAUSE.matcher(line);
+                if (!pause.find()) {
+                    continue;
+                }
+                pauses++;
+                if (pause.group(1).startsWith("Full")) {
+                    full++;
+                }
+                double ms = Double.parseDouble(pause.group(8));
+                pauseMs += ms;
+                maxPauseMs = Math.max(maxPauseMs, ms);
+                double after = megabytes(Long.parseLong(pause.group(4)), pause.group(5));
+                heapAfterMb = Double.isNaN(heapAfterMb) ? after : Math.min(heapAfterMb, after);
+                committedMb = megabytes(Long.parseLong(pause.group(6)), pause.group(7));
+            }
+            return new Collections(pauses, full, pauseMs, maxPauseMs, heapAfterMb, committedMb);
+        }
+
+        private static double megabytes(long value, String unit) {
+            return switch (unit) {
+                case "K" -> value / 1024.0;
+                case "G" -> value * 1024.0;
+                default -> value;
+            };
+        }
+    }
+
+    /**
+     * The calls of the soak: reads of a workbook, a Word document and a presentation shared by all
+     * calls, appends to a workbook and a Word document that are replaced as they grow, template
+     * renders, searches and directory summaries.
+     */
+    private static final class Workload {
+        private final StdioMcpClient client;
+        private final Path dir;
+        private final String workbook;
+        private final String document;
+        private final String presentation;
+        private final String template;
+        private final AtomicLong appends = new AtomicLong();
+        private int generation;
+        private String growingWorkbook;
+        private String growingDocument;
+
+        Workload(StdioMcpClient client, Path dir) {
+            this.client = client;
+            this.dir = dir;
+            this.workbook = dir.resolve("shared.xlsx").toString();
+            this.document = dir.resolve("shared.docx").toString();
+            this.presentation = dir.resolve("shared.pptx").toString();
+            this.template = dir.resolve("template.docx").toString();
+        }
+
+        void setUp() throws Exception {
+            StringBuilder rows = new StringBuilder();
+            for (int row = 0; row < SHARED_ROWS; row++) {
+                rows.append(row % 2 == 0 ? "EU" : "US").append(",Widget ").append(row).append(',').append(row * 1.5).append('\n');
+            }
+            call("create_excel_workbook", Map.of("filepath", workbook));
+            call("add_excel_row", Map.of("filepath", workbook, "sheetName", SHEET, "rowData", "Region,Product,Amount"));
+            call("add_excel_rows", Map.of("filepath", workbook, "sheetName", SHEET, "rows", rows.toString(), "format", "csv"));
+            call("create_word_document", Map.of("filepath", document));
+            for (int paragraph = 0; paragraph < 50; paragraph++) {
+                call("add_text_to_word_document", Map.of("filepath", document, "text", "Widget sales, paragraph " + paragraph));
+            }
+            call("create_word_document", Map.of("filepath", template));
+            call("add_text_to_word_document", Map.of("filepath", template, "text", "Dear {customer}, your order of {amount} widgets has shipped."));
+            call("create_powerpoint_presentation", Map.of("filepath", presentation));
+            for (int slide = 0; slide < 10; slide++) {
+                call("add_slide_to_powerpoint", Map.of("filepath", presentation));
+                call("add_text_to_powerpoint_slide", Map.of("filepath", presentation, "slideIndex", slide, "text", "Widgets " + slide));
+            }
+            replaceGrowingDocuments();
+        }
+
+        long appends() {
+            return appends.get();
+        }
+
+        /**
+         * Closes and deletes the workbook and the Word document that are appended to, and creates
+         * new ones; called while no call is in flight.
+         */
+        void replaceGrowingDocuments() throws Exception {
+            if (growingWorkbook != null) {
+                call("close_excel_workbook", Map.of("filepath", growingWorkbook));
+                call("close_office_document", Map.of("filepath", growingDocument));
+                Files.deleteIfExists(Path.of(growingWorkbook));
+                Files.deleteIfExists(Path.of(growingDocument));
+            }
+            generation++;
+            growingWorkbook = dir.resolve("growing-" + generation + ".xlsx").toString();
+            growingDocument = dir.resolve("growing-" + generation + ".docx").toString();
+            call("create_excel_workbook", Map.of("filepath", growingWorkbook));
+            call("create_word_document", Map.of("filepath", growingDocument));
+            appends.set(0);
+        }
+
+        Call next(ThreadLocalRandom random) {
+            int pick = random.nextInt(100);
+            if (pick < 20) {
+                return new Call("read_excel_cell", Map.of("filepath", workbook, "sheetName", SHEET,
+                    "rowNum", random.nextInt(1, SHARED_ROWS + 1), "colNum", random.nextInt(3)));
+            } else if (pick < 30) {
+                int first = random.nextInt(2, SHARED_ROWS - 50);
+                return new Call("read_excel_range", Map.of("filepath", workbook, "sheetName", SHEET, "range", "A" + first + ":C" + (first + 49)));
+            } else if (pick < 35) {
+                return new Call("query_excel_sheet", Map.of("filepath", workbook, "sheetName", SHEET, "groupBy", "Region",
+                    "aggregates", "sum(Amount), count(*)"));
+            } else if (pick < 45) {
+                return new Call("get_excel_row_count", Map.of("filepath", random.nextBoolean() ? workbook : growingWorkbook, "sheetName", SHEET));
+            } else if (pick < 60) {
+                appends.incrementAndGet();
+                return new Call("add_excel_row", Map.of("filepath", growingWorkbook, "sheetName", SHEET,
+                    "rowData", "APAC,Gadget," + random.nextInt(1000)));
+            } else if (pick < 70) {
+                appends.incrementAndGet();
+                return new Call("add_text_to_word_document", Map.of("filepath", growingDocument, "text", "Order " + random.nextInt(1_000_000)));
+            } else if (pick < 75) {
+                return new Call("read_text_from_word_document", Map.of("filepath", document, "length", 2_000));
+            } else if (pick < 80) {
+                return new Call("get_powerpoint_slide_count", Map.of("filepath", presentation));
+            } else if (pick < 85) {
+                return new Call("read_slide_titles_from_powerpoint", Map.of("filepath", presentation));
+            } else if (pick < 90) {
+                return new Call("render_office_template", Map.of("filepath", template,
+                    "outputPath", dir.resolve("letter-" + random.nextInt(10) + ".docx").toString(),
+                    "data", "{\"customer\": \"Customer " + random.nextInt(1000) + "\", \"amount\": " + random.nextInt(100) + "}"));
+            } else if (pick < 95) {
+                return new Call("search_office_documents", Map.of("query", "widget", "maxResults", 5));
+            }
+            return new Call("summarize_office_files", Map.of("limit", 20));
+        }
+
+        private void call(String tool, Map<String, Object> arguments) throws Exception {
+            JsonNode result = client.callTool(tool, arguments);
+            assertTrue(!result.path("isError").asBoolean(), tool + ": " + StdioMcpClient.text(result));
+        }
+    }
+}
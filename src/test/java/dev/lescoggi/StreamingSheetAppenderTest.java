@@ -0,0 +1,165 @@
+package dev.lescoggi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class StreamingSheetAppenderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path workbookPath;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        workbookPath = tempDir.resolve("append.xlsx");
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); FileOutputStream out = new FileOutputStream(workbookPath.toFile())) {
+            XSSFSheet data = workbook.createSheet("Data");
+            data.createRow(0).createCell(0).setCellValue("Region");
+            data.getRow(0).createCell(1).setCellValue("Amount");
+            data.createRow(1).createCell(0).setCellValue("EU");
+            data.getRow(1).createCell(1).setCellValue(12.5);
+            workbook.createSheet("Empty");
+            workbook.write(out);
+        }
+    }
+
+    @Test
+    void testAppendsTypedRowsAfterTheLastRow() throws Exception {
+        StreamingSheetAppender appender = StreamingSheetAppender.open(workbookPath, "Data");
+        appender.row(Arrays.asList("US", 3.0, true));
+        appender.row(Arrays.asList(" a & <b> ", null, false, LocalDate.of(2024, 3, 1), LocalDateTime.of(2024, 3, 1, 9, 30)));
+        assertEquals(2, appender.added());
+        save(appender);
+
+        try (FileInputStream in = new FileInputStream(workbookPath.toFile()); XSSFWorkbook workbook = new XSSFWorkbook(in)) {
+            XSSFSheet sheet = workbook.getSheet("Data");
+            assertEquals(3, sheet.getLastRowNum());
+            assertEquals("EU", sheet.getRow(1).getCell(0).getStringCellValue(), "existing shared strings are kept");
+            assertEquals("US", sheet.getRow(2).getCell(0).getStringCellValue());
+            assertEquals(3.0, sheet.getRow(2).getCell(1).getNumericCellValue());
+            assertTrue(sheet.getRow(2).getCell(2).getBooleanCellValue());
+            assertEquals(" a & <b> ", sheet.getRow(3).getCell(0).getStringCellValue());
+            assertNull(sheet.getRow(3).getCell(1));
+            assertEquals(CellType.NUMERIC, sheet.getRow(3).getCell(3).getCellType());
+            assertEquals("2024-03-01", new DataFormatter().formatCellValue(sheet.getRow(3).getCell(3)));
+            assertEquals(LocalDateTime.of(2024, 3, 1, 9, 30), sheet.getRow(3).getCell(4).getLocalDateTimeCellValue());
+            assertEquals("A1:E4", sheet.getCTWorksheet().getDimension().getRef());
+        }
+        assertEquals(new WorkbookMetadataIndex.SheetDimension(4, 5),
+            new WorkbookMetadataIndex(16).dimension(workbookPath.toString(), "Data"));
+    }
+
+    @Test
+    void testAppendsToAnEmptySheet() throws Exception {
+        StreamingSheetAppender appender = StreamingSheetAppender.open(workbookPath, "Empty");
+        appender.row(List.of("first"));
+        appender.row(List.of("second", 2));
+        save(appender);
+
+        try (FileInputStream in = new FileInputStream(workbookPath.toFile()); XSSFWorkbook workbook = new XSSFWorkbook(in)) {
+            XSSFSheet sheet = workbook.getSheet("Empty");
+            assertEquals("first", sheet.getRow(0).getCell(0).getStringCellValue());
+            assertEquals(2.0, sheet.getRow(1).getCell(1).getNumericCellValue());
+            assertEquals("A1:B2", sheet.getCTWorksheet().getDimension().getRef());
+            assertEquals(2, workbook.getSheet("Data").getLastRowNum() + 1);
+        }
+    }
+
+    @Test
+    void testMissingSheet() throws Exception {
+        assertNull(StreamingSheetAppender.open(workbookPath, "Missing"));
+    }
+
+    @Test
+    void testCreatesSheetWithRowsFromSource() throws Exception {
+        StreamingSheetAppender appender = StreamingSheetAppender.open(workbookPath, "Q1 & Q2", true);
+        assertTrue(appender.createsSheet());
+        int[] passes = { 0 };
+        DocumentSaver.Content content = appender.content(target -> {
+            passes[0]++;
+            for (int i = 0; i < 1000; i++) {
+                target.row(Arrays.asList("row " + i, i, LocalDate.of(2024, 1, 1).plusDays(i)));
+            }
+        });
+        assertEquals(1, passes[0], "the first pass runs before the content is written");
+        assertEquals(1000, appender.added());
+        save(content);
+        assertEquals(2, passes[0]);
+
+        try (FileInputStream in = new FileInputStream(workbookPath.toFile()); XSSFWorkbook workbook = new XSSFWorkbook(in)) {
+            assertEquals(3, workbook.getNumberOfSheets());
+            XSSFSheet sheet = workbook.getSheetAt(2);
+            assertEquals("Q1 & Q2", sheet.getSheetName());
+            assertEquals("row 999", sheet.getRow(999).getCell(0).getStringCellValue());
+            assertEquals(999.0, sheet.getRow(999).getCell(1).getNumericCellValue());
+            assertEquals("2024-01-02", new DataFormatter().formatCellValue(sheet.getRow(1).getCell(2)));
+            assertEquals(1, workbook.getSheet("Data").getLastRowNum());
+        }
+        assertEquals(new WorkbookMetadataIndex.SheetDimension(1000, 3),
+            new WorkbookMetadataIndex(16).dimension(workbookPath.toString(), "Q1 & Q2"));
+
+        // A second new sheet gets its own part, sheet id and relationship
+        StreamingSheetAppender empty = StreamingSheetAppender.open(workbookPath, "Nothing", true);
+        save(empty.content());
+        try (FileInputStream in = new FileInputStream(workbookPath.toFile()); XSSFWorkbook workbook = new XSSFWorkbook(in)) {
+            assertEquals(List.of("Data", "Empty", "Q1 & Q2", "Nothing"),
+                List.of(workbook.getSheetName(0), workbook.getSheetName(1), workbook.getSheetName(2), workbook.getSheetName(3)));
+            assertEquals(-1, workbook.getSheet("Nothing").getLastRowNum());
+            assertEquals(1000, workbook.getSheet("Q1 & Q2").getPhysicalNumberOfRows());
+        }
+    }
+
+    @Test
+    void testNewSheetNamesAreValidated() {
+        assertThrows(IOException.class, () -> StreamingSheetAppender.open(workbookPath, "data", true));
+        assertThrows(IOException.class, () -> StreamingSheetAppender.open(workbookPath, "a/b", true));
+    }
+
+    @Test
+    void testSourceThatChangesBetweenPassesFails() throws Exception {
+        StreamingSheetAppender appender = StreamingSheetAppender.open(workbookPath, "Data");
+        int[] rows = { 2 };
+        DocumentSaver.Content content = appender.content(target -> {
+            for (int i = 0; i < rows[0]; i++) {
+                target.row(List.of("row " + i));
+            }
+        });
+        rows[0] = 3;
+        assertThrows(IOException.class, () -> content.write(OutputStream.nullOutputStream()));
+    }
+
+    private void save(StreamingSheetAppender appender) throws Exception {
+        save(appender.content());
+    }
+
+    private void save(DocumentSaver.Content content) throws Exception {
+        Path saved = tempDir.resolve("saved.xlsx");
+        try (OutputStream out = Files.newOutputStream(saved)) {
+            content.write(out);
+        }
+        Files.move(saved, workbookPath, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
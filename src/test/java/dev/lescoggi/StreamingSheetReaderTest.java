@@ -0,0 +1,53 @@
+package dev.lescoggi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.FileOutputStream;
+import java.nio.file.Path;
+
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class StreamingSheetReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path workbookPath;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        workbookPath = tempDir.resolve("streaming.xlsx");
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); FileOutputStream out = new FileOutputStream(workbookPath.toFile())) {
+            workbook.createSheet("Empty");
+            XSSFSheet sheet = workbook.createSheet("Data");
+            sheet.createRow(0).createCell(0).setCellValue("Header");
+            sheet.getRow(0).createCell(2).setCellValue(42);
+            // Row 1 is missing on purpose
+            sheet.createRow(2).createCell(1).setCellValue(true);
+            sheet.createRow(3).createCell(0).setCellValue("Last");
+            workbook.write(out);
+        }
+    }
+
+    @Test
+    void testReadCell() throws Exception {
+        assertEquals("Header", StreamingSheetReader.readCell(workbookPath, "Data", 0, 0).value());
+        assertEquals("42", StreamingSheetReader.readCell(workbookPath, "Data", 0, 2).value());
+        assertEquals("TRUE", StreamingSheetReader.readCell(workbookPath, "Data", 2, 1).value());
+        assertEquals("Last", StreamingSheetReader.readCell(workbookPath, "Data", 3, 0).value());
+
+        StreamingSheetReader.CellLookup missingCell = StreamingSheetReader.readCell(workbookPath, "Data", 0, 1);
+        assertTrue(missingCell.rowExists());
+        assertNull(missingCell.value());
+        assertFalse(StreamingSheetReader.readCell(workbookPath, "Data", 1, 0).rowExists());
+        assertFalse(StreamingSheetReader.readCell(workbookPath, "Data", 10, 0).rowExists());
+        assertNull(StreamingSheetReader.readCell(workbookPath, "Missing", 0, 0));
+    }
+}
@@ -0,0 +1,69 @@
+package dev.lescoggi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.poi.xslf.usermodel.SlideLayout;
+import org.apache.poi.xslf.usermodel.XMLSlideShow;
+import org.apache.poi.xslf.usermodel.XSLFSlide;
+import org.apache.poi.xslf.usermodel.XSLFSlideMaster;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class StreamingSlideReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path presentationPath;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        presentationPath = tempDir.resolve("deck.pptx");
+        try (XMLSlideShow presentation = new XMLSlideShow(); OutputStream out = Files.newOutputStream(presentationPath)) {
+            XSLFSlideMaster master = presentation.getSlideMasters().get(0);
+            XSLFSlide cover = presentation.createSlide(master.getLayout(SlideLayout.TITLE));
+            cover.createTextBox().setText("Company confidential");
+            cover.getPlaceholder(0).setText("Annual report");
+            cover.getPlaceholder(1).setText("Fiscal year 2025");
+
+            XSLFSlide untitled = presentation.createSlide(master.getLayout(SlideLayout.TITLE_AND_CONTENT));
+            untitled.getPlaceholder(1).setText("Body text only");
+            untitled.removeShape(untitled.getPlaceholder(0));
+
+            presentation.createSlide().createTextBox().setText("Text box on a blank slide");
+
+            XSLFSlide agenda = presentation.createSlide(master.getLayout(SlideLayout.TITLE_AND_CONTENT));
+            agenda.getPlaceholder(0).setText("Agenda\nand goals");
+            agenda.getPlaceholder(1).setText("Results");
+            presentation.write(out);
+        }
+    }
+
+    @Test
+    void testReadsTitlePlaceholders() throws Exception {
+        List<String> titles = StreamingSlideReader.readSlideTitles(presentationPath);
+
+        assertEquals(Arrays.asList("Annual report", null, null, "Agenda\nand goals"), titles);
+    }
+
+    @Test
+    void testCountsSlides() throws Exception {
+        assertEquals(4, StreamingSlideReader.slideCount(presentationPath));
+    }
+
+    @Test
+    void testReadsSlideTexts() throws Exception {
+        List<String> texts = StreamingSlideReader.readSlideTexts(presentationPath);
+
+        assertEquals(4, texts.size());
+        assertEquals("Text box on a blank slide\n", texts.get(2));
+        assertEquals("Agenda\nand goals\nResults\n", texts.get(3));
+    }
+}
@@ -0,0 +1,135 @@
+package dev.lescoggi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.util.UUID;
+
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.xslf.usermodel.XMLSlideShow;
+import org.apache.poi.xslf.usermodel.XSLFSlide;
+import org.apache.poi.xslf.usermodel.XSLFTextShape;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.quarkiverse.mcp.server.TextContent;
+import io.quarkiverse.mcp.server.ToolResponse;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+
+@QuarkusTest
+public class TemplateFeaturesTest {
+
+    private File tempDir;
+    @Inject
+    OfficeMcpServerTemplateFeatures templateFeatures;
+    @Inject
+    OfficeTemplates templates;
+
+    @BeforeEach
+    void setUp() {
+        tempDir = new File(System.getProperty("java.io.tmpdir"), "template-test-" + UUID.randomUUID());
+        tempDir.mkdirs();
+    }
+
+    @AfterEach
+    void tearDown() {
+        File[] files = tempDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        tempDir.delete();
+    }
+
+    @Test
+    void testRenderWordTemplate() throws Exception {
+        String template = path("letter.docx");
+        try (XWPFDocument document = new XWPFDocument(); FileOutputStream out = new FileOutputStream(template)) {
+            document.createParagraph().createRun().setText("Dear {customer.name},");
+            XWPFTable table = document.createTable(1, 2);
+            table.getRow(0).getCell(0).setText("{#for line in lines}{line.item}");
+            table.getRow(0).getCell(1).setText("{line.amount}{/for}");
+            document.write(out);
+        }
+        String output = path("ada.docx");
+        ToolResponse response = templateFeatures.renderOfficeTemplate(template, output,
+            "{\"customer\": {\"name\": \"Ada <3\"}, \"lines\": [{\"item\": \"Apples\", \"amount\": 12.5}, {\"item\": \"Pears\", \"amount\": 2}]}");
+        assertFalse(response.isError(), text(response));
+        try (FileInputStream in = new FileInputStream(output); XWPFDocument document = new XWPFDocument(in)) {
+            assertEquals("Dear Ada <3,", document.getParagraphs().get(0).getText());
+            assertEquals(2, document.getTables().get(0).getNumberOfRows());
+            assertEquals("12.5", document.getTables().get(0).getRow(0).getCell(1).getText());
+        }
+
+        response = templateFeatures.renderOfficeTemplate(template, output, "{\"lines\": []}");
+        assertTrue(response.isError());
+        assertTrue(text(response).contains("customer"), text(response));
+        assertTrue(templateFeatures.renderOfficeTemplate(template, output, "[1]").isError());
+        assertTrue(templateFeatures.renderOfficeTemplate(template, path("ada.xlsx"), "{}").isError(), "output must be a .docx file");
+        assertTrue(templateFeatures.renderOfficeTemplate(template, template, "{}").isError(), "template must not be overwritten");
+
+        long compilations = templates.stats().compilations();
+        assertFalse(templateFeatures.renderOfficeTemplate(template, path("bo.docx"), "{\"customer\": {\"name\": \"Bo\"}, \"lines\": []}").isError());
+        assertEquals(compilations, templates.stats().compilations(), "an unchanged template is not compiled again");
+    }
+
+    @Test
+    void testRenderPresentationAndWorkbookTemplatesInBatch() throws Exception {
+        String deck = path("deck.pptx");
+        try (XMLSlideShow show = new XMLSlideShow(); FileOutputStream out = new FileOutputStream(deck)) {
+            XSLFSlide slide = show.createSlide();
+            slide.createTextBox().setText("{#each regions}");
+            slide.createTextBox().setText("{it.name}");
+            show.write(out);
+        }
+        ToolResponse response = templateFeatures.renderOfficeTemplates(deck,
+            "[{\"output\": \"" + path("one.pptx") + "\", \"data\": {\"regions\": [{\"name\": \"North\"}, {\"name\": \"South\"}]}},"
+                + " {\"output\": \"" + path("two.pptx") + "\", \"data\": {}},"
+                + " {\"output\": \"" + path("three.docx") + "\", \"data\": {\"regions\": []}}]", null);
+        assertFalse(response.isError(), text(response));
+        assertTrue(text(response).startsWith("1 of 3 documents rendered"), text(response));
+        assertEquals(3, response.content().size(), "each failure is listed");
+        try (FileInputStream in = new FileInputStream(path("one.pptx")); XMLSlideShow show = new XMLSlideShow(in)) {
+            assertEquals(2, show.getSlides().size());
+            assertEquals("South", ((XSLFTextShape) show.getSlides().get(1).getShapes().get(0)).getText());
+        }
+
+        String invoice = path("invoice.xlsx");
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); FileOutputStream out = new FileOutputStream(invoice)) {
+            XSSFSheet sheet = workbook.createSheet("Invoice");
+            sheet.createRow(0).createCell(0).setCellValue("{#for line in lines}{line.item}");
+            sheet.getRow(0).createCell(1).setCellValue("{line.amount}{/for}");
+            sheet.createRow(1).createCell(0).setCellValue("Total");
+            sheet.getRow(1).createCell(1).setCellValue("{total}");
+            workbook.write(out);
+        }
+        response = templateFeatures.renderOfficeTemplates(invoice, "[{\"output\": \"" + path("march.xlsx")
+            + "\", \"data\": {\"lines\": [{\"item\": \"Apples\", \"amount\": 12.5}, {\"item\": \"Pears\", \"amount\": 2}], \"total\": 14.5}}]", null);
+        assertFalse(response.isError(), text(response));
+        try (FileInputStream in = new FileInputStream(path("march.xlsx")); XSSFWorkbook workbook = new XSSFWorkbook(in)) {
+            XSSFSheet sheet = workbook.getSheet("Invoice");
+            assertEquals("Pears", sheet.getRow(1).getCell(0).getStringCellValue());
+            assertEquals(CellType.NUMERIC, sheet.getRow(2).getCell(1).getCellType());
+            assertEquals(14.5, sheet.getRow(2).getCell(1).getNumericCellValue());
+        }
+    }
+
+    private String path(String name) {
+        return new File(tempDir, name).getAbsolutePath();
+    }
+
+    private static String text(ToolResponse response) {
+        return ((TextContent) response.content().get(0)).text();
+    }
+}
@@ -0,0 +1,149 @@
+package dev.lescoggi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+
+@QuarkusTest
+public class ToolMetricsTest {
+
+    @Inject
+    OfficeMcpServerWordFeatures wordFeatures;
+
+    @Inject
+    DocumentCache documentCache;
+
+    @Inject
+    ToolMetrics metrics;
+
+    private Path tempDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        tempDir = Files.createTempDirectory("metrics-test-");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        try (Stream<Path> files = Files.walk(tempDir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    void testToolCallsAreMeasured() throws Exception {
+        String document = tempDir.resolve("metrics.docx").toString();
+        ToolMetrics.Stats createdBefore = stats("create_word_document");
+        ToolMetrics.Stats addedBefore = stats("add_text_to_word_document");
+        ToolMetrics.Stats readBefore = stats("read_text_from_word_document");
+
+        wordFeatures.createWordDocument(document);
+        wordFeatures.addTextToWordDocument(document, "Measured text");
+        documentCache.invalidate(document);
+        wordFeatures.readTextFromWordDocument(document, null, null);
+        wordFeatures.readTextFromWordDocument(tempDir.resolve("missing.docx").toString(), null, null);
+
+        ToolMetrics.Stats created = stats("create_word_document");
+        assertEquals(createdBefore.calls() + 1, created.calls());
+        assertTrue(created.writtenBytes() > createdBefore.writtenBytes());
+        assertTrue(created.serializeNanos() > createdBefore.serializeNanos());
+
+        ToolMetrics.Stats added = stats("add_text_to_word_document");
+        long size = Files.size(Path.of(document));
+        assertEquals(addedBefore.calls() + 1, added.calls());
+        assertTrue(added.readBytes() > addedBefore.readBytes(), "the document is parsed");
+        assertTrue(added.parseNanos() > addedBefore.parseNanos());
+        assertEquals(size, added.writtenBytes() - addedBefore.writtenBytes());
+
+        ToolMetrics.Stats read = stats("read_text_from_word_document");
+        assertEquals(readBefore.calls() + 2, read.calls());
+        assertEquals(readBefore.errors() + 1, read.errors());
+        assertEquals(size, read.readBytes() - readBefore.readBytes(), "the streaming reader opens the file once");
+        assertTrue(read.p99Nanos() >= read.p50Nanos() && read.p50Nanos() > 0);
+
+        String prometheus = metrics.prometheus();
+        assertTrue(prometheus.contains("# TYPE office_tool_duration_seconds histogram\n"));
+        assertTrue(prometheus.contains("office_tool_errors_total{tool=\"read_text_from_word_document\"} " + (double) read.errors() + "\n"));
+        assertTrue(prometheus.contains("office_tool_duration_seconds_count{tool=\"read_text_from_word_document\"} " + read.calls() + "\n"));
+        assertTrue(prometheus.contains("office_tool_duration_seconds_bucket{tool=\"read_text_from_word_document\",le=\"+Inf\"} "
+            + read.calls() + "\n"));
+        assertEquals(readBefore.engines().getOrDefault("streaming-read", 0L) + 2, read.engines().get("streaming-read"));
+        assertTrue(prometheus.contains("office_tool_engine_calls_total{engine=\"streaming-read\",tool=\"read_text_from_word_document\"} "
+            + (double) read.engines().get("streaming-read") + "\n"));
+    }
+
+    @Test
+    void testAllocationsAreMeasuredOnPlatformAndVirtualThreads() throws Exception {
+        String document = tempDir.resolve("allocations.docx").toString();
+        ToolMetrics.Stats before = stats("create_word_document");
+
+        wordFeatures.createWordDocument(document);
+        ToolMetrics.Stats platform = stats("create_word_document");
+        assertEquals(before.calls() + 1, platform.calls());
+        assertTrue(platform.allocatedBytes() > Math.max(0, before.allocatedBytes()));
+
+        // Tool calls over MCP run on virtual threads, whose allocations JDK 21 does not count, so
+        // they are sampled, and the samples arrive about once a second
+        long deadline = System.nanoTime() + Duration.ofSeconds(20).toNanos();
+        int calls = 0;
+        while (stats("create_word_document").allocatedBytes() == platform.allocatedBytes() && System.nanoTime() < deadline) {
+            Thread call = Thread.ofVirtual().start(() -> wordFeatures.createWordDocument(document));
+            call.join();
+            calls++;
+            Thread.sleep(100);
+        }
+        ToolMetrics.Stats virtual = stats("create_word_document");
+        assertEquals(platform.calls() + calls, virtual.calls());
+        assertTrue(virtual.allocatedBytes() > platform.allocatedBytes(), "the calls on virtual threads were sampled");
+    }
+
+    @Test
+    void testMetricsAreWrittenForTheTextfileCollector() throws Exception {
+        Path file = tempDir.resolve("office.prom");
+        ToolMetrics exported = new ToolMetrics(new SimpleMeterRegistry(), Duration.ZERO, Optional.of(file.toString()), Duration.ofHours(1), false);
+        Call call = new Call(exported);
+        call.run("create_excel_workbook", 1_000_000);
+        call.run("create_excel_workbook", 3_000_000);
+        exported.shutdown();
+
+        String text = Files.readString(file);
+        assertTrue(text.contains("office_tool_duration_seconds_count{tool=\"create_excel_workbook\"} 2\n"));
+        assertTrue(text.contains("office_tool_duration_seconds_sum{tool=\"create_excel_workbook\"} 0.004\n"));
+        assertTrue(text.contains("office_tool_errors_total{tool=\"create_excel_workbook\"} 0.0\n"));
+        assertFalse(text.contains("office_tool_allocated_bytes_total"), "no call could be measured");
+        ToolMetrics.Stats stats = exported.stats().get("create_excel_workbook");
+        assertEquals(2, stats.calls());
+        assertEquals(4_000_000, stats.totalNanos());
+        assertEquals(-1, stats.allocatedBytes());
+    }
+
+    private ToolMetrics.Stats stats(String tool) {
+        return metrics.stats().getOrDefault(tool, new ToolMetrics.Stats(0, 0, 0, 0, 0, 0, 0, 0, 0, 0, -1, Map.of()));
+    }
+
+    // Records calls the way the interceptor does
+    private record Call(ToolMetrics metrics) {
+        void run(String tool, long nanos) {
+            ToolMetrics.Call previous = metrics.begin(tool);
+            metrics.end(tool, previous, nanos, -1, -1, false);
+        }
+    }
+}
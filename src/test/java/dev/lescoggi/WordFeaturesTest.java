@@ -1,5 +1,7 @@
 package dev.lescoggi;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -12,13 +14,19 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import io.quarkiverse.mcp.server.TextContent;
+import io.quarkiverse.mcp.server.ToolResponse;
 import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
 
 @QuarkusTest
 public class WordFeaturesTest {
 
     private File tempDir;
-    private OfficeMcpServerWordFeatures wordFeatures;
+    @Inject
+    OfficeMcpServerWordFeatures wordFeatures;
+    @Inject
+    DocumentCache documentCache;
     private String documentPath;
 
     @BeforeEach
@@ -27,8 +35,7 @@ public class WordFeaturesTest {
         String tempDirPath = System.getProperty("java.io.tmpdir");
         tempDir = new File(tempDirPath, "word-test-" + UUID.randomUUID());
         tempDir.mkdirs();
-        
-        wordFeatures = new OfficeMcpServerWordFeatures();
+
         documentPath = tempDir.getAbsolutePath() + "/test.docx";
     }
     
@@ -73,6 +80,48 @@ public class WordFeaturesTest {
         wordFeatures.addTextToWordDocument(documentPath, testText);
         
         // Read text from the document
-        assertNotNull(wordFeatures.readTextFromWordDocument(documentPath));
+        assertNotNull(wordFeatures.readTextFromWordDocument(documentPath, null, null));
+    }
+
+    @Test
+    void testAddTextStreamsForLargeDocuments() throws Exception {
+        wordFeatures.createWordDocument(documentPath);
+        wordFeatures.addTextToWordDocument(documentPath, "First paragraph");
+        documentCache.invalidate(documentPath);
+
+        EngineSelector engines = wordFeatures.engines;
+        wordFeatures.engines = new EngineSelector(documentCache, 0, 12, 0);
+        try {
+            long misses = documentCache.stats().misses();
+            assertFalse(wordFeatures.addTextToWordDocument(documentPath, " Tom & Jerry <3 ").isError());
+            assertEquals(1, wordFeatures.engines.stats().streamingWrites());
+            assertEquals(misses, documentCache.stats().misses());
+        } finally {
+            wordFeatures.engines = engines;
+        }
+
+        assertEquals("Text from Word document at " + documentPath + ": First paragraph\n Tom & Jerry <3 \n",
+            text(wordFeatures.readTextFromWordDocument(documentPath, null, null), 0));
+    }
+
+    @Test
+    void testReadTextFromWordDocumentInPages() throws Exception {
+        wordFeatures.createWordDocument(documentPath);
+        wordFeatures.addTextToWordDocument(documentPath, "First paragraph");
+        wordFeatures.addTextToWordDocument(documentPath, "Second paragraph");
+
+        ToolResponse first = wordFeatures.readTextFromWordDocument(documentPath, null, 20);
+        assertEquals("Text from Word document at " + documentPath + ": First paragraph\nSeco", text(first, 0));
+        assertEquals("Characters 0 to 20 of 33. Pass offset 20 to read the next page.", text(first, 1));
+
+        ToolResponse second = wordFeatures.readTextFromWordDocument(documentPath, 20, 20);
+        assertEquals("Text from Word document at " + documentPath + ": nd paragraph\n", text(second, 0));
+        assertEquals("Characters 20 to 33 of 33, end of text.", text(second, 1));
+
+        assertTrue(wordFeatures.readTextFromWordDocument(documentPath, 33, null).isError());
+    }
+
+    private static String text(ToolResponse response, int index) {
+        return ((TextContent) response.content().get(index)).text();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,83 @@
+package dev.lescoggi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.FileOutputStream;
+import java.nio.file.Path;
+
+import org.apache.poi.wp.usermodel.HeaderFooterType;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class WordTextExtractorTest {
+
+    private static final String TEXT = "Contract header\n"
+        + "First paragraph\twith a tab\n"
+        + "Name\tValue\n"
+        + "Price\t42 EUR\n"
+        + "Second line\n"
+        + "Last paragraph 😀\n"
+        + "Page footer\n";
+
+    @TempDir
+    Path tempDir;
+
+    private Path documentPath;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        documentPath = tempDir.resolve("contract.docx");
+        try (XWPFDocument document = new XWPFDocument(); FileOutputStream out = new FileOutputStream(documentPath.toFile())) {
+            document.createHeader(HeaderFooterType.DEFAULT).createParagraph().createRun().setText("Contract header");
+            XWPFRun run = document.createParagraph().createRun();
+            run.setText("First paragraph");
+            run.addTab();
+            run.setText("with a tab");
+            XWPFTable table = document.createTable(2, 2);
+            table.getRow(0).getCell(0).setText("Name");
+            table.getRow(0).getCell(1).setText("Value");
+            table.getRow(1).getCell(0).setText("Price");
+            table.getRow(1).getCell(1).setText("42");
+            table.getRow(1).getCell(1).addParagraph().createRun().setText("EUR");
+            document.createParagraph().createRun().setText("Second line");
+            document.createParagraph().createRun().setText("Last paragraph 😀");
+            document.createFooter(HeaderFooterType.DEFAULT).createParagraph().createRun().setText("Page footer");
+            document.write(out);
+        }
+    }
+
+    @Test
+    void testReadWholeText() throws Exception {
+        WordTextExtractor.Page page = WordTextExtractor.read(documentPath, 0, Integer.MAX_VALUE);
+
+        assertEquals(TEXT, page.text());
+        assertEquals(TEXT.length(), page.totalLength());
+    }
+
+    @Test
+    void testPagesCoverTheTextExactlyOnce() throws Exception {
+        StringBuilder text = new StringBuilder();
+        int offset = 0;
+        while (offset < TEXT.length()) {
+            WordTextExtractor.Page page = WordTextExtractor.read(documentPath, offset, 7);
+            assertEquals(TEXT.length(), page.totalLength());
+            text.append(page.text());
+            offset = page.end();
+        }
+        assertEquals(TEXT, text.toString());
+    }
+
+    @Test
+    void testPageDoesNotSplitSurrogatePair() throws Exception {
+        int emoji = TEXT.indexOf('\uD83D');
+
+        WordTextExtractor.Page page = WordTextExtractor.read(documentPath, emoji - 2, 3);
+
+        assertEquals("h ", page.text());
+        assertEquals(emoji, page.end());
+    }
+}
@@ -0,0 +1,87 @@
+package dev.lescoggi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class WorkbookMetadataIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path workbookPath;
+    private WorkbookMetadataIndex index;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        workbookPath = tempDir.resolve("metadata.xlsx");
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); FileOutputStream out = new FileOutputStream(workbookPath.toFile())) {
+            workbook.createSheet("Empty");
+            XSSFSheet sheet = workbook.createSheet("Data");
+            // Row 0 is missing on purpose
+            sheet.createRow(2).createCell(1).setCellValue("x");
+            sheet.createRow(4).createCell(3).setCellValue(1);
+            workbook.createSheet("Single").createRow(0).createCell(0).setCellValue("only");
+            workbook.write(out);
+        }
+        index = new WorkbookMetadataIndex(16);
+    }
+
+    @Test
+    void testCountsFromWorkbookAndDimension() throws Exception {
+        assertEquals(3, index.sheetCount(workbookPath.toString()));
+        assertEquals(new WorkbookMetadataIndex.SheetDimension(3, 3), index.dimension(workbookPath.toString(), "Data"));
+        assertEquals(WorkbookMetadataIndex.SheetDimension.EMPTY, index.dimension(workbookPath.toString(), "Empty"));
+        assertEquals(new WorkbookMetadataIndex.SheetDimension(1, 1), index.dimension(workbookPath.toString(), "Single"));
+        assertNull(index.dimension(workbookPath.toString(), "Missing"));
+
+        // Everything after the first lookup is served from the index
+        assertEquals(new WorkbookMetadataIndex.SheetDimension(3, 3), index.dimension(workbookPath.toString(), "Data"));
+        assertEquals(1, index.stats().misses());
+        assertEquals(3, index.stats().sheetReads());
+    }
+
+    @Test
+    void testScansSheetsWithoutDimension() throws Exception {
+        Path stripped = tempDir.resolve("stripped.xlsx");
+        try (ZipFile zip = new ZipFile(workbookPath.toFile());
+             ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(stripped))) {
+            for (ZipEntry entry : Collections.list(zip.entries())) {
+                out.putNextEntry(new ZipEntry(entry.getName()));
+                byte[] content = zip.getInputStream(entry).readAllBytes();
+                if (entry.getName().startsWith("xl/worksheets/")) {
+                    content = new String(content, "UTF-8").replaceAll("<dimension ref=\"[^\"]*\"/>", "").getBytes("UTF-8");
+                }
+                out.write(content);
+            }
+        }
+        assertEquals(new WorkbookMetadataIndex.SheetDimension(3, 3), index.dimension(stripped.toString(), "Data"));
+        assertEquals(WorkbookMetadataIndex.SheetDimension.EMPTY, index.dimension(stripped.toString(), "Empty"));
+    }
+
+    @Test
+    void testReloadsChangedFile() throws Exception {
+        assertEquals(3, index.sheetCount(workbookPath.toString()));
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); FileOutputStream out = new FileOutputStream(workbookPath.toFile())) {
+            workbook.createSheet("Only");
+            workbook.write(out);
+        }
+        Files.setLastModifiedTime(workbookPath, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+        assertEquals(1, index.sheetCount(workbookPath.toString()));
+        assertEquals(2, index.stats().misses());
+    }
+}